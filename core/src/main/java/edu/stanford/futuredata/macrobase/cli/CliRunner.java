@@ -10,6 +10,9 @@ import org.slf4j.LoggerFactory;
  * New custom pipelines can be created by implementing the Pipeline interface and
  * adding a loader to the PipelineMapper.
  *
+ * If the config sets resultCacheDir, results are cached there across runs,
+ * see ResultCache.fromConfig.
+ *
  * see demo/batch.yaml
  */
 public class CliRunner {
@@ -20,6 +23,12 @@ public class CliRunner {
         String configFile = args[0];
         PipelineConfig conf = PipelineConfig.fromYamlFile(configFile);
         Pipeline p = PipelineUtils.createPipeline(conf);
+        if (conf.get("resultCacheDir") != null) {
+            ResultCache cache = ResultCache.fromConfig(conf);
+            if (cache != null) {
+                p = cache.wrap(conf, p);
+            }
+        }
         Explanation e = p.results();
         log.info("Computed Results");
         System.out.println(e.prettyPrint());
@@ -0,0 +1,297 @@
+package edu.stanford.futuredata.macrobase.ingest;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Loads the requiredColumns of a table or query from a JDBC source.
+ *
+ * Only requiredColumns are selected and filters are appended to the WHERE
+ * clause as bound parameters, so the database does the projection and
+ * filtering. Rows are fetched in batches of fetchSize with autocommit off,
+ * which makes the Postgres driver use a cursor instead of materializing the
+ * result; MySQL needs useCursorFetch=true in the url for the same. Values
+ * are written straight into primitive column arrays.
+ *
+ * With a numeric partitionColumn and numPartitions above 1, the range of the
+ * column is split into equal intervals that are read in parallel over
+ * separate connections.
+ */
+public class JDBCDataFrameLoader implements DataFrameLoader {
+    private static Logger log = LoggerFactory.getLogger(JDBCDataFrameLoader.class);
+    private static final Set<String> OPERATORS = new HashSet<>(Arrays.asList(
+            "=", "!=", "<>", "<", "<=", ">", ">="
+    ));
+
+    /**
+     * A predicate pushed into the generated WHERE clause, value is bound as a
+     * parameter.
+     */
+    public static class Filter {
+        public final String column;
+        public final String op;
+        public final Object value;
+
+        public Filter(String column, String op, Object value) throws MacroBaseException {
+            if (!OPERATORS.contains(op)) {
+                throw new MacroBaseException("Unsupported filter operator " + op);
+            }
+            this.column = column;
+            this.op = op;
+            this.value = value;
+        }
+    }
+
+    private final String url;
+    private final String source;
+    private final List<String> requiredColumns;
+    private Map<String, Schema.ColType> types = new HashMap<>();
+    private Properties connectionProperties = new Properties();
+    private List<Filter> filters = new ArrayList<>();
+    private int fetchSize = 10000;
+    private String partitionColumn;
+    private int numPartitions = 1;
+
+    /**
+     * @param url JDBC url, e.g. jdbc:postgresql://host/db
+     * @param table table to read, may be schema qualified
+     * @param requiredColumns columns to select
+     */
+    public JDBCDataFrameLoader(String url, String table, List<String> requiredColumns) {
+        this.url = url;
+        this.source = table;
+        this.requiredColumns = requiredColumns;
+    }
+
+    /**
+     * Reads the result of query instead of a table.
+     */
+    public static JDBCDataFrameLoader fromQuery(String url, String query, List<String> requiredColumns) {
+        return new JDBCDataFrameLoader(url, "(" + query + ") mb_source", requiredColumns);
+    }
+
+    @Override
+    public DataFrameLoader setColumnTypes(Map<String, Schema.ColType> types) {
+        this.types = types;
+        return this;
+    }
+
+    public JDBCDataFrameLoader setCredentials(String user, String password) {
+        if (user != null) {
+            connectionProperties.setProperty("user", user);
+        }
+        if (password != null) {
+            connectionProperties.setProperty("password", password);
+        }
+        return this;
+    }
+
+    public JDBCDataFrameLoader addFilter(Filter filter) {
+        filters.add(filter);
+        return this;
+    }
+
+    public JDBCDataFrameLoader setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public JDBCDataFrameLoader setPartitioning(String partitionColumn, int numPartitions) {
+        this.partitionColumn = partitionColumn;
+        this.numPartitions = numPartitions;
+        return this;
+    }
+
+    @Override
+    public DataFrame load() throws Exception {
+        if (partitionColumn == null || numPartitions <= 1) {
+            try (Connection conn = connect()) {
+                return loadRange(conn, null, null, false);
+            }
+        }
+
+        double min, max;
+        try (Connection conn = connect()) {
+            String q = quote(conn, partitionColumn);
+            String sql = "SELECT MIN(" + q + "), MAX(" + q + ") FROM " + source + getWhere(conn, null);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                bindFilters(stmt);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    rs.next();
+                    min = rs.getDouble(1);
+                    if (rs.wasNull()) {
+                        // no rows with a partition key, only the null partition remains
+                        return loadRange(conn, null, null, false);
+                    }
+                    max = rs.getDouble(2);
+                }
+            }
+        }
+
+        double width = (max - min) / numPartitions;
+        ExecutorService workers = Executors.newFixedThreadPool(numPartitions);
+        try {
+            List<Future<DataFrame>> parts = new ArrayList<>();
+            for (int i = 0; i < numPartitions; i++) {
+                Double lo = min + i * width;
+                // the last interval is closed so that max is included
+                Double hi = i == numPartitions - 1 ? null : min + (i + 1) * width;
+                boolean withNulls = i == 0;
+                parts.add(workers.submit(() -> {
+                    try (Connection conn = connect()) {
+                        return loadRange(conn, lo, hi, withNulls);
+                    }
+                }));
+            }
+            List<DataFrame> frames = new ArrayList<>();
+            for (Future<DataFrame> f : parts) {
+                try {
+                    frames.add(f.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+            log.info("Loaded {} partitions of {} on {}", numPartitions, source, partitionColumn);
+            return DataFrame.unionAll(frames);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection conn = DriverManager.getConnection(url, connectionProperties);
+        // drivers such as Postgres only stream results inside a transaction
+        conn.setAutoCommit(false);
+        conn.setReadOnly(true);
+        return conn;
+    }
+
+    private static String quote(Connection conn, String identifier) throws SQLException {
+        String q = conn.getMetaData().getIdentifierQuoteString();
+        if (q == null || q.trim().isEmpty()) {
+            return identifier;
+        }
+        return q + identifier.replace(q, q + q) + q;
+    }
+
+    /**
+     * @param range predicate on the partition column, null for none
+     */
+    private String getWhere(Connection conn, String range) throws SQLException {
+        List<String> clauses = new ArrayList<>();
+        for (Filter f : filters) {
+            clauses.add(quote(conn, f.column) + " " + f.op + " ?");
+        }
+        if (range != null) {
+            clauses.add(range);
+        }
+        return clauses.isEmpty() ? "" : " WHERE " + String.join(" AND ", clauses);
+    }
+
+    private int bindFilters(PreparedStatement stmt) throws SQLException {
+        int i = 1;
+        for (Filter f : filters) {
+            stmt.setObject(i++, f.value);
+        }
+        return i;
+    }
+
+    /**
+     * Loads rows with lo <= partitionColumn < hi, or <= max when hi is null.
+     * If lo is null there is no range restriction.
+     */
+    private DataFrame loadRange(Connection conn, Double lo, Double hi, boolean withNulls) throws Exception {
+        List<String> selected = new ArrayList<>();
+        for (String col : requiredColumns) {
+            selected.add(quote(conn, col));
+        }
+        String range = null;
+        if (lo != null) {
+            String p = quote(conn, partitionColumn);
+            range = hi == null ? p + " >= ?" : "(" + p + " >= ? AND " + p + " < ?)";
+            if (withNulls) {
+                range = "(" + range + " OR " + p + " IS NULL)";
+            }
+        }
+        String sql = "SELECT " + String.join(", ", selected) + " FROM " + source + getWhere(conn, range);
+        log.debug("Running {}", sql);
+
+        try (PreparedStatement stmt = conn.prepareStatement(
+                sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            int param = bindFilters(stmt);
+            if (lo != null) {
+                stmt.setDouble(param++, lo);
+                if (hi != null) {
+                    stmt.setDouble(param, hi);
+                }
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return read(rs);
+            }
+        }
+    }
+
+    private DataFrame read(ResultSet rs) throws SQLException {
+        int d = requiredColumns.size();
+        boolean[] isDouble = new boolean[d];
+        for (int c = 0; c < d; c++) {
+            isDouble[c] = types.getOrDefault(requiredColumns.get(c), Schema.ColType.STRING)
+                    == Schema.ColType.DOUBLE;
+        }
+        double[][] doubleCols = new double[d][];
+        String[][] stringCols = new String[d][];
+        int capacity = 1024;
+        for (int c = 0; c < d; c++) {
+            if (isDouble[c]) {
+                doubleCols[c] = new double[capacity];
+            } else {
+                stringCols[c] = new String[capacity];
+            }
+        }
+
+        int n = 0;
+        while (rs.next()) {
+            if (n == capacity) {
+                capacity *= 2;
+                for (int c = 0; c < d; c++) {
+                    if (isDouble[c]) {
+                        doubleCols[c] = Arrays.copyOf(doubleCols[c], capacity);
+                    } else {
+                        stringCols[c] = Arrays.copyOf(stringCols[c], capacity);
+                    }
+                }
+            }
+            for (int c = 0; c < d; c++) {
+                if (isDouble[c]) {
+                    double v = rs.getDouble(c + 1);
+                    doubleCols[c][n] = rs.wasNull() ? Double.NaN : v;
+                } else {
+                    String v = rs.getString(c + 1);
+                    // same as CSVDataFrameParser
+                    stringCols[c][n] = v == null ? "NULL" : v;
+                }
+            }
+            n++;
+        }
+
+        DataFrame df = new DataFrame();
+        for (int c = 0; c < d; c++) {
+            String name = requiredColumns.get(c);
+            if (isDouble[c]) {
+                df.addColumn(name, Arrays.copyOf(doubleCols[c], n));
+            } else {
+                df.addColumn(name, Arrays.copyOf(stringCols[c], n));
+            }
+        }
+        return df;
+    }
+}
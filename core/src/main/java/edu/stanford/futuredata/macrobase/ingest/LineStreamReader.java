@@ -0,0 +1,184 @@
+package edu.stanford.futuredata.macrobase.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads newline delimited records from a file or socket into a bounded queue.
+ * put() blocks while the queue is full, so a slow consumer stops the reader:
+ * a tailed file is simply read later and a socket sender is throttled by TCP
+ * flow control.
+ *
+ * Supported URIs:
+ *   csv://path or json://path read the file once up to its end,
+ *   tail://path follows the file as it is appended to, like tail -f,
+ *   socket://host:port reads from a connection until the sender closes it.
+ * Only complete lines are queued while following a file, so a record that is
+ * still being written is not split. END_OF_STREAM is queued last.
+ */
+public class LineStreamReader implements Runnable {
+    private static Logger log = LoggerFactory.getLogger(LineStreamReader.class);
+    public static final String END_OF_STREAM = new String("<end of stream>");
+
+    private final String inputURI;
+    private final BlockingQueue<String> queue;
+    private long pollIntervalMs = 100;
+
+    private volatile boolean stopped = false;
+    private volatile Closeable input;
+    private volatile Exception error;
+    private long numLines = 0;
+
+    public LineStreamReader(String inputURI, BlockingQueue<String> queue) {
+        this.inputURI = inputURI;
+        this.queue = queue;
+    }
+
+    public void setPollIntervalMs(long pollIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    @Override
+    public void run() {
+        try {
+            int sep = inputURI.indexOf("://");
+            if (sep < 0) {
+                throw new IOException("Unsupported streaming URI " + inputURI);
+            }
+            String scheme = inputURI.substring(0, sep);
+            String location = inputURI.substring(sep + 3);
+            switch (scheme) {
+                case "csv":
+                case "json":
+                    readLines(openFile(location), false);
+                    break;
+                case "tail":
+                    readLines(openFile(location), true);
+                    break;
+                case "socket": {
+                    int colon = location.lastIndexOf(':');
+                    if (colon < 0) {
+                        throw new IOException("Socket URI needs host:port, got " + inputURI);
+                    }
+                    Socket socket = new Socket(
+                            location.substring(0, colon),
+                            Integer.parseInt(location.substring(colon + 1))
+                    );
+                    input = socket;
+                    readLines(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8), false);
+                    break;
+                }
+                default:
+                    throw new IOException("Unsupported streaming URI " + inputURI);
+            }
+        } catch (InterruptedException e) {
+            // stopped while waiting on a full queue
+        } catch (Exception e) {
+            if (!stopped) {
+                log.error("Stream {} failed: ", inputURI, e);
+                error = e;
+            }
+        } finally {
+            close();
+            log.info("Stream {} ended after {} lines", inputURI, numLines);
+            queueEndOfStream();
+        }
+    }
+
+    /**
+     * Waits for room for END_OF_STREAM while the consumer is running. Once
+     * stopped the consumer might be gone, so the queue is cleared instead.
+     */
+    private void queueEndOfStream() {
+        boolean interrupted = false;
+        while (true) {
+            if (stopped) {
+                queue.clear();
+            }
+            try {
+                if (queue.offer(END_OF_STREAM, pollIntervalMs, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                // stop() is usually about to be called, keep trying until it is
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Reader openFile(String path) throws IOException {
+        FileInputStream in = new FileInputStream(path.replaceFirst("^~", System.getProperty("user.home")));
+        input = in;
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    private void readLines(Reader reader, boolean follow) throws IOException, InterruptedException {
+        char[] buf = new char[8192];
+        StringBuilder line = new StringBuilder();
+        while (!stopped) {
+            int n = reader.read(buf);
+            if (n < 0) {
+                if (!follow) {
+                    break;
+                }
+                Thread.sleep(pollIntervalMs);
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                char c = buf[i];
+                if (c == '\n') {
+                    emit(line);
+                } else if (c != '\r') {
+                    line.append(c);
+                }
+            }
+        }
+        if (!stopped) {
+            emit(line);
+        }
+    }
+
+    private void emit(StringBuilder line) throws InterruptedException {
+        if (line.length() > 0) {
+            queue.put(line.toString());
+            numLines++;
+            line.setLength(0);
+        }
+    }
+
+    /**
+     * Stop reading. Closes the input to unblock a pending read, the reader
+     * thread must also be interrupted if it may be waiting on a full queue.
+     */
+    public void stop() {
+        stopped = true;
+        close();
+    }
+
+    private void close() {
+        Closeable c = input;
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                log.warn("Failed to close {}", inputURI);
+            }
+        }
+    }
+
+    /**
+     * @return the exception that ended the stream, or null if it ended normally
+     */
+    public Exception getError() {
+        return error;
+    }
+}
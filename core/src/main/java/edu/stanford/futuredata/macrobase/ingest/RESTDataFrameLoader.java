@@ -2,20 +2,77 @@ package edu.stanford.futuredata.macrobase.ingest;
 
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
 import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 import okhttp3.*;
 import com.univocity.parsers.csv.CsvParser;
 import com.univocity.parsers.csv.CsvParserSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.net.ssl.*;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.net.URL;
 import java.security.cert.CertificateException;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * Loads a csv served over http. Response bodies are parsed as they are
+ * downloaded rather than buffered.
+ *
+ * Sources that page their results can be read with setPagination: offset
+ * pages are fetched by several concurrent requests, cursor pages one request
+ * at a time while earlier pages are still being parsed. Every page is a csv
+ * with its own header row.
+ */
 public class RESTDataFrameLoader implements DataFrameLoader{
+    private static Logger log = LoggerFactory.getLogger(RESTDataFrameLoader.class);
+
+    /**
+     * How a source splits its results into pages, read from a config map:
+     *   type: "offset" or "cursor"
+     *   param: query parameter carrying the row offset or cursor
+     *     (default "offset" or "cursor")
+     *   limitParam: query parameter carrying pageSize (default "limit"), null to omit
+     *   pageSize: rows per page (default 10000), a shorter offset page is the last
+     *   cursorHeader: response header with the next cursor, absent or empty on
+     *     the last page (default "X-Next-Cursor")
+     *   concurrency: pages downloaded or parsed at once (default 4)
+     */
+    public static class Pagination {
+        public enum Type {
+            OFFSET, CURSOR
+        }
+
+        public final Type type;
+        public final String param;
+        public final String limitParam;
+        public final int pageSize;
+        public final String cursorHeader;
+        public final int concurrency;
+
+        public Pagination(Map<String, Object> conf) throws MacroBaseException {
+            String typeName = (String) conf.getOrDefault("type", "offset");
+            try {
+                type = Type.valueOf(typeName.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new MacroBaseException("Unknown pagination type " + typeName);
+            }
+            param = (String) conf.getOrDefault("param", type == Type.OFFSET ? "offset" : "cursor");
+            limitParam = (String) conf.getOrDefault("limitParam", "limit");
+            pageSize = ((Number) conf.getOrDefault("pageSize", 10000)).intValue();
+            cursorHeader = (String) conf.getOrDefault("cursorHeader", "X-Next-Cursor");
+            concurrency = ((Number) conf.getOrDefault("concurrency", 4)).intValue();
+            if (pageSize <= 0 || concurrency <= 0) {
+                throw new MacroBaseException("pageSize and concurrency must be positive");
+            }
+        }
+    }
+
     private String baseURL;
     private Map<String, String> headerParams;
 
@@ -24,6 +81,7 @@ public class RESTDataFrameLoader implements DataFrameLoader{
     private Map<String, String> getParams;
     private Map<String, Schema.ColType> types;
     private List<String> requiredColumns;
+    private Pagination pagination;
 
     private OkHttpClient client;
 
@@ -47,6 +105,35 @@ public class RESTDataFrameLoader implements DataFrameLoader{
     public void setGetParams(Map<String, String> getParams) {
         this.getParams = getParams;
     }
+    public void setPagination(Pagination pagination) {
+        this.pagination = pagination;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
 
     private static OkHttpClient getUnsafeOkHttpClient() {
         try {
@@ -91,40 +178,117 @@ public class RESTDataFrameLoader implements DataFrameLoader{
         }
     }
 
-    private String postRequest() throws IOException {
-        URL url = new URL(baseURL);
-        MediaType JSON = MediaType.parse("application/json; charset=utf-8");
-        RequestBody body = RequestBody.create(JSON, jsonBody);
-        Request.Builder requestBuilder = new Request.Builder()
-                .url(url)
-                .post(body);
-        for (String headerKey: headerParams.keySet()) {
-            requestBuilder.addHeader(headerKey, headerParams.get(headerKey));
-        }
-        Request request = requestBuilder.build();
-        Response response = this.client.newCall(request).execute();
-        return response.body().string();
-    }
-
-    private String getRequest() throws IOException {
+    private HttpUrl getURL(Map<String, String> pageParams) throws IOException {
         URL url = new URL(baseURL);
         HttpUrl.Builder httpBuilder = HttpUrl.get(url).newBuilder();
-        if (getParams != null) {
+        if (getParams != null && !usePost) {
             for (String paramName : getParams.keySet()) {
                 httpBuilder.addQueryParameter(paramName, getParams.get(paramName));
             }
         }
-        HttpUrl fullURL = httpBuilder.build();
+        for (Map.Entry<String, String> param : pageParams.entrySet()) {
+            httpBuilder.setQueryParameter(param.getKey(), param.getValue());
+        }
+        return httpBuilder.build();
+    }
+
+    /**
+     * @param pageParams query parameters selecting a page, added for both GET and POST
+     */
+    private Request buildRequest(Map<String, String> pageParams) throws IOException {
+        Request.Builder requestBuilder = new Request.Builder().url(getURL(pageParams));
+        if (usePost) {
+            MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+            requestBuilder.post(RequestBody.create(JSON, jsonBody));
+        } else {
+            requestBuilder.get();
+        }
+        if (headerParams != null) {
+            for (String headerKey : headerParams.keySet()) {
+                requestBuilder.addHeader(headerKey, headerParams.get(headerKey));
+            }
+        }
+        return requestBuilder.build();
+    }
+
+    private Response execute(Map<String, String> pageParams) throws IOException {
+        Request request = buildRequest(pageParams);
+        Response response = client.newCall(request).execute();
+        if (!response.isSuccessful()) {
+            response.close();
+            throw new IOException("HTTP " + response.code() + " from " + request.url());
+        }
+        return response;
+    }
+
+    /**
+     * OkHttp asks for and transparently decodes gzip unless the caller sets
+     * its own Accept-Encoding header, in which case a gzip Content-Encoding
+     * is still present and decoded here. Bodies that are gzip files
+     * themselves are decoded too.
+     */
+    private static InputStream openBody(Response response) throws IOException {
+        InputStream in = response.body().byteStream();
+        String encoding = response.header("Content-Encoding");
+        String contentType = response.header("Content-Type", "");
+        if ("gzip".equalsIgnoreCase(encoding)
+                || contentType.startsWith("application/gzip")
+                || contentType.startsWith("application/x-gzip")) {
+            in = new GZIPInputStream(in, 65536);
+        }
+        return in;
+    }
+
+    /**
+     * Parses the body as it arrives, it is never held in memory as a whole.
+     * @return null if the body is empty
+     */
+    private DataFrame parse(Response response) throws Exception {
+        try (Response r = response;
+             PushbackInputStream in = new PushbackInputStream(openBody(r))) {
+            int first = in.read();
+            if (first < 0) {
+                return null;
+            }
+            in.unread(first);
+            CountingInputStream counted = new CountingInputStream(in);
+            CsvParserSettings settings = new CsvParserSettings();
+            CsvParser csvParser = new CsvParser(settings);
+            csvParser.beginParsing(new InputStreamReader(counted, StandardCharsets.UTF_8));
+            CSVDataFrameParser dfParser = new CSVDataFrameParser(csvParser, requiredColumns);
+            dfParser.setColumnTypes(types);
+            DataFrame df = dfParser.load();
+            PipelineMetrics.BYTES_LOADED.inc(counted.count, "http");
+            return df;
+        }
+    }
 
+    /**
+     * Asks the source for a cache validator with a HEAD request, without
+     * downloading the body.
+     * @return the ETag, else the Last-Modified date, or null if the source sends
+     * neither or the request fails
+     */
+    public String fetchValidator() throws IOException {
         Request.Builder requestBuilder = new Request.Builder()
-                .url(fullURL)
-                .get();
-        for (String headerKey: headerParams.keySet()) {
-            requestBuilder.addHeader(headerKey, headerParams.get(headerKey));
+                .url(getURL(Collections.emptyMap()))
+                .head();
+        if (headerParams != null) {
+            for (String headerKey : headerParams.keySet()) {
+                requestBuilder.addHeader(headerKey, headerParams.get(headerKey));
+            }
+        }
+        try (Response response = this.client.newCall(requestBuilder.build()).execute()) {
+            if (!response.isSuccessful()) {
+                return null;
+            }
+            String etag = response.header("ETag");
+            if (etag != null) {
+                return "etag:" + etag;
+            }
+            String lastModified = response.header("Last-Modified");
+            return lastModified == null ? null : "modified:" + lastModified;
         }
-        Request request = requestBuilder.build();
-        Response response = this.client.newCall(request).execute();
-        return response.body().string();
     }
 
 
@@ -136,20 +300,135 @@ public class RESTDataFrameLoader implements DataFrameLoader{
 
     @Override
     public DataFrame load() throws Exception {
-        String response;
-        if (usePost) {
-            response = postRequest();
-        } else {
-            response = getRequest();
+        if (pagination == null) {
+            DataFrame df = parse(execute(Collections.emptyMap()));
+            if (df == null) {
+                throw new IOException("Empty response from " + baseURL);
+            }
+            return df;
+        }
+        List<DataFrame> pages = pagination.type == Pagination.Type.OFFSET
+                ? loadOffsetPages()
+                : loadCursorPages();
+        log.info("Loaded {} pages from {}", pages.size(), baseURL);
+        if (pages.isEmpty()) {
+            throw new IOException("Empty response from " + baseURL);
+        }
+        return pages.size() == 1 ? pages.get(0) : DataFrame.unionAll(pages);
+    }
+
+    private Map<String, String> getPageParams(String position) {
+        Map<String, String> params = new HashMap<>();
+        if (pagination.limitParam != null) {
+            params.put(pagination.limitParam, String.valueOf(pagination.pageSize));
+        }
+        if (position != null) {
+            params.put(pagination.param, position);
+        }
+        return params;
+    }
+
+    /**
+     * Pages are claimed in order by concurrency workers. The first page with
+     * fewer than pageSize rows is the last one, pages fetched speculatively
+     * past it are dropped.
+     */
+    private List<DataFrame> loadOffsetPages() throws Exception {
+        AtomicInteger nextPage = new AtomicInteger();
+        AtomicInteger lastPage = new AtomicInteger(Integer.MAX_VALUE);
+        Map<Integer, DataFrame> pages = new ConcurrentHashMap<>();
+        ExecutorService workers = Executors.newFixedThreadPool(pagination.concurrency);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < pagination.concurrency; w++) {
+                futures.add(workers.submit(() -> {
+                    int page;
+                    while ((page = nextPage.getAndIncrement()) <= lastPage.get()) {
+                        long offset = (long) page * pagination.pageSize;
+                        DataFrame df = parse(execute(getPageParams(String.valueOf(offset))));
+                        if (df != null) {
+                            pages.put(page, df);
+                        }
+                        if (df == null || df.getNumRows() < pagination.pageSize) {
+                            lastPage.accumulateAndGet(page, Math::min);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            awaitAll(futures);
+        } finally {
+            workers.shutdownNow();
+        }
+        List<DataFrame> ordered = new ArrayList<>();
+        for (int page = 0; page <= lastPage.get(); page++) {
+            DataFrame df = pages.get(page);
+            if (df != null) {
+                ordered.add(df);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Requests are sequential since each needs the cursor returned with the
+     * previous one, but the cursor arrives in a header so the next request is
+     * sent while the previous body is still being parsed.
+     */
+    private List<DataFrame> loadCursorPages() throws Exception {
+        ExecutorService parsers = Executors.newFixedThreadPool(pagination.concurrency);
+        // bounds the number of open responses
+        Semaphore inFlight = new Semaphore(pagination.concurrency);
+        List<Future<DataFrame>> futures = new ArrayList<>();
+        try {
+            String cursor = null;
+            do {
+                inFlight.acquire();
+                Response response;
+                try {
+                    response = execute(getPageParams(cursor));
+                } catch (IOException e) {
+                    inFlight.release();
+                    throw e;
+                }
+                cursor = response.header(pagination.cursorHeader);
+                futures.add(parsers.submit(() -> {
+                    try {
+                        return parse(response);
+                    } finally {
+                        inFlight.release();
+                    }
+                }));
+                if (cursor != null && cursor.isEmpty()) {
+                    cursor = null;
+                }
+            } while (cursor != null);
+            awaitAll(futures);
+
+            List<DataFrame> pages = new ArrayList<>();
+            for (Future<DataFrame> f : futures) {
+                DataFrame df = f.get();
+                if (df != null) {
+                    pages.add(df);
+                }
+            }
+            return pages;
+        } finally {
+            parsers.shutdownNow();
         }
+    }
 
-        CsvParserSettings settings = new CsvParserSettings();
-        CsvParser csvParser = new CsvParser(settings);
-        InputStream targetStream = new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8.name()));
-        InputStreamReader targetReader = new InputStreamReader(targetStream, "UTF-8");
-        csvParser.beginParsing(targetReader);
-        CSVDataFrameParser dfParser = new CSVDataFrameParser(csvParser, requiredColumns);
-        dfParser.setColumnTypes(types);
-        return dfParser.load();
+    private static void awaitAll(List<? extends Future<?>> futures) throws Exception {
+        for (Future<?> f : futures) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                throw e;
+            }
+        }
     }
 }
@@ -0,0 +1,265 @@
+package edu.stanford.futuredata.macrobase.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Process wide registry of counters, histograms and gauges, rendered in the
+ * Prometheus text exposition format by scrape().
+ *
+ * Metrics are created on first registration and later registrations with the
+ * same name return the existing one, so they can be held in static fields.
+ * Counters and histograms have a fixed list of label names, each combination
+ * of label values is a separate series. Gauges are read when scraped;
+ * registering a gauge again replaces its supplier.
+ */
+public class MetricsRegistry {
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    /**
+     * Upper bounds in seconds, covering queries from milliseconds to minutes.
+     */
+    public static final double[] LATENCY_BUCKETS = {
+            0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300
+    };
+
+    private abstract static class Metric {
+        final String name;
+        final String help;
+        final String[] labelNames;
+
+        Metric(String name, String help, String[] labelNames) {
+            this.name = name;
+            this.help = help;
+            this.labelNames = labelNames;
+        }
+
+        abstract String getType();
+        abstract void write(StringBuilder out);
+
+        List<String> checkLabels(String[] values) {
+            if (values.length != labelNames.length) {
+                throw new IllegalArgumentException(String.format(
+                        "%s expects %d label values, got %d", name, labelNames.length, values.length));
+            }
+            return Arrays.asList(values);
+        }
+
+        String formatLabels(List<String> values, String extraName, String extraValue) {
+            if (values.isEmpty() && extraName == null) {
+                return "";
+            }
+            StringJoiner joiner = new StringJoiner(",", "{", "}");
+            for (int i = 0; i < values.size(); i++) {
+                joiner.add(labelNames[i] + "=\"" + escape(values.get(i)) + "\"");
+            }
+            if (extraName != null) {
+                joiner.add(extraName + "=\"" + extraValue + "\"");
+            }
+            return joiner.toString();
+        }
+    }
+
+    public static class Counter extends Metric {
+        private final Map<List<String>, DoubleAdder> series = new ConcurrentHashMap<>();
+
+        private Counter(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        public void inc(double amount, String... labelValues) {
+            if (amount < 0) {
+                throw new IllegalArgumentException("Counters can only increase");
+            }
+            series.computeIfAbsent(checkLabels(labelValues), k -> new DoubleAdder()).add(amount);
+        }
+
+        public void inc(String... labelValues) {
+            inc(1, labelValues);
+        }
+
+        public double get(String... labelValues) {
+            DoubleAdder a = series.get(Arrays.asList(labelValues));
+            return a == null ? 0 : a.sum();
+        }
+
+        @Override
+        String getType() {
+            return "counter";
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            for (Map.Entry<List<String>, DoubleAdder> e : series.entrySet()) {
+                out.append(name).append(formatLabels(e.getKey(), null, null))
+                        .append(' ').append(format(e.getValue().sum())).append('\n');
+            }
+        }
+    }
+
+    public static class Histogram extends Metric {
+        private final double[] buckets;
+        private final Map<List<String>, Series> series = new ConcurrentHashMap<>();
+
+        private static class Series {
+            final AtomicLongArray counts;
+            final DoubleAdder sum = new DoubleAdder();
+
+            Series(int numBuckets) {
+                // the last slot counts observations above every bucket
+                counts = new AtomicLongArray(numBuckets + 1);
+            }
+        }
+
+        private Histogram(String name, String help, double[] buckets, String[] labelNames) {
+            super(name, help, labelNames);
+            this.buckets = buckets.clone();
+            Arrays.sort(this.buckets);
+        }
+
+        public void observe(double value, String... labelValues) {
+            Series s = series.computeIfAbsent(checkLabels(labelValues), k -> new Series(buckets.length));
+            int i = 0;
+            while (i < buckets.length && value > buckets[i]) {
+                i++;
+            }
+            s.counts.incrementAndGet(i);
+            s.sum.add(value);
+        }
+
+        public long getCount(String... labelValues) {
+            Series s = series.get(Arrays.asList(labelValues));
+            if (s == null) {
+                return 0;
+            }
+            long n = 0;
+            for (int i = 0; i < s.counts.length(); i++) {
+                n += s.counts.get(i);
+            }
+            return n;
+        }
+
+        @Override
+        String getType() {
+            return "histogram";
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            for (Map.Entry<List<String>, Series> e : series.entrySet()) {
+                Series s = e.getValue();
+                long cumulative = 0;
+                for (int i = 0; i <= buckets.length; i++) {
+                    cumulative += s.counts.get(i);
+                    String le = i < buckets.length ? format(buckets[i]) : "+Inf";
+                    out.append(name).append("_bucket").append(formatLabels(e.getKey(), "le", le))
+                            .append(' ').append(cumulative).append('\n');
+                }
+                String labels = formatLabels(e.getKey(), null, null);
+                out.append(name).append("_sum").append(labels).append(' ').append(format(s.sum.sum())).append('\n');
+                out.append(name).append("_count").append(labels).append(' ').append(cumulative).append('\n');
+            }
+        }
+    }
+
+    private static class Gauge extends Metric {
+        private volatile DoubleSupplier supplier;
+
+        private Gauge(String name, String help, DoubleSupplier supplier) {
+            super(name, help, new String[0]);
+            this.supplier = supplier;
+        }
+
+        @Override
+        String getType() {
+            return "gauge";
+        }
+
+        @Override
+        void write(StringBuilder out) {
+            out.append(name).append(' ').append(format(supplier.getAsDouble())).append('\n');
+        }
+    }
+
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    public Counter counter(String name, String help, String... labelNames) {
+        return register(name, Counter.class, () -> new Counter(name, help, labelNames));
+    }
+
+    public Histogram histogram(String name, String help, double[] buckets, String... labelNames) {
+        return register(name, Histogram.class, () -> new Histogram(name, help, buckets, labelNames));
+    }
+
+    public void gauge(String name, String help, DoubleSupplier supplier) {
+        register(name, Gauge.class, () -> new Gauge(name, help, supplier)).supplier = supplier;
+    }
+
+    private synchronized <T extends Metric> T register(
+            String name, Class<T> type, Supplier<T> create
+    ) {
+        Metric m = metrics.computeIfAbsent(name, k -> create.get());
+        if (!type.isInstance(m)) {
+            throw new IllegalArgumentException(name + " is already registered as a " + m.getType());
+        }
+        return type.cast(m);
+    }
+
+    /**
+     * Registers heap and thread gauges for this JVM.
+     */
+    public void registerJvmMetrics() {
+        gauge("jvm_memory_heap_used_bytes", "Used heap memory",
+                () -> heapUsage().getUsed());
+        gauge("jvm_memory_heap_committed_bytes", "Heap memory committed by the JVM",
+                () -> heapUsage().getCommitted());
+        gauge("jvm_memory_heap_max_bytes", "Maximum heap memory",
+                () -> heapUsage().getMax());
+        gauge("jvm_threads_live", "Live JVM threads",
+                () -> ManagementFactory.getThreadMXBean().getThreadCount());
+    }
+
+    private static MemoryUsage heapUsage() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+    }
+
+    /**
+     * @return all metrics in the Prometheus text exposition format, version 0.0.4
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder();
+        for (Metric m : metrics.values()) {
+            out.append("# HELP ").append(m.name).append(' ')
+                    .append(m.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(m.name).append(' ').append(m.getType()).append('\n');
+            m.write(out);
+        }
+        return out.toString();
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double v) {
+        if (Double.isNaN(v)) {
+            return "NaN";
+        } else if (Double.isInfinite(v)) {
+            return v > 0 ? "+Inf" : "-Inf";
+        } else if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+            return Long.toString((long) v);
+        }
+        return Double.toString(v);
+    }
+}
@@ -0,0 +1,58 @@
+package edu.stanford.futuredata.macrobase.metrics;
+
+/**
+ * Metrics recorded by pipelines, loaders, caches and the job manager.
+ */
+public class PipelineMetrics {
+    private static final MetricsRegistry registry = MetricsRegistry.getInstance();
+
+    public static final MetricsRegistry.Histogram STAGE_SECONDS = registry.histogram(
+            "macrobase_pipeline_stage_seconds",
+            "Time spent in each pipeline stage",
+            MetricsRegistry.LATENCY_BUCKETS,
+            "pipeline", "stage"
+    );
+    public static final MetricsRegistry.Counter ROWS_LOADED = registry.counter(
+            "macrobase_rows_loaded_total",
+            "Rows loaded, by input scheme",
+            "scheme"
+    );
+    public static final MetricsRegistry.Counter BYTES_LOADED = registry.counter(
+            "macrobase_bytes_loaded_total",
+            "Bytes read from csv files and http bodies, by input scheme",
+            "scheme"
+    );
+    public static final MetricsRegistry.Counter RESULT_CACHE_LOOKUPS = registry.counter(
+            "macrobase_result_cache_lookups_total",
+            "Result cache lookups, by hit, miss or uncacheable",
+            "result"
+    );
+    public static final MetricsRegistry.Counter DATASET_LOOKUPS = registry.counter(
+            "macrobase_dataset_lookups_total",
+            "Dataset registry lookups, by hit or miss",
+            "result"
+    );
+    public static final MetricsRegistry.Counter JOBS_FINISHED = registry.counter(
+            "macrobase_jobs_finished_total",
+            "Finished jobs, by final status",
+            "status"
+    );
+    public static final MetricsRegistry.Histogram JOB_SECONDS = registry.histogram(
+            "macrobase_job_seconds",
+            "Time from job start to completion, by final status",
+            MetricsRegistry.LATENCY_BUCKETS,
+            "status"
+    );
+
+    public static void recordStage(String pipeline, String stage, long elapsedMs) {
+        STAGE_SECONDS.observe(elapsedMs / 1000.0, pipeline, stage);
+    }
+
+    /**
+     * @return the part of inputURI before "://" or ":", used as the scheme label
+     */
+    public static String getScheme(String inputURI) {
+        int end = inputURI.indexOf(':');
+        return end < 0 ? "unknown" : inputURI.substring(0, end);
+    }
+}
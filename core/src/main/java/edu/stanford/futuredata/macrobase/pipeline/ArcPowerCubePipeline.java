@@ -5,7 +5,11 @@ import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.APLExplanatio
 import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.APLSummarizer;
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
 import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.ingest.MomentSketchDecoder;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
 import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import msolver.PointMassSolver;
+import msolver.SolverCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,6 +26,7 @@ public class ArcPowerCubePipeline implements Pipeline {
     private Map<String, String> restHeader;
     private Map<String, Object> jsonBody;
     private boolean usePost;
+    private Map<String, Object> pagination;
 
     // Classifiers
     private double cutoff;
@@ -31,17 +36,27 @@ public class ArcPowerCubePipeline implements Pipeline {
     private Optional<String> minColumn;
     private Optional<String> maxColumn;
     private List<String> powerSumColumns;
+    // base64 encoded msolver.struct.ArcSinhMomentStruct blobs, replaces the columns above
+    private Optional<String> sketchColumn;
 
     // Explanation
     private List<String> attributes;
     private double minSupport;
     private double minRatioMetric;
+    // threads for candidate generation and for the moment checks when pruning
+    private int numThreads;
+
+    // Solved subgroups are shared across queries so that repeated queries
+    // with different cutoffs only re-run the threshold checks
+    private static final SolverCache<PointMassSolver> solverCache = new SolverCache<>(0);
+    private int solverCacheSize;
 
     public ArcPowerCubePipeline(PipelineConfig conf) {
         inputURI = conf.get("inputURI");
         restHeader = conf.get("restHeader", null);
         jsonBody = conf.get("jsonBody", null);
         usePost = conf.get("usePost", true);
+        pagination = conf.get("pagination", null);
 
         cutoff = conf.get("cutoff", 1.0);
 
@@ -49,14 +64,23 @@ public class ArcPowerCubePipeline implements Pipeline {
         maxColumn = Optional.ofNullable(conf.get("maxColumn"));
         powerSumColumns = conf.get("powerSumColumns", new ArrayList<String>());
         k = powerSumColumns.size();
+        sketchColumn = Optional.ofNullable(conf.get("sketchColumn"));
 
         attributes = conf.get("attributes");
         minSupport = conf.get("minSupport", 3.0);
         minRatioMetric = conf.get("minRatioMetric", 0.01);
+        numThreads = conf.get("numThreads", Runtime.getRuntime().availableProcessors());
+        solverCacheSize = conf.get("solverCacheSize", 0);
     }
 
     public APLExplanation results() throws Exception {
-        Map<String, Schema.ColType> colTypes = getColTypes();
+        Map<String, Schema.ColType> colTypes;
+        if (sketchColumn.isPresent()) {
+            colTypes = new HashMap<>();
+            colTypes.put(sketchColumn.get(), Schema.ColType.STRING);
+        } else {
+            colTypes = getColTypes();
+        }
         long startTime = System.currentTimeMillis();
         final List<String> requiredColumns = new ArrayList<>(attributes);
         requiredColumns.addAll(colTypes.keySet());
@@ -66,10 +90,15 @@ public class ArcPowerCubePipeline implements Pipeline {
                 restHeader,
                 jsonBody,
                 usePost,
+                pagination,
                 requiredColumns
         );
+        if (sketchColumn.isPresent()) {
+            decodeSketches(df);
+        }
         long elapsed = System.currentTimeMillis() - startTime;
         log.info("Loading time: {}", elapsed);
+        PipelineMetrics.recordStage("ArcPowerCubePipeline", "load", elapsed);
         log.info("{} rows", df.getNumRows());
         log.info("Attributes: {}", attributes);
 //        CSVDataFrameWriter writer = new CSVDataFrameWriter();
@@ -82,10 +111,27 @@ public class ArcPowerCubePipeline implements Pipeline {
         APLExplanation explanation = summarizer.getResults();
         elapsed = System.currentTimeMillis() - startTime;
         log.info("Summarization time: {}", elapsed);
+        PipelineMetrics.recordStage("ArcPowerCubePipeline", "summarize", elapsed);
+        if (solverCacheSize > 0) {
+            log.info("Solver cache hits: {} misses: {} warm starts: {}",
+                    solverCache.getNumHits(), solverCache.getNumMisses(), solverCache.getNumWarmStarts());
+        }
 
         return explanation;
     }
 
+    private void decodeSketches(DataFrame df) throws MacroBaseException {
+        MomentSketchDecoder decoder = new MomentSketchDecoder(sketchColumn.get());
+        decoder.decode(df);
+        if (!decoder.isArcSinh()) {
+            throw new MacroBaseException("standard moment sketches require PowerCubePipeline");
+        }
+        k = decoder.getKa();
+        minColumn = Optional.of(decoder.getMinColumn());
+        maxColumn = Optional.of(decoder.getMaxColumn());
+        powerSumColumns = decoder.getPowerSumColumns();
+    }
+
     private Map<String, Schema.ColType> getColTypes() throws MacroBaseException {
         Map<String, Schema.ColType> colTypes = new HashMap<>();
         colTypes.put(
@@ -113,6 +159,11 @@ public class ArcPowerCubePipeline implements Pipeline {
         summarizer.setMinSupport(minSupport);
         summarizer.setMinRatioMetric(minRatioMetric);
         summarizer.setQuantileCutoff(1.0 - cutoff/100.0);
+        summarizer.setNumThreads(numThreads);
+        if (solverCacheSize > 0) {
+            solverCache.setMaxSize(solverCacheSize);
+            summarizer.setSolverCache(solverCache);
+        }
         return summarizer;
     }
 }
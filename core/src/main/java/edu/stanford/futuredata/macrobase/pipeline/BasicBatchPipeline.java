@@ -4,10 +4,13 @@ import edu.stanford.futuredata.macrobase.analysis.classify.*;
 import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
 import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.APLCountMeanShiftSummarizer;
 import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.APLOutlierSummarizer;
+import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.APLSummarizer;
+import edu.stanford.futuredata.macrobase.analysis.summary.util.ColumnDictionaryCache;
 import edu.stanford.futuredata.macrobase.analysis.summary.BatchSummarizer;
 import edu.stanford.futuredata.macrobase.analysis.summary.fpg.FPGrowthSummarizer;
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
 import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
 import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,6 +25,9 @@ public class BasicBatchPipeline implements Pipeline {
     Logger log = LoggerFactory.getLogger(Pipeline.class);
 
     private String inputURI = null;
+    private Map<String, String> restHeader;
+    private Map<String, Object> jsonBody;
+    private boolean usePost;
 
     private String classifierType;
     private String metric;
@@ -40,10 +46,13 @@ public class BasicBatchPipeline implements Pipeline {
     private double minSupport;
     private double minRiskRatio;
     private double meanShiftRatio;
-
+    private ColumnDictionaryCache dictionaryCache;
 
     public BasicBatchPipeline (PipelineConfig conf) {
         inputURI = conf.get("inputURI");
+        restHeader = conf.get("restHeader", null);
+        jsonBody = conf.get("jsonBody", null);
+        usePost = conf.get("usePost", true);
 
         classifierType = conf.get("classifier", "percentile");
         metric = conf.get("metric");
@@ -148,7 +157,14 @@ public class BasicBatchPipeline implements Pipeline {
         }
     }
 
-    public DataFrame loadData() throws Exception {
+    /**
+     * Share attribute encodings with other pipelines running over the same DataFrame.
+     */
+    public void setDictionaryCache(ColumnDictionaryCache dictionaryCache) {
+        this.dictionaryCache = dictionaryCache;
+    }
+
+    public Map<String, Schema.ColType> getColTypes() {
         Map<String, Schema.ColType> colTypes = new HashMap<>();
         if (isStrPredicate) {
             colTypes.put(metric, Schema.ColType.STRING);
@@ -156,14 +172,25 @@ public class BasicBatchPipeline implements Pipeline {
         else{
             colTypes.put(metric, Schema.ColType.DOUBLE);
         }
-        List<String> requiredColumns = new ArrayList<>(attributes);
         if (meanColumn.isPresent()) {
             colTypes.put(meanColumn.get(), Schema.ColType.DOUBLE);
-            requiredColumns.add(meanColumn.get());
+        }
+        return colTypes;
+    }
 
+    public List<String> getRequiredColumns() {
+        List<String> requiredColumns = new ArrayList<>(attributes);
+        if (meanColumn.isPresent()) {
+            requiredColumns.add(meanColumn.get());
         }
         requiredColumns.add(metric);
-        return PipelineUtils.loadDataFrame(inputURI, colTypes, requiredColumns);
+        return requiredColumns;
+    }
+
+    public DataFrame loadData() throws Exception {
+        return PipelineUtils.loadDataFrame(
+                inputURI, getColTypes(), restHeader, jsonBody, usePost, getRequiredColumns()
+        );
     }
 
     @Override
@@ -174,19 +201,34 @@ public class BasicBatchPipeline implements Pipeline {
 
         log.info("Loading time: {} ms", elapsed);
         log.info("{} rows", df.getNumRows());
+        PipelineMetrics.recordStage("BasicBatchPipeline", "load", elapsed);
+        return results(df);
+    }
+
+    /**
+     * Classifies and explains an already loaded DataFrame, which must contain
+     * getRequiredColumns(). df is not modified.
+     */
+    public Explanation results(DataFrame df) throws Exception {
         log.info("Metric: {}", metric);
         log.info("Attributes: {}", attributes);
 
+        long startTime = System.currentTimeMillis();
         Classifier classifier = getClassifier();
         classifier.process(df);
         df = classifier.getResults();
+        PipelineMetrics.recordStage("BasicBatchPipeline", "classify", System.currentTimeMillis() - startTime);
 
         BatchSummarizer summarizer = getSummarizer(classifier.getOutputColumnName());
+        if (summarizer instanceof APLSummarizer) {
+            ((APLSummarizer) summarizer).setDictionaryCache(dictionaryCache);
+        }
 
         startTime = System.currentTimeMillis();
         summarizer.process(df);
-        elapsed = System.currentTimeMillis() - startTime;
+        long elapsed = System.currentTimeMillis() - startTime;
         log.info("Summarization time: {} ms", elapsed);
+        PipelineMetrics.recordStage("BasicBatchPipeline", "summarize", elapsed);
         Explanation output = summarizer.getResults();
 
         return output;
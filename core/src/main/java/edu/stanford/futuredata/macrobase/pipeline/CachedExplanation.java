@@ -0,0 +1,46 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+
+/**
+ * Snapshot of an explanation as the CLI and REST server present it: its
+ * pretty printed text and its JSON form. Explanations such as APLExplanation
+ * hold encoders and quality metrics that are not worth persisting, so the
+ * ResultCache stores this snapshot on disk instead.
+ */
+public class CachedExplanation implements Explanation {
+    private final String text;
+    private final double numTotal;
+    private final JsonNode json;
+
+    public CachedExplanation(String text, double numTotal, JsonNode json) {
+        this.text = text;
+        this.numTotal = numTotal;
+        this.json = json;
+    }
+
+    public static CachedExplanation of(Explanation e, ObjectMapper mapper) {
+        if (e instanceof CachedExplanation) {
+            return (CachedExplanation) e;
+        }
+        return new CachedExplanation(e.prettyPrint(), e.numTotal(), mapper.valueToTree(e));
+    }
+
+    @Override
+    public String prettyPrint() {
+        return text;
+    }
+
+    @Override
+    public double numTotal() {
+        return numTotal;
+    }
+
+    @JsonValue
+    public JsonNode toJson() {
+        return json;
+    }
+}
@@ -2,9 +2,11 @@ package edu.stanford.futuredata.macrobase.pipeline;
 
 import edu.stanford.futuredata.macrobase.analysis.classify.*;
 import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.*;
+import edu.stanford.futuredata.macrobase.analysis.transform.CubeTransformer;
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
 import edu.stanford.futuredata.macrobase.datamodel.Schema;
 import edu.stanford.futuredata.macrobase.ingest.CSVDataFrameWriter;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
 import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
@@ -18,6 +20,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Default pipeline for cubed data: load, classify, and then explain
+ *
+ * Raw rows can be cubed in process instead by setting rawMetric to the metric
+ * column, see CubeTransformer. countColumn, meanColumn and stdColumn then
+ * default to the generated aggregate columns.
  */
 public class CubePipeline implements Pipeline {
 
@@ -28,6 +34,8 @@ public class CubePipeline implements Pipeline {
     private Map<String, String> restHeader;
     private Map<String, Object> jsonBody;
     private boolean usePost;
+    private Map<String, Object> pagination;
+    private Optional<String> rawMetric;
 
     // Classifiers
     private String classifierType;
@@ -59,6 +67,10 @@ public class CubePipeline implements Pipeline {
         restHeader = conf.get("restHeader", null);
         jsonBody = conf.get("jsonBody", null);
         usePost = conf.get("usePost", true);
+        pagination = conf.get("pagination", null);
+        rawMetric = Optional.ofNullable(conf.get("rawMetric"));
+        attributes = conf.get("attributes");
+        numThreads = conf.get("numThreads", Runtime.getRuntime().availableProcessors());
 
         classifierType = conf.get("classifier", "arithmetic");
         countColumn = conf.get("countColumn", "count");
@@ -83,44 +95,46 @@ public class CubePipeline implements Pipeline {
         includeLo = conf.get("includeLo", true);
         meanColumn = Optional.ofNullable(conf.get("meanColumn"));
         stdColumn = Optional.ofNullable(conf.get("stdColumn"));
+        if (rawMetric.isPresent()) {
+            CubeTransformer cube = getCubeTransformer();
+            countColumn = conf.get("countColumn", cube.getCountColumn());
+            meanColumn = Optional.of(conf.get("meanColumn", cube.getMeanColumn()));
+            stdColumn = Optional.of(conf.get("stdColumn", cube.getStdColumn()));
+        }
         quantileColumns = conf.get("quantileColumns", new LinkedHashMap<String, Double>());
         ratioMetric = conf.get("ratioMetric", "globalratio");
 
-        attributes = conf.get("attributes");
         minSupport = conf.get("minSupport", 3.0);
         minRatioMetric = conf.get("minRatioMetric", 0.01);
-        numThreads = conf.get("numThreads", Runtime.getRuntime().availableProcessors());
 
         debugDump = conf.get("debugDump", false);
     }
 
     public APLExplanation results() throws Exception {
-        Map<String, Schema.ColType> colTypes = getColTypes();
         long startTime = System.currentTimeMillis();
-        final List<String> requiredColumns = new ArrayList<>(attributes);
-        requiredColumns.add(countColumn);
-        metric.ifPresent(requiredColumns::add);
-        meanColumn.ifPresent(requiredColumns::add);
-        stdColumn.ifPresent(requiredColumns::add);
-        requiredColumns.addAll(quantileColumns.keySet());
-        DataFrame df = PipelineUtils.loadDataFrame(
-            inputURI,
-            colTypes,
-            restHeader,
-            jsonBody,
-            usePost,
-            requiredColumns
-        );
+        DataFrame df = rawMetric.isPresent() ? loadRawData() : loadData();
         long elapsed = System.currentTimeMillis() - startTime;
         log.info("Loading time: {} ms", elapsed);
         log.info("{} rows", df.getNumRows());
+        PipelineMetrics.recordStage("CubePipeline", "load", elapsed);
         log.info("Attributes: {}", attributes);
 
+        if (rawMetric.isPresent()) {
+            startTime = System.currentTimeMillis();
+            CubeTransformer cube = getCubeTransformer();
+            cube.process(df);
+            df = cube.getResults();
+            elapsed = System.currentTimeMillis() - startTime;
+            log.info("Cubing time: {} ms, {} groups", elapsed, df.getNumRows());
+            PipelineMetrics.recordStage("CubePipeline", "cube", elapsed);
+        }
+
         CubeClassifier classifier = getClassifier();
         startTime = System.currentTimeMillis();
         classifier.process(df);
         elapsed = System.currentTimeMillis() - startTime;
         log.info("Classification time: {}", elapsed);
+        PipelineMetrics.recordStage("CubePipeline", "classify", elapsed);
         df = classifier.getResults();
         if (debugDump) {
             CSVDataFrameWriter writer = new CSVDataFrameWriter();
@@ -134,10 +148,55 @@ public class CubePipeline implements Pipeline {
         APLExplanation explanation = summarizer.getResults();
         elapsed = System.currentTimeMillis() - startTime;
         log.info("Summarization time: {} ms", elapsed);
+        PipelineMetrics.recordStage("CubePipeline", "summarize", elapsed);
 
         return explanation;
     }
 
+    private DataFrame loadData() throws Exception {
+        Map<String, Schema.ColType> colTypes = getColTypes();
+        final List<String> requiredColumns = new ArrayList<>(attributes);
+        requiredColumns.add(countColumn);
+        metric.ifPresent(requiredColumns::add);
+        meanColumn.ifPresent(requiredColumns::add);
+        stdColumn.ifPresent(requiredColumns::add);
+        requiredColumns.addAll(quantileColumns.keySet());
+        return PipelineUtils.loadDataFrame(
+            inputURI,
+            colTypes,
+            restHeader,
+            jsonBody,
+            usePost,
+            pagination,
+            requiredColumns
+        );
+    }
+
+    private DataFrame loadRawData() throws Exception {
+        if (classifierType.equals("quantile")) {
+            throw new MacroBaseException("quantile classifier needs precomputed quantile columns, not rawMetric");
+        }
+        Map<String, Schema.ColType> colTypes = new HashMap<>();
+        colTypes.put(rawMetric.get(), Schema.ColType.DOUBLE);
+        final List<String> requiredColumns = new ArrayList<>(attributes);
+        requiredColumns.add(rawMetric.get());
+        return PipelineUtils.loadDataFrame(
+            inputURI,
+            colTypes,
+            restHeader,
+            jsonBody,
+            usePost,
+            pagination,
+            requiredColumns
+        );
+    }
+
+    private CubeTransformer getCubeTransformer() {
+        CubeTransformer cube = new CubeTransformer(attributes, rawMetric.get());
+        cube.setNumThreads(numThreads);
+        return cube;
+    }
+
     private Map<String, Schema.ColType> getColTypes() throws MacroBaseException {
         Map<String, Schema.ColType> colTypes = new HashMap<>();
         colTypes.put(countColumn, Schema.ColType.DOUBLE);
@@ -0,0 +1,234 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.SecureRandom;
+import java.util.*;
+
+/**
+ * Process wide cache of loaded DataFrames that pipelines can read through
+ * the "dataset://name" inputURI instead of reparsing their input on every
+ * query.
+ *
+ * Lookups return projections that share the registered column arrays, so
+ * pipelines must not modify column values in place. Datasets are evicted in
+ * LRU order once their estimated size exceeds the heap budget.
+ */
+public class DatasetRegistry {
+    private static Logger log = LoggerFactory.getLogger(DatasetRegistry.class);
+    public static final String URI_PREFIX = "dataset://";
+
+    private static final DatasetRegistry instance = new DatasetRegistry(
+            Runtime.getRuntime().maxMemory() / 4
+    );
+
+    public static class DatasetInfo {
+        public String name;
+        public String source;
+        public int numRows;
+        public List<String> columns;
+        public long estimatedBytes;
+        public long loadTimeMs;
+        // increases on every registration, so replaced datasets can be told apart
+        public long version;
+        // random for each registry, so versions from another process can be told apart
+        public long epoch;
+    }
+
+    private static class Entry {
+        DataFrame df;
+        DatasetInfo info;
+    }
+
+    private long maxBytes;
+    private long totalBytes;
+    private long nextVersion;
+    private final long epoch = new SecureRandom().nextLong();
+    private final LinkedHashMap<String, Entry> datasets = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long numHits;
+    private long numMisses;
+    private long numEvictions;
+
+    public DatasetRegistry(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static DatasetRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Loads inputURI with the given column types and registers it under name,
+     * replacing any dataset with the same name.
+     */
+    public DatasetInfo load(
+            String name,
+            String inputURI,
+            Map<String, Schema.ColType> colTypes,
+            Map<String, String> restHeader,
+            Map<String, Object> jsonBody,
+            boolean usePost
+    ) throws Exception {
+        return load(name, inputURI, colTypes, restHeader, jsonBody, usePost, null);
+    }
+
+    /**
+     * @param pagination see RESTDataFrameLoader.Pagination, null for unpaged sources
+     */
+    public DatasetInfo load(
+            String name,
+            String inputURI,
+            Map<String, Schema.ColType> colTypes,
+            Map<String, String> restHeader,
+            Map<String, Object> jsonBody,
+            boolean usePost,
+            Map<String, Object> pagination
+    ) throws Exception {
+        long startTime = System.currentTimeMillis();
+        DataFrame df = PipelineUtils.loadDataFrame(
+                inputURI, colTypes, restHeader, jsonBody, usePost, pagination,
+                new ArrayList<>(colTypes.keySet())
+        );
+        DatasetInfo info = register(name, df, inputURI);
+        info.loadTimeMs = System.currentTimeMillis() - startTime;
+        return info;
+    }
+
+    public synchronized DatasetInfo register(String name, DataFrame df, String source) throws MacroBaseException {
+        long bytes = estimateBytes(df);
+        if (bytes > maxBytes) {
+            throw new MacroBaseException(String.format(
+                    "Dataset %s needs ~%d bytes, more than the registry budget of %d", name, bytes, maxBytes
+            ));
+        }
+        remove(name);
+        while (totalBytes + bytes > maxBytes && !datasets.isEmpty()) {
+            Iterator<Map.Entry<String, Entry>> it = datasets.entrySet().iterator();
+            Map.Entry<String, Entry> lru = it.next();
+            it.remove();
+            totalBytes -= lru.getValue().info.estimatedBytes;
+            numEvictions++;
+            log.info("Evicted dataset {}", lru.getKey());
+        }
+
+        Entry e = new Entry();
+        e.df = df;
+        e.info = new DatasetInfo();
+        e.info.name = name;
+        e.info.source = source;
+        e.info.numRows = df.getNumRows();
+        e.info.columns = new ArrayList<>(df.getSchema().getColumnNames());
+        e.info.estimatedBytes = bytes;
+        e.info.version = ++nextVersion;
+        e.info.epoch = epoch;
+        datasets.put(name, e);
+        totalBytes += bytes;
+        log.info("Registered dataset {}: {} rows, ~{} bytes", name, df.getNumRows(), bytes);
+        return e.info;
+    }
+
+    /**
+     * @return projection of the registered dataset onto requiredColumns, sharing its arrays
+     * @throws MacroBaseException if the dataset is not registered, or is missing a
+     * required column or has it with a different type than colTypes
+     */
+    public DataFrame get(
+            String name,
+            Map<String, Schema.ColType> colTypes,
+            List<String> requiredColumns
+    ) throws MacroBaseException {
+        DataFrame df;
+        synchronized (this) {
+            Entry e = datasets.get(name);
+            if (e == null) {
+                numMisses++;
+                PipelineMetrics.DATASET_LOOKUPS.inc("miss");
+                throw new MacroBaseException("Dataset " + name + " is not registered");
+            }
+            numHits++;
+            PipelineMetrics.DATASET_LOOKUPS.inc("hit");
+            df = e.df;
+        }
+        Schema schema = df.getSchema();
+        for (String col : requiredColumns) {
+            if (!schema.hasColumn(col)) {
+                throw new MacroBaseException("Dataset " + name + " has no column " + col);
+            }
+            Schema.ColType expected = colTypes.getOrDefault(col, Schema.ColType.STRING);
+            if (schema.getColumnTypeByName(col) != expected) {
+                throw new MacroBaseException(
+                        "Column " + col + " of dataset " + name + " is not " + expected);
+            }
+        }
+        return df.project(requiredColumns);
+    }
+
+    public synchronized boolean remove(String name) {
+        Entry e = datasets.remove(name);
+        if (e == null) {
+            return false;
+        }
+        totalBytes -= e.info.estimatedBytes;
+        return true;
+    }
+
+    public synchronized DatasetInfo getInfo(String name) {
+        Entry e = datasets.get(name);
+        return e == null ? null : e.info;
+    }
+
+    public synchronized List<DatasetInfo> getInfos() {
+        List<DatasetInfo> infos = new ArrayList<>();
+        for (Entry e : datasets.values()) {
+            infos.add(e.info);
+        }
+        return infos;
+    }
+
+    public synchronized Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("datasets", (long) datasets.size());
+        stats.put("bytes", totalBytes);
+        stats.put("maxBytes", maxBytes);
+        stats.put("hits", numHits);
+        stats.put("misses", numMisses);
+        stats.put("evictions", numEvictions);
+        return stats;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized void clear() {
+        datasets.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * Rough heap footprint: 8 bytes per double and, for strings, object and
+     * array headers plus 2 bytes per char. Repeated strings are counted once
+     * per row.
+     */
+    static long estimateBytes(DataFrame df) {
+        long bytes = 0;
+        for (double[] col : df.getDoubleCols()) {
+            bytes += 16 + 8L * col.length;
+        }
+        for (String[] col : df.getStringCols()) {
+            bytes += 16 + 4L * col.length;
+            for (String s : col) {
+                if (s != null) {
+                    bytes += 40 + 2L * s.length();
+                }
+            }
+        }
+        return bytes;
+    }
+}
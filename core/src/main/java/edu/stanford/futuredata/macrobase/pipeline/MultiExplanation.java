@@ -0,0 +1,36 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+
+import java.util.List;
+
+/**
+ * Explanations of each query run by a MultiQueryPipeline, in query order.
+ */
+public class MultiExplanation implements Explanation {
+    private List<Explanation> results;
+
+    public MultiExplanation(List<Explanation> results) {
+        this.results = results;
+    }
+
+    public List<Explanation> getResults() {
+        return results;
+    }
+
+    @Override
+    public String prettyPrint() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < results.size(); i++) {
+            sb.append("Query ").append(i).append(":\n");
+            sb.append(results.get(i).prettyPrint());
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public double numTotal() {
+        return results.isEmpty() ? 0 : results.get(0).numTotal();
+    }
+}
@@ -0,0 +1,108 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.analysis.summary.util.ColumnDictionaryCache;
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs many BasicBatchPipeline variants over one input: the union of their
+ * columns is loaded once, the variants run concurrently, and attribute
+ * columns shared between variants are only encoded once.
+ *
+ * Every key except "queries" is shared by all variants, and each entry of
+ * "queries" overrides keys (attributes, metric, classifier, cutoff, ...) for
+ * one variant. numParallelQueries bounds how many variants run at once and
+ * numThreads is the summarizer thread count of each variant.
+ */
+public class MultiQueryPipeline implements Pipeline {
+    Logger log = LoggerFactory.getLogger(Pipeline.class);
+
+    private String inputURI;
+    private int numParallelQueries;
+    private List<BasicBatchPipeline> queries;
+
+    public MultiQueryPipeline(PipelineConfig conf) throws MacroBaseException {
+        inputURI = conf.get("inputURI");
+        List<Map<String, Object>> overrides = conf.get("queries");
+        if (overrides == null || overrides.isEmpty()) {
+            throw new MacroBaseException("MultiQueryPipeline requires a list of queries");
+        }
+        int numCores = Runtime.getRuntime().availableProcessors();
+        numParallelQueries = conf.get("numParallelQueries", Math.min(overrides.size(), numCores));
+        int numThreads = conf.get("numThreads", Math.max(1, numCores / numParallelQueries));
+
+        queries = new ArrayList<>(overrides.size());
+        for (Map<String, Object> override : overrides) {
+            Map<String, Object> values = new HashMap<>(conf.getValues());
+            values.remove("queries");
+            values.put("pipeline", "BasicBatchPipeline");
+            values.put("numThreads", numThreads);
+            values.putAll(override);
+            queries.add(new BasicBatchPipeline(new PipelineConfig(values)));
+        }
+    }
+
+    public DataFrame loadData() throws Exception {
+        Map<String, Schema.ColType> colTypes = new HashMap<>();
+        Set<String> requiredColumns = new LinkedHashSet<>();
+        for (BasicBatchPipeline q : queries) {
+            Map<String, Schema.ColType> queryColTypes = q.getColTypes();
+            for (String col : q.getRequiredColumns()) {
+                Schema.ColType t = queryColTypes.getOrDefault(col, Schema.ColType.STRING);
+                Schema.ColType prev = colTypes.put(col, t);
+                if (prev != null && prev != t) {
+                    throw new MacroBaseException("Column " + col + " is used as both " + prev + " and " + t);
+                }
+                requiredColumns.add(col);
+            }
+        }
+        return PipelineUtils.loadDataFrame(inputURI, colTypes, new ArrayList<>(requiredColumns));
+    }
+
+    @Override
+    public MultiExplanation results() throws Exception {
+        long startTime = System.currentTimeMillis();
+        DataFrame df = loadData();
+        long elapsed = System.currentTimeMillis() - startTime;
+        log.info("Loading time: {} ms", elapsed);
+        PipelineMetrics.recordStage("MultiQueryPipeline", "load", elapsed);
+        log.info("{} rows, {} queries", df.getNumRows(), queries.size());
+
+        ColumnDictionaryCache dictionaryCache = new ColumnDictionaryCache();
+        ExecutorService pool = Executors.newFixedThreadPool(numParallelQueries);
+        try {
+            List<Future<Explanation>> futures = new ArrayList<>(queries.size());
+            for (BasicBatchPipeline q : queries) {
+                q.setDictionaryCache(dictionaryCache);
+                futures.add(pool.submit(() -> q.results(df)));
+            }
+            List<Explanation> results = new ArrayList<>(queries.size());
+            for (Future<Explanation> f : futures) {
+                try {
+                    results.add(f.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : e;
+                }
+            }
+            elapsed = System.currentTimeMillis() - startTime;
+            log.info("Total time: {} ms", elapsed);
+            PipelineMetrics.recordStage("MultiQueryPipeline", "total", elapsed);
+            return new MultiExplanation(results);
+        } finally {
+            // interrupts the remaining queries if one failed or we were cancelled
+            pool.shutdownNow();
+        }
+    }
+}
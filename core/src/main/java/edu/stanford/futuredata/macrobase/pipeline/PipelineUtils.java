@@ -7,11 +7,14 @@ import com.univocity.parsers.csv.CsvParserSettings;
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
 import edu.stanford.futuredata.macrobase.datamodel.Schema;
 import edu.stanford.futuredata.macrobase.ingest.CSVDataFrameParser;
+import edu.stanford.futuredata.macrobase.ingest.JDBCDataFrameLoader;
 import edu.stanford.futuredata.macrobase.ingest.RESTDataFrameLoader;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
 import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 
 import java.util.Map;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
@@ -37,12 +40,58 @@ public class PipelineUtils {
             boolean usePost,
             List<String> requiredColumns
     ) throws Exception {
-        if(inputURI.startsWith("csv")) {
+        return PipelineUtils.loadDataFrame(
+                inputURI, colTypes, restHeader, jsonBody, usePost, null,
+                requiredColumns
+        );
+    }
+
+    /**
+     * @param pagination how an http source pages its results, see
+     * RESTDataFrameLoader.Pagination. null if it returns everything at once
+     */
+    public static DataFrame loadDataFrame(
+            String inputURI,
+            Map<String, Schema.ColType> colTypes,
+            Map<String, String> restHeader,
+            Map<String, Object> jsonBody,
+            boolean usePost,
+            Map<String, Object> pagination,
+            List<String> requiredColumns
+    ) throws Exception {
+        DataFrame df = loadFromSource(
+                inputURI, colTypes, restHeader, jsonBody, usePost, pagination, requiredColumns
+        );
+        PipelineMetrics.ROWS_LOADED.inc(df.getNumRows(), PipelineMetrics.getScheme(inputURI));
+        return df;
+    }
+
+    private static DataFrame loadFromSource(
+            String inputURI,
+            Map<String, Schema.ColType> colTypes,
+            Map<String, String> restHeader,
+            Map<String, Object> jsonBody,
+            boolean usePost,
+            Map<String, Object> pagination,
+            List<String> requiredColumns
+    ) throws Exception {
+        if (inputURI.startsWith(DatasetRegistry.URI_PREFIX)) {
+            return DatasetRegistry.getInstance().get(
+                    inputURI.substring(DatasetRegistry.URI_PREFIX.length()),
+                    colTypes,
+                    requiredColumns
+            );
+        } else if(inputURI.startsWith("csv")) {
             // take off "csv://" from inputURI
             CSVDataFrameParser loader = new CSVDataFrameParser(inputURI.substring(6), requiredColumns);
             loader.setColumnTypes(colTypes);
             DataFrame df = loader.load();
+            PipelineMetrics.BYTES_LOADED.inc(new File(inputURI.substring(6)).length(), "csv");
             return df;
+        } else if (inputURI.startsWith("jdbc:")) {
+            return getJDBCLoader(inputURI, jsonBody, requiredColumns)
+                    .setColumnTypes(colTypes)
+                    .load();
         } else if (inputURI.startsWith("http")){
             ObjectMapper mapper = new ObjectMapper();
             String bodyString = mapper.writeValueAsString(jsonBody);
@@ -54,6 +103,9 @@ public class PipelineUtils {
             );
             loader.setUsePost(usePost);
             loader.setJsonBody(bodyString);
+            if (pagination != null) {
+                loader.setPagination(new RESTDataFrameLoader.Pagination(pagination));
+            }
             loader.setColumnTypes(colTypes);
             DataFrame df = loader.load();
             return df;
@@ -73,6 +125,45 @@ public class PipelineUtils {
         }
     }
 
+    /**
+     * Like inlinecsv, jdbc sources take their options from jsonBody: "table"
+     * or "query", "user", "password", "fetchSize", "partitionColumn",
+     * "numPartitions" and "filters", a list of {column, op, value} maps.
+     */
+    @SuppressWarnings("unchecked")
+    private static JDBCDataFrameLoader getJDBCLoader(
+            String inputURI,
+            Map<String, Object> options,
+            List<String> requiredColumns
+    ) throws MacroBaseException {
+        if (options == null || (options.get("table") == null) == (options.get("query") == null)) {
+            throw new MacroBaseException("jdbc sources need exactly one of table or query in jsonBody");
+        }
+        String table = (String) options.get("table");
+        JDBCDataFrameLoader loader = table != null
+                ? new JDBCDataFrameLoader(inputURI, table, requiredColumns)
+                : JDBCDataFrameLoader.fromQuery(inputURI, (String) options.get("query"), requiredColumns);
+        loader.setCredentials((String) options.get("user"), (String) options.get("password"));
+        if (options.containsKey("fetchSize")) {
+            loader.setFetchSize(((Number) options.get("fetchSize")).intValue());
+        }
+        if (options.containsKey("partitionColumn")) {
+            loader.setPartitioning(
+                    (String) options.get("partitionColumn"),
+                    ((Number) options.getOrDefault("numPartitions", 4)).intValue()
+            );
+        }
+        List<Map<String, Object>> filters = (List<Map<String, Object>>) options.get("filters");
+        if (filters != null) {
+            for (Map<String, Object> f : filters) {
+                loader.addFilter(new JDBCDataFrameLoader.Filter(
+                        (String) f.get("column"), (String) f.getOrDefault("op", "="), f.get("value")
+                ));
+            }
+        }
+        return loader;
+    }
+
     public static InputStreamReader getStreamReaderFromString(
         String jsonContent
     ) throws Exception {
@@ -99,6 +190,12 @@ public class PipelineUtils {
             case "ArcPowerCubePipeline": {
                 return new ArcPowerCubePipeline(conf);
             }
+            case "MultiQueryPipeline": {
+                return new MultiQueryPipeline(conf);
+            }
+            case "StreamingPipeline": {
+                return new StreamingPipeline(conf);
+            }
             default: {
                 throw new MacroBaseException("Bad Pipeline");
             }
@@ -1,10 +1,15 @@
 package edu.stanford.futuredata.macrobase.pipeline;
 
 import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.*;
+import edu.stanford.futuredata.macrobase.analysis.transform.CubeTransformer;
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
 import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
 import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 import edu.stanford.futuredata.macrobase.ingest.CSVDataFrameWriter;
+import edu.stanford.futuredata.macrobase.ingest.MomentSketchDecoder;
+import msolver.ChebyshevMomentSolver2;
+import msolver.SolverCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -13,6 +18,9 @@ import java.util.*;
 
 /**
  * Pipeline for cubed data that has min, max and moment aggregates
+ *
+ * Setting rawMetric instead cubes raw rows in process with ka power sums and
+ * kb log sums of that metric, see CubeTransformer.
  */
 public class PowerCubePipeline implements Pipeline {
     Logger log = LoggerFactory.getLogger("PowerCubePipeline");
@@ -22,6 +30,7 @@ public class PowerCubePipeline implements Pipeline {
     private Map<String, String> restHeader;
     private Map<String, Object> jsonBody;
     private boolean usePost;
+    private Map<String, Object> pagination;
 
     // Classifiers
     private double cutoff;
@@ -35,17 +44,29 @@ public class PowerCubePipeline implements Pipeline {
     private Optional<String> logMaxColumn;
     private List<String> powerSumColumns;
     private List<String> logSumColumns;
+    // base64 encoded msolver.struct.MomentStruct blobs, replaces the columns above
+    private Optional<String> sketchColumn;
+    // raw metric to cube in process, replaces the columns above
+    private Optional<String> rawMetric;
+    // threads for cubing, candidate generation and the moment checks when pruning
+    private int numThreads;
 
     // Explanation
     private List<String> attributes;
     private double minSupport;
     private double minRatioMetric;
 
+    // Solved subgroups are shared across queries so that repeated queries
+    // with different cutoffs only re-run the threshold checks
+    private static final SolverCache<ChebyshevMomentSolver2> solverCache = new SolverCache<>(0);
+    private int solverCacheSize;
+
     public PowerCubePipeline(PipelineConfig conf) {
         inputURI = conf.get("inputURI");
         restHeader = conf.get("restHeader", null);
         jsonBody = conf.get("jsonBody", null);
         usePost = conf.get("usePost", true);
+        pagination = conf.get("pagination", null);
 
         cutoff = conf.get("cutoff", 1.0);
 
@@ -57,14 +78,38 @@ public class PowerCubePipeline implements Pipeline {
         logMaxColumn = Optional.ofNullable(conf.get("logMaxColumn"));
         logSumColumns = conf.get("logSumColumns", new ArrayList<String>());
         kb = logSumColumns.size();
+        sketchColumn = Optional.ofNullable(conf.get("sketchColumn"));
+        rawMetric = Optional.ofNullable(conf.get("rawMetric"));
+        numThreads = conf.get("numThreads", Runtime.getRuntime().availableProcessors());
 
         attributes = conf.get("attributes");
+        if (rawMetric.isPresent()) {
+            ka = conf.get("ka", 11);
+            kb = conf.get("kb", 0);
+            CubeTransformer cube = getCubeTransformer();
+            minColumn = Optional.of(cube.getMinColumn());
+            maxColumn = Optional.of(cube.getMaxColumn());
+            powerSumColumns = cube.getPowerSumColumns();
+            logMinColumn = Optional.of(cube.getLogMinColumn());
+            logMaxColumn = Optional.of(cube.getLogMaxColumn());
+            logSumColumns = cube.getLogSumColumns();
+        }
         minSupport = conf.get("minSupport", 3.0);
         minRatioMetric = conf.get("minRatioMetric", 0.01);
+        solverCacheSize = conf.get("solverCacheSize", 0);
     }
 
     public APLExplanation results() throws Exception {
-        Map<String, Schema.ColType> colTypes = getColTypes();
+        Map<String, Schema.ColType> colTypes;
+        if (sketchColumn.isPresent()) {
+            colTypes = new HashMap<>();
+            colTypes.put(sketchColumn.get(), Schema.ColType.STRING);
+        } else if (rawMetric.isPresent()) {
+            colTypes = new HashMap<>();
+            colTypes.put(rawMetric.get(), Schema.ColType.DOUBLE);
+        } else {
+            colTypes = getColTypes();
+        }
         long startTime = System.currentTimeMillis();
         final List<String> requiredColumns = new ArrayList<>(attributes);
         requiredColumns.addAll(colTypes.keySet());
@@ -74,11 +119,25 @@ public class PowerCubePipeline implements Pipeline {
                 restHeader,
                 jsonBody,
                 usePost,
+                pagination,
                 requiredColumns
         );
+        if (sketchColumn.isPresent()) {
+            decodeSketches(df);
+        }
         long elapsed = System.currentTimeMillis() - startTime;
         log.info("Loading time: {}", elapsed);
+        PipelineMetrics.recordStage("PowerCubePipeline", "load", elapsed);
         log.info("{} rows", df.getNumRows());
+        if (rawMetric.isPresent()) {
+            startTime = System.currentTimeMillis();
+            CubeTransformer cube = getCubeTransformer();
+            cube.process(df);
+            df = cube.getResults();
+            elapsed = System.currentTimeMillis() - startTime;
+            log.info("Cubing time: {}, {} groups", elapsed, df.getNumRows());
+            PipelineMetrics.recordStage("PowerCubePipeline", "cube", elapsed);
+        }
         log.info("Attributes: {}", attributes);
 //        CSVDataFrameWriter writer = new CSVDataFrameWriter();
 //        PrintWriter out = new PrintWriter("df_power.csv");
@@ -90,10 +149,39 @@ public class PowerCubePipeline implements Pipeline {
         APLExplanation explanation = summarizer.getResults();
         elapsed = System.currentTimeMillis() - startTime;
         log.info("Summarization time: {}", elapsed);
+        PipelineMetrics.recordStage("PowerCubePipeline", "summarize", elapsed);
+        if (solverCacheSize > 0) {
+            log.info("Solver cache hits: {} misses: {} warm starts: {}",
+                    solverCache.getNumHits(), solverCache.getNumMisses(), solverCache.getNumWarmStarts());
+        }
 
         return explanation;
     }
 
+    private CubeTransformer getCubeTransformer() {
+        CubeTransformer cube = new CubeTransformer(attributes, rawMetric.get());
+        cube.setKa(ka);
+        cube.setKb(kb);
+        cube.setNumThreads(numThreads);
+        return cube;
+    }
+
+    private void decodeSketches(DataFrame df) throws MacroBaseException {
+        MomentSketchDecoder decoder = new MomentSketchDecoder(sketchColumn.get());
+        decoder.decode(df);
+        if (decoder.isArcSinh()) {
+            throw new MacroBaseException("arcsinh sketches require ArcPowerCubePipeline");
+        }
+        ka = decoder.getKa();
+        kb = decoder.getKb();
+        minColumn = Optional.of(decoder.getMinColumn());
+        maxColumn = Optional.of(decoder.getMaxColumn());
+        powerSumColumns = decoder.getPowerSumColumns();
+        logMinColumn = Optional.of(decoder.getLogMinColumn());
+        logMaxColumn = Optional.of(decoder.getLogMaxColumn());
+        logSumColumns = decoder.getLogSumColumns();
+    }
+
     private Map<String, Schema.ColType> getColTypes() throws MacroBaseException {
         Map<String, Schema.ColType> colTypes = new HashMap<>();
         if (ka > 0) {
@@ -144,6 +232,11 @@ public class PowerCubePipeline implements Pipeline {
         summarizer.setMinSupport(minSupport);
         summarizer.setMinRatioMetric(minRatioMetric);
         summarizer.setQuantileCutoff(1.0 - cutoff/100.0);
+        summarizer.setNumThreads(numThreads);
+        if (solverCacheSize > 0) {
+            solverCache.setMaxSize(solverCacheSize);
+            summarizer.setSolverCache(solverCache);
+        }
         return summarizer;
     }
 }
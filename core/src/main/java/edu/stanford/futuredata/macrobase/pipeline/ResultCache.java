@@ -0,0 +1,341 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.ingest.RESTDataFrameLoader;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Caches pipeline results keyed by the query config and a fingerprint of its
+ * input, so that repeated queries over unchanged data are answered without
+ * reloading it.
+ *
+ * The config is hashed in canonical form: keys sorted, integral numbers
+ * written the same way whether they were parsed as ints or doubles, and keys
+ * that only affect scheduling or caching (numThreads, priority, timeoutMs)
+ * dropped.
+ * Inputs are fingerprinted by size and modification time for csv files, by
+ * registration for datasets and by ETag or Last-Modified for http sources,
+ * fetched with a HEAD request. Queries whose input cannot be fingerprinted,
+ * streaming pipelines and queries with "useCache: false" are not cached.
+ *
+ * Entries expire ttlMs after they were computed and are evicted in LRU order
+ * beyond maxEntries. If a directory is given each entry is also written there
+ * as a CachedExplanation so the cache survives restarts.
+ */
+public class ResultCache {
+    private static Logger log = LoggerFactory.getLogger(ResultCache.class);
+    private static final Set<String> IGNORED_KEYS = new HashSet<>(Arrays.asList(
+            "numThreads", "priority", "timeoutMs", "useCache",
+            "resultCacheEntries", "resultCacheTtlMs", "resultCacheDir"
+    ));
+    private static final String SUFFIX = ".json";
+
+    public static class PersistedEntry {
+        public long createdMs;
+        public String text;
+        public double numTotal;
+        public Object json;
+    }
+
+    private static class Entry {
+        Explanation result;
+        long createdMs;
+    }
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final File dir;
+    private final DatasetRegistry registry;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long numHits;
+    private long numMisses;
+    private long numUncacheable;
+    private long numEvictions;
+
+    /**
+     * @param maxEntries number of results kept
+     * @param ttlMs time a result stays valid, 0 for no expiry
+     * @param dir directory to persist results in, null to keep them in memory only
+     */
+    public ResultCache(int maxEntries, long ttlMs, String dir) throws IOException {
+        this(maxEntries, ttlMs, dir, DatasetRegistry.getInstance());
+    }
+
+    /**
+     * @param registry registry that "dataset://" inputs are fingerprinted against
+     */
+    public ResultCache(int maxEntries, long ttlMs, String dir, DatasetRegistry registry) throws IOException {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.registry = registry;
+        if (dir != null) {
+            this.dir = new File(dir);
+            Files.createDirectories(this.dir.toPath());
+            loadPersisted();
+        } else {
+            this.dir = null;
+        }
+    }
+
+    /**
+     * Reads resultCacheEntries (default 256, 0 disables the cache),
+     * resultCacheTtlMs (default 10 minutes) and resultCacheDir.
+     * @return null if the cache is disabled
+     */
+    public static ResultCache fromConfig(PipelineConfig conf) throws IOException {
+        int maxEntries = conf.get("resultCacheEntries", 256);
+        if (maxEntries <= 0) {
+            return null;
+        }
+        Number ttlMs = conf.get("resultCacheTtlMs", 600000);
+        return new ResultCache(maxEntries, ttlMs.longValue(), conf.get("resultCacheDir", null));
+    }
+
+    /**
+     * @return pipeline that answers from the cache before running p
+     */
+    public Pipeline wrap(PipelineConfig conf, Pipeline p) {
+        return () -> results(conf, p);
+    }
+
+    public Explanation results(PipelineConfig conf, Pipeline p) throws Exception {
+        String key = getKey(conf);
+        if (key == null) {
+            synchronized (this) {
+                numUncacheable++;
+            }
+            PipelineMetrics.RESULT_CACHE_LOOKUPS.inc("uncacheable");
+            return p.results();
+        }
+        Explanation cached = lookup(key);
+        if (cached != null) {
+            log.info("Result cache hit for {}", key);
+            PipelineMetrics.RESULT_CACHE_LOOKUPS.inc("hit");
+            return cached;
+        }
+        PipelineMetrics.RESULT_CACHE_LOOKUPS.inc("miss");
+        Explanation e = p.results();
+        put(key, e);
+        return e;
+    }
+
+    /**
+     * @return hex digest identifying conf and the current state of its input,
+     * or null if the query should not be cached
+     */
+    public String getKey(PipelineConfig conf) throws Exception {
+        if (!conf.get("useCache", true) || "StreamingPipeline".equals(conf.get("pipeline"))) {
+            return null;
+        }
+        String fingerprint = getFingerprint(conf, registry);
+        if (fingerprint == null) {
+            return null;
+        }
+        Map<String, Object> values = new HashMap<>(conf.getValues());
+        values.keySet().removeAll(IGNORED_KEYS);
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(mapper.writeValueAsBytes(normalize(values)));
+        digest.update((byte) '\n');
+        digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * @return a string that changes whenever the input of conf does, or null if
+     * there is no cheap way to tell. Datasets include the epoch of the registry,
+     * since versions restart in every process while persisted entries don't.
+     */
+    static String getFingerprint(PipelineConfig conf, DatasetRegistry registry) {
+        String inputURI = conf.get("inputURI");
+        if (inputURI == null) {
+            return null;
+        }
+        if (inputURI.startsWith(DatasetRegistry.URI_PREFIX)) {
+            String name = inputURI.substring(DatasetRegistry.URI_PREFIX.length());
+            DatasetRegistry.DatasetInfo info = registry.getInfo(name);
+            return info == null ? null : "dataset:" + name + "@" + info.epoch + "." + info.version;
+        } else if (inputURI.startsWith("csv://")) {
+            File f = new File(inputURI.substring(6));
+            return f.isFile() ? "file:" + f.length() + ":" + f.lastModified() : null;
+        } else if (inputURI.startsWith("http")) {
+            RESTDataFrameLoader loader = new RESTDataFrameLoader(
+                    inputURI, conf.get("restHeader", null), null
+            );
+            loader.setUsePost(conf.get("usePost", true));
+            try {
+                return loader.fetchValidator();
+            } catch (IOException e) {
+                log.warn("Could not fetch a validator for {}: {}", inputURI, e.toString());
+                return null;
+            }
+        } else if (inputURI.startsWith("inlinecsv")) {
+            // the content itself is part of the config
+            return "inline";
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object normalize(Object o) {
+        if (o instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<String, Object> e : ((Map<String, Object>) o).entrySet()) {
+                sorted.put(e.getKey(), normalize(e.getValue()));
+            }
+            return sorted;
+        } else if (o instanceof List) {
+            List<Object> l = new ArrayList<>();
+            for (Object v : (List<Object>) o) {
+                l.add(normalize(v));
+            }
+            return l;
+        } else if (o instanceof Number) {
+            double d = ((Number) o).doubleValue();
+            if (d == Math.rint(d) && !Double.isInfinite(d) && Math.abs(d) < 1e15) {
+                return (long) d;
+            }
+            return d;
+        }
+        return o;
+    }
+
+    private synchronized Explanation lookup(String key) {
+        Entry e = entries.get(key);
+        if (e != null && isExpired(e.createdMs)) {
+            remove(key);
+            e = null;
+        }
+        if (e == null) {
+            numMisses++;
+            return null;
+        }
+        numHits++;
+        return e.result;
+    }
+
+    private void put(String key, Explanation result) {
+        Entry e = new Entry();
+        e.result = result;
+        e.createdMs = System.currentTimeMillis();
+        if (dir != null) {
+            persist(key, e);
+        }
+        synchronized (this) {
+            entries.put(key, e);
+            evict();
+        }
+    }
+
+    private boolean isExpired(long createdMs) {
+        return ttlMs > 0 && System.currentTimeMillis() - createdMs > ttlMs;
+    }
+
+    private void evict() {
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() > maxEntries) {
+            String key = it.next();
+            it.remove();
+            deleteFile(key);
+            numEvictions++;
+        }
+    }
+
+    private void remove(String key) {
+        entries.remove(key);
+        deleteFile(key);
+    }
+
+    private void persist(String key, Entry e) {
+        try {
+            CachedExplanation snapshot = CachedExplanation.of(e.result, mapper);
+            PersistedEntry p = new PersistedEntry();
+            p.createdMs = e.createdMs;
+            p.text = snapshot.prettyPrint();
+            p.numTotal = snapshot.numTotal();
+            p.json = snapshot.toJson();
+            File tmp = new File(dir, key + SUFFIX + ".tmp");
+            mapper.writeValue(tmp, p);
+            Files.move(tmp.toPath(), new File(dir, key + SUFFIX).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception ex) {
+            log.warn("Could not persist result {}, keeping it in memory only: {}", key, ex.toString());
+        }
+    }
+
+    private void loadPersisted() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> loaded = new ArrayList<>();
+        for (File f : files) {
+            String key = f.getName().substring(0, f.getName().length() - SUFFIX.length());
+            try {
+                PersistedEntry p = mapper.readValue(f, PersistedEntry.class);
+                if (isExpired(p.createdMs)) {
+                    deleteFile(key);
+                    continue;
+                }
+                Entry e = new Entry();
+                e.createdMs = p.createdMs;
+                e.result = new CachedExplanation(p.text, p.numTotal, mapper.valueToTree(p.json));
+                loaded.add(new AbstractMap.SimpleEntry<>(key, e));
+            } catch (IOException ex) {
+                log.warn("Dropping unreadable cached result {}: {}", f, ex.toString());
+                deleteFile(key);
+            }
+        }
+        // oldest first, so the oldest are evicted
+        loaded.sort(Comparator.comparingLong(e -> e.getValue().createdMs));
+        synchronized (this) {
+            for (Map.Entry<String, Entry> e : loaded) {
+                entries.put(e.getKey(), e.getValue());
+            }
+            evict();
+        }
+        log.info("Loaded {} cached results from {}", entries.size(), dir);
+    }
+
+    private void deleteFile(String key) {
+        if (dir != null) {
+            new File(dir, key + SUFFIX).delete();
+        }
+    }
+
+    public synchronized void clear() {
+        for (String key : entries.keySet()) {
+            deleteFile(key);
+        }
+        entries.clear();
+    }
+
+    public synchronized Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("entries", (long) entries.size());
+        stats.put("maxEntries", (long) maxEntries);
+        stats.put("hits", numHits);
+        stats.put("misses", numMisses);
+        stats.put("uncacheable", numUncacheable);
+        stats.put("evictions", numEvictions);
+        return stats;
+    }
+}
@@ -0,0 +1,438 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.univocity.parsers.csv.CsvParser;
+import com.univocity.parsers.csv.CsvParserSettings;
+import edu.stanford.futuredata.macrobase.analysis.classify.Classifier;
+import edu.stanford.futuredata.macrobase.analysis.classify.PercentileClassifier;
+import edu.stanford.futuredata.macrobase.analysis.classify.PredicateClassifier;
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.analysis.summary.fpg.FPGExplanation;
+import edu.stanford.futuredata.macrobase.analysis.summary.fpg.IncrementalSummarizer;
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.ingest.LineStreamReader;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
+import edu.stanford.futuredata.macrobase.operator.WindowedOperator;
+import edu.stanford.futuredata.macrobase.util.ArrayUtils;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Explains outliers over a sliding window of a continuous source: rows are
+ * read from a file or socket (see LineStreamReader) as CSV with a header line
+ * or as one JSON object per line, grouped into micro-batches, classified and
+ * fed to an IncrementalSummarizer wrapped in a WindowedOperator. An
+ * explanation of the current window is emitted after every micro-batch that
+ * completes a slide, and results() returns the last one once the source ends.
+ *
+ * windowLength and slideLength are in units of timeColumn, or in rows if no
+ * timeColumn is set. The predicate classifier is stateless, the percentile
+ * classifier computes its cutoff over each micro-batch.
+ *
+ * At most maxBufferedRows rows are buffered between the reader and the
+ * summarizer, beyond that the reader blocks. A micro-batch is cut at
+ * batchSize rows or after batchTimeoutMs, whichever comes first.
+ */
+public class StreamingPipeline implements Pipeline {
+    Logger log = LoggerFactory.getLogger(Pipeline.class);
+    private static final String ROW_TIME_COLUMN = "_TIME";
+
+    public static class BatchMetrics {
+        public int numRows;
+        // rows waiting in the buffer when the batch was cut
+        public int bufferedRows;
+        public long parseTimeMs;
+        public long classifyTimeMs;
+        public long summarizeTimeMs;
+        public long totalTimeMs;
+        public boolean emitted;
+    }
+
+    private String inputURI;
+    private String format;
+
+    private String classifierType;
+    private String metric;
+    private Object cutoff;
+    private String predicateStr;
+    private boolean pctileHigh;
+    private boolean pctileLow;
+
+    private List<String> attributes;
+    private double minSupport;
+    private double minRiskRatio;
+
+    private String timeColumn;
+    private double windowLength;
+    private double slideLength;
+
+    private int batchSize;
+    private long batchTimeoutMs;
+    private int maxBufferedRows;
+    private long idleTimeoutMs;
+    private long pollIntervalMs;
+    private int metricsHistory;
+
+    private Consumer<Explanation> listener;
+    private final Deque<BatchMetrics> recentMetrics = new ArrayDeque<>();
+    private long numBatches;
+    private long numRows;
+    private long numExplanations;
+    private volatile boolean stopped;
+    private volatile LineStreamReader reader;
+    private volatile Thread readerThread;
+
+    // parsing state
+    private String[] header;
+    private CsvParser csvParser;
+    private ObjectMapper mapper;
+    private long rowCount;
+
+    public StreamingPipeline(PipelineConfig conf) throws MacroBaseException {
+        inputURI = conf.get("inputURI");
+        format = conf.get("format", inputURI.startsWith("json") ? "json" : "csv");
+        if (!format.equals("csv") && !format.equals("json")) {
+            throw new MacroBaseException("Bad stream format " + format);
+        }
+
+        classifierType = conf.get("classifier", "percentile");
+        metric = conf.get("metric");
+        cutoff = conf.get("cutoff", 1.0);
+        predicateStr = conf.get("predicate", "==").trim();
+        pctileHigh = conf.get("includeHi", true);
+        pctileLow = conf.get("includeLo", true);
+
+        attributes = conf.get("attributes");
+        minSupport = conf.get("minSupport", 0.01);
+        minRiskRatio = conf.get("minRatioMetric", 3.0);
+
+        timeColumn = conf.get("timeColumn", null);
+        windowLength = conf.<Number>get("windowLength", 60.0).doubleValue();
+        slideLength = conf.<Number>get("slideLength", 10.0).doubleValue();
+
+        batchSize = conf.get("batchSize", 10000);
+        batchTimeoutMs = conf.<Number>get("batchTimeoutMs", 1000).longValue();
+        maxBufferedRows = conf.get("maxBufferedRows", 100000);
+        idleTimeoutMs = conf.<Number>get("idleTimeoutMs", -1).longValue();
+        pollIntervalMs = conf.<Number>get("pollIntervalMs", 100).longValue();
+        metricsHistory = conf.get("metricsHistory", 100);
+    }
+
+    /**
+     * Called with each emitted explanation on the pipeline thread. Explanations
+     * are logged if no listener is set.
+     */
+    public void setExplanationListener(Consumer<Explanation> listener) {
+        this.listener = listener;
+    }
+
+    public Classifier getClassifier() throws MacroBaseException {
+        switch (classifierType.toLowerCase()) {
+            case "percentile": {
+                PercentileClassifier classifier = new PercentileClassifier(metric);
+                classifier.setPercentile(((Number) cutoff).doubleValue());
+                classifier.setIncludeHigh(pctileHigh);
+                classifier.setIncludeLow(pctileLow);
+                return classifier;
+            }
+            case "predicate": {
+                if (cutoff instanceof String) {
+                    return new PredicateClassifier(metric, predicateStr, (String) cutoff);
+                }
+                return new PredicateClassifier(metric, predicateStr, ((Number) cutoff).doubleValue());
+            }
+            default: {
+                throw new MacroBaseException("Bad Classifier Type for streaming: " + classifierType);
+            }
+        }
+    }
+
+    /**
+     * Runs until the source ends, idleTimeoutMs passes without new rows, or
+     * stop() is called.
+     * @return explanation of the last window, null if no rows arrived
+     */
+    @Override
+    public Explanation results() throws Exception {
+        Classifier classifier = getClassifier();
+        IncrementalSummarizer summarizer = new IncrementalSummarizer();
+        summarizer.setAttributes(attributes);
+        summarizer.setOutlierColumn(classifier.getOutputColumnName());
+        summarizer.setMinSupport(minSupport);
+        summarizer.setMinRiskRatio(minRiskRatio);
+        WindowedOperator<FPGExplanation> windowed = new WindowedOperator<>(summarizer);
+        windowed.setTimeColumn(timeColumn == null ? ROW_TIME_COLUMN : timeColumn);
+        windowed.setWindowLength(windowLength);
+        windowed.setSlideLength(slideLength);
+        windowed.initialize();
+
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(maxBufferedRows);
+        reader = new LineStreamReader(inputURI, queue);
+        reader.setPollIntervalMs(pollIntervalMs);
+        readerThread = new Thread(reader, "stream-reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+        if (stopped) {
+            stop();
+        }
+
+        Explanation last = null;
+        double lastEmittedTime = 0.0;
+        double maxTime = Double.NEGATIVE_INFINITY;
+        long lastRowMs = System.currentTimeMillis();
+        boolean endOfStream = false;
+        List<String> lines = new ArrayList<>(batchSize);
+        try {
+            while (!endOfStream) {
+                endOfStream = nextBatch(queue, lines);
+                if (lines.isEmpty()) {
+                    if (idleTimeoutMs >= 0 && System.currentTimeMillis() - lastRowMs > idleTimeoutMs) {
+                        log.info("No rows for {} ms, stopping", idleTimeoutMs);
+                        break;
+                    }
+                    continue;
+                }
+                lastRowMs = System.currentTimeMillis();
+
+                BatchMetrics m = new BatchMetrics();
+                m.bufferedRows = queue.size();
+                long start = System.nanoTime();
+                DataFrame batch = parse(lines);
+                long parsed = System.nanoTime();
+                lines.clear();
+                if (batch.getNumRows() > 0) {
+                    classifier.process(batch);
+                    long classified = System.nanoTime();
+                    DataFrame labeled = classifier.getResults();
+                    windowed.process(labeled);
+                    long summarized = System.nanoTime();
+                    maxTime = Math.max(maxTime, ArrayUtils.max(labeled.getDoubleColumnByName(windowed.getTimeColumn())));
+
+                    m.classifyTimeMs = (classified - parsed) / 1000000;
+                    m.summarizeTimeMs = (summarized - classified) / 1000000;
+                    if (windowed.getMaxWindowTime() > lastEmittedTime) {
+                        lastEmittedTime = windowed.getMaxWindowTime();
+                        last = emit(windowed);
+                        m.emitted = true;
+                    }
+                }
+                m.numRows = batch.getNumRows();
+                m.parseTimeMs = (parsed - start) / 1000000;
+                m.totalTimeMs = (System.nanoTime() - start) / 1000000;
+                record(m);
+            }
+            // explain the rows of the last, partially filled pane
+            if (!stopped && maxTime >= windowed.getMaxWindowTime()) {
+                windowed.flushBuffer();
+                last = emit(windowed);
+            }
+        } finally {
+            stop();
+        }
+        if (reader.getError() != null) {
+            throw reader.getError();
+        }
+        log.info("{} rows in {} batches, {} explanations", numRows, numBatches, numExplanations);
+        return last;
+    }
+
+    /**
+     * Waits up to batchTimeoutMs for rows and takes at most batchSize of them.
+     * @return true if the end of the stream was reached
+     */
+    private boolean nextBatch(BlockingQueue<String> queue, List<String> lines) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + batchTimeoutMs;
+        while (lines.size() < batchSize && !stopped) {
+            queue.drainTo(lines, batchSize - lines.size());
+            if (!lines.isEmpty() && lines.get(lines.size() - 1) == LineStreamReader.END_OF_STREAM) {
+                lines.remove(lines.size() - 1);
+                return true;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (lines.size() >= batchSize || remaining <= 0) {
+                break;
+            }
+            String line = queue.poll(Math.min(remaining, pollIntervalMs), TimeUnit.MILLISECONDS);
+            if (line == LineStreamReader.END_OF_STREAM) {
+                return true;
+            } else if (line != null) {
+                lines.add(line);
+            }
+        }
+        return stopped;
+    }
+
+    private Explanation emit(WindowedOperator<FPGExplanation> windowed) {
+        FPGExplanation explanation = windowed.getResults().prune();
+        numExplanations++;
+        if (listener != null) {
+            listener.accept(explanation);
+        } else {
+            log.info("Window ending {}:\n{}", windowed.getMaxWindowTime(), explanation.prettyPrint());
+        }
+        return explanation;
+    }
+
+    private synchronized void record(BatchMetrics m) {
+        numBatches++;
+        numRows += m.numRows;
+        recentMetrics.addLast(m);
+        if (recentMetrics.size() > metricsHistory) {
+            recentMetrics.removeFirst();
+        }
+        PipelineMetrics.recordStage("StreamingPipeline", "batch", m.totalTimeMs);
+        PipelineMetrics.ROWS_LOADED.inc(m.numRows, PipelineMetrics.getScheme(inputURI));
+        log.debug("Batch of {} rows: parse {} ms, classify {} ms, summarize {} ms, {} rows buffered",
+                m.numRows, m.parseTimeMs, m.classifyTimeMs, m.summarizeTimeMs, m.bufferedRows);
+    }
+
+    /**
+     * @return metrics of the last metricsHistory micro-batches, oldest first
+     */
+    public synchronized List<BatchMetrics> getBatchMetrics() {
+        return new ArrayList<>(recentMetrics);
+    }
+
+    public synchronized long getNumBatches() {
+        return numBatches;
+    }
+
+    public synchronized long getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * Stops reading; results() returns after the current micro-batch.
+     */
+    public void stop() {
+        stopped = true;
+        LineStreamReader r = reader;
+        if (r != null) {
+            r.stop();
+        }
+        Thread t = readerThread;
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+
+    private DataFrame parse(List<String> lines) throws Exception {
+        if (format.equals("csv")) {
+            return parseCSV(lines);
+        } else {
+            return parseJSON(lines);
+        }
+    }
+
+    private DataFrame parseCSV(List<String> lines) throws MacroBaseException {
+        int start = 0;
+        if (header == null) {
+            CsvParserSettings settings = new CsvParserSettings();
+            csvParser = new CsvParser(settings);
+            header = csvParser.parseLine(lines.get(0));
+            start = 1;
+        }
+        int[] attrIdx = new int[attributes.size()];
+        for (int j = 0; j < attrIdx.length; j++) {
+            attrIdx[j] = headerIndex(attributes.get(j));
+        }
+        int metricIdx = headerIndex(metric);
+        int timeIdx = timeColumn == null ? -1 : headerIndex(timeColumn);
+
+        RowBuilder rows = new RowBuilder(lines.size() - start);
+        for (int i = start; i < lines.size(); i++) {
+            String[] row = csvParser.parseLine(lines.get(i));
+            for (int j = 0; j < attrIdx.length; j++) {
+                rows.attrs[j][rows.n] = value(row, attrIdx[j]);
+            }
+            rows.metric[rows.n] = value(row, metricIdx);
+            rows.time[rows.n] = timeIdx < 0 ? rowCount : parseDouble(value(row, timeIdx));
+            rows.n++;
+            rowCount++;
+        }
+        return rows.build();
+    }
+
+    private DataFrame parseJSON(List<String> lines) throws Exception {
+        if (mapper == null) {
+            mapper = new ObjectMapper();
+        }
+        RowBuilder rows = new RowBuilder(lines.size());
+        for (String line : lines) {
+            JsonNode node = mapper.readTree(line);
+            for (int j = 0; j < attributes.size(); j++) {
+                rows.attrs[j][rows.n] = text(node.get(attributes.get(j)));
+            }
+            rows.metric[rows.n] = text(node.get(metric));
+            rows.time[rows.n] = timeColumn == null ? rowCount : parseDouble(text(node.get(timeColumn)));
+            rows.n++;
+            rowCount++;
+        }
+        return rows.build();
+    }
+
+    private class RowBuilder {
+        int n = 0;
+        String[][] attrs;
+        String[] metric;
+        double[] time;
+
+        RowBuilder(int capacity) {
+            attrs = new String[attributes.size()][capacity];
+            metric = new String[capacity];
+            time = new double[capacity];
+        }
+
+        DataFrame build() {
+            DataFrame df = new DataFrame();
+            for (int j = 0; j < attributes.size(); j++) {
+                df.addColumn(attributes.get(j), Arrays.copyOf(attrs[j], n));
+            }
+            String[] metricValues = Arrays.copyOf(metric, n);
+            if (cutoff instanceof String) {
+                df.addColumn(StreamingPipeline.this.metric, metricValues);
+            } else {
+                double[] values = new double[n];
+                for (int i = 0; i < n; i++) {
+                    values[i] = parseDouble(metricValues[i]);
+                }
+                df.addColumn(StreamingPipeline.this.metric, values);
+            }
+            df.addColumn(timeColumn == null ? ROW_TIME_COLUMN : timeColumn, Arrays.copyOf(time, n));
+            return df;
+        }
+    }
+
+    private int headerIndex(String column) throws MacroBaseException {
+        for (int i = 0; i < header.length; i++) {
+            if (column.equals(header[i])) {
+                return i;
+            }
+        }
+        throw new MacroBaseException("Stream has no column " + column);
+    }
+
+    private static String value(String[] row, int i) {
+        return i < row.length && row[i] != null ? row[i] : "NULL";
+    }
+
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? "NULL" : node.asText();
+    }
+
+    private static double parseDouble(String s) {
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package edu.stanford.futuredata.macrobase.rest;
+
+import edu.stanford.futuredata.macrobase.pipeline.Pipeline;
+import edu.stanford.futuredata.macrobase.pipeline.PipelineConfig;
+import edu.stanford.futuredata.macrobase.pipeline.PipelineUtils;
+import edu.stanford.futuredata.macrobase.pipeline.ResultCache;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs pipelines asynchronously on a fixed pool of workers so that a few large
+ * queries cannot starve the rest of the server.
+ *
+ * Queued jobs are ordered by the "priority" config key (higher first), each
+ * job's "numThreads" is capped at maxThreadsPerJob, submissions beyond
+ * maxQueuedJobs waiting jobs are rejected, and jobs still running after
+ * "timeoutMs" (capped at jobTimeoutMs) are cancelled.
+ */
+public class JobManager {
+    private static Logger log = LoggerFactory.getLogger(JobManager.class);
+
+    private final int maxQueuedJobs;
+    private final int maxThreadsPerJob;
+    private final long jobTimeoutMs;
+    private final int maxRetainedJobs;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicLong seq = new AtomicLong();
+    // insertion ordered so the oldest finished jobs are forgotten first
+    private final Map<String, QueryJob> jobs = new LinkedHashMap<>();
+    private volatile ResultCache resultCache;
+
+    /**
+     * @param numWorkers number of jobs run concurrently
+     * @param maxQueuedJobs number of jobs allowed to wait for a worker
+     * @param maxThreadsPerJob cap on the numThreads of each job
+     * @param jobTimeoutMs default and maximum job deadline, 0 for none
+     * @param maxRetainedJobs number of finished jobs kept for polling
+     */
+    public JobManager(
+            int numWorkers,
+            int maxQueuedJobs,
+            int maxThreadsPerJob,
+            long jobTimeoutMs,
+            int maxRetainedJobs
+    ) {
+        this.maxQueuedJobs = maxQueuedJobs;
+        this.maxThreadsPerJob = maxThreadsPerJob;
+        this.jobTimeoutMs = jobTimeoutMs;
+        this.maxRetainedJobs = maxRetainedJobs;
+
+        AtomicInteger workerCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                numWorkers, numWorkers,
+                0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "macrobase-job-" + workerCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+        );
+        this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "macrobase-job-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    public static JobManager fromConfig(PipelineConfig conf) {
+        int numCores = Runtime.getRuntime().availableProcessors();
+        int numWorkers = conf.get("numWorkers", 2);
+        int maxQueuedJobs = conf.get("maxQueuedJobs", 64);
+        int maxThreadsPerJob = conf.get("maxThreadsPerJob", Math.max(1, numCores / numWorkers));
+        Number jobTimeoutMs = conf.get("jobTimeoutMs", 600000);
+        int maxRetainedJobs = conf.get("maxRetainedJobs", 1000);
+        return new JobManager(
+                numWorkers, maxQueuedJobs, maxThreadsPerJob,
+                jobTimeoutMs.longValue(), maxRetainedJobs
+        );
+    }
+
+    /**
+     * Creates the pipeline described by conf and queues it. The numThreads
+     * value in conf is overwritten with the thread budget granted to the job.
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public QueryJob submit(PipelineConfig conf) throws MacroBaseException {
+        int requestedThreads = conf.get("numThreads", maxThreadsPerJob);
+        int numThreads = Math.max(1, Math.min(requestedThreads, maxThreadsPerJob));
+        conf.getValues().put("numThreads", numThreads);
+        int priority = conf.get("priority", 0);
+        Number timeoutMs = conf.get("timeoutMs", jobTimeoutMs);
+
+        Pipeline p = PipelineUtils.createPipeline(conf);
+        ResultCache cache = resultCache;
+        if (cache != null) {
+            p = cache.wrap(conf, p);
+        }
+        return submit(p, priority, numThreads, timeoutMs.longValue());
+    }
+
+    /**
+     * @param resultCache cache consulted by jobs submitted as configs, null for none
+     */
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    public ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * @param numThreads thread budget the pipeline was configured with, for reporting
+     * @param timeoutMs deadline from submission, capped at jobTimeoutMs. 0 for the default
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public synchronized QueryJob submit(
+            Pipeline p, int priority, int numThreads, long timeoutMs
+    ) {
+        if (executor.getQueue().size() >= maxQueuedJobs) {
+            throw new RejectedExecutionException(
+                    "Job queue is full (" + maxQueuedJobs + " waiting jobs)");
+        }
+        if (timeoutMs <= 0 || (jobTimeoutMs > 0 && timeoutMs > jobTimeoutMs)) {
+            timeoutMs = jobTimeoutMs;
+        }
+
+        QueryJob job = new QueryJob(
+                UUID.randomUUID().toString(), p, priority, numThreads, seq.incrementAndGet()
+        );
+        if (timeoutMs > 0) {
+            ScheduledFuture<?> deadline = timer.schedule(
+                    () -> expire(job), timeoutMs, TimeUnit.MILLISECONDS
+            );
+            job.setOnDone(() -> deadline.cancel(false));
+        }
+        jobs.put(job.getId(), job);
+        evictFinishedJobs();
+        executor.execute(job);
+        log.info("Queued job {} with priority {}", job.getId(), priority);
+        return job;
+    }
+
+    private void expire(QueryJob job) {
+        if (job.cancel(QueryJob.Status.TIMED_OUT)) {
+            executor.remove(job);
+            log.warn("Job {} timed out", job.getId());
+        }
+    }
+
+    public synchronized QueryJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * @return false if the job is unknown or already finished
+     */
+    public boolean cancel(String id) {
+        QueryJob job = getJob(id);
+        if (job == null || !job.cancel(QueryJob.Status.CANCELLED)) {
+            return false;
+        }
+        executor.remove(job);
+        log.info("Cancelled job {}", id);
+        return true;
+    }
+
+    public synchronized Map<String, Integer> getStats() {
+        Map<String, Integer> stats = new HashMap<>();
+        stats.put("queued", executor.getQueue().size());
+        stats.put("running", executor.getActiveCount());
+        stats.put("retained", jobs.size());
+        return stats;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    private void evictFinishedJobs() {
+        Iterator<QueryJob> it = jobs.values().iterator();
+        while (jobs.size() > maxRetainedJobs && it.hasNext()) {
+            if (it.next().getStatus().isDone()) {
+                it.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package edu.stanford.futuredata.macrobase.rest;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.metrics.PipelineMetrics;
+import edu.stanford.futuredata.macrobase.pipeline.Pipeline;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pipeline submitted to a JobManager. Jobs with a higher priority are run
+ * first, ties are broken by submission order.
+ *
+ * Cancellation is cooperative: a running job is marked cancelled immediately
+ * and its thread is interrupted, but the worker is only freed once the
+ * pipeline notices the interrupt.
+ */
+public class QueryJob implements Runnable, Comparable<QueryJob> {
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED, TIMED_OUT;
+
+        public boolean isDone() {
+            return this != QUEUED && this != RUNNING;
+        }
+    }
+
+    private final String id;
+    private final Pipeline pipeline;
+    private final int priority;
+    private final int numThreads;
+    private final long seq;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Runnable onDone;
+
+    private Status status = Status.QUEUED;
+    private Thread runner;
+    private Explanation result;
+    private String error;
+    private final long submitTime;
+    private long startTime;
+    private long endTime;
+
+    QueryJob(String id, Pipeline pipeline, int priority, int numThreads, long seq) {
+        this.id = id;
+        this.pipeline = pipeline;
+        this.priority = priority;
+        this.numThreads = numThreads;
+        this.seq = seq;
+        this.submitTime = System.currentTimeMillis();
+    }
+
+    void setOnDone(Runnable onDone) {
+        this.onDone = onDone;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (status != Status.QUEUED) {
+                return;
+            }
+            status = Status.RUNNING;
+            runner = Thread.currentThread();
+            startTime = System.currentTimeMillis();
+        }
+        try {
+            Explanation e = pipeline.results();
+            finish(Status.SUCCEEDED, e, null);
+        } catch (CancellationException | InterruptedException e) {
+            finish(Status.CANCELLED, null, null);
+        } catch (Exception e) {
+            finish(Status.FAILED, null, e.toString());
+        } finally {
+            synchronized (this) {
+                runner = null;
+            }
+            // don't leak the interrupt into the next job on this worker
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * @param reason CANCELLED or TIMED_OUT
+     * @return true if the job had not finished yet
+     */
+    boolean cancel(Status reason) {
+        return finish(reason, null, null);
+    }
+
+    private boolean finish(Status newStatus, Explanation result, String error) {
+        synchronized (this) {
+            if (status.isDone()) {
+                return false;
+            }
+            this.status = newStatus;
+            this.result = result;
+            this.error = error;
+            this.endTime = System.currentTimeMillis();
+            // interrupt only after the status is set so the pipeline cannot record its own cancellation first
+            if (runner != null && runner != Thread.currentThread()) {
+                runner.interrupt();
+            }
+        }
+        String label = newStatus.name().toLowerCase();
+        PipelineMetrics.JOBS_FINISHED.inc(label);
+        if (startTime > 0) {
+            PipelineMetrics.JOB_SECONDS.observe((endTime - startTime) / 1000.0, label);
+        }
+        done.countDown();
+        if (onDone != null) {
+            onDone.run();
+        }
+        return true;
+    }
+
+    /**
+     * Waits up to timeoutMs for the job to finish.
+     * @return true if the job is done
+     */
+    public boolean await(long timeoutMs) throws InterruptedException {
+        return done.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void await() throws InterruptedException {
+        done.await();
+    }
+
+    @Override
+    public int compareTo(QueryJob o) {
+        if (priority != o.priority) {
+            return Integer.compare(o.priority, priority);
+        }
+        return Long.compare(seq, o.seq);
+    }
+
+    public String getId() {
+        return id;
+    }
+    public synchronized Status getStatus() {
+        return status;
+    }
+    public int getPriority() {
+        return priority;
+    }
+    public int getNumThreads() {
+        return numThreads;
+    }
+    public synchronized String getError() {
+        return error;
+    }
+    public synchronized long getQueuedMs() {
+        long dequeueTime = startTime > 0 ? startTime : (endTime > 0 ? endTime : System.currentTimeMillis());
+        return dequeueTime - submitTime;
+    }
+    public synchronized long getRunningMs() {
+        if (startTime == 0) {
+            return 0;
+        }
+        return (endTime > 0 ? endTime : System.currentTimeMillis()) - startTime;
+    }
+    @JsonIgnore
+    public synchronized Explanation getResult() {
+        return result;
+    }
+}
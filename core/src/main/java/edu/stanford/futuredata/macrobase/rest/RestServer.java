@@ -3,20 +3,78 @@ package edu.stanford.futuredata.macrobase.rest;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.metrics.MetricsRegistry;
 import edu.stanford.futuredata.macrobase.pipeline.*;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import spark.Request;
 import spark.Response;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
 import static spark.Spark.*;
 
+/**
+ * Serves pipeline queries over HTTP. Queries run as jobs on a JobManager:
+ * POST /jobs returns a job id immediately, GET /jobs/:id polls its status,
+ * GET /jobs/:id/result?wait=ms long-polls for the explanation and
+ * DELETE /jobs/:id cancels it. POST /query submits a job and blocks until it
+ * finishes.
+ *
+ * POST /datasets/:name loads a dataset into the DatasetRegistry so that
+ * queries can read it through the inputURI "dataset://name", GET /datasets
+ * lists the registered datasets and cache statistics.
+ *
+ * Results of repeated queries over unchanged inputs are served from a
+ * ResultCache, GET /cache reports its statistics and DELETE /cache empties it.
+ *
+ * GET /metrics serves stage latencies, load volumes, cache lookups, job
+ * counts and JVM heap usage in the Prometheus text format.
+ *
+ * Pass a yaml file as the first argument to configure the JobManager, see
+ * JobManager.fromConfig, the registry's heap budget (datasetCacheBytes) and
+ * the result cache, see ResultCache.fromConfig.
+ */
 public class RestServer {
     private static Logger log = LoggerFactory.getLogger(RestServer.class);
+    private static JobManager jobManager;
+
+    public static void main(String[] args) throws Exception {
+        PipelineConfig serverConf;
+        if (args.length > 0) {
+            serverConf = PipelineConfig.fromYamlFile(args[0]);
+        } else {
+            serverConf = new PipelineConfig(new HashMap<>());
+        }
+        jobManager = JobManager.fromConfig(serverConf);
+        Number datasetCacheBytes = serverConf.get("datasetCacheBytes", null);
+        if (datasetCacheBytes != null) {
+            DatasetRegistry.getInstance().setMaxBytes(datasetCacheBytes.longValue());
+        }
+        jobManager.setResultCache(ResultCache.fromConfig(serverConf));
+        registerGauges();
 
-    public static void main(String[] args) {
         post("/query", RestServer::processBasicBatchQuery, RestServer::toJsonString);
+        post("/jobs", RestServer::submitJob, RestServer::toJsonString);
+        get("/jobs/:id", RestServer::getJob, RestServer::toJsonString);
+        get("/jobs/:id/result", RestServer::getJobResult, RestServer::toJsonString);
+        delete("/jobs/:id", RestServer::cancelJob, RestServer::toJsonString);
+        post("/datasets/:name", RestServer::registerDataset, RestServer::toJsonString);
+        get("/datasets", RestServer::listDatasets, RestServer::toJsonString);
+        get("/datasets/:name", RestServer::getDataset, RestServer::toJsonString);
+        delete("/datasets/:name", RestServer::removeDataset, RestServer::toJsonString);
+        get("/cache", RestServer::getCacheStats, RestServer::toJsonString);
+        get("/metrics", RestServer::getMetrics);
+        delete("/cache", RestServer::clearCache, RestServer::toJsonString);
 
+        exception(RejectedExecutionException.class, (exception, request, response) -> {
+            response.status(503);
+            response.body(exception.getMessage());
+        });
         exception(Exception.class, (exception, request, response) -> {
             log.error("An exception occurred: ", exception);
         });
@@ -27,9 +85,165 @@ public class RestServer {
     ) throws Exception {
         res.type("application/json");
         PipelineConfig conf = PipelineConfig.fromJsonString(req.body());
-        Pipeline p = PipelineUtils.createPipeline(conf);
-        Explanation e = p.results();
-        return e;
+        QueryJob job = jobManager.submit(conf);
+        try {
+            job.await();
+        } catch (InterruptedException e) {
+            jobManager.cancel(job.getId());
+            throw e;
+        }
+        if (job.getStatus() != QueryJob.Status.SUCCEEDED) {
+            throw new MacroBaseException("Query " + job.getStatus() + ": " + job.getError());
+        }
+        return job.getResult();
+    }
+
+    public static QueryJob submitJob(Request req, Response res) throws Exception {
+        res.type("application/json");
+        PipelineConfig conf = PipelineConfig.fromJsonString(req.body());
+        QueryJob job = jobManager.submit(conf);
+        res.status(202);
+        return job;
+    }
+
+    public static QueryJob getJob(Request req, Response res) {
+        res.type("application/json");
+        return lookupJob(req);
+    }
+
+    /**
+     * Returns the explanation once the job succeeds. While the job is still
+     * running responds 202 with the job status, waiting up to the "wait" query
+     * parameter in ms first.
+     */
+    public static Object getJobResult(Request req, Response res) throws Exception {
+        res.type("application/json");
+        QueryJob job = lookupJob(req);
+        String wait = req.queryParams("wait");
+        if (wait != null) {
+            job.await(Long.parseLong(wait));
+        }
+        switch (job.getStatus()) {
+            case SUCCEEDED:
+                return job.getResult();
+            case QUEUED:
+            case RUNNING:
+                res.status(202);
+                return job;
+            case FAILED:
+                res.status(500);
+                return job;
+            default:
+                res.status(410);
+                return job;
+        }
+    }
+
+    public static QueryJob cancelJob(Request req, Response res) {
+        res.type("application/json");
+        QueryJob job = lookupJob(req);
+        jobManager.cancel(job.getId());
+        return job;
+    }
+
+    /**
+     * Body: inputURI, columnTypes (column name to DOUBLE or STRING, only these
+     * columns are loaded) and optionally restHeader, jsonBody, usePost and
+     * pagination.
+     */
+    public static DatasetRegistry.DatasetInfo registerDataset(Request req, Response res) throws Exception {
+        res.type("application/json");
+        PipelineConfig conf = PipelineConfig.fromJsonString(req.body());
+        String inputURI = conf.get("inputURI");
+        Map<String, String> columnTypes = conf.get("columnTypes");
+        if (inputURI == null || columnTypes == null) {
+            throw new MacroBaseException("Dataset requires inputURI and columnTypes");
+        }
+        Map<String, Schema.ColType> colTypes = new HashMap<>();
+        for (Map.Entry<String, String> e : columnTypes.entrySet()) {
+            colTypes.put(e.getKey(), Schema.ColType.valueOf(e.getValue().toUpperCase()));
+        }
+        return DatasetRegistry.getInstance().load(
+                req.params(":name"),
+                inputURI,
+                colTypes,
+                conf.get("restHeader", null),
+                conf.get("jsonBody", null),
+                conf.get("usePost", true),
+                conf.get("pagination", null)
+        );
+    }
+
+    public static Map<String, Object> listDatasets(Request req, Response res) {
+        res.type("application/json");
+        DatasetRegistry registry = DatasetRegistry.getInstance();
+        Map<String, Object> body = new HashMap<>();
+        body.put("datasets", registry.getInfos());
+        body.put("stats", registry.getStats());
+        return body;
+    }
+
+    public static DatasetRegistry.DatasetInfo getDataset(Request req, Response res) {
+        res.type("application/json");
+        DatasetRegistry.DatasetInfo info = DatasetRegistry.getInstance().getInfo(req.params(":name"));
+        if (info == null) {
+            halt(404, "Unknown dataset " + req.params(":name"));
+        }
+        return info;
+    }
+
+    public static Map<String, Object> removeDataset(Request req, Response res) {
+        res.type("application/json");
+        Map<String, Object> body = new HashMap<>();
+        body.put("removed", DatasetRegistry.getInstance().remove(req.params(":name")));
+        return body;
+    }
+
+    private static void registerGauges() {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.registerJvmMetrics();
+        registry.gauge("macrobase_jobs_queued", "Jobs waiting for a worker",
+                () -> jobManager.getStats().get("queued"));
+        registry.gauge("macrobase_jobs_running", "Jobs being run",
+                () -> jobManager.getStats().get("running"));
+        registry.gauge("macrobase_datasets", "Datasets in the registry",
+                () -> DatasetRegistry.getInstance().getStats().get("datasets"));
+        registry.gauge("macrobase_dataset_bytes", "Estimated heap used by registered datasets",
+                () -> DatasetRegistry.getInstance().getStats().get("bytes"));
+        ResultCache cache = jobManager.getResultCache();
+        if (cache != null) {
+            registry.gauge("macrobase_result_cache_entries", "Results held by the result cache",
+                    () -> cache.getStats().get("entries"));
+        }
+    }
+
+    public static String getMetrics(Request req, Response res) {
+        res.type("text/plain; version=0.0.4; charset=utf-8");
+        return MetricsRegistry.getInstance().scrape();
+    }
+
+    public static Map<String, Long> getCacheStats(Request req, Response res) {
+        res.type("application/json");
+        ResultCache cache = jobManager.getResultCache();
+        return cache == null ? new HashMap<>() : cache.getStats();
+    }
+
+    public static Map<String, Long> clearCache(Request req, Response res) {
+        res.type("application/json");
+        ResultCache cache = jobManager.getResultCache();
+        if (cache == null) {
+            return new HashMap<>();
+        }
+        cache.clear();
+        return cache.getStats();
+    }
+
+    private static QueryJob lookupJob(Request req) {
+        QueryJob job = jobManager.getJob(req.params(":id"));
+        if (job == null) {
+            halt(404, "Unknown job " + req.params(":id"));
+        }
+        return job;
     }
 
     public static String toJsonString(Object o) throws JsonProcessingException {
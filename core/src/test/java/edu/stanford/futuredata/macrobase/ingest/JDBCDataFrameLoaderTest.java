@@ -0,0 +1,146 @@
+package edu.stanford.futuredata.macrobase.ingest;
+
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.pipeline.BasicBatchPipeline;
+import edu.stanford.futuredata.macrobase.pipeline.PipelineConfig;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class JDBCDataFrameLoaderTest {
+    private static final String URL = "jdbc:h2:mem:jdbcloadertest;DB_CLOSE_DELAY=-1";
+    private static final int NUM_ROWS = 1000;
+    private static Connection keepAlive;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        keepAlive = DriverManager.getConnection(URL);
+        try (Statement stmt = keepAlive.createStatement()) {
+            stmt.execute("CREATE TABLE events (id BIGINT, location VARCHAR(16), version VARCHAR(16), usage DOUBLE, extra VARCHAR(16))");
+        }
+        try (PreparedStatement stmt = keepAlive.prepareStatement("INSERT INTO events VALUES (?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < NUM_ROWS; i++) {
+                // a few rows have no id, location or usage
+                if (i % 100 == 7) {
+                    stmt.setObject(1, null);
+                } else {
+                    stmt.setLong(1, i);
+                }
+                stmt.setString(2, i % 50 == 3 ? null : "loc" + (i % 5));
+                stmt.setString(3, "v" + (i % 3));
+                stmt.setObject(4, i % 97 == 0 ? null : (Object) (i * 0.5));
+                stmt.setString(5, "unused");
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        keepAlive.close();
+    }
+
+    private static JDBCDataFrameLoader getLoader() {
+        JDBCDataFrameLoader loader = new JDBCDataFrameLoader(
+                URL, "events", Arrays.asList("ID", "LOCATION", "USAGE"));
+        Map<String, Schema.ColType> types = new HashMap<>();
+        types.put("ID", Schema.ColType.DOUBLE);
+        types.put("USAGE", Schema.ColType.DOUBLE);
+        loader.setColumnTypes(types);
+        return loader;
+    }
+
+    private static Map<Double, String> getRows(DataFrame df) {
+        Map<Double, String> rows = new HashMap<>();
+        double[] ids = df.getDoubleColumnByName("ID");
+        double[] usage = df.getDoubleColumnByName("USAGE");
+        String[] locations = df.getStringColumnByName("LOCATION");
+        int nullIds = 0;
+        for (int i = 0; i < df.getNumRows(); i++) {
+            if (Double.isNaN(ids[i])) {
+                nullIds++;
+                continue;
+            }
+            rows.put(ids[i], locations[i] + "/" + usage[i]);
+        }
+        rows.put(-1.0, String.valueOf(nullIds));
+        return rows;
+    }
+
+    @Test
+    public void testProjectionAndNulls() throws Exception {
+        DataFrame df = getLoader().setFetchSize(64).load();
+        assertEquals(NUM_ROWS, df.getNumRows());
+        assertEquals(Arrays.asList("ID", "LOCATION", "USAGE"), df.getSchema().getColumnNames());
+        assertTrue(Double.isNaN(df.getDoubleColumnByName("USAGE")[0]));
+        assertEquals("NULL", df.getStringColumnByName("LOCATION")[3]);
+        assertEquals(5.0, df.getDoubleColumnByName("USAGE")[10], 1e-10);
+    }
+
+    @Test
+    public void testFilters() throws Exception {
+        DataFrame df = getLoader()
+                .addFilter(new JDBCDataFrameLoader.Filter("VERSION", "=", "v1"))
+                .addFilter(new JDBCDataFrameLoader.Filter("USAGE", ">=", 100.0))
+                .load();
+        // ids 200..999 with i % 3 == 1, excluding null usage
+        int expected = 0;
+        for (int i = 200; i < NUM_ROWS; i++) {
+            if (i % 3 == 1 && i % 97 != 0) {
+                expected++;
+            }
+        }
+        assertEquals(expected, df.getNumRows());
+    }
+
+    @Test
+    public void testPartitionsMatchSingleQuery() throws Exception {
+        DataFrame single = getLoader().load();
+        DataFrame partitioned = getLoader().setPartitioning("ID", 4).load();
+        assertEquals(single.getNumRows(), partitioned.getNumRows());
+        assertEquals(getRows(single), getRows(partitioned));
+    }
+
+    @Test
+    public void testPipeline() throws Exception {
+        Map<String, Object> jsonBody = new HashMap<>();
+        jsonBody.put("query", "SELECT location, version, usage FROM events WHERE usage IS NOT NULL");
+        jsonBody.put("partitionColumn", "USAGE");
+        jsonBody.put("numPartitions", 3);
+        List<Map<String, Object>> filters = new ArrayList<>();
+        Map<String, Object> f = new HashMap<>();
+        f.put("column", "VERSION");
+        f.put("op", "!=");
+        f.put("value", "v2");
+        filters.add(f);
+        jsonBody.put("filters", filters);
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("inputURI", URL);
+        values.put("jsonBody", jsonBody);
+        values.put("classifier", "percentile");
+        values.put("metric", "USAGE");
+        values.put("cutoff", 5.0);
+        values.put("attributes", Arrays.asList("LOCATION", "VERSION"));
+        Explanation e = new BasicBatchPipeline(new PipelineConfig(values)).results();
+
+        int expected = 0;
+        for (int i = 0; i < NUM_ROWS; i++) {
+            if (i % 97 != 0 && i % 3 != 2) {
+                expected++;
+            }
+        }
+        assertEquals(expected, e.numTotal(), 1e-10);
+    }
+}
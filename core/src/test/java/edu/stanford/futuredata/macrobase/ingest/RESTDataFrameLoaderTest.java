@@ -0,0 +1,164 @@
+package edu.stanford.futuredata.macrobase.ingest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class RESTDataFrameLoaderTest {
+    private static final int NUM_ROWS = 25;
+
+    private HttpServer server;
+    private AtomicInteger numRequests = new AtomicInteger();
+
+    private static String getRows(int start, int end) {
+        StringBuilder sb = new StringBuilder("id,usage\n");
+        for (int i = start; i < Math.min(end, NUM_ROWS); i++) {
+            sb.append("r").append(i).append(",").append(i * 1.5).append("\n");
+        }
+        return sb.toString();
+    }
+
+    private static Map<String, String> getQuery(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getQuery();
+        if (query != null) {
+            for (String kv : query.split("&")) {
+                String[] parts = kv.split("=", 2);
+                params.put(parts[0], parts[1]);
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, String body, boolean gzip) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (gzip) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(bytes);
+            }
+            bytes = out.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/all", exchange -> {
+            numRequests.incrementAndGet();
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            respond(exchange, getRows(0, NUM_ROWS), accept != null && accept.contains("gzip"));
+        });
+        server.createContext("/offset", exchange -> {
+            numRequests.incrementAndGet();
+            Map<String, String> q = getQuery(exchange);
+            int offset = Integer.parseInt(q.get("offset"));
+            int limit = Integer.parseInt(q.get("limit"));
+            respond(exchange, getRows(offset, offset + limit), false);
+        });
+        server.createContext("/cursor", exchange -> {
+            numRequests.incrementAndGet();
+            String cursor = getQuery(exchange).getOrDefault("cursor", "0");
+            int start = Integer.parseInt(cursor);
+            int end = start + 10;
+            if (end < NUM_ROWS) {
+                exchange.getResponseHeaders().add("X-Next-Cursor", String.valueOf(end));
+            }
+            respond(exchange, getRows(start, end), true);
+        });
+        server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private RESTDataFrameLoader getLoader(String path, Map<String, String> headers) {
+        RESTDataFrameLoader loader = new RESTDataFrameLoader(
+                "http://localhost:" + server.getAddress().getPort() + path,
+                headers,
+                Arrays.asList("id", "usage")
+        );
+        loader.setUsePost(false);
+        Map<String, Schema.ColType> types = new HashMap<>();
+        types.put("usage", Schema.ColType.DOUBLE);
+        loader.setColumnTypes(types);
+        return loader;
+    }
+
+    private static void checkRows(DataFrame df) {
+        assertEquals(NUM_ROWS, df.getNumRows());
+        String[] ids = df.getStringColumnByName("id");
+        double[] usage = df.getDoubleColumnByName("usage");
+        for (int i = 0; i < NUM_ROWS; i++) {
+            assertEquals("r" + i, ids[i]);
+            assertEquals(i * 1.5, usage[i], 1e-10);
+        }
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        // decoded transparently by OkHttp
+        checkRows(getLoader("/all", new HashMap<>()).load());
+        // decoded by the loader since the caller asked for the encoding itself
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept-Encoding", "gzip");
+        checkRows(getLoader("/all", headers).load());
+    }
+
+    @Test
+    public void testOffsetPages() throws Exception {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("type", "offset");
+        conf.put("pageSize", 4);
+        conf.put("concurrency", 3);
+        RESTDataFrameLoader loader = getLoader("/offset", new HashMap<>());
+        loader.setPagination(new RESTDataFrameLoader.Pagination(conf));
+        checkRows(loader.load());
+        // 7 pages, plus at most concurrency - 1 speculative requests past the end
+        assertTrue(numRequests.get() >= 7 && numRequests.get() <= 9);
+    }
+
+    @Test
+    public void testCursorPages() throws Exception {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("type", "cursor");
+        conf.put("limitParam", null);
+        RESTDataFrameLoader loader = getLoader("/cursor", new HashMap<>());
+        loader.setPagination(new RESTDataFrameLoader.Pagination(conf));
+        checkRows(loader.load());
+        assertEquals(3, numRequests.get());
+    }
+
+    @Test(expected = IOException.class)
+    public void testErrorStatus() throws Exception {
+        getLoader("/missing", new HashMap<>()).load();
+    }
+}
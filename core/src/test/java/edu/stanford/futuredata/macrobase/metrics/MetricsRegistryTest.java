@@ -0,0 +1,78 @@
+package edu.stanford.futuredata.macrobase.metrics;
+
+import edu.stanford.futuredata.macrobase.pipeline.BasicBatchPipeline;
+import edu.stanford.futuredata.macrobase.pipeline.PipelineConfig;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+    @Test
+    public void testExpositionFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter requests = registry.counter("requests_total", "Requests", "path");
+        requests.inc("/a");
+        requests.inc(2, "/a");
+        requests.inc("say \"hi\"");
+        MetricsRegistry.Histogram latency = registry.histogram(
+                "latency_seconds", "Latency", new double[]{0.1, 1}, "stage");
+        latency.observe(0.05, "load");
+        latency.observe(0.5, "load");
+        latency.observe(5, "load");
+        registry.gauge("heap_bytes", "Heap", () -> 42);
+        // registering again returns the same metric, or replaces the gauge
+        assertSame(requests, registry.counter("requests_total", "Requests", "path"));
+        registry.gauge("heap_bytes", "Heap", () -> 43);
+
+        List<String> lines = Arrays.asList(registry.scrape().split("\n"));
+        assertTrue(lines.contains("# TYPE requests_total counter"));
+        assertTrue(lines.contains("requests_total{path=\"/a\"} 3"));
+        assertTrue(lines.contains("requests_total{path=\"say \\\"hi\\\"\"} 1"));
+        assertTrue(lines.contains("# TYPE latency_seconds histogram"));
+        assertTrue(lines.contains("latency_seconds_bucket{stage=\"load\",le=\"0.1\"} 1"));
+        assertTrue(lines.contains("latency_seconds_bucket{stage=\"load\",le=\"1\"} 2"));
+        assertTrue(lines.contains("latency_seconds_bucket{stage=\"load\",le=\"+Inf\"} 3"));
+        assertTrue(lines.contains("latency_seconds_sum{stage=\"load\"} 5.55"));
+        assertTrue(lines.contains("latency_seconds_count{stage=\"load\"} 3"));
+        assertTrue(lines.contains("heap_bytes 43"));
+    }
+
+    @Test
+    public void testBadRegistrations() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter c = registry.counter("c", "C", "a", "b");
+        try {
+            c.inc("only one");
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("expects 2"));
+        }
+        try {
+            registry.histogram("c", "C", MetricsRegistry.LATENCY_BUCKETS);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("counter"));
+        }
+    }
+
+    @Test
+    public void testPipelineStages() throws Exception {
+        long loads = PipelineMetrics.STAGE_SECONDS.getCount("BasicBatchPipeline", "load");
+        long summaries = PipelineMetrics.STAGE_SECONDS.getCount("BasicBatchPipeline", "summarize");
+        double rows = PipelineMetrics.ROWS_LOADED.get("csv");
+        double bytes = PipelineMetrics.BYTES_LOADED.get("csv");
+
+        PipelineConfig conf = PipelineConfig.fromYamlFile("src/test/resources/tiny_conf.yaml");
+        new BasicBatchPipeline(conf).results();
+
+        assertEquals(loads + 1, PipelineMetrics.STAGE_SECONDS.getCount("BasicBatchPipeline", "load"));
+        assertEquals(summaries + 1, PipelineMetrics.STAGE_SECONDS.getCount("BasicBatchPipeline", "summarize"));
+        assertEquals(rows + 3, PipelineMetrics.ROWS_LOADED.get("csv"), 1e-10);
+        assertTrue(PipelineMetrics.BYTES_LOADED.get("csv") > bytes);
+        assertTrue(MetricsRegistry.getInstance().scrape().contains(
+                "macrobase_pipeline_stage_seconds_count{pipeline=\"BasicBatchPipeline\",stage=\"load\"}"));
+    }
+}
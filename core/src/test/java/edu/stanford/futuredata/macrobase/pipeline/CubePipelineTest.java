@@ -8,6 +8,9 @@ import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 
 import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 public class CubePipelineTest {
     @Test
@@ -20,4 +23,25 @@ public class CubePipelineTest {
         Explanation e = p.results();
         assertEquals(2328375, e.numTotal(), 1e-10);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRawMetric() throws Exception {
+        Map<String, Object> values = new HashMap<>();
+        values.put("inputURI", "csv://demo/sample.csv");
+        values.put("rawMetric", "usage");
+        values.put("classifier", "arithmetic");
+        values.put("cutoff", 1.0);
+        values.put("attributes", Arrays.asList("location", "version"));
+        values.put("minSupport", 0.2);
+        values.put("minRatioMetric", 10.0);
+        Explanation e = new CubePipeline(new PipelineConfig(values)).results();
+        assertEquals(1057, e.numTotal(), 1e-10);
+
+        values.put("pipeline", "PowerCubePipeline");
+        values.put("ka", 5);
+        values.put("cutoff", 5.0);
+        values.put("minRatioMetric", 1.0);
+        e = new PowerCubePipeline(new PipelineConfig(values)).results();
+        assertEquals(1057, e.numTotal(), 1e-10);
+    }
+}
@@ -0,0 +1,104 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DatasetRegistryTest {
+    @After
+    public void tearDown() {
+        DatasetRegistry.getInstance().clear();
+    }
+
+    @Test
+    public void testPipelineFromRegistry() throws Exception {
+        DatasetRegistry registry = DatasetRegistry.getInstance();
+        Map<String, Schema.ColType> colTypes = new HashMap<>();
+        colTypes.put("usage", Schema.ColType.DOUBLE);
+        colTypes.put("location", Schema.ColType.STRING);
+        colTypes.put("version", Schema.ColType.STRING);
+        DatasetRegistry.DatasetInfo info = registry.load(
+                "tiny", "csv://src/test/resources/tiny.csv", colTypes,
+                null, null, false
+        );
+        assertEquals(3, info.numRows);
+
+        PipelineConfig conf = PipelineConfig.fromYamlFile(
+                "src/test/resources/tiny_conf.yaml"
+        );
+        conf.getValues().put("inputURI", "dataset://tiny");
+        for (int i = 0; i < 2; i++) {
+            Explanation e = new BasicBatchPipeline(conf).results();
+            assertEquals(3.0, e.numTotal(), 1e-10);
+        }
+        assertEquals(2L, (long) registry.getStats().get("hits"));
+
+        // the registered frame is shared, not modified by the pipelines
+        DataFrame df = registry.get("tiny", colTypes, Arrays.asList("usage", "location", "version"));
+        assertEquals(3, df.getSchema().getNumColumns());
+    }
+
+    @Test
+    public void testMissingDataset() throws Exception {
+        DatasetRegistry registry = new DatasetRegistry(1000);
+        try {
+            registry.get("missing", new HashMap<>(), Collections.singletonList("a"));
+            fail();
+        } catch (MacroBaseException e) {
+            assertEquals(1L, (long) registry.getStats().get("misses"));
+        }
+    }
+
+    @Test
+    public void testWrongType() throws Exception {
+        DatasetRegistry registry = new DatasetRegistry(1000);
+        DataFrame df = new DataFrame();
+        df.addColumn("a", new String[]{"x"});
+        registry.register("d", df, null);
+        Map<String, Schema.ColType> colTypes = new HashMap<>();
+        colTypes.put("a", Schema.ColType.DOUBLE);
+        try {
+            registry.get("d", colTypes, Collections.singletonList("a"));
+            fail();
+        } catch (MacroBaseException e) {
+            assertTrue(e.getMessage().contains("DOUBLE"));
+        }
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        DataFrame df = new DataFrame();
+        df.addColumn("a", new double[10]);
+        long size = DatasetRegistry.estimateBytes(df);
+        DatasetRegistry registry = new DatasetRegistry(2 * size);
+
+        registry.register("d1", df, null);
+        registry.register("d2", df, null);
+        // touch d1 so that d2 is least recently used
+        registry.get("d1", new HashMap<>(), Collections.emptyList());
+        registry.register("d3", df, null);
+
+        assertNotNull(registry.getInfo("d1"));
+        assertNull(registry.getInfo("d2"));
+        assertNotNull(registry.getInfo("d3"));
+        assertEquals(1L, (long) registry.getStats().get("evictions"));
+        assertEquals(2 * size, (long) registry.getStats().get("bytes"));
+
+        try {
+            registry.register("big", df.copy().addColumn("b", new double[100]), null);
+            fail();
+        } catch (MacroBaseException e) {
+            assertNotNull(registry.getInfo("d1"));
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.APLExplanation;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+
+public class MultiQueryPipelineTest {
+    @Test
+    public void testMatchesSingleQueries() throws Exception {
+        PipelineConfig base = PipelineConfig.fromYamlFile(
+                "src/test/resources/tiny_conf.yaml"
+        );
+        List<Map<String, Object>> queries = new ArrayList<>();
+        queries.add(new HashMap<>());
+        Map<String, Object> q2 = new HashMap<>();
+        q2.put("attributes", Collections.singletonList("location"));
+        q2.put("cutoff", 50.0);
+        queries.add(q2);
+
+        Map<String, Object> values = new HashMap<>(base.getValues());
+        values.put("pipeline", "MultiQueryPipeline");
+        values.put("queries", queries);
+        Pipeline p = PipelineUtils.createPipeline(new PipelineConfig(values));
+        MultiExplanation e = (MultiExplanation) p.results();
+        assertEquals(2, e.getResults().size());
+        assertEquals(3.0, e.numTotal(), 1e-10);
+
+        for (int i = 0; i < queries.size(); i++) {
+            Map<String, Object> single = new HashMap<>(base.getValues());
+            single.putAll(queries.get(i));
+            APLExplanation expected = (APLExplanation) new BasicBatchPipeline(new PipelineConfig(single)).results();
+            APLExplanation actual = (APLExplanation) e.getResults().get(i);
+            assertEquals(expected.numOutliers(), actual.numOutliers(), 1e-10);
+            assertEquals(expected.getResults().size(), actual.getResults().size());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResultCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PipelineConfig getConf(File csv) throws Exception {
+        Map<String, Object> values = new HashMap<>(PipelineConfig.fromYamlFile(
+                "src/test/resources/tiny_conf.yaml"
+        ).getValues());
+        values.put("inputURI", "csv://" + csv.getPath());
+        return new PipelineConfig(values);
+    }
+
+    private File copyTiny() throws Exception {
+        File f = new File(folder.getRoot(), "tiny.csv");
+        Files.copy(Paths.get("src/test/resources/tiny.csv"), f.toPath());
+        return f;
+    }
+
+    private static Explanation run(ResultCache cache, PipelineConfig conf, AtomicInteger runs) throws Exception {
+        Pipeline p = PipelineUtils.createPipeline(conf);
+        return cache.wrap(conf, () -> {
+            runs.incrementAndGet();
+            return p.results();
+        }).results();
+    }
+
+    @Test
+    public void testHitsAndInvalidation() throws Exception {
+        File csv = copyTiny();
+        ResultCache cache = new ResultCache(10, 0, null);
+        AtomicInteger runs = new AtomicInteger();
+
+        Explanation first = run(cache, getConf(csv), runs);
+        PipelineConfig same = getConf(csv);
+        // scheduling keys and the int/double spelling of numbers don't change the key
+        same.getValues().put("numThreads", 7);
+        same.getValues().put("minRiskRatio", 10);
+        assertSame(first, run(cache, same, runs));
+        assertEquals(1, runs.get());
+
+        PipelineConfig other = getConf(csv);
+        other.getValues().put("minSupport", 0.5);
+        run(cache, other, runs);
+        assertEquals(2, runs.get());
+
+        Files.write(csv.toPath(), "\n4.5,28,CAN".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        Explanation changed = run(cache, getConf(csv), runs);
+        assertEquals(3, runs.get());
+        assertEquals(4.0, changed.numTotal(), 1e-10);
+
+        PipelineConfig noCache = getConf(csv);
+        noCache.getValues().put("useCache", false);
+        run(cache, noCache, runs);
+        assertEquals(4, runs.get());
+
+        Map<String, Long> stats = cache.getStats();
+        assertEquals(1L, (long) stats.get("hits"));
+        assertEquals(3L, (long) stats.get("misses"));
+        assertEquals(1L, (long) stats.get("uncacheable"));
+    }
+
+    @Test
+    public void testEvictionAndExpiry() throws Exception {
+        File csv = copyTiny();
+        ResultCache cache = new ResultCache(1, 200, null);
+        AtomicInteger runs = new AtomicInteger();
+        PipelineConfig a = getConf(csv);
+        PipelineConfig b = getConf(csv);
+        b.getValues().put("minSupport", 0.5);
+
+        run(cache, a, runs);
+        run(cache, b, runs);
+        run(cache, a, runs);
+        assertEquals(3, runs.get());
+        assertEquals(2L, (long) cache.getStats().get("evictions"));
+
+        Thread.sleep(300);
+        run(cache, a, runs);
+        assertEquals(4, runs.get());
+    }
+
+    @Test
+    public void testSurvivesRestart() throws Exception {
+        File csv = copyTiny();
+        String dir = new File(folder.getRoot(), "cache").getPath();
+        AtomicInteger runs = new AtomicInteger();
+        ObjectMapper mapper = new ObjectMapper();
+
+        PipelineConfig apl = getConf(csv);
+        PipelineConfig fpg = getConf(csv);
+        fpg.getValues().put("summarizer", "fpgrowth");
+        Explanation aplResult = run(new ResultCache(10, 0, dir), apl, runs);
+        Explanation fpgResult = run(new ResultCache(10, 0, dir), fpg, runs);
+
+        ResultCache restarted = new ResultCache(10, 0, dir);
+        assertEquals(2L, (long) restarted.getStats().get("entries"));
+        for (Explanation expected : new Explanation[]{aplResult, fpgResult}) {
+            Explanation cached = run(restarted, expected == aplResult ? apl : fpg, runs);
+            assertTrue(cached instanceof CachedExplanation);
+            assertEquals(expected.prettyPrint(), cached.prettyPrint());
+            assertEquals(expected.numTotal(), cached.numTotal(), 1e-10);
+            assertEquals(mapper.readTree(mapper.writeValueAsString(expected)),
+                    mapper.readTree(mapper.writeValueAsString(cached)));
+        }
+        assertEquals(2, runs.get());
+
+        restarted.clear();
+        assertEquals(0L, (long) new ResultCache(10, 0, dir).getStats().get("entries"));
+    }
+
+    @Test
+    public void testDatasetVersionsAcrossRestarts() throws Exception {
+        File csv = copyTiny();
+        String dir = new File(folder.getRoot(), "cache").getPath();
+        AtomicInteger runs = new AtomicInteger();
+        PipelineConfig conf = getConf(csv);
+        Pipeline p = PipelineUtils.createPipeline(conf);
+        DataFrame df = new DataFrame();
+        df.addColumn("location", new String[]{"CAN", "USA"});
+        conf.getValues().put("inputURI", DatasetRegistry.URI_PREFIX + "tiny");
+
+        DatasetRegistry registry = new DatasetRegistry(1 << 20);
+        registry.register("tiny", df, "test");
+        ResultCache cache = new ResultCache(10, 0, dir, registry);
+        cache.wrap(conf, () -> {
+            runs.incrementAndGet();
+            return p.results();
+        }).results();
+        assertEquals(1, runs.get());
+
+        // a new process registers the same name with the same version
+        DatasetRegistry restartedRegistry = new DatasetRegistry(1 << 20);
+        assertEquals(registry.getInfo("tiny").version,
+                restartedRegistry.register("tiny", df, "test").version);
+        ResultCache restarted = new ResultCache(10, 0, dir, restartedRegistry);
+        assertEquals(1L, (long) restarted.getStats().get("entries"));
+        restarted.wrap(conf, () -> {
+            runs.incrementAndGet();
+            return p.results();
+        }).results();
+        assertEquals(2, runs.get());
+        assertEquals(1L, (long) restarted.getStats().get("misses"));
+    }
+
+    @Test
+    public void testHttpValidator() throws Exception {
+        AtomicInteger version = new AtomicInteger(1);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/data", exchange -> {
+            exchange.getResponseHeaders().add("ETag", "\"v" + version.get() + "\"");
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        try {
+            Map<String, Object> values = new HashMap<>();
+            values.put("inputURI", "http://localhost:" + server.getAddress().getPort() + "/data");
+            values.put("restHeader", new HashMap<>());
+            PipelineConfig conf = new PipelineConfig(values);
+            ResultCache cache = new ResultCache(10, 0, null);
+
+            String key = cache.getKey(conf);
+            assertNotNull(key);
+            assertEquals(key, cache.getKey(conf));
+            version.incrementAndGet();
+            assertNotEquals(key, cache.getKey(conf));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
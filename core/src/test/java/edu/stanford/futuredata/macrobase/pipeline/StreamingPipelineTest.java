@@ -0,0 +1,198 @@
+package edu.stanford.futuredata.macrobase.pipeline;
+
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.analysis.summary.fpg.FPGExplanation;
+import edu.stanford.futuredata.macrobase.analysis.summary.fpg.result.FPGAttributeSet;
+import edu.stanford.futuredata.macrobase.ingest.LineStreamReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static org.junit.Assert.*;
+
+public class StreamingPipelineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Rows with attributes a0..a2 and a noise floor of outliers, plus a bug
+     * making every row with a0=x1 and a1=x1 an outlier between rows
+     * bugStart and bugEnd.
+     */
+    private static void writeRows(Writer w, int n, int bugStart, int bugEnd, boolean json) throws Exception {
+        Random r = new Random(0);
+        if (!json) {
+            w.write("time,a0,a1,a2,outlier\n");
+        }
+        for (int i = 0; i < n; i++) {
+            int[] a = {r.nextInt(5), r.nextInt(5), r.nextInt(5)};
+            boolean outlier = r.nextFloat() < 0.01
+                    || (i >= bugStart && i < bugEnd && a[0] == 1 && a[1] == 1);
+            if (json) {
+                w.write(String.format("{\"time\": %d, \"a0\": \"x%d\", \"a1\": \"x%d\", \"a2\": \"x%d\", \"outlier\": %d}\n",
+                        i, a[0], a[1], a[2], outlier ? 1 : 0));
+            } else {
+                w.write(String.format("%d,x%d,x%d,x%d,%d\n", i, a[0], a[1], a[2], outlier ? 1 : 0));
+            }
+        }
+    }
+
+    private static Map<String, Object> getConf(String inputURI) {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("pipeline", "StreamingPipeline");
+        conf.put("inputURI", inputURI);
+        conf.put("classifier", "predicate");
+        conf.put("metric", "outlier");
+        conf.put("predicate", "==");
+        conf.put("cutoff", 1.0);
+        conf.put("attributes", Arrays.asList("a0", "a1", "a2"));
+        conf.put("minSupport", 0.5);
+        conf.put("timeColumn", "time");
+        conf.put("windowLength", 2000);
+        conf.put("slideLength", 1000);
+        conf.put("batchSize", 500);
+        return conf;
+    }
+
+    private static boolean hasBug(FPGExplanation e) {
+        if (e.getItemsets().isEmpty()) {
+            return false;
+        }
+        FPGAttributeSet top = e.getItemsets().get(0);
+        return top.getItems().values().containsAll(Arrays.asList("x1"))
+                && top.getItems().keySet().containsAll(Arrays.asList("a0", "a1"));
+    }
+
+    @Test
+    public void testReplayFile() throws Exception {
+        File f = folder.newFile("stream.csv");
+        try (Writer w = Files.newBufferedWriter(f.toPath(), StandardCharsets.UTF_8)) {
+            writeRows(w, 7000, 2000, 4000, false);
+        }
+        StreamingPipeline p = (StreamingPipeline) PipelineUtils.createPipeline(
+                new PipelineConfig(getConf("csv://" + f.getPath())));
+        List<FPGExplanation> emitted = new ArrayList<>();
+        p.setExplanationListener(e -> emitted.add((FPGExplanation) e));
+        Explanation last = p.results();
+
+        // one explanation per slide
+        assertEquals(7, emitted.size());
+        assertSame(last, emitted.get(emitted.size() - 1));
+        assertEquals(7000, p.getNumRows());
+        assertEquals(2000, emitted.get(3).numTotal(), 1e-10);
+        // windows ending at 3000, 4000 and 5000 overlap the bug
+        for (int i = 0; i < emitted.size(); i++) {
+            assertEquals("window " + i, i >= 2 && i <= 4, hasBug(emitted.get(i)));
+        }
+
+        List<StreamingPipeline.BatchMetrics> metrics = p.getBatchMetrics();
+        assertEquals(p.getNumBatches(), metrics.size());
+        int rows = 0;
+        for (StreamingPipeline.BatchMetrics m : metrics) {
+            rows += m.numRows;
+            assertTrue(m.numRows <= 500);
+        }
+        assertEquals(7000, rows);
+    }
+
+    @Test
+    public void testSocketWithBackpressure() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread sender = new Thread(() -> {
+                try (Socket s = server.accept();
+                     Writer w = new PrintWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+                    writeRows(w, 4000, 1000, 3000, true);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            sender.start();
+
+            Map<String, Object> conf = getConf("socket://localhost:" + server.getLocalPort());
+            conf.put("format", "json");
+            conf.put("maxBufferedRows", 50);
+            conf.put("batchSize", 100);
+            StreamingPipeline p = new StreamingPipeline(new PipelineConfig(conf));
+            List<FPGExplanation> emitted = new ArrayList<>();
+            p.setExplanationListener(e -> emitted.add((FPGExplanation) e));
+            p.results();
+            sender.join();
+
+            assertEquals(4000, p.getNumRows());
+            assertEquals(4, emitted.size());
+            assertTrue(hasBug(emitted.get(1)));
+            for (StreamingPipeline.BatchMetrics m : p.getBatchMetrics()) {
+                assertTrue(m.bufferedRows <= 50);
+            }
+        }
+    }
+
+    @Test
+    public void testTailStops() throws Exception {
+        File f = folder.newFile("tail.csv");
+        try (Writer w = Files.newBufferedWriter(f.toPath(), StandardCharsets.UTF_8)) {
+            writeRows(w, 1500, 0, 0, false);
+        }
+        Map<String, Object> conf = getConf("tail://" + f.getPath());
+        conf.put("idleTimeoutMs", 300);
+        conf.put("batchTimeoutMs", 50);
+        conf.put("pollIntervalMs", 10);
+        StreamingPipeline p = new StreamingPipeline(new PipelineConfig(conf));
+        List<Explanation> emitted = new ArrayList<>();
+        p.setExplanationListener(emitted::add);
+        p.results();
+
+        assertEquals(1500, p.getNumRows());
+        // the first slide, then the partial pane once the stream goes idle
+        assertEquals(2, emitted.size());
+        assertEquals(1500, emitted.get(1).numTotal(), 1e-10);
+    }
+
+    @Test
+    public void testEndOfStreamWithFullQueue() throws Exception {
+        File f = folder.newFile("two.csv");
+        Files.write(f.toPath(), "a\nb\n".getBytes(StandardCharsets.UTF_8));
+
+        // a slow consumer still gets every line and then the end of the stream
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(1);
+        LineStreamReader reader = new LineStreamReader("csv://" + f.getPath(), queue);
+        reader.setPollIntervalMs(10);
+        Thread t = new Thread(reader);
+        t.start();
+        List<String> lines = new ArrayList<>();
+        while (lines.isEmpty() || lines.get(lines.size() - 1) != LineStreamReader.END_OF_STREAM) {
+            Thread.sleep(50);
+            lines.add(queue.take());
+        }
+        assertEquals(Arrays.asList("a", "b", LineStreamReader.END_OF_STREAM), lines);
+        t.join(1000);
+        assertFalse(t.isAlive());
+
+        // once stopped, the reader doesn't wait for a consumer that's gone
+        queue = new ArrayBlockingQueue<>(1);
+        reader = new LineStreamReader("csv://" + f.getPath(), queue);
+        reader.setPollIntervalMs(10);
+        t = new Thread(reader);
+        t.start();
+        while (queue.isEmpty()) {
+            Thread.sleep(10);
+        }
+        reader.stop();
+        t.interrupt();
+        t.join(1000);
+        assertFalse(t.isAlive());
+        assertEquals(LineStreamReader.END_OF_STREAM, queue.peek());
+    }
+}
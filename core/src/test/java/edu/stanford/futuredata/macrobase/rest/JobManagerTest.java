@@ -0,0 +1,110 @@
+package edu.stanford.futuredata.macrobase.rest;
+
+import edu.stanford.futuredata.macrobase.analysis.summary.Explanation;
+import edu.stanford.futuredata.macrobase.pipeline.Pipeline;
+import edu.stanford.futuredata.macrobase.pipeline.PipelineConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class JobManagerTest {
+    private JobManager manager;
+
+    @After
+    public void tearDown() {
+        if (manager != null) {
+            manager.shutdown();
+        }
+    }
+
+    private static Pipeline blockingPipeline(CountDownLatch started, CountDownLatch release) {
+        return () -> {
+            started.countDown();
+            release.await();
+            return null;
+        };
+    }
+
+    @Test
+    public void testRunPipeline() throws Exception {
+        manager = new JobManager(1, 4, 2, 0, 10);
+        PipelineConfig conf = PipelineConfig.fromYamlFile(
+                "src/test/resources/tiny_conf.yaml"
+        );
+        conf.getValues().put("numThreads", 64);
+        QueryJob job = manager.submit(conf);
+        assertEquals(2, job.getNumThreads());
+        assertTrue(job.await(10000));
+        assertEquals(QueryJob.Status.SUCCEEDED, job.getStatus());
+        Explanation e = job.getResult();
+        assertEquals(3.0, e.numTotal(), 1e-10);
+        assertSame(job, manager.getJob(job.getId()));
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        manager = new JobManager(1, 4, 1, 0, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        manager.submit(blockingPipeline(started, release), 0, 1, 0);
+        started.await();
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        QueryJob low = manager.submit(() -> {order.add("low"); return null;}, 0, 1, 0);
+        QueryJob high = manager.submit(() -> {order.add("high"); return null;}, 5, 1, 0);
+        release.countDown();
+        low.await();
+        high.await();
+        assertEquals(2, order.size());
+        assertEquals("high", order.get(0));
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testQueueLimit() throws Exception {
+        manager = new JobManager(1, 1, 1, 0, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        manager.submit(blockingPipeline(started, release), 0, 1, 0);
+        started.await();
+        manager.submit(blockingPipeline(new CountDownLatch(1), release), 0, 1, 0);
+        manager.submit(blockingPipeline(new CountDownLatch(1), release), 0, 1, 0);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        manager = new JobManager(1, 4, 1, 0, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        QueryJob running = manager.submit(blockingPipeline(started, release), 0, 1, 0);
+        started.await();
+        QueryJob queued = manager.submit(blockingPipeline(new CountDownLatch(1), release), 0, 1, 0);
+
+        assertTrue(manager.cancel(queued.getId()));
+        assertEquals(QueryJob.Status.CANCELLED, queued.getStatus());
+        assertTrue(manager.cancel(running.getId()));
+        assertTrue(running.await(1000));
+        assertEquals(QueryJob.Status.CANCELLED, running.getStatus());
+        assertFalse(manager.cancel(running.getId()));
+
+        // the worker is freed once the interrupted pipeline returns
+        QueryJob next = manager.submit(() -> null, 0, 1, 0);
+        assertTrue(next.await(10000));
+        assertEquals(QueryJob.Status.SUCCEEDED, next.getStatus());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        manager = new JobManager(1, 4, 1, 50, 10);
+        CountDownLatch started = new CountDownLatch(1);
+        QueryJob job = manager.submit(blockingPipeline(started, new CountDownLatch(1)), 0, 1, 10000);
+        assertTrue(job.await(10000));
+        assertEquals(QueryJob.Status.TIMED_OUT, job.getStatus());
+    }
+}
@@ -6,6 +6,8 @@ import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.am
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.amoments.EstimatedSupportMetric;
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.amoments.MomentOutlierMetric;
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import msolver.PointMassSolver;
+import msolver.SolverCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +27,7 @@ public class APLArcMomentSummarizer extends APLSummarizer {
     private boolean useCascade = true;
     private boolean useSupport = true;
     private boolean useGlobalRatio = true;
+    private SolverCache<PointMassSolver> solverCache = null;
 
     @Override
     public List<String> getAggregateNames() {
@@ -106,6 +109,7 @@ public class APLArcMomentSummarizer extends APLSummarizer {
         int outlierCountIdx = curCol++;
         for (QualityMetric metric : qualityMetricList) {
             ((MomentOutlierMetric)metric).setOutlierCountIdx(outlierCountIdx);
+            ((MomentOutlierMetric)metric).setSolverCache(solverCache);
         }
 
         return qualityMetricList;
@@ -159,4 +163,5 @@ public class APLArcMomentSummarizer extends APLSummarizer {
     public void setUseCascade(boolean useCascade) { this.useCascade = useCascade; }
     public void setUseSupport(boolean useSupport) { this.useSupport = useSupport; }
     public void setUseGlobalRatio(boolean useGlobalRatio) { this.useGlobalRatio = useGlobalRatio; }
+    public void setSolverCache(SolverCache<PointMassSolver> solverCache) { this.solverCache = solverCache; }
 }
@@ -31,6 +31,18 @@ public class APLExplanationResult {
         this.metrics = metrics;
     }
 
+    /**
+     * @return The same result with only some of its aggregates, e.g. those of one class of outliers
+     * explained along with others.
+     */
+    APLExplanationResult withAggregates(int... aggregateIndices) {
+        final double[] selected = new double[aggregateIndices.length];
+        for (int i = 0; i < aggregateIndices.length; i++) {
+            selected[i] = aggregates[aggregateIndices[i]];
+        }
+        return new APLExplanationResult(metricTypes, matcher, selected, metrics);
+    }
+
     /**
      * @return A Map with each metric value associated with the corresponding name of the metric
      */
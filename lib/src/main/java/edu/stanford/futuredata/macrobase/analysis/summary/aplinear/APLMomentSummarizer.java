@@ -5,6 +5,8 @@ import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.mo
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.moments.EstimatedSupportMetric;
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.moments.MomentOutlierMetric;
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import msolver.ChebyshevMomentSolver2;
+import msolver.SolverCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +30,7 @@ public class APLMomentSummarizer extends APLSummarizer {
     private boolean useCascade = true;
     private boolean useSupport = true;
     private boolean useGlobalRatio = true;
+    private SolverCache<ChebyshevMomentSolver2> solverCache = null;
 
     @Override
     public List<String> getAggregateNames() {
@@ -158,6 +161,7 @@ public class APLMomentSummarizer extends APLSummarizer {
         int outlierCountIdx = curCol++;
         for (QualityMetric metric : qualityMetricList) {
             ((MomentOutlierMetric)metric).setOutlierCountIdx(outlierCountIdx);
+            ((MomentOutlierMetric)metric).setSolverCache(solverCache);
         }
 
         return qualityMetricList;
@@ -224,4 +228,5 @@ public class APLMomentSummarizer extends APLSummarizer {
     public void setUseCascade(boolean useCascade) { this.useCascade = useCascade; }
     public void setUseSupport(boolean useSupport) { this.useSupport = useSupport; }
     public void setUseGlobalRatio(boolean useGlobalRatio) { this.useGlobalRatio = useGlobalRatio; }
+    public void setSolverCache(SolverCache<ChebyshevMomentSolver2> solverCache) { this.solverCache = solverCache; }
 }
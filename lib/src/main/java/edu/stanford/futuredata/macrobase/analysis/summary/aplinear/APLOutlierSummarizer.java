@@ -10,11 +10,17 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Summarizer that works over both cube and row-based labeled ratio-based outlier summarization.
+ *
+ * With several outlier columns, e.g. those of a multi-class SPLIT, each column is a class of
+ * outliers, and all classes are explained in a single pass: the attributes are encoded once, and
+ * the candidates are counted once, with one outlier count per class.
  */
 public class APLOutlierSummarizer extends APLSummarizer {
 
     private Logger log = LoggerFactory.getLogger("APLOutlierSummarizer");
     private String countColumn = null;
+    private List<String> outlierColumns = null;
+    private List<APLExplanation> classExplanations = null;
 
     @Override
     public List<String> getAggregateNames() {
@@ -23,50 +29,73 @@ public class APLOutlierSummarizer extends APLSummarizer {
 
     @Override
     public AggregationOp[] getAggregationOps() {
-        AggregationOp[] curOps = {AggregationOp.SUM, AggregationOp.SUM};
+        // one outlier count per class, then the count
+        AggregationOp[] curOps = new AggregationOp[getNumClasses() + 1];
+        Arrays.fill(curOps, AggregationOp.SUM);
         return curOps;
     }
 
     @Override
     public int[][] getEncoded(List<String[]> columns, DataFrame input) {
+        if (outlierColumns == null) {
+            return encoder.encodeAttributesWithSupport(columns, minOutlierSupport,
+                input.getDoubleColumnByName(outlierColumn));
+        }
         return encoder.encodeAttributesWithSupport(columns, minOutlierSupport,
-            input.getDoubleColumnByName(outlierColumn));
+            getOutlierCols(input));
     }
 
     @Override
     public double[][] getAggregateColumns(DataFrame input) {
-        double[] outlierCol = input.getDoubleColumnByName(outlierColumn);
-        double[] countCol = processCountCol(input, countColumn, outlierCol.length);
+        double[][] outlierCols = outlierColumns == null
+            ? new double[][]{input.getDoubleColumnByName(outlierColumn)}
+            : getOutlierCols(input);
+        double[] countCol = processCountCol(input, countColumn, outlierCols[0].length);
 
-        double[][] aggregateColumns = new double[2][];
-        aggregateColumns[0] = outlierCol;
-        aggregateColumns[1] = countCol;
+        double[][] aggregateColumns = Arrays.copyOf(outlierCols, outlierCols.length + 1);
+        aggregateColumns[outlierCols.length] = countCol;
 
         return aggregateColumns;
     }
 
+    private double[][] getOutlierCols(DataFrame input) {
+        double[][] outlierCols = new double[outlierColumns.size()][];
+        for (int k = 0; k < outlierCols.length; k++) {
+            outlierCols[k] = input.getDoubleColumnByName(outlierColumns.get(k));
+        }
+        return outlierCols;
+    }
+
     @Override
     public List<QualityMetric> getQualityMetricList() {
+        return getQualityMetricList(0, 1);
+    }
+
+    /**
+     * @param outliersIndex index of the outlier count among the aggregates
+     * @param countIndex index of the count among the aggregates
+     */
+    private List<QualityMetric> getQualityMetricList(int outliersIndex, int countIndex) {
         List<QualityMetric> qualityMetricList = new ArrayList<>();
         qualityMetricList.add(
-            new SupportQualityMetric(0)
+            new SupportQualityMetric(outliersIndex)
         );
         switch (ratioMetric) {
             case "risk_ratio":
             case "riskratio":
                 qualityMetricList.add(
-                    new RiskRatioQualityMetric(0, 1));
+                    new RiskRatioQualityMetric(outliersIndex, countIndex));
                 break;
             case "prevalence_ratio":
             case "prevalenceratio":
                 qualityMetricList.add(
-                    new PrevalenceRatioQualityMetric(0, 1));
+                    new PrevalenceRatioQualityMetric(outliersIndex, countIndex));
                 break;
             case "global_ratio":
             case "globalratio":
             default:
                 qualityMetricList.add(
-                    new GlobalRatioQualityMetric(0, 1));
+                    new GlobalRatioQualityMetric(outliersIndex, countIndex));
         }
         return qualityMetricList;
     }
@@ -86,6 +115,78 @@ public class APLOutlierSummarizer extends APLSummarizer {
         return count;
     }
 
+    @Override
+    public void process(DataFrame input) throws Exception {
+        if (outlierColumns == null) {
+            super.process(input);
+            return;
+        }
+        int[][] encoded = encode(input);
+
+        int numClasses = getNumClasses();
+        thresholds = getThresholds();
+        double[] classThresholds = thresholds.stream().mapToDouble(Double::doubleValue).toArray();
+        QualityMetric[][] classQualityMetrics = new QualityMetric[numClasses][];
+        double[][] allClassThresholds = new double[numClasses][];
+        for (int k = 0; k < numClasses; k++) {
+            classQualityMetrics[k] = getQualityMetricList(k, numClasses)
+                .toArray(new QualityMetric[0]);
+            allClassThresholds[k] = classThresholds;
+        }
+        aplKernel = new APrioriLinear(classQualityMetrics, allClassThresholds);
+        aplKernel.setProfile(profile);
+
+        double[][] aggregateColumns = getAggregateColumns(input);
+        List<List<APLExplanationResult>> aplResults = aplKernel.explainClasses(encoded,
+            aggregateColumns,
+            getAggregationOps(),
+            encoder.getNextKey(),
+            maxOrder,
+            numThreads
+        );
+
+        classExplanations = new ArrayList<>(numClasses);
+        for (int k = 0; k < numClasses; k++) {
+            List<APLExplanationResult> classResults = new ArrayList<>(aplResults.get(k).size());
+            for (APLExplanationResult result : aplResults.get(k)) {
+                classResults.add(result.withAggregates(k, numClasses));
+            }
+            log.info("Number of results for {}: {}", outlierColumns.get(k), classResults.size());
+            classExplanations.add(new APLExplanation(
+                encoder,
+                numEvents,
+                (long) getNumberOutliers(new double[][]{aggregateColumns[k]}),
+                getAggregateNames(),
+                Arrays.asList(classQualityMetrics[k]),
+                classResults
+            ));
+        }
+        qualityMetricList = Arrays.asList(classQualityMetrics[0]);
+        explanation = classExplanations.get(0);
+        numOutliers = (long) explanation.numOutliers();
+    }
+
+    /**
+     * @return the number of classes of outliers, i.e. of outlier columns
+     */
+    public int getNumClasses() {
+        return outlierColumns == null ? 1 : outlierColumns.size();
+    }
+
+    /**
+     * Explain several classes of outliers instead of the outlier column, one per column.
+     */
+    public void setOutlierColumns(List<String> outlierColumns) {
+        this.outlierColumns = outlierColumns;
+    }
+
+    /**
+     * @return the explanation of each class of outliers, in the order of the outlier columns
+     */
+    public List<APLExplanation> getClassResults() {
+        return classExplanations == null ? Arrays.asList(explanation) : classExplanations;
+    }
+
     public String getCountColumn() {
         return countColumn;
     }
@@ -4,8 +4,10 @@ import edu.stanford.futuredata.macrobase.analysis.summary.BatchSummarizer;
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.AggregationOp;
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.QualityMetric;
 import edu.stanford.futuredata.macrobase.analysis.summary.util.AttributeEncoder;
+import edu.stanford.futuredata.macrobase.analysis.summary.util.ColumnDictionaryCache;
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.amoments.MomentOutlierMetric;
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.util.OperatorProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,6 +26,9 @@ public abstract class APLSummarizer extends BatchSummarizer {
     APrioriLinear aplKernel;
     List<QualityMetric> qualityMetricList;
     List<Double> thresholds;
+    ColumnDictionaryCache dictionaryCache;
+    int cardinalityHint = 0;
+    OperatorProfile profile = null;
 
     protected long numEvents = 0;
     protected long numOutliers = 0;
@@ -54,14 +59,51 @@ public abstract class APLSummarizer extends BatchSummarizer {
     }
 
 
-    public void process(DataFrame input) throws Exception {
+    /**
+     * Share attribute column encodings with other summarizers over the same data.
+     */
+    public void setDictionaryCache(ColumnDictionaryCache dictionaryCache) {
+        this.dictionaryCache = dictionaryCache;
+    }
+
+    /**
+     * Expected number of distinct values across the attribute columns, used to
+     * size the encoder's hash tables.
+     */
+    public void setCardinalityHint(int cardinalityHint) {
+        this.cardinalityHint = cardinalityHint;
+    }
+
+    /**
+     * Record the encoding of the attributes and the steps of the explanation in profile,
+     * e.g. for EXPLAIN ANALYZE.
+     */
+    public void setProfile(OperatorProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Create the encoder and encode the attributes of the input with {@link #getEncoded}.
+     */
+    protected int[][] encode(DataFrame input) {
         encoder = new AttributeEncoder();
         encoder.setColumnNames(attributes);
+        encoder.setDictionaryCache(dictionaryCache);
+        encoder.setCardinalityHint(cardinalityHint);
+        OperatorProfile.Timer encodeTimer = profile == null ? null : profile.start("DIFF encode");
         long startTime = System.currentTimeMillis();
         int[][] encoded = getEncoded(input.getStringColsByName(attributes), input);
         long elapsed = System.currentTimeMillis() - startTime;
+        if (encodeTimer != null) {
+            encodeTimer.stop(input.getNumRows(), encoder.getNextKey() - 1, 1);
+        }
         log.info("Encoded in: {} ms", elapsed);
         log.info("Encoded Categories: {}", encoder.getNextKey() - 1);
+        return encoded;
+    }
+
+    public void process(DataFrame input) throws Exception {
+        int[][] encoded = encode(input);
 
         thresholds = getThresholds();
         qualityMetricList = getQualityMetricList();
@@ -69,6 +111,7 @@ public abstract class APLSummarizer extends BatchSummarizer {
                 qualityMetricList,
                 thresholds
         );
+        aplKernel.setProfile(profile);
 
         double[][] aggregateColumns = getAggregateColumns(input);
         List<String> aggregateNames = getAggregateNames();
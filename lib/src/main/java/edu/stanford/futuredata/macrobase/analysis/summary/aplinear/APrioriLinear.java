@@ -4,11 +4,16 @@ import edu.stanford.futuredata.macrobase.analysis.summary.util.*;
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.AggregationOp;
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.QualityMetric;
 import edu.stanford.futuredata.macrobase.util.MacroBaseInternalError;
+import edu.stanford.futuredata.macrobase.util.OperatorProfile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.QualityMetric.Action.PRUNE;
 
@@ -17,35 +22,79 @@ import static edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymet
  * This class assumes that subgroups posses "aggregates" such as count and outlier_count
  * which can be combined additively. Then, we use APriori to find the subgroups which
  * are the most interesting as defined by "quality metrics" on these aggregates.
+ *
+ * Interrupting the thread running explain() cancels the search: the candidate
+ * generation threads stop at the next column and explain() throws a
+ * CancellationException with the interrupt flag still set.
+ *
+ * If a profile is set, the preparation of the input, and the candidate counting
+ * and pruning of each order, are recorded as operators.
+ *
+ * Several classes of outliers over the same rows, e.g. those of a multi-class
+ * SPLIT, can be explained at once: each class has its own quality metrics,
+ * which refer to its own aggregate columns. Candidates are generated and
+ * counted once for all classes, in the same hash tables, and pruned separately
+ * for each class, so each class gets the same explanation as on its own.
  */
 public class APrioriLinear {
     private Logger log = LoggerFactory.getLogger("APrioriLinear");
 
-    // **Parameters**
-    private QualityMetric[] qualityMetrics;
-    private double[] thresholds;
+    // **Parameters**, per class
+    private QualityMetric[][] qualityMetrics;
+    private double[][] thresholds;
 
-    // **Cached values**
+    // **Cached values**, per class
     // Singleton viable sets for quick lookup
-    private boolean[] singleNextArray;
+    private boolean[][] singleNextArray;
+    // Singletons that are viable for at least one class
+    private boolean[] anySingleNextArray;
     // Sets that have high enough support but not high qualityMetrics, need to be explored
-    private HashMap<Integer, HashSet<IntSet>> setNext;
+    private List<HashMap<Integer, HashSet<IntSet>>> setNext;
     // Aggregate values for all of the sets we saved
-    private HashMap<Integer, Map<IntSet, double []>> savedAggregates;
+    private List<HashMap<Integer, Map<IntSet, double []>>> savedAggregates;
+    private OperatorProfile profile = null;
 
     public APrioriLinear(
             List<QualityMetric> qualityMetrics,
             List<Double> thresholds
     ) {
-        this.qualityMetrics = qualityMetrics.toArray(new QualityMetric[0]);
-        this.thresholds = new double[thresholds.size()];
-        for (int i = 0; i < thresholds.size(); i++) {
-            this.thresholds[i] = thresholds.get(i);
+        this(
+                new QualityMetric[][]{qualityMetrics.toArray(new QualityMetric[0])},
+                new double[][]{thresholds.stream().mapToDouble(Double::doubleValue).toArray()}
+        );
+    }
+
+    /**
+     * Explain several classes of outliers at once.
+     * @param qualityMetrics The quality metrics of each class.
+     * @param thresholds The thresholds of the quality metrics of each class.
+     */
+    public APrioriLinear(
+            QualityMetric[][] qualityMetrics,
+            double[][] thresholds
+    ) {
+        this.qualityMetrics = qualityMetrics;
+        this.thresholds = thresholds;
+        this.singleNextArray = new boolean[qualityMetrics.length][];
+        this.setNext = new ArrayList<>(qualityMetrics.length);
+        this.savedAggregates = new ArrayList<>(qualityMetrics.length);
+        for (int k = 0; k < qualityMetrics.length; k++) {
+            this.setNext.add(new HashMap<>(3));
+            this.savedAggregates.add(new HashMap<>(3));
         }
-        this.setNext = new HashMap<>(3);
-        this.savedAggregates = new HashMap<>(3);
     }
 
+    /**
+     * Record the steps of explain() in profile, e.g. for EXPLAIN ANALYZE.
+     */
+    public void setProfile(OperatorProfile profile) {
+        this.profile = profile;
+    }
+
+    /**
+     * Explain the only class of outliers, for a kernel created with a single
+     * list of quality metrics.
+     */
     public List<APLExplanationResult> explain(
             final int[][] attributes,
             double[][] aggregateColumns,
@@ -54,6 +103,22 @@ public class APrioriLinear {
             final int maxOrder,
             int numThreads
     ) {
+        return explainClasses(attributes, aggregateColumns, aggregationOps, cardinality,
+                maxOrder, numThreads).get(0);
+    }
+
+    /**
+     * @return The explanation of each class, in the order of their quality metrics.
+     */
+    public List<List<APLExplanationResult>> explainClasses(
+            final int[][] attributes,
+            double[][] aggregateColumns,
+            AggregationOp[] aggregationOps,
+            int cardinality,
+            final int maxOrder,
+            int numThreads
+    ) {
+        final int numClasses = qualityMetrics.length;
         final int numAggregates = aggregateColumns.length;
         final int numRows = aggregateColumns[0].length;
         final int numColumns = attributes[0].length;
@@ -69,6 +134,7 @@ public class APrioriLinear {
             useIntSetAsArray = false;
         }
 
+        OperatorProfile.Timer prepareTimer = profile == null ? null : profile.start("DIFF prepare");
         // Shard the dataset by rows for the threads, but store it by column for fast processing
         final int[][][] byThreadAttributesTranspose =
                 new int[numThreads][numColumns][(numRows + numThreads)/numThreads];
@@ -92,8 +158,10 @@ public class APrioriLinear {
                 globalAggregates[j] = curOp.combine(globalAggregates[j], curColumn[i]);
             }
         }
-        for (QualityMetric q : qualityMetrics) {
-            q.initialize(globalAggregates);
+        for (QualityMetric[] classQualityMetrics : qualityMetrics) {
+            for (QualityMetric q : classQualityMetrics) {
+                q.initialize(globalAggregates);
+            }
         }
 
         // Row store for more convenient access
@@ -103,8 +171,15 @@ public class APrioriLinear {
                 aRows[i][j] = aggregateColumns[j][i];
             }
         }
+        if (prepareTimer != null) {
+            prepareTimer.stop(numRows, numRows, 1);
+        }
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
         for (int curOrder = 1; curOrder <= maxOrder; curOrder++) {
+            checkInterrupted();
             long startTime = System.currentTimeMillis();
+            OperatorProfile.Timer countTimer = profile == null ? null
+                    : profile.start("DIFF order " + curOrder + " counting");
             final int curOrderFinal = curOrder;
             // Initialize per-thread hashmaps.
             final ArrayList<FastFixedHashTable> threadSetAggregates = new ArrayList<>(numThreads);
@@ -126,7 +201,7 @@ public class APrioriLinear {
                     else
                         curCandidate = new IntSetAsArray(0);
                     if (curOrderFinal == 1) {
-                        for (int colNum = 0; colNum < numColumns; colNum++) {
+                        for (int colNum = 0; colNum < numColumns && !cancelled.get(); colNum++) {
                             int[] curColumnAttributes = byThreadAttributesTranspose[curThreadNum][colNum];
                             for (int rowNum = startIndex; rowNum < endIndex; rowNum++) {
                                 // Require that all order-one candidates have minimum support.
@@ -151,17 +226,17 @@ public class APrioriLinear {
                             }
                         }
                     } else if (curOrderFinal == 2) {
-                        for (int colNumOne = 0; colNumOne < numColumns; colNumOne++) {
+                        for (int colNumOne = 0; colNumOne < numColumns && !cancelled.get(); colNumOne++) {
                             int[] curColumnOneAttributes = byThreadAttributesTranspose[curThreadNum][colNumOne];
-                            for (int colNumTwo = colNumOne + 1; colNumTwo < numColumns; colNumTwo++) {
+                            for (int colNumTwo = colNumOne + 1; colNumTwo < numColumns && !cancelled.get(); colNumTwo++) {
                                 int[] curColumnTwoAttributes = byThreadAttributesTranspose[curThreadNum][colNumTwo];
                                 for (int rowNum = startIndex; rowNum < endIndex; rowNum++) {
                                     int rowNumInCol = rowNum - startIndex;
                                     // Only examine a pair if both its members have minimum support.
                                     if (curColumnOneAttributes[rowNumInCol] == AttributeEncoder.noSupport
                                             || curColumnTwoAttributes[rowNumInCol] == AttributeEncoder.noSupport
-                                            || !singleNextArray[curColumnOneAttributes[rowNumInCol]]
-                                            || !singleNextArray[curColumnTwoAttributes[rowNumInCol]])
+                                            || !anySingleNextArray[curColumnOneAttributes[rowNumInCol]]
+                                            || !anySingleNextArray[curColumnTwoAttributes[rowNumInCol]])
                                         continue;
                                     // Cascade to arrays if necessary, but otherwise pack attributes into longs.
                                     if (useIntSetAsArray) {
@@ -185,9 +260,9 @@ public class APrioriLinear {
                             }
                         }
                     } else if (curOrderFinal == 3) {
-                        for (int colNumOne = 0; colNumOne < numColumns; colNumOne++) {
+                        for (int colNumOne = 0; colNumOne < numColumns && !cancelled.get(); colNumOne++) {
                             int[] curColumnOneAttributes = byThreadAttributesTranspose[curThreadNum][colNumOne % numColumns];
-                            for (int colNumTwo = colNumOne + 1; colNumTwo < numColumns; colNumTwo++) {
+                            for (int colNumTwo = colNumOne + 1; colNumTwo < numColumns && !cancelled.get(); colNumTwo++) {
                                 int[] curColumnTwoAttributes = byThreadAttributesTranspose[curThreadNum][colNumTwo % numColumns];
                                 for (int colnumThree = colNumTwo + 1; colnumThree < numColumns; colnumThree++) {
                                     int[] curColumnThreeAttributes = byThreadAttributesTranspose[curThreadNum][colnumThree % numColumns];
@@ -197,9 +272,9 @@ public class APrioriLinear {
                                         if (curColumnOneAttributes[rowNumInCol] == AttributeEncoder.noSupport
                                                 || curColumnTwoAttributes[rowNumInCol] == AttributeEncoder.noSupport
                                                 || curColumnThreeAttributes[rowNumInCol] == AttributeEncoder.noSupport
-                                                || !singleNextArray[curColumnThreeAttributes[rowNumInCol]]
-                                                || !singleNextArray[curColumnOneAttributes[rowNumInCol]]
-                                                || !singleNextArray[curColumnTwoAttributes[rowNumInCol]])
+                                                || !anySingleNextArray[curColumnThreeAttributes[rowNumInCol]]
+                                                || !anySingleNextArray[curColumnOneAttributes[rowNumInCol]]
+                                                || !anySingleNextArray[curColumnTwoAttributes[rowNumInCol]])
                                             continue;
                                         // Cascade to arrays if necessary, but otherwise pack attributes into longs.
                                         if (useIntSetAsArray) {
@@ -232,16 +307,27 @@ public class APrioriLinear {
                     }
                     log.debug("Time spent in Thread {} in order {}:  {} ms",
                             curThreadNum, curOrderFinal, System.currentTimeMillis() - startTime);
-                    doneSignal.countDown();
                 };
-                // Run numThreads lambdas in separate threads
-                Thread APrioriLinearThread = new Thread(APrioriLinearRunnable);
+                // Run numThreads lambdas in separate threads, counting down once the
+                // allocations of each have been counted
+                final Runnable countedRunnable = OperatorProfile.countAllocations(APrioriLinearRunnable);
+                Thread APrioriLinearThread = new Thread(() -> {
+                    try {
+                        countedRunnable.run();
+                    } finally {
+                        doneSignal.countDown();
+                    }
+                });
                 APrioriLinearThread.start();
             }
             // Wait for all threads to finish running.
             try {
                 doneSignal.await();
-            } catch (InterruptedException ex) {ex.printStackTrace();}
+            } catch (InterruptedException ex) {
+                cancelled.set(true);
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Explanation cancelled in order " + curOrder);
+            }
 
 
             Map<IntSet, double []> setAggregates = new HashMap<>();
@@ -278,27 +364,30 @@ public class APrioriLinear {
                 }
             }
 
-            // Prune all the collected aggregates
-            HashSet<IntSet> curOrderNext = new HashSet<>();
-            HashSet<IntSet> curOrderSaved = new HashSet<>();
-            for (IntSet curCandidate: setAggregates.keySet()) {
-                QualityMetric.Action action = QualityMetric.Action.KEEP;
-                if (curOrder == 1 && curCandidate.getFirst() == AttributeEncoder.noSupport) {
-                    action = PRUNE;
-                } else {
-                    double[] curAggregates = setAggregates.get(curCandidate);
-                    for (int i = 0; i < qualityMetrics.length; i++) {
-                        QualityMetric q = qualityMetrics[i];
-                        double t = thresholds[i];
-                        QualityMetric.Action curAction = q.getAction(curAggregates, t);
-                        action = QualityMetric.Action.combine(action, curAction);
-                        if (action == PRUNE) {
-                            break;
-                        }
-                    }
+            if (countTimer != null) {
+                countTimer.stop(numRows, setAggregates.size(), numThreads);
+            }
+
+            // Prune all the collected aggregates, separately for each class
+            OperatorProfile.Timer pruneTimer = profile == null ? null
+                    : profile.start("DIFF order " + curOrder + " prune");
+            IntSet[] allCandidates = setAggregates.keySet().toArray(new IntSet[0]);
+            int numPruned = 0;
+            int numKept = 0;
+            for (int k = 0; k < numClasses; k++) {
+                HashSet<IntSet> curOrderNext = new HashSet<>();
+                HashSet<IntSet> curOrderSaved = new HashSet<>();
+                IntSet[] candidates = numClasses == 1 ? allCandidates
+                        : getClassCandidates(allCandidates, curOrder, singleNextArray[k]);
+                QualityMetric.Action[] actions = pruneCandidates(
+                        k, candidates, setAggregates, curOrder, numThreads
+                );
+                for (int c = 0; c < candidates.length; c++) {
+                    IntSet curCandidate = candidates[c];
+                    QualityMetric.Action action = actions[c];
                     if (action == QualityMetric.Action.KEEP) {
                         // Make sure the candidate isn't already covered by a pair
-                        if (curOrder != 3 || validateCandidate(curCandidate, setNext.get(2))) {
+                        if (curOrder != 3 || validateCandidate(curCandidate, setNext.get(k).get(2))) {
                             // if a set is already past the threshold on all metrics,
                             // save it and no need for further exploration if we do containment
                             curOrderSaved.add(curCandidate);
@@ -309,39 +398,217 @@ public class APrioriLinear {
                         curOrderNext.add(curCandidate);
                     }
                 }
-            }
 
-            // Save aggregates that pass all qualityMetrics to return later, store aggregates
-            // that have minimum support for higher-order exploration.
-            Map<IntSet, double []> curSavedAggregates = new HashMap<>(curOrderSaved.size());
-            for (IntSet curSaved : curOrderSaved) {
-                curSavedAggregates.put(curSaved, setAggregates.get(curSaved));
+                // Save aggregates that pass all qualityMetrics to return later, store aggregates
+                // that have minimum support for higher-order exploration.
+                Map<IntSet, double []> curSavedAggregates = new HashMap<>(curOrderSaved.size());
+                for (IntSet curSaved : curOrderSaved) {
+                    curSavedAggregates.put(curSaved, setAggregates.get(curSaved));
+                }
+                savedAggregates.get(k).put(curOrder, curSavedAggregates);
+                setNext.get(k).put(curOrder, curOrderNext);
+                numPruned += candidates.length;
+                numKept += curOrderSaved.size() + curOrderNext.size();
+                if (curOrder == 1) {
+                    singleNextArray[k] = new boolean[cardinality];
+                    for (IntSet i : curOrderNext) {
+                        singleNextArray[k][i.getFirst()] = true;
+                    }
+                }
+            }
+            if (pruneTimer != null) {
+                pruneTimer.stop(numPruned, numKept,
+                        Math.max(1, Math.min(numThreads, allCandidates.length)));
             }
-            savedAggregates.put(curOrder, curSavedAggregates);
-            setNext.put(curOrder, curOrderNext);
             if (curOrder == 1) {
-                singleNextArray = new boolean[cardinality];
-                for (IntSet i : curOrderNext) {
-                    singleNextArray[i.getFirst()] = true;
+                anySingleNextArray = new boolean[cardinality];
+                for (boolean[] classSingleNextArray : singleNextArray) {
+                    for (int i = 0; i < cardinality; i++) {
+                        anySingleNextArray[i] |= classSingleNextArray[i];
+                    }
                 }
             }
         }
 
-        List<APLExplanationResult> results = new ArrayList<>();
-        for (int curOrder: savedAggregates.keySet()) {
-            Map<IntSet, double []> curOrderSavedAggregates = savedAggregates.get(curOrder);
-            for (IntSet curSet : curOrderSavedAggregates.keySet()) {
-                double[] aggregates = curOrderSavedAggregates.get(curSet);
-                double[] metrics = new double[qualityMetrics.length];
-                for (int i = 0; i < metrics.length; i++) {
-                    metrics[i] = qualityMetrics[i].value(aggregates);
+        List<List<APLExplanationResult>> classResults = new ArrayList<>(numClasses);
+        for (int k = 0; k < numClasses; k++) {
+            QualityMetric[] classQualityMetrics = qualityMetrics[k];
+            List<APLExplanationResult> results = new ArrayList<>();
+            for (int curOrder: savedAggregates.get(k).keySet()) {
+                Map<IntSet, double []> curOrderSavedAggregates = savedAggregates.get(k).get(curOrder);
+                for (IntSet curSet : curOrderSavedAggregates.keySet()) {
+                    double[] aggregates = curOrderSavedAggregates.get(curSet);
+                    double[] metrics = new double[classQualityMetrics.length];
+                    for (int i = 0; i < metrics.length; i++) {
+                        metrics[i] = classQualityMetrics[i].value(aggregates);
+                    }
+                    results.add(
+                            new APLExplanationResult(classQualityMetrics, curSet, aggregates, metrics)
+                    );
                 }
-                results.add(
-                        new APLExplanationResult(qualityMetrics, curSet, aggregates, metrics)
-                );
             }
+            classResults.add(results);
+        }
+        return classResults;
+    }
+
+    /**
+     * The candidates counted for all classes include those whose singletons
+     * are viable for another class only; drop them, as counting for this class
+     * alone would never have generated them.
+     * @param singleNextArray The singletons that are viable for this class.
+     * @return The candidates whose singletons are all viable for this class.
+     */
+    private static IntSet[] getClassCandidates(
+            IntSet[] candidates,
+            int curOrder,
+            boolean[] singleNextArray
+    ) {
+        if (curOrder == 1) {
+            return candidates;
+        }
+        List<IntSet> classCandidates = new ArrayList<>(candidates.length);
+        for (IntSet candidate : candidates) {
+            if (singleNextArray[candidate.getFirst()]
+                    && singleNextArray[candidate.getSecond()]
+                    && (curOrder == 2 || singleNextArray[candidate.getThird()])) {
+                classCandidates.add(candidate);
+            }
+        }
+        return classCandidates.toArray(new IntSet[0]);
+    }
+
+    /**
+     * Decide the action for every candidate in two passes. The first runs each
+     * metric's cheap checks over all candidates and settles most of them, in
+     * particular any candidate pruned by a cheap check of one metric never
+     * reaches an expensive check of another. The candidates left over, e.g.
+     * ones that need a moment solve, are then spread over numThreads threads.
+     */
+    private QualityMetric.Action[] pruneCandidates(
+            int classIndex,
+            IntSet[] candidates,
+            Map<IntSet, double[]> setAggregates,
+            int curOrder,
+            int numThreads
+    ) {
+        final QualityMetric[] classQualityMetrics = qualityMetrics[classIndex];
+        final double[] classThresholds = thresholds[classIndex];
+        final int numCandidates = candidates.length;
+        final int numMetrics = classQualityMetrics.length;
+        final QualityMetric.Action[] actions = new QualityMetric.Action[numCandidates];
+        final double[][] candidateAggregates = new double[numCandidates][];
+        // per candidate, which metrics still need a full check
+        final boolean[][] pending = new boolean[numCandidates][];
+        final int[] undecided = new int[numCandidates];
+        int numUndecided = 0;
+
+        for (int c = 0; c < numCandidates; c++) {
+            if ((c & 1023) == 0) {
+                checkInterrupted();
+            }
+            if (curOrder == 1 && candidates[c].getFirst() == AttributeEncoder.noSupport) {
+                actions[c] = PRUNE;
+                continue;
+            }
+            double[] curAggregates = setAggregates.get(candidates[c]);
+            candidateAggregates[c] = curAggregates;
+            QualityMetric.Action action = QualityMetric.Action.KEEP;
+            boolean[] curPending = null;
+            for (int i = 0; i < numMetrics; i++) {
+                QualityMetric.Action curAction = classQualityMetrics[i].getCheapAction(curAggregates, classThresholds[i]);
+                if (curAction == null) {
+                    if (curPending == null) {
+                        curPending = new boolean[numMetrics];
+                    }
+                    curPending[i] = true;
+                    continue;
+                }
+                action = QualityMetric.Action.combine(action, curAction);
+                if (action == PRUNE) {
+                    break;
+                }
+            }
+            actions[c] = action;
+            if (action != PRUNE && curPending != null) {
+                pending[c] = curPending;
+                undecided[numUndecided++] = c;
+            }
+        }
+
+        final int numExpensive = numUndecided;
+        final int numWorkers = Math.max(1, Math.min(numThreads, numExpensive));
+        if (numWorkers == 1) {
+            for (int k = 0; k < numExpensive; k++) {
+                // metric cascades can be slow (e.g. moment solves) so check per candidate
+                checkInterrupted();
+                int c = undecided[k];
+                actions[c] = fullAction(classIndex, actions[c], candidateAggregates[c], pending[c]);
+            }
+            return actions;
+        }
+
+        final AtomicInteger nextCandidate = new AtomicInteger(0);
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final AtomicReference<RuntimeException> error = new AtomicReference<>();
+        final CountDownLatch doneSignal = new CountDownLatch(numWorkers);
+        for (int t = 0; t < numWorkers; t++) {
+            // candidates are handed out one at a time since solve times vary widely
+            Runnable pruneRunnable = () -> {
+                try {
+                    int k;
+                    while (!cancelled.get() && (k = nextCandidate.getAndIncrement()) < numExpensive) {
+                        int c = undecided[k];
+                        actions[c] = fullAction(classIndex, actions[c], candidateAggregates[c], pending[c]);
+                    }
+                } catch (RuntimeException e) {
+                    error.compareAndSet(null, e);
+                    cancelled.set(true);
+                }
+            };
+            final Runnable countedRunnable = OperatorProfile.countAllocations(pruneRunnable);
+            Thread pruneThread = new Thread(() -> {
+                try {
+                    countedRunnable.run();
+                } finally {
+                    doneSignal.countDown();
+                }
+            });
+            pruneThread.start();
+        }
+        try {
+            doneSignal.await();
+        } catch (InterruptedException ex) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Explanation cancelled while pruning order " + curOrder);
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return actions;
+    }
+
+    private QualityMetric.Action fullAction(
+            int classIndex,
+            QualityMetric.Action action,
+            double[] aggregates,
+            boolean[] pending
+    ) {
+        QualityMetric[] classQualityMetrics = qualityMetrics[classIndex];
+        for (int i = 0; i < classQualityMetrics.length && action != PRUNE; i++) {
+            if (pending[i]) {
+                action = QualityMetric.Action.combine(action,
+                        classQualityMetrics[i].getExpensiveAction(aggregates, thresholds[classIndex][i]));
+            }
+        }
+        return action;
+    }
+
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Explanation cancelled");
         }
-        return results;
     }
 
     /**
@@ -19,6 +19,8 @@ public class AttributeEncoder {
     private HashMap<Integer, String> valueDecoder;
     private HashMap<Integer, Integer> columnDecoder;
     private List<String> colNames;
+    private ColumnDictionaryCache dictionaryCache;
+    private int cardinalityHint = 0;
 
     public AttributeEncoder() {
         encoder = new HashMap<>();
@@ -31,6 +33,35 @@ public class AttributeEncoder {
         this.colNames = colNames;
     }
 
+    /**
+     * Encode from cached column dictionaries instead of hashing the strings
+     * again. Requires the column names to be set. The resulting encoding is
+     * the same up to the order of ties in support.
+     */
+    public void setDictionaryCache(ColumnDictionaryCache dictionaryCache) {
+        this.dictionaryCache = dictionaryCache;
+    }
+
+    /**
+     * Expected number of distinct values across all columns, e.g. from table
+     * statistics, used to size hash tables up front instead of growing them.
+     */
+    public void setCardinalityHint(int cardinalityHint) {
+        this.cardinalityHint = cardinalityHint;
+    }
+
+    private boolean useDictionaries(List<String[]> columns) {
+        return dictionaryCache != null && colNames != null && colNames.size() == columns.size();
+    }
+
+    private List<ColumnDictionaryCache.Dictionary> getDictionaries(List<String[]> columns) {
+        List<ColumnDictionaryCache.Dictionary> dictionaries = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            dictionaries.add(dictionaryCache.get(colNames.get(i), columns.get(i)));
+        }
+        return dictionaries;
+    }
+
     public int decodeColumn(int i) {return columnDecoder.get(i);}
     public String decodeColumnName(int i) {return colNames.get(columnDecoder.get(i));}
     public String decodeValue(int i) {return valueDecoder.get(i);}
@@ -48,45 +79,65 @@ public class AttributeEncoder {
      * @return A two-dimensional array of encoded values.
      */
     public int[][] encodeAttributesWithSupport(List<String[]> columns, double minSupport, double[] outlierColumn) {
+        return encodeAttributesWithSupport(columns, minSupport, new double[][]{outlierColumn});
+    }
+
+    /**
+     * Same as encodeAttributesWithSupport, for several classes of outliers over the same rows,
+     * e.g. those of a multi-class SPLIT. A value is encoded if it satisfies the minimum support
+     * among the outliers of at least one class, and ranked by its number of outliers across
+     * all classes.
+     * @param outlierColumns The ith value of the jth array is the number of outliers of class j
+     *                       whose attributes are those of row i of columns.
+     */
+    public int[][] encodeAttributesWithSupport(List<String[]> columns, double minSupport, double[][] outlierColumns) {
         if (columns.isEmpty()) {
             return new int[0][0];
         }
 
         int numColumns = columns.size();
         int numRows = columns.get(0).length;
+        int numClasses = outlierColumns.length;
 
         for (int i = 0; i < numColumns; i++) {
             if (!encoder.containsKey(i)) {
                 encoder.put(i, new HashMap<>());
             }
         }
+        if (useDictionaries(columns)) {
+            return encodeDictionariesWithSupport(getDictionaries(columns), minSupport, outlierColumns);
+        }
         // Create a map from strings to the number of times
-        // each string appears in an outlier.
-        int numOutliers = 0;
-        HashMap<String, Double> countMap = new HashMap<>();
+        // each string appears in an outlier of each class, followed by the total.
+        int[] numOutliers = new int[numClasses];
+        HashMap<String, double[]> countMap = new HashMap<>(Math.max(16, cardinalityHint * 4 / 3 + 1));
         for (int colIdx = 0; colIdx < numColumns; colIdx++) {
             String[] curCol = columns.get(colIdx);
             for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
-                if (outlierColumn[rowIdx] > 0.0) {
-                    if (colIdx == 0)
-                        numOutliers += outlierColumn[rowIdx];
-                    String colVal = Integer.toString(colIdx) + curCol[rowIdx];
-                    Double curCount = countMap.get(colVal);
-                    if (curCount == null)
-                        countMap.put(colVal, outlierColumn[rowIdx]);
-                    else
-                        countMap.put(colVal, curCount + outlierColumn[rowIdx]);
+                double[] curCounts = null;
+                for (int k = 0; k < numClasses; k++) {
+                    double numRowOutliers = outlierColumns[k][rowIdx];
+                    if (numRowOutliers > 0.0) {
+                        if (colIdx == 0)
+                            numOutliers[k] += numRowOutliers;
+                        if (curCounts == null) {
+                            String colVal = Integer.toString(colIdx) + curCol[rowIdx];
+                            curCounts = countMap.computeIfAbsent(colVal, v -> new double[numClasses + 1]);
+                        }
+                        curCounts[k] += numRowOutliers;
+                        curCounts[numClasses] += numRowOutliers;
+                    }
                 }
             }
         }
 
         // Rank the strings that have minimum support among the outliers
         // by the amount of support they have.
-        double minSupportThreshold = minSupport * numOutliers;
         List<String> filterOnMinSupport = countMap.keySet().stream()
-                .filter(line -> countMap.get(line) >= minSupportThreshold)
+                .filter(line -> hasSupport(countMap.get(line), minSupport, numOutliers))
                 .collect(Collectors.toList());
-        filterOnMinSupport.sort((s1, s2) -> countMap.get(s2).compareTo(countMap.get(s1)));
+        filterOnMinSupport.sort((s1, s2) -> Double.compare(
+                countMap.get(s2)[numClasses], countMap.get(s1)[numClasses]));
 
         HashMap<String, Integer> stringToRank = new HashMap<>(filterOnMinSupport.size());
         for (int i = 0; i < filterOnMinSupport.size(); i++) {
@@ -121,6 +172,19 @@ public class AttributeEncoder {
         return encodedAttributes;
     }
 
+    /**
+     * @param counts number of outliers of each class with a value, followed by the total
+     * @return true if the value has minimum support among the outliers of at least one class
+     */
+    private static boolean hasSupport(double[] counts, double minSupport, int[] numOutliers) {
+        for (int k = 0; k < numOutliers.length; k++) {
+            if (counts[k] > 0.0 && counts[k] >= minSupport * numOutliers[k]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public int[][] encodeAttributesAsArray(List<String[]> columns) {
         if (columns.isEmpty()) {
             return new int[0][0];
@@ -136,6 +200,19 @@ public class AttributeEncoder {
         }
 
         int[][] encodedAttributes = new int[numRows][numColumns];
+        if (useDictionaries(columns)) {
+            List<ColumnDictionaryCache.Dictionary> dictionaries = getDictionaries(columns);
+            for (int colIdx = 0; colIdx < numColumns; colIdx++) {
+                // codes are in order of first appearance, so keys are assigned
+                // in the same order as the row by row loop below
+                int[] keys = getKeys(colIdx, dictionaries.get(colIdx).values, null);
+                int[] codes = dictionaries.get(colIdx).codes;
+                for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
+                    encodedAttributes[rowIdx][colIdx] = keys[codes[rowIdx]];
+                }
+            }
+            return encodedAttributes;
+        }
 
         for (int colIdx = 0; colIdx < numColumns; colIdx++) {
             Map<String, Integer> curColEncoder = encoder.get(colIdx);
@@ -156,6 +233,98 @@ public class AttributeEncoder {
         return encodedAttributes;
     }
 
+    /**
+     * Same as encodeAttributesWithSupport, but counts outliers per dictionary
+     * code instead of per concatenated column and value string.
+     */
+    private int[][] encodeDictionariesWithSupport(
+            List<ColumnDictionaryCache.Dictionary> dictionaries,
+            double minSupport,
+            double[][] outlierColumns
+    ) {
+        int numColumns = dictionaries.size();
+        int numRows = outlierColumns[0].length;
+        int numClasses = outlierColumns.length;
+
+        // per column and code, the number of outliers of each class followed by the total
+        int[] numOutliers = new int[numClasses];
+        double[][][] outlierCounts = new double[numColumns][][];
+        for (int colIdx = 0; colIdx < numColumns; colIdx++) {
+            int[] codes = dictionaries.get(colIdx).codes;
+            double[][] counts = new double[dictionaries.get(colIdx).values.length][numClasses + 1];
+            for (int k = 0; k < numClasses; k++) {
+                double[] outlierColumn = outlierColumns[k];
+                for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
+                    if (outlierColumn[rowIdx] > 0.0) {
+                        if (colIdx == 0)
+                            numOutliers[k] += outlierColumn[rowIdx];
+                        counts[codes[rowIdx]][k] += outlierColumn[rowIdx];
+                        counts[codes[rowIdx]][numClasses] += outlierColumn[rowIdx];
+                    }
+                }
+            }
+            outlierCounts[colIdx] = counts;
+        }
+
+        // Rank the (column, code) pairs that have minimum support among the outliers
+        List<int[]> supported = new ArrayList<>();
+        for (int colIdx = 0; colIdx < numColumns; colIdx++) {
+            double[][] counts = outlierCounts[colIdx];
+            for (int code = 0; code < counts.length; code++) {
+                if (hasSupport(counts[code], minSupport, numOutliers)) {
+                    supported.add(new int[]{colIdx, code});
+                }
+            }
+        }
+        supported.sort((a, b) -> Double.compare(
+                outlierCounts[b[0]][b[1]][numClasses], outlierCounts[a[0]][a[1]][numClasses]));
+        int[][] ranks = new int[numColumns][];
+        for (int colIdx = 0; colIdx < numColumns; colIdx++) {
+            ranks[colIdx] = new int[outlierCounts[colIdx].length];
+        }
+        for (int i = 0; i < supported.size(); i++) {
+            int[] pair = supported.get(i);
+            ranks[pair[0]][pair[1]] = i + 1;
+        }
+
+        int[][] encodedAttributes = new int[numRows][numColumns];
+        for (int colIdx = 0; colIdx < numColumns; colIdx++) {
+            int[] keys = getKeys(colIdx, dictionaries.get(colIdx).values, ranks[colIdx]);
+            int[] codes = dictionaries.get(colIdx).codes;
+            for (int rowIdx = 0; rowIdx < numRows; rowIdx++) {
+                encodedAttributes[rowIdx][colIdx] = keys[codes[rowIdx]];
+            }
+        }
+        return encodedAttributes;
+    }
+
+    /**
+     * Registers the values of a column dictionary with the encoder.
+     * @param ranks key of each value, 0 for noSupport. null to assign keys sequentially.
+     * @return key of each dictionary code
+     */
+    private int[] getKeys(int colIdx, String[] values, int[] ranks) {
+        Map<String, Integer> curColEncoder = encoder.get(colIdx);
+        int[] keys = new int[values.length];
+        for (int code = 0; code < values.length; code++) {
+            String colVal = values[code];
+            Integer curKey = curColEncoder.get(colVal);
+            if (curKey == null) {
+                if (ranks == null || ranks[code] > 0) {
+                    curKey = ranks == null ? nextKey : ranks[code];
+                    valueDecoder.put(curKey, colVal);
+                    columnDecoder.put(curKey, colIdx);
+                    nextKey++;
+                } else {
+                    curKey = noSupport;
+                }
+                curColEncoder.put(colVal, curKey);
+            }
+            keys[code] = curKey;
+        }
+        return keys;
+    }
+
     public List<int[]> encodeAttributes(List<String[]> columns) {
         if (columns.isEmpty()) {
             return new ArrayList<>();
@@ -0,0 +1,62 @@
+package edu.stanford.futuredata.macrobase.analysis.summary.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encodings of attribute columns that can be shared by summarizers
+ * running over the same data, so that each distinct attribute column is only
+ * hashed once no matter how many queries use it.
+ *
+ * Entries are keyed by column name and only reused for the same backing
+ * array, so frames sharing columns through DataFrame.copy() or project() hit
+ * the cache while a different column with the same name does not.
+ */
+public class ColumnDictionaryCache {
+    public static class Dictionary {
+        private final String[] column;
+        // code of each row, codes are assigned in order of first appearance
+        public final int[] codes;
+        public final String[] values;
+
+        Dictionary(String[] column, int[] codes, String[] values) {
+            this.column = column;
+            this.codes = codes;
+            this.values = values;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Dictionary> dictionaries = new ConcurrentHashMap<>();
+
+    public Dictionary get(String columnName, String[] column) {
+        Dictionary d = dictionaries.get(columnName);
+        if (d != null && d.column == column) {
+            return d;
+        }
+        d = encode(column);
+        dictionaries.put(columnName, d);
+        return d;
+    }
+
+    public int size() {
+        return dictionaries.size();
+    }
+
+    public static Dictionary encode(String[] column) {
+        HashMap<String, Integer> codeMap = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        int[] codes = new int[column.length];
+        for (int i = 0; i < column.length; i++) {
+            Integer code = codeMap.get(column[i]);
+            if (code == null) {
+                code = values.size();
+                codeMap.put(column[i], code);
+                values.add(column[i]);
+            }
+            codes[i] = code;
+        }
+        return new Dictionary(column, codes, values.toArray(new String[0]));
+    }
+}
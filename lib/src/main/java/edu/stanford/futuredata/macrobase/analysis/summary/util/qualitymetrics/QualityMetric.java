@@ -49,6 +49,26 @@ public interface QualityMetric {
         }
     }
 
+    /**
+     * Action decided by checks that are cheap relative to getAction, e.g.
+     * closed form bounds instead of a solve. APrioriLinear runs these for every
+     * candidate first and only hands the undecided ones to getAction, possibly
+     * on several threads at once.
+     * @return null if getAction has to do the expensive work
+     */
+    default Action getCheapAction(double[] aggregates, double threshold) {
+        return getAction(aggregates, threshold);
+    }
+
+    /**
+     * Action of a candidate for which getCheapAction returned null, so
+     * implementations can skip the cheap checks and go straight to the
+     * expensive work.
+     */
+    default Action getExpensiveAction(double[] aggregates, double threshold) {
+        return getAction(aggregates, threshold);
+    }
+
     default boolean isPastThreshold(double[] aggregates, double threshold) {
         return value(aggregates) >= threshold;
     }
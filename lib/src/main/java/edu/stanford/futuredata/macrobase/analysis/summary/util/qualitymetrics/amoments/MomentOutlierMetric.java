@@ -1,13 +1,16 @@
 package edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.amoments;
 
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.QualityMetric;
+import msolver.PointMassSolver;
 import msolver.PMomentSolverBuilder;
+import msolver.SolverCache;
 import msolver.struct.ArcSinhMomentStruct;
 import org.apache.commons.math3.util.FastMath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * Quality metric used in the power cube pipeline. Uses min, max and moments.
@@ -24,10 +27,12 @@ public abstract class MomentOutlierMetric implements QualityMetric {
     double cutoff;
     double globalOutlierCount;
 
-    private int[] callTypeCount = new int[4];
+    // updated by concurrent pruning threads
+    private AtomicIntegerArray callTypeCount = new AtomicIntegerArray(4);
 
     private double tolerance = 1e-9;
     private boolean useCascade = true;
+    private SolverCache<PointMassSolver> solverCache;
 
     MomentOutlierMetric(double quantile, int k) {
         this.quantile = quantile;
@@ -35,10 +40,18 @@ public abstract class MomentOutlierMetric implements QualityMetric {
     }
 
     protected PMomentSolverBuilder getBuilderFromAggregates(double[] aggregates) {
-        PMomentSolverBuilder b = new PMomentSolverBuilder(momentDataFromAggregates(aggregates));
+        PMomentSolverBuilder b = getSolveBuilderFromAggregates(aggregates);
         b.initialize();
         return b;
     }
+    /**
+     * @return builder that can only solve, without the bounds set up by initialize()
+     */
+    private PMomentSolverBuilder getSolveBuilderFromAggregates(double[] aggregates) {
+        PMomentSolverBuilder b = new PMomentSolverBuilder(momentDataFromAggregates(aggregates));
+        b.setCache(solverCache);
+        return b;
+    }
     private ArcSinhMomentStruct momentDataFromAggregates(double[] aggregates) {
         double amin = FastMath.asinh(aggregates[minIdx]);
         double amax = FastMath.asinh(aggregates[maxIdx]);
@@ -60,6 +73,7 @@ public abstract class MomentOutlierMetric implements QualityMetric {
         globalOutlierCount = globalAggregates[powerSumsBaseIdx] * (1.0-quantile);
         ArcSinhMomentStruct ms = momentDataFromAggregates(globalAggregates);
         PMomentSolverBuilder builder = new PMomentSolverBuilder(ms);
+        builder.setCache(solverCache);
         try {
             cutoff = builder.getQuantile(quantile);
             log.info("Outlier Cutoff: "+cutoff);
@@ -84,7 +98,42 @@ public abstract class MomentOutlierMetric implements QualityMetric {
         double outlierRateNeeded = getOutlierRateNeeded(aggregates, threshold);
         PMomentSolverBuilder builder = getBuilderFromAggregates(aggregates);
         boolean aboveThreshold = builder.checkThreshold(cutoff, outlierRateNeeded);
-        callTypeCount[builder.getCallType()]++;
+        callTypeCount.incrementAndGet(builder.getCallType());
+        if (aboveThreshold) {
+            return Action.KEEP;
+        } else {
+            return actionIfBelowThreshold();
+        }
+    }
+
+    /**
+     * Only runs the bound checks, returns null if a solve would be needed.
+     */
+    @Override
+    public Action getCheapAction(double[] aggregates, double threshold) {
+        double outlierRateNeeded = getOutlierRateNeeded(aggregates, threshold);
+        PMomentSolverBuilder builder = getBuilderFromAggregates(aggregates);
+        Boolean aboveThreshold = builder.checkThresholdBounds(cutoff, outlierRateNeeded);
+        if (aboveThreshold == null) {
+            return null;
+        }
+        callTypeCount.incrementAndGet(builder.getCallType());
+        if (aboveThreshold) {
+            return Action.KEEP;
+        } else {
+            return actionIfBelowThreshold();
+        }
+    }
+
+    /**
+     * Solves right away, since getCheapAction already ran the bound checks.
+     */
+    @Override
+    public Action getExpensiveAction(double[] aggregates, double threshold) {
+        double outlierRateNeeded = getOutlierRateNeeded(aggregates, threshold);
+        PMomentSolverBuilder builder = getSolveBuilderFromAggregates(aggregates);
+        boolean aboveThreshold = builder.checkThresholdSolve(cutoff, outlierRateNeeded);
+        callTypeCount.incrementAndGet(builder.getCallType());
         if (aboveThreshold) {
             return Action.KEEP;
         } else {
@@ -93,11 +142,16 @@ public abstract class MomentOutlierMetric implements QualityMetric {
     }
 
     public int[] getCallTypeCount() {
-        return callTypeCount;
+        int[] counts = new int[callTypeCount.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = callTypeCount.get(i);
+        }
+        return counts;
     }
 
     public void setUseCascade(boolean useCascade) { this.useCascade = useCascade; }
     public void setTolerance(double tolerance) { this.tolerance = tolerance; }
+    public void setSolverCache(SolverCache<PointMassSolver> solverCache) { this.solverCache = solverCache; }
     public double getCutoff() { return cutoff;}
     
     public void setStandardIndices(int minIdx, int maxIdx, int powerSumsBaseIdx) {
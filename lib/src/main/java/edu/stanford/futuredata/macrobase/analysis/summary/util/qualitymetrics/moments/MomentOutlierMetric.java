@@ -1,12 +1,15 @@
 package edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.moments;
 
 import edu.stanford.futuredata.macrobase.analysis.summary.util.qualitymetrics.QualityMetric;
+import msolver.ChebyshevMomentSolver2;
 import msolver.MomentSolverBuilder;
+import msolver.SolverCache;
 import msolver.struct.MomentStruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * Quality metric used in the power cube pipeline. Uses min, max and moments.
@@ -27,10 +30,12 @@ public abstract class MomentOutlierMetric implements QualityMetric {
     double cutoff;
     double globalOutlierCount;
 
-    private int[] callTypeCount = new int[4];
+    // updated by concurrent pruning threads
+    private AtomicIntegerArray callTypeCount = new AtomicIntegerArray(4);
 
     private double tolerance = 1e-9;
     private boolean useCascade = true;
+    private SolverCache<ChebyshevMomentSolver2> solverCache;
 
     MomentOutlierMetric(double quantile, int ka, int kb) {
         this.quantile = quantile;
@@ -39,10 +44,18 @@ public abstract class MomentOutlierMetric implements QualityMetric {
     }
 
     protected MomentSolverBuilder getBuilderFromAggregates(double[] aggregates) {
-        MomentSolverBuilder b = new MomentSolverBuilder(momentDataFromAggregates(aggregates));
+        MomentSolverBuilder b = getSolveBuilderFromAggregates(aggregates);
         b.initialize();
         return b;
     }
+    /**
+     * @return builder that can only solve, without the bounds set up by initialize()
+     */
+    private MomentSolverBuilder getSolveBuilderFromAggregates(double[] aggregates) {
+        MomentSolverBuilder b = new MomentSolverBuilder(momentDataFromAggregates(aggregates));
+        b.setCache(solverCache);
+        return b;
+    }
     private MomentStruct momentDataFromAggregates(double[] aggregates) {
         MomentStruct m = new MomentStruct();
         m.min = 0;
@@ -74,6 +87,7 @@ public abstract class MomentOutlierMetric implements QualityMetric {
 
         MomentStruct ms = momentDataFromAggregates(globalAggregates);
         MomentSolverBuilder builder = new MomentSolverBuilder(ms);
+        builder.setCache(solverCache);
         try {
             double[] ps = new double[1];
             ps[0] = quantile;
@@ -106,7 +120,42 @@ public abstract class MomentOutlierMetric implements QualityMetric {
         double outlierRateNeeded = getOutlierRateNeeded(aggregates, threshold);
         MomentSolverBuilder builder = getBuilderFromAggregates(aggregates);
         boolean aboveThreshold = builder.checkThreshold(cutoff, outlierRateNeeded);
-        callTypeCount[builder.getCallType()]++;
+        callTypeCount.incrementAndGet(builder.getCallType());
+        if (aboveThreshold) {
+            return Action.KEEP;
+        } else {
+            return actionIfBelowThreshold();
+        }
+    }
+
+    /**
+     * Only runs the bound checks, returns null if a solve would be needed.
+     */
+    @Override
+    public Action getCheapAction(double[] aggregates, double threshold) {
+        double outlierRateNeeded = getOutlierRateNeeded(aggregates, threshold);
+        MomentSolverBuilder builder = getBuilderFromAggregates(aggregates);
+        Boolean aboveThreshold = builder.checkThresholdBounds(cutoff, outlierRateNeeded);
+        if (aboveThreshold == null) {
+            return null;
+        }
+        callTypeCount.incrementAndGet(builder.getCallType());
+        if (aboveThreshold) {
+            return Action.KEEP;
+        } else {
+            return actionIfBelowThreshold();
+        }
+    }
+
+    /**
+     * Solves right away, since getCheapAction already ran the bound checks.
+     */
+    @Override
+    public Action getExpensiveAction(double[] aggregates, double threshold) {
+        double outlierRateNeeded = getOutlierRateNeeded(aggregates, threshold);
+        MomentSolverBuilder builder = getSolveBuilderFromAggregates(aggregates);
+        boolean aboveThreshold = builder.checkThresholdSolve(cutoff, outlierRateNeeded);
+        callTypeCount.incrementAndGet(builder.getCallType());
         if (aboveThreshold) {
             return Action.KEEP;
         } else {
@@ -115,11 +164,16 @@ public abstract class MomentOutlierMetric implements QualityMetric {
     }
 
     public int[] getCallTypeCount() {
-        return callTypeCount;
+        int[] counts = new int[callTypeCount.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = callTypeCount.get(i);
+        }
+        return counts;
     }
 
     public void setUseCascade(boolean useCascade) { this.useCascade = useCascade; }
     public void setTolerance(double tolerance) { this.tolerance = tolerance; }
+    public void setSolverCache(SolverCache<ChebyshevMomentSolver2> solverCache) { this.solverCache = solverCache; }
     public double getCutoff() { return cutoff;}
     
     public void setStandardIndices(int minIdx, int maxIdx, int powerSumsBaseIdx) {
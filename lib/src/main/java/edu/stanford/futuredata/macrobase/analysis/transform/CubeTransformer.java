@@ -0,0 +1,439 @@
+package edu.stanford.futuredata.macrobase.analysis.transform;
+
+import edu.stanford.futuredata.macrobase.analysis.summary.util.ColumnDictionaryCache;
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.operator.Transformer;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Group raw rows by a set of attribute columns and aggregate a metric column,
+ * producing the cubed input expected by CubePipeline and PowerCubePipeline:
+ * one row per distinct attribute combination with the metric's count, mean,
+ * std, min, max, power sums sum(x^i) for i < ka and, if kb > 0, log min, log
+ * max and log sums sum(log(x)^i) for i < kb. Aggregate columns are named
+ * after the metric, e.g. usage_count, usage_mean, usage_p0.
+ *
+ * Rows are split between threads that each aggregate into their own primitive
+ * hash table, the partial tables are then merged. std is the population
+ * standard deviation. Rows with a NaN metric are skipped, and log moments
+ * require positive metric values.
+ */
+public class CubeTransformer implements Transformer {
+    private List<String> attributes;
+    private String metricColumn;
+    private int ka = 0;
+    private int kb = 0;
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    private DataFrame output;
+
+    // layout of the per-group aggregate slots
+    private static final int COUNT = 0;
+    private static final int MEAN = 1;
+    private static final int M2 = 2;
+    private static final int MIN = 3;
+    private static final int MAX = 4;
+    private static final int LOG_MIN = 5;
+    private static final int LOG_MAX = 6;
+    private static final int POWER_SUMS = 7;
+
+    public CubeTransformer(List<String> attributes, String metricColumn) {
+        this.attributes = attributes;
+        this.metricColumn = metricColumn;
+    }
+
+    @Override
+    public void process(DataFrame input) throws Exception {
+        int n = input.getNumRows();
+        long[] keys = groupKeys(input);
+        double[] metric = input.getDoubleColumnByName(metricColumn);
+
+        int shards = Math.max(1, Math.min(numThreads, n / 1024));
+        GroupTable[] partials = new GroupTable[shards];
+        if (shards == 1) {
+            partials[0] = aggregate(keys, metric, 0, n);
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(shards);
+            try {
+                List<Future<GroupTable>> futures = new ArrayList<>(shards);
+                for (int t = 0; t < shards; t++) {
+                    final int start = (int) ((long) n * t / shards);
+                    final int end = (int) ((long) n * (t + 1) / shards);
+                    futures.add(pool.submit(() -> aggregate(keys, metric, start, end)));
+                }
+                for (int t = 0; t < shards; t++) {
+                    partials[t] = futures.get(t).get();
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof Exception ? (Exception) cause : e;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        GroupTable merged = partials[0];
+        for (int t = 1; t < shards; t++) {
+            merged.merge(partials[t]);
+        }
+        output = toDataFrame(merged, input);
+    }
+
+    /**
+     * Dictionary encode each attribute and pack the codes of a row into one
+     * long, re-densifying the partial keys whenever the next attribute could
+     * overflow them.
+     */
+    private long[] groupKeys(DataFrame input) throws Exception {
+        int n = input.getNumRows();
+        long[] keys = new long[n];
+        long keyCardinality = 1;
+        for (String attr : attributes) {
+            ColumnDictionaryCache.Dictionary d = ColumnDictionaryCache.encode(input.getStringColumnByName(attr));
+            long card = Math.max(1, d.values.length);
+            if (keyCardinality > Long.MAX_VALUE / card) {
+                keyCardinality = densify(keys);
+            }
+            for (int i = 0; i < n; i++) {
+                keys[i] = keys[i] * card + d.codes[i];
+            }
+            keyCardinality *= card;
+        }
+        return keys;
+    }
+
+    /**
+     * Replace keys with dense ids in order of first appearance.
+     * @return number of distinct keys
+     */
+    private static long densify(long[] keys) {
+        LongIntMap ids = new LongIntMap(1024);
+        for (int i = 0; i < keys.length; i++) {
+            int id = ids.get(keys[i]);
+            if (id < 0) {
+                id = ids.size();
+                ids.put(keys[i], id);
+            }
+            keys[i] = id;
+        }
+        return ids.size();
+    }
+
+    private GroupTable aggregate(long[] keys, double[] metric, int start, int end) throws MacroBaseException {
+        GroupTable table = new GroupTable(POWER_SUMS + ka + kb);
+        double[] powers = new double[Math.max(ka, kb)];
+        for (int i = start; i < end; i++) {
+            double x = metric[i];
+            if (Double.isNaN(x)) {
+                continue;
+            }
+            int g = table.groupOf(keys[i], i);
+            int base = g * table.stride;
+            double[] a = table.aggs;
+
+            double count = a[base + COUNT] + 1;
+            double delta = x - a[base + MEAN];
+            a[base + COUNT] = count;
+            a[base + MEAN] += delta / count;
+            a[base + M2] += delta * (x - a[base + MEAN]);
+            a[base + MIN] = Math.min(a[base + MIN], x);
+            a[base + MAX] = Math.max(a[base + MAX], x);
+
+            if (ka > 0) {
+                fillPowers(powers, x, ka);
+                int offset = base + POWER_SUMS;
+                for (int p = 0; p < ka; p++) {
+                    a[offset + p] += powers[p];
+                }
+            }
+            if (kb > 0) {
+                if (x <= 0) {
+                    throw new MacroBaseException(
+                            "Log moments of " + metricColumn + " require positive values, got " + x);
+                }
+                double lx = Math.log(x);
+                a[base + LOG_MIN] = Math.min(a[base + LOG_MIN], lx);
+                a[base + LOG_MAX] = Math.max(a[base + LOG_MAX], lx);
+                fillPowers(powers, lx, kb);
+                int offset = base + POWER_SUMS + ka;
+                for (int p = 0; p < kb; p++) {
+                    a[offset + p] += powers[p];
+                }
+            }
+        }
+        return table;
+    }
+
+    private static void fillPowers(double[] powers, double x, int k) {
+        double cur = 1.0;
+        for (int p = 0; p < k; p++) {
+            powers[p] = cur;
+            cur *= x;
+        }
+    }
+
+    /**
+     * Open addressing map from group key to a slot in a flat array of
+     * aggregates, with the first row of each group kept to recover its
+     * attribute values.
+     */
+    private static class GroupTable {
+        final int stride;
+        final LongIntMap slots = new LongIntMap(1024);
+        double[] aggs;
+        int[] firstRows;
+        long[] groupKeys;
+
+        GroupTable(int stride) {
+            this.stride = stride;
+            aggs = new double[64 * stride];
+            firstRows = new int[64];
+            groupKeys = new long[64];
+        }
+
+        int size() {
+            return slots.size();
+        }
+
+        int groupOf(long key, int row) {
+            int g = slots.get(key);
+            if (g >= 0) {
+                return g;
+            }
+            g = slots.size();
+            slots.put(key, g);
+            if (g == firstRows.length) {
+                aggs = Arrays.copyOf(aggs, 2 * aggs.length);
+                firstRows = Arrays.copyOf(firstRows, 2 * firstRows.length);
+                groupKeys = Arrays.copyOf(groupKeys, 2 * groupKeys.length);
+            }
+            int base = g * stride;
+            aggs[base + MIN] = Double.POSITIVE_INFINITY;
+            aggs[base + MAX] = Double.NEGATIVE_INFINITY;
+            aggs[base + LOG_MIN] = Double.POSITIVE_INFINITY;
+            aggs[base + LOG_MAX] = Double.NEGATIVE_INFINITY;
+            firstRows[g] = row;
+            groupKeys[g] = key;
+            return g;
+        }
+
+        void merge(GroupTable other) {
+            for (int h = 0; h < other.size(); h++) {
+                int g = groupOf(other.groupKeys[h], other.firstRows[h]);
+                int base = g * stride;
+                int otherBase = h * stride;
+                double[] o = other.aggs;
+
+                double n1 = aggs[base + COUNT];
+                double n2 = o[otherBase + COUNT];
+                double count = n1 + n2;
+                if (n2 > 0) {
+                    // Chan et al. parallel update of the mean and sum of squared deviations
+                    double delta = o[otherBase + MEAN] - aggs[base + MEAN];
+                    aggs[base + MEAN] += delta * n2 / count;
+                    aggs[base + M2] += o[otherBase + M2] + delta * delta * n1 * n2 / count;
+                    aggs[base + COUNT] = count;
+                }
+                aggs[base + MIN] = Math.min(aggs[base + MIN], o[otherBase + MIN]);
+                aggs[base + MAX] = Math.max(aggs[base + MAX], o[otherBase + MAX]);
+                aggs[base + LOG_MIN] = Math.min(aggs[base + LOG_MIN], o[otherBase + LOG_MIN]);
+                aggs[base + LOG_MAX] = Math.max(aggs[base + LOG_MAX], o[otherBase + LOG_MAX]);
+                for (int p = POWER_SUMS; p < stride; p++) {
+                    aggs[base + p] += o[otherBase + p];
+                }
+            }
+        }
+    }
+
+    private DataFrame toDataFrame(GroupTable table, DataFrame input) {
+        int numGroups = table.size();
+        int[] groups = new int[numGroups];
+        for (int g = 0; g < numGroups; g++) {
+            groups[g] = g;
+        }
+
+        DataFrame df = new DataFrame();
+        for (String attr : attributes) {
+            String[] values = input.getStringColumnByName(attr);
+            String[] col = new String[numGroups];
+            for (int i = 0; i < numGroups; i++) {
+                col[i] = values[table.firstRows[groups[i]]];
+            }
+            df.addColumn(attr, col);
+        }
+        df.addColumn(getCountColumn(), aggColumn(table, groups, COUNT));
+        df.addColumn(getMeanColumn(), aggColumn(table, groups, MEAN));
+        double[] std = aggColumn(table, groups, M2);
+        double[] count = aggColumn(table, groups, COUNT);
+        for (int i = 0; i < numGroups; i++) {
+            std[i] = Math.sqrt(std[i] / count[i]);
+        }
+        df.addColumn(getStdColumn(), std);
+        df.addColumn(getMinColumn(), aggColumn(table, groups, MIN));
+        df.addColumn(getMaxColumn(), aggColumn(table, groups, MAX));
+        List<String> powerSumColumns = getPowerSumColumns();
+        for (int p = 0; p < ka; p++) {
+            df.addColumn(powerSumColumns.get(p), aggColumn(table, groups, POWER_SUMS + p));
+        }
+        if (kb > 0) {
+            df.addColumn(getLogMinColumn(), aggColumn(table, groups, LOG_MIN));
+            df.addColumn(getLogMaxColumn(), aggColumn(table, groups, LOG_MAX));
+            List<String> logSumColumns = getLogSumColumns();
+            for (int p = 0; p < kb; p++) {
+                df.addColumn(logSumColumns.get(p), aggColumn(table, groups, POWER_SUMS + ka + p));
+            }
+        }
+        return df;
+    }
+
+    private static double[] aggColumn(GroupTable table, int[] groups, int offset) {
+        double[] col = new double[groups.length];
+        for (int i = 0; i < groups.length; i++) {
+            col[i] = table.aggs[groups[i] * table.stride + offset];
+        }
+        return col;
+    }
+
+    /**
+     * Linear probing map from long keys to non-negative ints.
+     */
+    private static class LongIntMap {
+        private long[] keys;
+        private int[] values;
+        private boolean[] used;
+        private int mask;
+        private int size = 0;
+
+        LongIntMap(int capacity) {
+            int realSize = 1;
+            while (realSize < capacity) {
+                realSize *= 2;
+            }
+            keys = new long[realSize];
+            values = new int[realSize];
+            used = new boolean[realSize];
+            mask = realSize - 1;
+        }
+
+        private static int hash(long key) {
+            key ^= key >>> 33;
+            key *= 0xff51afd7ed558ccdL;
+            key ^= key >>> 33;
+            return (int) key;
+        }
+
+        int get(long key) {
+            int index = hash(key) & mask;
+            while (used[index]) {
+                if (keys[index] == key) {
+                    return values[index];
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if (2 * (size + 1) > keys.length) {
+                grow();
+            }
+            int index = hash(key) & mask;
+            while (used[index]) {
+                if (keys[index] == key) {
+                    values[index] = value;
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            used[index] = true;
+            keys[index] = key;
+            values[index] = value;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[2 * oldKeys.length];
+            values = new int[keys.length];
+            used = new boolean[keys.length];
+            mask = keys.length - 1;
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public DataFrame getResults() {
+        return output;
+    }
+
+    public CubeTransformer setKa(int ka) {
+        this.ka = ka;
+        return this;
+    }
+    public int getKa() {
+        return ka;
+    }
+    public CubeTransformer setKb(int kb) {
+        this.kb = kb;
+        return this;
+    }
+    public int getKb() {
+        return kb;
+    }
+    public CubeTransformer setNumThreads(int numThreads) {
+        this.numThreads = numThreads;
+        return this;
+    }
+
+    public String getCountColumn() {
+        return metricColumn + "_count";
+    }
+    public String getMeanColumn() {
+        return metricColumn + "_mean";
+    }
+    public String getStdColumn() {
+        return metricColumn + "_std";
+    }
+    public String getMinColumn() {
+        return metricColumn + "_min";
+    }
+    public String getMaxColumn() {
+        return metricColumn + "_max";
+    }
+    public String getLogMinColumn() {
+        return metricColumn + "_logmin";
+    }
+    public String getLogMaxColumn() {
+        return metricColumn + "_logmax";
+    }
+    public List<String> getPowerSumColumns() {
+        List<String> names = new ArrayList<>(ka);
+        for (int i = 0; i < ka; i++) {
+            names.add(metricColumn + "_p" + i);
+        }
+        return names;
+    }
+    public List<String> getLogSumColumns() {
+        List<String> names = new ArrayList<>(kb);
+        for (int i = 0; i < kb; i++) {
+            names.add(metricColumn + "_l" + i);
+        }
+        return names;
+    }
+}
@@ -1,8 +1,5 @@
 package edu.stanford.futuredata.macrobase.datamodel;
 
-import static java.util.Comparator.comparing;
-import static java.util.Comparator.naturalOrder;
-import static java.util.Comparator.nullsLast;
 import static java.util.stream.Collectors.toList;
 
 import com.google.common.base.Joiner;
@@ -12,12 +9,10 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.DoublePredicate;
 import java.util.function.Predicate;
-import java.util.stream.IntStream;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -692,7 +687,6 @@ public class DataFrame {
 
     /**
      * Sort DataFrame rows by a single column.
-     * // TODO: write test for OrderBy
      * @param sortCol The column to sort by
      * @param sortAsc True => sort ascending, False => sort descending
      * @return A new DataFrame with the correct sorted order. If <tt>col</tt> is
@@ -703,67 +697,43 @@ public class DataFrame {
       if (!this.schema.hasColumn(sortCol)) {
           return this;
       }
-
-      final DataFrame sortedDf = new DataFrame();
-      final ColType sortColType = this.schema.getColumnTypeByName(sortCol);
-      final int numColumns = this.schema.getNumColumns();
-
-      if (sortColType == ColType.DOUBLE) {
-          sortColumns(sortedDf, numColumns, getDoubleColumnByName(sortCol), sortAsc);
-      } else {
-          sortColumns(sortedDf, numColumns, getStringColumnByName(sortCol), sortAsc);
-      }
-      return sortedDf;
-    }
-
-    // TODO: this code duplication is awful, gotta think of a better way of doing this
-    private void sortColumns(final DataFrame sortedDf, final int numColumns,
-        final double[] sortColumn, final boolean sortAsc) {
-        Comparator<Integer> comparator = comparing(i -> sortColumn[i], nullsLast(
-            naturalOrder()));
-        if (!sortAsc) {
-            comparator = comparator.reversed();
-        }
-        for (int c = 0; c < numColumns; ++c) {
-            if (this.schema.getColumnType(c) == ColType.DOUBLE) {
-                final double[] origCol = this.getDoubleColumn(c);
-                final double[] newCol = IntStream.range(0, origCol.length).boxed()
-                    .sorted(comparator)
-                    .mapToDouble(i -> origCol[i]).toArray();
-                sortedDf.addColumn(this.schema.getColumnName(c), newCol);
-            } else {
-                // ColType.STRING
-                final String[] origCol = this.getStringColumn(c);
-                final String[] newCol = IntStream.range(0, origCol.length).boxed()
-                    .sorted(comparator).map(i -> origCol[i])
-                    .toArray(String[]::new);
-                sortedDf.addColumn(this.schema.getColumnName(c), newCol);
-            }
-        }
+      return orderBy(Collections.singletonList(sortCol), Collections.singletonList(sortAsc), -1);
     }
 
-    private void sortColumns(final DataFrame sortedDf, final int numColumns,
-        final String[] sortColumn, final boolean sortAsc) {
-        Comparator<Integer> comparator = comparing(i -> sortColumn[i], nullsLast(naturalOrder()));
-        if (!sortAsc) {
-            comparator = comparator.reversed();
-        }
-        for (int c = 0; c < numColumns; ++c) {
-            if (this.schema.getColumnType(c) == ColType.DOUBLE) {
-                final double[] origCol = this.getDoubleColumn(c);
-                final double[] newCol = IntStream.range(0, origCol.length).boxed()
-                    .sorted(comparator)
-                    .mapToDouble(i -> origCol[i]).toArray();
-                sortedDf.addColumn(this.schema.getColumnName(c), newCol);
+    /**
+     * Sort DataFrame rows by one or more columns, e.g. ORDER BY a DESC, b LIMIT 10. The sort is
+     * stable. NaN and null values come after all other values when sorting ascending, and
+     * before them when sorting descending.
+     * @param sortCols The columns to sort by, in order of priority
+     * @param sortAsc For each column, True => sort ascending, False => sort descending
+     * @param limit If non-negative, only the first <tt>limit</tt> rows of the sorted DataFrame
+     * are kept; when that's a small fraction of the rows, they're selected with a heap instead
+     * of sorting every row
+     * @return A new DataFrame with the sorted rows
+     */
+    public DataFrame orderBy(final List<String> sortCols, final List<Boolean> sortAsc,
+        final int limit) {
+        final int[] rows = new RowOrdering(this, sortCols, sortAsc).getSortedRows(limit);
+        final DataFrame sortedDf = new DataFrame();
+        for (int c = 0; c < schema.getNumColumns(); ++c) {
+            if (schema.getColumnType(c) == ColType.DOUBLE) {
+                final double[] origCol = getDoubleColumn(c);
+                final double[] newCol = new double[rows.length];
+                for (int i = 0; i < rows.length; ++i) {
+                    newCol[i] = origCol[rows[i]];
+                }
+                sortedDf.addColumn(schema.getColumnName(c), newCol);
             } else {
                 // ColType.STRING
-                final String[] origCol = this.getStringColumn(c);
-                final String[] newCol = IntStream.range(0, origCol.length).boxed()
-                    .sorted(comparator).map(i -> origCol[i])
-                    .toArray(String[]::new);
-                sortedDf.addColumn(this.schema.getColumnName(c), newCol);
+                final String[] origCol = getStringColumn(c);
+                final String[] newCol = new String[rows.length];
+                for (int i = 0; i < rows.length; ++i) {
+                    newCol[i] = origCol[rows[i]];
+                }
+                sortedDf.addColumn(schema.getColumnName(c), newCol);
             }
         }
+        return sortedDf;
     }
 
 }
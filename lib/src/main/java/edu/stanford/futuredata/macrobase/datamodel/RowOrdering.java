@@ -0,0 +1,217 @@
+package edu.stanford.futuredata.macrobase.datamodel;
+
+import java.util.List;
+
+/**
+ * Order of the rows of a DataFrame by one or more sort keys, used by
+ * {@link DataFrame#orderBy(List, List, int)}. Rows are sorted as an array of row indices, which
+ * is then used to gather every column, so values are never boxed and each column is only copied
+ * once.
+ *
+ * Double keys are converted up front into longs that compare like {@link Double#compare} (NaN
+ * last), negated for descending keys. String keys compare with nulls last, which is reversed for
+ * descending keys. Ties are broken by row index, so the sort is stable.
+ */
+class RowOrdering {
+
+    // below this many rows, merge sort switches to insertion sort
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private final int numRows;
+    // for each key, either its double values as comparable longs, or its String values
+    private final long[][] doubleKeys;
+    private final String[][] stringKeys;
+    private final boolean[] ascending;
+
+    RowOrdering(final DataFrame df, final List<String> sortCols, final List<Boolean> sortAsc) {
+        if (sortCols.size() != sortAsc.size()) {
+            throw new IllegalArgumentException("Need one sort direction per sort column");
+        }
+        final Schema schema = df.getSchema();
+        numRows = df.getNumRows();
+        doubleKeys = new long[sortCols.size()][];
+        stringKeys = new String[sortCols.size()][];
+        ascending = new boolean[sortCols.size()];
+        for (int k = 0; k < sortCols.size(); ++k) {
+            final String col = sortCols.get(k);
+            ascending[k] = sortAsc.get(k);
+            if (schema.getColumnTypeByName(col) == Schema.ColType.DOUBLE) {
+                final double[] values = df.getDoubleColumnByName(col);
+                final long[] keys = new long[numRows];
+                for (int i = 0; i < numRows; ++i) {
+                    keys[i] = ascending[k] ? toComparableBits(values[i])
+                        : ~toComparableBits(values[i]);
+                }
+                doubleKeys[k] = keys;
+            } else {
+                stringKeys[k] = df.getStringColumnByName(col);
+            }
+        }
+    }
+
+    /**
+     * @return a long whose signed order is the order of {@link Double#compare}
+     */
+    private static long toComparableBits(final double value) {
+        final long bits = Double.doubleToLongBits(value);
+        // flip every bit but the sign of negative values, whose magnitude order is reversed
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    private int compare(final int a, final int b) {
+        for (int k = 0; k < ascending.length; ++k) {
+            final int c;
+            if (doubleKeys[k] != null) {
+                c = Long.compare(doubleKeys[k][a], doubleKeys[k][b]);
+            } else {
+                final int stringOrder = compareStrings(stringKeys[k][a], stringKeys[k][b]);
+                c = ascending[k] ? stringOrder : -stringOrder;
+            }
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(a, b);
+    }
+
+    private static int compareStrings(final String x, final String y) {
+        if (x == null) {
+            return y == null ? 0 : 1;
+        } else if (y == null) {
+            return -1;
+        }
+        return x.compareTo(y);
+    }
+
+    /**
+     * @param limit if non-negative, only the first limit rows are returned
+     * @return the indices of the rows in sorted order
+     */
+    int[] getSortedRows(final int limit) {
+        if (limit >= 0 && limit < numRows / 4) {
+            return topK(limit);
+        }
+        final int[] rows = new int[numRows];
+        for (int i = 0; i < numRows; ++i) {
+            rows[i] = i;
+        }
+        sort(rows);
+        if (limit >= 0 && limit < numRows) {
+            final int[] first = new int[limit];
+            System.arraycopy(rows, 0, first, 0, limit);
+            return first;
+        }
+        return rows;
+    }
+
+    /**
+     * Select the first k rows with a bounded max-heap, whose root is the last of the k rows
+     * seen so far, then sort them. Takes O(n log k) time and O(k) space.
+     */
+    private int[] topK(final int k) {
+        final int[] heap = new int[k];
+        if (k == 0) {
+            return heap;
+        }
+        for (int row = 0; row < k; ++row) {
+            heap[row] = row;
+            siftUp(heap, row);
+        }
+        for (int row = k; row < numRows; ++row) {
+            if (compare(row, heap[0]) < 0) {
+                heap[0] = row;
+                siftDown(heap, 0, k);
+            }
+        }
+        sort(heap);
+        return heap;
+    }
+
+    private void siftUp(final int[] heap, int i) {
+        final int row = heap[i];
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (compare(heap[parent], row) >= 0) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = row;
+    }
+
+    private void siftDown(final int[] heap, int i, final int size) {
+        final int row = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (compare(heap[child], row) <= 0) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = row;
+    }
+
+    /**
+     * Bottom-up merge sort of row indices: runs of INSERTION_SORT_THRESHOLD rows are insertion
+     * sorted, then merged pairwise into a buffer and back.
+     */
+    private void sort(final int[] rows) {
+        final int n = rows.length;
+        for (int from = 0; from < n; from += INSERTION_SORT_THRESHOLD) {
+            insertionSort(rows, from, Math.min(from + INSERTION_SORT_THRESHOLD, n));
+        }
+        int[] src = rows;
+        int[] dst = new int[n];
+        for (int width = INSERTION_SORT_THRESHOLD; width < n; width *= 2) {
+            for (int from = 0; from < n; from += 2 * width) {
+                final int mid = Math.min(from + width, n);
+                final int to = Math.min(from + 2 * width, n);
+                merge(src, dst, from, mid, to);
+            }
+            final int[] tmp = src;
+            src = dst;
+            dst = tmp;
+        }
+        if (src != rows) {
+            System.arraycopy(src, 0, rows, 0, n);
+        }
+    }
+
+    private void insertionSort(final int[] rows, final int from, final int to) {
+        for (int i = from + 1; i < to; ++i) {
+            final int row = rows[i];
+            int j = i - 1;
+            while (j >= from && compare(rows[j], row) > 0) {
+                rows[j + 1] = rows[j];
+                j--;
+            }
+            rows[j + 1] = row;
+        }
+    }
+
+    private void merge(final int[] src, final int[] dst, final int from, final int mid,
+        final int to) {
+        int i = from;
+        int j = mid;
+        int out = from;
+        if (mid < to && compare(src[mid - 1], src[mid]) <= 0) {
+            // already in order
+            System.arraycopy(src, from, dst, from, to - from);
+            return;
+        }
+        while (i < mid && j < to) {
+            dst[out++] = compare(src[j], src[i]) < 0 ? src[j++] : src[i++];
+        }
+        System.arraycopy(src, i, dst, out, mid - i);
+        out += mid - i;
+        System.arraycopy(src, j, dst, out, to - j);
+    }
+}
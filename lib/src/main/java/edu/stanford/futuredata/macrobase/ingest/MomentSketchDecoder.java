@@ -0,0 +1,136 @@
+package edu.stanford.futuredata.macrobase.ingest;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import msolver.struct.MomentSketchFormat;
+import org.apache.commons.math3.util.FastMath;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Expands a string column of base64 encoded moment sketches (see
+ * {@link MomentSketchFormat}) into the min, max and power sum columns expected
+ * by APLMomentSummarizer and APLArcMomentSummarizer, so that pre-aggregated
+ * sketches can be shipped as a single column instead of one column per moment.
+ *
+ * All sketches in the column must have the same type and orders.
+ * For arcsinh sketches the min and max columns hold raw (not arcsinh) values.
+ */
+public class MomentSketchDecoder {
+    private String sketchColumn;
+    private byte type;
+    private int ka;
+    private int kb;
+
+    public MomentSketchDecoder(String sketchColumn) {
+        this.sketchColumn = sketchColumn;
+    }
+
+    /**
+     * Adds the decoded columns to df.
+     * @return df
+     */
+    public DataFrame decode(DataFrame df) throws MacroBaseException {
+        String[] sketches = df.getStringColumnByName(sketchColumn);
+        int n = df.getNumRows();
+        if (n == 0) {
+            throw new MacroBaseException("No sketches in column " + sketchColumn);
+        }
+        Base64.Decoder b64 = Base64.getDecoder();
+
+        double[][] cols = null;
+        for (int i = 0; i < n; i++) {
+            ByteBuffer buf;
+            MomentSketchFormat.Header h;
+            try {
+                buf = ByteBuffer.wrap(b64.decode(sketches[i])).order(ByteOrder.LITTLE_ENDIAN);
+                h = MomentSketchFormat.peekHeader(buf);
+            } catch (RuntimeException e) {
+                throw new MacroBaseException(
+                        "Bad moment sketch in column " + sketchColumn + " row " + i + ": " + e.getMessage());
+            }
+            if (cols == null) {
+                type = h.type;
+                ka = h.ka;
+                kb = h.type == MomentSketchFormat.TYPE_MOMENT ? h.kb : 0;
+                cols = new double[h.payloadBytes() / 8][n];
+            } else if (h.type != type || h.ka != ka || (type == MomentSketchFormat.TYPE_MOMENT && h.kb != kb)) {
+                throw new MacroBaseException(
+                        "Inconsistent moment sketches in column " + sketchColumn + " row " + i);
+            }
+            if (buf.remaining() < MomentSketchFormat.HEADER_BYTES + h.payloadBytes()) {
+                throw new MacroBaseException(
+                        "Truncated moment sketch in column " + sketchColumn + " row " + i);
+            }
+            int offset = MomentSketchFormat.HEADER_BYTES;
+            for (int c = 0; c < cols.length; c++) {
+                cols[c][i] = buf.getDouble(offset + 8*c);
+            }
+        }
+
+        int curCol = 0;
+        if (isArcSinh()) {
+            // the summarizer expects raw extrema and applies arcsinh itself
+            for (int i = 0; i < n; i++) {
+                cols[0][i] = FastMath.sinh(cols[0][i]);
+                cols[1][i] = FastMath.sinh(cols[1][i]);
+            }
+            df.addColumn(getMinColumn(), cols[curCol++]);
+            df.addColumn(getMaxColumn(), cols[curCol++]);
+        } else {
+            df.addColumn(getMinColumn(), cols[curCol++]);
+            df.addColumn(getMaxColumn(), cols[curCol++]);
+            df.addColumn(getLogMinColumn(), cols[curCol++]);
+            df.addColumn(getLogMaxColumn(), cols[curCol++]);
+        }
+        List<String> powerSumColumns = getPowerSumColumns();
+        for (int i = 0; i < ka; i++) {
+            df.addColumn(powerSumColumns.get(i), cols[curCol++]);
+        }
+        List<String> logSumColumns = getLogSumColumns();
+        for (int i = 0; i < kb; i++) {
+            df.addColumn(logSumColumns.get(i), cols[curCol++]);
+        }
+        return df;
+    }
+
+    public boolean isArcSinh() {
+        return type == MomentSketchFormat.TYPE_ARCSINH;
+    }
+    public int getKa() {
+        return ka;
+    }
+    public int getKb() {
+        return kb;
+    }
+    public String getMinColumn() {
+        return sketchColumn + "_min";
+    }
+    public String getMaxColumn() {
+        return sketchColumn + "_max";
+    }
+    public String getLogMinColumn() {
+        return sketchColumn + "_logmin";
+    }
+    public String getLogMaxColumn() {
+        return sketchColumn + "_logmax";
+    }
+    public List<String> getPowerSumColumns() {
+        List<String> names = new ArrayList<>(ka);
+        for (int i = 0; i < ka; i++) {
+            names.add(sketchColumn + "_p" + i);
+        }
+        return names;
+    }
+    public List<String> getLogSumColumns() {
+        List<String> names = new ArrayList<>(kb);
+        for (int i = 0; i < kb; i++) {
+            names.add(sketchColumn + "_l" + i);
+        }
+        return names;
+    }
+}
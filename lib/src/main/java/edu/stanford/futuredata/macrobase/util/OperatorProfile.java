@@ -0,0 +1,182 @@
+package edu.stanford.futuredata.macrobase.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-operator statistics of a query execution, for EXPLAIN ANALYZE: wall time, rows in and out,
+ * bytes allocated and number of threads. Operators are listed in the order they finish.
+ *
+ * Bytes allocated are counted per thread, using the HotSpot extension of ThreadMXBean. Work that
+ * an operator hands to other threads is only counted if it's wrapped with
+ * {@link #countAllocations(Callable)} or {@link #countAllocations(Runnable)}, which charge the
+ * bytes allocated by the task to the thread that created it. Without the extension, bytes
+ * allocated are reported as -1.
+ */
+public class OperatorProfile {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATIONS_SUPPORTED = isAllocationCountingSupported();
+    // bytes allocated by other threads on behalf of each thread
+    private static final ThreadLocal<AtomicLong> DELEGATED_BYTES =
+        ThreadLocal.withInitial(AtomicLong::new);
+
+    /**
+     * Statistics of a single operator
+     */
+    public static class Operator {
+
+        private final String name;
+        private final long wallNanos;
+        private final long rowsIn;
+        private final long rowsOut;
+        private final long bytesAllocated;
+        private final int numThreads;
+
+        Operator(final String name, final long wallNanos, final long rowsIn, final long rowsOut,
+            final long bytesAllocated, final int numThreads) {
+            this.name = name;
+            this.wallNanos = wallNanos;
+            this.rowsIn = rowsIn;
+            this.rowsOut = rowsOut;
+            this.bytesAllocated = bytesAllocated;
+            this.numThreads = numThreads;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public long getRowsIn() {
+            return rowsIn;
+        }
+
+        public long getRowsOut() {
+            return rowsOut;
+        }
+
+        /**
+         * @return the bytes allocated by the operator, or -1 if they can't be counted
+         */
+        public long getBytesAllocated() {
+            return bytesAllocated;
+        }
+
+        public int getNumThreads() {
+            return numThreads;
+        }
+    }
+
+    /**
+     * An operator that's running, started by {@link #start(String)} on the thread that runs it
+     */
+    public class Timer {
+
+        private final String name;
+        private final long startNanos;
+        private final long startBytes;
+
+        private Timer(final String name) {
+            this.name = name;
+            this.startNanos = System.nanoTime();
+            this.startBytes = getAllocatedBytes();
+        }
+
+        /**
+         * Record the operator's statistics; must be called on the thread that started it
+         */
+        public void stop(final long rowsIn, final long rowsOut, final int numThreads) {
+            final long bytes = ALLOCATIONS_SUPPORTED ? getAllocatedBytes() - startBytes : -1;
+            final Operator operator = new Operator(name, System.nanoTime() - startNanos, rowsIn,
+                rowsOut, bytes, numThreads);
+            synchronized (operators) {
+                operators.add(operator);
+            }
+        }
+    }
+
+    private final List<Operator> operators = new ArrayList<>();
+
+    public Timer start(final String name) {
+        return new Timer(name);
+    }
+
+    /**
+     * @return the operators recorded so far, in the order they finished
+     */
+    public List<Operator> getOperators() {
+        synchronized (operators) {
+            return new ArrayList<>(operators);
+        }
+    }
+
+    private static boolean isAllocationCountingSupported() {
+        try {
+            return THREADS instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+        } catch (LinkageError e) {
+            // not a HotSpot JVM
+            return false;
+        }
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, including those allocated on its
+     * behalf by tasks wrapped with countAllocations, or 0 if they can't be counted
+     */
+    public static long getAllocatedBytes() {
+        if (!ALLOCATIONS_SUPPORTED) {
+            return 0;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS)
+            .getThreadAllocatedBytes(Thread.currentThread().getId())
+            + DELEGATED_BYTES.get().get();
+    }
+
+    /**
+     * Wrap a task that will run on another thread, so that the bytes it allocates are counted as
+     * allocated by the current thread
+     */
+    public static <T> Callable<T> countAllocations(final Callable<T> task) {
+        if (!ALLOCATIONS_SUPPORTED) {
+            return task;
+        }
+        final AtomicLong delegatedBytes = DELEGATED_BYTES.get();
+        return () -> {
+            final long start = getAllocatedBytes();
+            try {
+                return task.call();
+            } finally {
+                delegatedBytes.addAndGet(getAllocatedBytes() - start);
+            }
+        };
+    }
+
+    /**
+     * Wrap a task that will run on another thread, so that the bytes it allocates are counted as
+     * allocated by the current thread
+     */
+    public static Runnable countAllocations(final Runnable task) {
+        if (!ALLOCATIONS_SUPPORTED) {
+            return task;
+        }
+        final AtomicLong delegatedBytes = DELEGATED_BYTES.get();
+        return () -> {
+            final long start = getAllocatedBytes();
+            try {
+                task.run();
+            } finally {
+                delegatedBytes.addAndGet(getAllocatedBytes() - start);
+            }
+        };
+    }
+}
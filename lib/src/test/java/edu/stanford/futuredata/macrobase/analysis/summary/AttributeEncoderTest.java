@@ -1,14 +1,16 @@
 package edu.stanford.futuredata.macrobase.analysis.summary;
 
 import edu.stanford.futuredata.macrobase.analysis.summary.util.AttributeEncoder;
+import edu.stanford.futuredata.macrobase.analysis.summary.util.ColumnDictionaryCache;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class AttributeEncoderTest {
     private AttributeEncoder e = new AttributeEncoder();
@@ -43,4 +45,58 @@ public class AttributeEncoderTest {
         }
         assertEquals(totalItems.size(), 5 + 3);
     }
-}
\ No newline at end of file
+
+    private static final String[] a = {"a1", "a2", "a1", "a3", "a1", "a2"};
+    private static final String[] b = {"b1", "b1", "b2", "b2", "b3", "b1"};
+    private static final List<String> names = Arrays.asList("a", "b");
+
+    private static AttributeEncoder newEncoder(ColumnDictionaryCache cache) {
+        AttributeEncoder encoder = new AttributeEncoder();
+        encoder.setColumnNames(names);
+        encoder.setDictionaryCache(cache);
+        return encoder;
+    }
+
+    @Test
+    public void testDictionaryEncoding() {
+        List<String[]> columns = Arrays.asList(a, b);
+        ColumnDictionaryCache cache = new ColumnDictionaryCache();
+
+        int[][] expected = newEncoder(null).encodeAttributesAsArray(columns);
+        AttributeEncoder encoder = newEncoder(cache);
+        int[][] actual = encoder.encodeAttributesAsArray(columns);
+        assertArrayEquals(expected, actual);
+        assertEquals(2, cache.size());
+        assertEquals("a3", encoder.decodeValue(actual[3][0]));
+
+        // a second encoder reuses the dictionaries
+        ColumnDictionaryCache.Dictionary d = cache.get("a", a);
+        newEncoder(cache).encodeAttributesAsArray(columns);
+        assertSame(d, cache.get("a", a));
+        assertNotSame(d, cache.get("a", a.clone()));
+    }
+
+    @Test
+    public void testDictionaryEncodingWithSupport() {
+        List<String[]> columns = Arrays.asList(a, b);
+        double[] outliers = {3, 0, 1, 1, 0, 2};
+        AttributeEncoder expectedEncoder = newEncoder(null);
+        int[][] expected = expectedEncoder.encodeAttributesWithSupport(columns, .3, outliers);
+        AttributeEncoder encoder = newEncoder(new ColumnDictionaryCache());
+        int[][] actual = encoder.encodeAttributesWithSupport(columns, .3, outliers);
+
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < 2; j++) {
+                if (expected[i][j] == AttributeEncoder.noSupport) {
+                    assertEquals(AttributeEncoder.noSupport, actual[i][j]);
+                } else {
+                    assertEquals(expectedEncoder.decodeValue(expected[i][j]), encoder.decodeValue(actual[i][j]));
+                    assertEquals(j, encoder.decodeColumn(actual[i][j]));
+                }
+            }
+        }
+        assertEquals(expectedEncoder.getNextKey(), encoder.getNextKey());
+        // b1 has the most outlier support
+        assertEquals(1, actual[0][1]);
+    }
+}
@@ -123,4 +123,43 @@ public class APLMomentSummarizerTest {
         assertEquals(1, e.getResults().size());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testParallelPrune() throws Exception {
+        DataFrame df = getTestCube();
+        List<Set<Map<String, Map<String, String>>>> results = new ArrayList<>();
+        for (int numThreads : new int[]{1, 4}) {
+            APLMomentSummarizer momentSummarizer = new APLMomentSummarizer();
+            momentSummarizer.setMinColumn("latency:min");
+            momentSummarizer.setMaxColumn("latency:max");
+            momentSummarizer.setLogMinColumn("log:min");
+            momentSummarizer.setLogMaxColumn("log:max");
+            momentSummarizer.setPowerSumColumns(Arrays.asList(
+                    "power:0:sum",
+                    "power:1:sum",
+                    "power:2:sum",
+                    "power:3:sum",
+                    "power:4:sum"
+            ));
+            momentSummarizer.setLogSumColumns(Arrays.asList(
+                    "log:0:sum",
+                    "log:1:sum",
+                    "log:2:sum",
+                    "log:3:sum",
+                    "log:4:sum"
+            ));
+            momentSummarizer.setKa(5);
+            momentSummarizer.setKb(5);
+            momentSummarizer.setMinRatioMetric(2.0);
+            momentSummarizer.setMinSupport(0.05);
+            momentSummarizer.setQuantileCutoff(0.95);
+            momentSummarizer.setNumThreads(numThreads);
+            momentSummarizer.setAttributes(Arrays.asList("country", "app_version", "device"));
+            momentSummarizer.process(df);
+
+            // same explanations regardless of how the pruning is split up
+            results.add(new HashSet<>(momentSummarizer.getResults().results()));
+        }
+        assertFalse(results.get(0).isEmpty());
+        assertEquals(results.get(0), results.get(1));
+    }
+}
@@ -8,6 +8,7 @@ import edu.stanford.futuredata.macrobase.ingest.DataFrameLoader;
 import org.junit.Test;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
 
 import static junit.framework.TestCase.assertEquals;
 import static org.junit.Assert.*;
@@ -48,6 +49,82 @@ public class APLOutlierSummarizerTest {
         assertEquals(1, results.size());
     }
 
+    @Test
+    public void testMultiClass() throws Exception {
+        Map<String, Schema.ColType> schema = new HashMap<>();
+        schema.put("usage", Schema.ColType.DOUBLE);
+        schema.put("latency", Schema.ColType.DOUBLE);
+        DataFrame df = new CSVDataFrameParser(
+                "src/test/resources/sample.csv",
+                Arrays.asList("usage", "latency", "location", "version")
+        ).setColumnTypes(schema).load();
+        double[] usage = df.getDoubleColumnByName("usage");
+        double[] latency = df.getDoubleColumnByName("latency");
+        String[] location = df.getStringColumnByName("location");
+        String[] version = df.getStringColumnByName("version");
+        double[] highUsage = new double[df.getNumRows()];
+        double[] slowRus = new double[df.getNumRows()];
+        double[] lowUsageV3 = new double[df.getNumRows()];
+        for (int i = 0; i < df.getNumRows(); i++) {
+            highUsage[i] = usage[i] > 44.0 ? 1.0 : 0.0;
+            slowRus[i] = latency[i] > 500.0 && location[i].equals("RUS") ? 1.0 : 0.0;
+            lowUsageV3[i] = usage[i] < 30.0 && version[i].equals("v3") ? 1.0 : 0.0;
+        }
+        df.addColumn("high_usage", highUsage);
+        df.addColumn("slow_rus", slowRus);
+        df.addColumn("low_usage_v3", lowUsageV3);
+        List<String> outlierColumns = Arrays.asList("high_usage", "slow_rus", "low_usage_v3");
+        List<String> explanationAttributes = Arrays.asList("location", "version");
+
+        APLOutlierSummarizer multi = new APLOutlierSummarizer();
+        multi.setMinSupport(.05);
+        multi.setMinRatioMetric(1.5);
+        multi.setRatioMetric("risk_ratio");
+        multi.setAttributes(explanationAttributes);
+        multi.setOutlierColumns(outlierColumns);
+        multi.process(df);
+        List<APLExplanation> classResults = multi.getClassResults();
+        assertEquals(3, classResults.size());
+
+        // each class gets the same explanation as on its own
+        for (int k = 0; k < outlierColumns.size(); k++) {
+            APLOutlierSummarizer single = new APLOutlierSummarizer();
+            single.setMinSupport(.05);
+            single.setMinRatioMetric(1.5);
+            single.setRatioMetric("risk_ratio");
+            single.setAttributes(explanationAttributes);
+            single.setOutlierColumn(outlierColumns.get(k));
+            single.process(df);
+            APLExplanation expected = single.getResults();
+            APLExplanation actual = classResults.get(k);
+            assertEquals(expected.numOutliers(), actual.numOutliers(), 1e-10);
+            assertTrue(expected.getResults().size() > 0);
+            assertEquals(
+                    new HashSet<>(expected.toDataFrame(explanationAttributes).getRows()),
+                    new HashSet<>(actual.toDataFrame(explanationAttributes).getRows()));
+        }
+    }
+
+    @Test
+    public void testInterrupt() throws Exception {
+        DataFrame df = new DataFrame();
+        df.addColumn("a", new String[]{"a1", "a2", "a1"});
+        df.addColumn("outliers", new double[]{1, 0, 1});
+        df.addColumn("count", new double[]{1, 1, 1});
+        APLOutlierSummarizer summ = new APLOutlierSummarizer();
+        summ.setCountColumn("count");
+        summ.setOutlierColumn("outliers");
+        summ.setAttributes(Collections.singletonList("a"));
+
+        Thread.currentThread().interrupt();
+        try {
+            summ.process(df);
+            fail("Expected the interrupted summarizer to be cancelled");
+        } catch (CancellationException e) {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
     @Test
     public void testOrder3() throws Exception {
         DataFrame df = new DataFrame();
@@ -0,0 +1,122 @@
+package edu.stanford.futuredata.macrobase.analysis.transform;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CubeTransformerTest {
+    private static DataFrame getRawData(int n, int seed) {
+        Random r = new Random(seed);
+        String[] a1 = new String[n];
+        String[] a2 = new String[n];
+        double[] metric = new double[n];
+        for (int i = 0; i < n; i++) {
+            a1[i] = "a" + r.nextInt(4);
+            a2[i] = "b" + r.nextInt(3);
+            metric[i] = 1.0 + r.nextDouble() * 10;
+        }
+        DataFrame df = new DataFrame();
+        df.addColumn("a1", a1);
+        df.addColumn("a2", a2);
+        df.addColumn("usage", metric);
+        return df;
+    }
+
+    @Test
+    public void testSimple() throws Exception {
+        DataFrame df = new DataFrame();
+        df.addColumn("a1", new String[]{"x", "y", "x", "x"});
+        df.addColumn("usage", new double[]{1.0, 5.0, 3.0, Double.NaN});
+
+        CubeTransformer t = new CubeTransformer(Collections.singletonList("a1"), "usage");
+        t.setKa(3).setKb(2);
+        t.process(df);
+        DataFrame cube = t.getResults();
+
+        assertEquals(2, cube.getNumRows());
+        assertArrayEquals(new String[]{"x", "y"}, cube.getStringColumnByName("a1"));
+        assertArrayEquals(new double[]{2.0, 1.0}, cube.getDoubleColumnByName(t.getCountColumn()), 1e-10);
+        assertArrayEquals(new double[]{2.0, 5.0}, cube.getDoubleColumnByName(t.getMeanColumn()), 1e-10);
+        assertArrayEquals(new double[]{1.0, 0.0}, cube.getDoubleColumnByName(t.getStdColumn()), 1e-10);
+        assertArrayEquals(new double[]{1.0, 5.0}, cube.getDoubleColumnByName(t.getMinColumn()), 1e-10);
+        assertArrayEquals(new double[]{3.0, 5.0}, cube.getDoubleColumnByName(t.getMaxColumn()), 1e-10);
+        assertArrayEquals(new double[]{10.0, 25.0}, cube.getDoubleColumnByName("usage_p2"), 1e-10);
+        assertArrayEquals(new double[]{0.0, Math.log(5)}, cube.getDoubleColumnByName(t.getLogMinColumn()), 1e-10);
+        assertArrayEquals(new double[]{Math.log(3), Math.log(5)}, cube.getDoubleColumnByName("usage_l1"), 1e-10);
+    }
+
+    @Test
+    public void testParallelMatchesSerial() throws Exception {
+        DataFrame df = getRawData(50000, 0);
+        List<String> attrs = Arrays.asList("a1", "a2");
+
+        CubeTransformer serial = new CubeTransformer(attrs, "usage").setKa(5).setKb(3).setNumThreads(1);
+        serial.process(df);
+        CubeTransformer parallel = new CubeTransformer(attrs, "usage").setKa(5).setKb(3).setNumThreads(4);
+        parallel.process(df);
+
+        DataFrame expected = serial.getResults();
+        DataFrame actual = parallel.getResults();
+        assertEquals(12, expected.getNumRows());
+        assertEquals(expected.getSchema().getColumnNames(), actual.getSchema().getColumnNames());
+        assertArrayEquals(expected.getStringColumnByName("a1"), actual.getStringColumnByName("a1"));
+        assertArrayEquals(expected.getStringColumnByName("a2"), actual.getStringColumnByName("a2"));
+        for (String col : expected.getSchema().getColumnNamesByType(Schema.ColType.DOUBLE)) {
+            double[] e = expected.getDoubleColumnByName(col);
+            double[] a = actual.getDoubleColumnByName(col);
+            for (int i = 0; i < e.length; i++) {
+                assertEquals(col, e[i], a[i], 1e-9 * Math.max(1.0, Math.abs(e[i])));
+            }
+        }
+        double total = 0;
+        for (double c : actual.getDoubleColumnByName(parallel.getCountColumn())) {
+            total += c;
+        }
+        assertEquals(50000, total, 1e-10);
+    }
+
+    @Test
+    public void testHighCardinalityKeys() throws Exception {
+        // the product of the attribute cardinalities overflows a long
+        int n = 20000;
+        int d = 5;
+        DataFrame df = new DataFrame();
+        List<String> attrs = new ArrayList<>();
+        Set<String> combinations = new HashSet<>();
+        String[][] cols = new String[d][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < d; j++) {
+                cols[j][i] = "v" + ((i * (j + 1)) % 10007);
+            }
+            combinations.add(String.join(",", cols[0][i], cols[1][i], cols[2][i], cols[3][i], cols[4][i]));
+        }
+        for (int j = 0; j < d; j++) {
+            attrs.add("c" + j);
+            df.addColumn("c" + j, cols[j]);
+        }
+        df.addColumn("usage", new double[n]);
+
+        CubeTransformer t = new CubeTransformer(attrs, "usage");
+        t.process(df);
+        assertEquals(combinations.size(), t.getResults().getNumRows());
+    }
+
+    @Test
+    public void testNonPositiveLogMoments() throws Exception {
+        DataFrame df = new DataFrame();
+        df.addColumn("a1", new String[]{"x", "y"});
+        df.addColumn("usage", new double[]{1.0, 0.0});
+        CubeTransformer t = new CubeTransformer(Collections.singletonList("a1"), "usage").setKb(2);
+        try {
+            t.process(df);
+            fail();
+        } catch (MacroBaseException e) {
+            assertTrue(e.getMessage().contains("positive"));
+        }
+    }
+}
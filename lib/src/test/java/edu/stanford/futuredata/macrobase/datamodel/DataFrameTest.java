@@ -4,8 +4,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class DataFrameTest {
     private DataFrame tinyDF;
@@ -49,6 +54,52 @@ public class DataFrameTest {
         assertEquals(tinyDF.getNumRows()*3, combined.getNumRows());
     }
 
+    @Test
+    public void testOrderBy() {
+        int n = 1000;
+        Random rand = new Random(0);
+        double[] id = new double[n];
+        String[] a = new String[n];
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            id[i] = i;
+            a[i] = rand.nextInt(10) == 0 ? null : "v" + rand.nextInt(5);
+            x[i] = rand.nextInt(10) == 0 ? Double.NaN : rand.nextInt(20) - 10;
+        }
+        DataFrame df = new DataFrame();
+        df.addColumn("id", id);
+        df.addColumn("a", a);
+        df.addColumn("x", x);
+
+        // a ascending with nulls last, then x descending with NaN first, then by row
+        Comparator<Integer> aAsc = Comparator.comparing(i -> a[i],
+                Comparator.nullsLast(Comparator.naturalOrder()));
+        Comparator<Integer> xDesc = Comparator.comparing((Integer i) -> x[i]).reversed();
+        double[] expected = IntStream.range(0, n).boxed()
+                .sorted(aAsc.thenComparing(xDesc))
+                .mapToDouble(i -> id[i]).toArray();
+
+        DataFrame sorted = df.orderBy(Arrays.asList("a", "x"), Arrays.asList(true, false), -1);
+        assertArrayEquals(expected, sorted.getDoubleColumnByName("id"), 0.0);
+        // top-k with a heap, and with a full sort
+        for (int limit : new int[]{0, 1, 10, 600}) {
+            sorted = df.orderBy(Arrays.asList("a", "x"), Arrays.asList(true, false), limit);
+            assertEquals(limit, sorted.getNumRows());
+            assertArrayEquals(Arrays.copyOf(expected, limit),
+                    sorted.getDoubleColumnByName("id"), 0.0);
+            for (int i = 0; i < limit; i++) {
+                assertEquals(x[(int) expected[i]], sorted.getDoubleColumnByName("x")[i], 0.0);
+            }
+        }
+
+        sorted = df.orderBy("x", true);
+        for (int i = 1; i < n; i++) {
+            assertTrue(Double.compare(sorted.getDoubleColumnByName("x")[i - 1],
+                    sorted.getDoubleColumnByName("x")[i]) <= 0);
+        }
+        assertEquals(df, df.orderBy("missing", true));
+    }
+
     @Test
     public void testComplexDataFrame() {
         DataFrame df = new DataFrame();
@@ -0,0 +1,60 @@
+package edu.stanford.futuredata.macrobase.ingest;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import msolver.struct.ArcSinhMomentStruct;
+import msolver.struct.MomentStruct;
+import org.junit.Test;
+
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class MomentSketchDecoderTest {
+    @Test
+    public void testDecodeMoments() throws Exception {
+        MomentStruct ms1 = new MomentStruct(
+                1, 5, new double[]{2, 6, 26},
+                0, Math.log(5), new double[]{2, 1.6}
+        );
+        MomentStruct ms2 = new MomentStruct(
+                2, 8, new double[]{3, 15, 90},
+                Math.log(2), Math.log(8), new double[]{3, 4.0}
+        );
+        DataFrame df = new DataFrame();
+        df.addColumn("location", new String[]{"USA", "CAN"});
+        df.addColumn("latency", new String[]{
+                Base64.getEncoder().encodeToString(ms1.toBytes()),
+                Base64.getEncoder().encodeToString(ms2.toBytes())
+        });
+
+        MomentSketchDecoder decoder = new MomentSketchDecoder("latency");
+        decoder.decode(df);
+        assertFalse(decoder.isArcSinh());
+        assertEquals(3, decoder.getKa());
+        assertEquals(2, decoder.getKb());
+        assertArrayEquals(new double[]{1, 2}, df.getDoubleColumnByName(decoder.getMinColumn()), 0);
+        assertArrayEquals(new double[]{5, 8}, df.getDoubleColumnByName(decoder.getMaxColumn()), 0);
+        assertArrayEquals(new double[]{26, 90},
+                df.getDoubleColumnByName(decoder.getPowerSumColumns().get(2)), 0);
+        assertArrayEquals(new double[]{1.6, 4.0},
+                df.getDoubleColumnByName(decoder.getLogSumColumns().get(1)), 0);
+        assertEquals(2 + 4 + 3 + 2, df.getSchema().getNumColumns());
+    }
+
+    @Test
+    public void testDecodeArcSinh() throws Exception {
+        ArcSinhMomentStruct ms = new ArcSinhMomentStruct(4);
+        ms.add(new double[]{1, 10, 100});
+        DataFrame df = new DataFrame();
+        df.addColumn("latency", new String[]{Base64.getEncoder().encodeToString(ms.toBytes())});
+
+        MomentSketchDecoder decoder = new MomentSketchDecoder("latency");
+        decoder.decode(df);
+        assertTrue(decoder.isArcSinh());
+        assertEquals(4, decoder.getKa());
+        assertEquals(0, decoder.getKb());
+        assertEquals(1, df.getDoubleColumnByName(decoder.getMinColumn())[0], 1e-10);
+        assertEquals(100, df.getDoubleColumnByName(decoder.getMaxColumn())[0], 1e-10);
+        assertEquals(3, df.getDoubleColumnByName(decoder.getPowerSumColumns().get(0))[0], 0);
+    }
+}
@@ -1,3 +1,7 @@
 #!/usr/bin/env bash
-java -Xmx10g -Xms10g -cp target/msolver-1.0-SNAPSHOT.jar:$(cat cp.txt) \
-msolver.runner.BenchRunner $@
\ No newline at end of file
+# Runs the JMH benchmarks in src/test/java/msolver/bench, e.g.
+# ./runBench.sh SolverBench -p dataset=milan -prof gc
+# The benchmarks fork, so java is launched with the test classpath rather than
+# run inside maven, where forked JVMs would only see maven's own classpath.
+mvn -q test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java \
+-Dexec.args="-classpath %classpath org.openjdk.jmh.Main $*"
@@ -1,13 +1,11 @@
 package msolver;
 
 import msolver.chebyshev.ChebyshevPolynomial;
+import msolver.util.FastDCT;
 import msolver.util.MathUtil;
 import msolver.util.MatrixUtil;
 import org.apache.commons.math3.analysis.solvers.BrentSolver;
 import org.apache.commons.math3.analysis.solvers.UnivariateSolver;
-import org.apache.commons.math3.transform.DctNormalization;
-import org.apache.commons.math3.transform.FastCosineTransformer;
-import org.apache.commons.math3.transform.TransformType;
 import org.apache.commons.math3.util.FastMath;
 import org.ejml.data.DMatrixRMaj;
 import org.ejml.dense.row.CommonOps_DDRM;
@@ -60,6 +58,7 @@ public class BCMomentSolver {
         lambdas = new double[k];
         newLambdas = new double[k];
         f = new double[n];
+        cs = new double[n];
         e_mu = new double[2*k];
         grad = new double[k];
         Hess = new double[k*k];
@@ -99,10 +98,7 @@ public class BCMomentSolver {
         for (int i = 0; i < n; i++) {
             f[i] = FastMath.exp(f[i]);
         }
-        FastCosineTransformer t = new FastCosineTransformer(
-                DctNormalization.STANDARD_DCT_I
-        );
-        cs = t.transform(f, TransformType.FORWARD);
+        FastDCT.get(n).dct(f, cs);
 //        DoubleDCT_1D dct = new DoubleDCT_1D(n);
 //        cs = f.clone();
 //        dct.forward(cs, false);
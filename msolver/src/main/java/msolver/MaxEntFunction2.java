@@ -1,5 +1,6 @@
 package msolver;
 
+import msolver.chebyshev.ChebyshevGrid;
 import msolver.chebyshev.ChebyshevPolynomial;
 import msolver.chebyshev.CosScaledFunction;
 import org.apache.commons.math3.analysis.UnivariateFunction;
@@ -190,11 +191,10 @@ public class MaxEntFunction2 implements UnivariateFunction {
         @Override
         public double[][] calc(int N) {
             if (cosValues == null) {
-                cosValues = new double[N + 1];
+                cosValues = ChebyshevGrid.nodes(N);
                 f2Values = new double[N + 1];
                 scaledBGXs = new double[N + 1];
                 for (int j = 0; j <= N; j++) {
-                    cosValues[j] = FastMath.cos(j * Math.PI / N);
                     f2Values[j] = f2.value(cosValues[j]);
                     scaledBGXs[j] = getScaledBGX(cosValues[j]);
                 }
@@ -206,16 +206,14 @@ public class MaxEntFunction2 implements UnivariateFunction {
                 int oldN = oldCosValues.length-1;
                 int ratio = N / oldN;
 
-                cosValues = new double[N+1];
+                cosValues = ChebyshevGrid.nodes(N);
                 f2Values = new double[N+1];
                 scaledBGXs = new double[N+1];
                 for (int j = 0; j <= N; j++) {
                     if (j % ratio == 0) {
-                        cosValues[j] = oldCosValues[j/ratio];
                         f2Values[j] = oldF2Values[j/ratio];
                         scaledBGXs[j] = oldScaledBGXs[j/ratio];
                     } else {
-                        cosValues[j] = FastMath.cos(j * Math.PI / N);
                         f2Values[j] = f2.value(cosValues[j]);
                         scaledBGXs[j] = getScaledBGX(cosValues[j]);
                         numFuncEvals++;
@@ -24,6 +24,9 @@ public class MaxEntPotential2 implements FunctionWithHessian {
     protected double[] mus;
     protected double[] grad;
     protected double[][] hess;
+    // coefficient buffers reused across evaluations
+    private double[] aCoeffs;
+    private double[] bCoeffs;
 
     public MaxEntPotential2(
             boolean isLog,
@@ -42,10 +45,12 @@ public class MaxEntPotential2 implements FunctionWithHessian {
         this.bCenter = bCenter;
         this.bScale = bScale;
 
+        this.aCoeffs = new double[numNormalPowers];
+        this.bCoeffs = new double[d_mus.length - numNormalPowers+1];
         this.func = new MaxEntFunction2(
                 isLog,
-                new double[numNormalPowers],
-                new double[d_mus.length - numNormalPowers+1],
+                aCoeffs,
+                bCoeffs,
                 aCenter, aScale, bCenter, bScale
         );
         int k = d_mus.length;
@@ -63,8 +68,6 @@ public class MaxEntPotential2 implements FunctionWithHessian {
         this.lambd = lambd;
         int k = lambd.length;
 
-        double[] aCoeffs = new double[numNormalPowers];
-        double[] bCoeffs = new double[k - numNormalPowers + 1];
         for (int i = 0; i < k; i++) {
             if (i < numNormalPowers) {
                 aCoeffs[i] = lambd[i];
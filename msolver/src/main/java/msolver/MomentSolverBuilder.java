@@ -17,6 +17,7 @@ public class MomentSolverBuilder {
 
     private ChebyshevMomentSolver2 solver;
     private MomentThreshold[] cascade;
+    private SolverCache<ChebyshevMomentSolver2> cache;
 
     private int maxSteps = 30;
 
@@ -28,6 +29,9 @@ public class MomentSolverBuilder {
     public void setVerbose(boolean flag) {
         this.verbose = flag;
     }
+    public void setCache(SolverCache<ChebyshevMomentSolver2> cache) {
+        this.cache = cache;
+    }
 
     public void initialize() {
         this.cascade = new MomentThreshold[2];
@@ -42,8 +46,12 @@ public class MomentSolverBuilder {
         solve();
         return solver.estimateQuantiles(ps);
     }
-    public boolean checkThreshold(double x, double phi) {
-        int ka = ms.powerSums.length;
+    /**
+     * Decides whether the fraction of values above x is at least phi using
+     * only the range check and the Markov and RTT bound cascade.
+     * @return null if the bounds are inconclusive and a solve is needed
+     */
+    public Boolean checkThresholdBounds(double x, double phi) {
         if (x < ms.min) {
             callType = 0;
             return (phi <= 1);
@@ -71,7 +79,23 @@ public class MomentSolverBuilder {
                 return false;
             }
         }
+        return null;
+    }
+
+    public boolean checkThreshold(double x, double phi) {
+        Boolean bounded = checkThresholdBounds(x, phi);
+        if (bounded != null) {
+            return bounded;
+        }
+        return checkThresholdSolve(x, phi);
+    }
 
+    /**
+     * Decides whether the fraction of values above x is at least phi with a
+     * solve, skipping the bound cascade, e.g. when checkThresholdBounds was
+     * already inconclusive. Doesn't need initialize().
+     */
+    public boolean checkThresholdSolve(double x, double phi) {
         long startTime = System.nanoTime();
         solve();
         callType = 2;
@@ -95,13 +119,55 @@ public class MomentSolverBuilder {
 
     private void solve() {
         if (solver == null) {
-            solver = buildSolver();
-            solver.solve(1e-8);
+            if (cache == null) {
+                solver = buildSolver();
+                solver.solve(1e-8);
+            } else {
+                solveWithCache();
+            }
         }
         else {
             return;
         }
     }
+
+    private void solveWithCache() {
+        double[] key = getCacheKey();
+        solver = cache.get(key);
+        if (solver != null) {
+            return;
+        }
+        solver = buildSolver();
+        double[] shape = {solver.isUseStandardBasis() ? 1 : 0, solver.getNumNormalPowers()};
+        double[] moments = solver.getChebyshevMoments();
+        double[] warmStart = cache.getWarmStart(shape, moments);
+        if (warmStart != null) {
+            solver.solve(warmStart, 1e-8);
+            if (!solver.isConverged()) {
+                solver.solve(1e-8);
+            }
+        } else {
+            solver.solve(1e-8);
+        }
+        cache.put(key, solver);
+        if (solver.isConverged()) {
+            cache.putWarmStart(shape, moments, solver.getLambdas());
+        }
+    }
+
+    private double[] getCacheKey() {
+        int ka = ms.powerSums.length;
+        int kb = ms.logSums.length;
+        double[] key = new double[4 + ka + kb];
+        key[0] = ms.min;
+        key[1] = ms.max;
+        key[2] = ms.logMin;
+        key[3] = ms.logMax;
+        System.arraycopy(ms.powerSums, 0, key, 4, ka);
+        System.arraycopy(ms.logSums, 0, key, 4 + ka, kb);
+        return key;
+    }
+
     public ChebyshevMomentSolver2 buildSolver() {
         double[] posPowerMoments = MathUtil.powerSumsToPosMoments(
                 ms.powerSums, ms.min, ms.max
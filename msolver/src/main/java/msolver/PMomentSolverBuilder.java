@@ -11,6 +11,7 @@ public class PMomentSolverBuilder {
     private boolean verbose;
     private ArcSinhMomentStruct ms;
     private PointMassSolver solver;
+    private SolverCache<PointMassSolver> cache;
 
     private int callType;
 
@@ -20,6 +21,9 @@ public class PMomentSolverBuilder {
     public void setVerbose(boolean flag) {
         this.verbose = flag;
     }
+    public void setCache(SolverCache<PointMassSolver> cache) {
+        this.cache = cache;
+    }
 
     public void initialize() {
     }
@@ -31,7 +35,12 @@ public class PMomentSolverBuilder {
         solve();
         return ms.invert(solver.getQuantile(p));
     }
-    public boolean checkThreshold(double xRaw, double phi) {
+    /**
+     * Decides whether the fraction of values above xRaw is at least phi using
+     * only the range checks and the Markov bounds on the even moments.
+     * @return null if the bounds are inconclusive and a solve is needed
+     */
+    public Boolean checkThresholdBounds(double xRaw, double phi) {
         int k = ms.powerSums.length;
         double x = ms.convert(xRaw);
         if (x < -1) {
@@ -56,6 +65,24 @@ public class PMomentSolverBuilder {
                 }
             }
         }
+        return null;
+    }
+
+    public boolean checkThreshold(double xRaw, double phi) {
+        Boolean bounded = checkThresholdBounds(xRaw, phi);
+        if (bounded != null) {
+            return bounded;
+        }
+        return checkThresholdSolve(xRaw, phi);
+    }
+
+    /**
+     * Decides whether the fraction of values above xRaw is at least phi with a
+     * solve, skipping the bounds, e.g. when checkThresholdBounds was already
+     * inconclusive.
+     */
+    public boolean checkThresholdSolve(double xRaw, double phi) {
+        double x = ms.convert(xRaw);
 
         long startTime = System.nanoTime();
         solve();
@@ -76,14 +103,34 @@ public class PMomentSolverBuilder {
     private void solve() {
         int k = ms.powerSums.length;
         if (solver == null) {
+            double[] key = null;
+            if (cache != null) {
+                key = getCacheKey();
+                solver = cache.get(key);
+                if (solver != null) {
+                    return;
+                }
+            }
             solver = new PointMassSolver(k);
             solver.setVerbose(verbose);
             solver.solve(ms.getPowerMoments());
+            if (cache != null) {
+                cache.put(key, solver);
+            }
         } else {
             return;
         }
     }
 
+    private double[] getCacheKey() {
+        int k = ms.powerSums.length;
+        double[] key = new double[2 + k];
+        key[0] = ms.min;
+        key[1] = ms.max;
+        System.arraycopy(ms.powerSums, 0, key, 2, k);
+        return key;
+    }
+
     public int getCallType() {
         return callType;
     }
@@ -1,5 +1,6 @@
 package msolver;
 
+import msolver.util.CholeskySolver;
 import msolver.util.MathUtil;
 import org.apache.commons.math3.analysis.solvers.LaguerreSolver;
 import org.apache.commons.math3.complex.Complex;
@@ -17,10 +18,14 @@ public class SimpleBoundSolver {
     private double[][] momentArray;
     private double[][] smallArray;
     private DMatrixRMaj smallMat;
+    private CholeskySolver momentMatrixSolver;
+    private double[] vectorData;
 
     public SimpleBoundSolver(int numMoments) {
         this.n = (numMoments - 1) / 2;
         this.momentArray = new double[n+1][n+1];
+        this.momentMatrixSolver = new CholeskySolver(n+1);
+        this.vectorData = new double[n+1];
         this.smallArray = new double[n][n];
         this.smallMat = new DMatrixRMaj(n, n);
     }
@@ -34,19 +39,16 @@ public class SimpleBoundSolver {
         for (int i = 0; i <= n; i++) {
             System.arraycopy(moments, i, momentArray[i], 0, n+1);
         }
-        RealMatrix momentMatrix = new Array2DRowRealMatrix(momentArray, false);
-
-        double[] vectorData = new double[n+1];
-//        LUDecomposition momentMatrixDecomp = new LUDecomposition(momentMatrix);
-        CholeskyDecomposition momentMatrixDecomp = new CholeskyDecomposition(momentMatrix);
+        if (!momentMatrixSolver.decompose(momentArray)) {
+            throw new RuntimeException("Moment matrix is not positive definite");
+        }
 
         int numPoints = xs.length;
         double[] boundSizes = new double[numPoints];
         for (int i = 0; i < numPoints; i++) {
             double x = xs[i];
             MathUtil.calcPowers(x, vectorData);
-            ArrayRealVector vec = new ArrayRealVector(vectorData, false);
-            double boundSize = 1.0 / vec.dotProduct(momentMatrixDecomp.getSolver().solve(vec));
+            double boundSize = 1.0 / momentMatrixSolver.quadraticForm(vectorData);
             boundSizes[i] = boundSize;
         }
 
@@ -0,0 +1,144 @@
+package msolver;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of solved moment solvers keyed by the aggregate vector
+ * they were built from. The solution does not depend on the threshold being
+ * checked, so repeated threshold queries on the same subgroup become lookups.
+ *
+ * Also keeps converged lambdas under a coarse key so that nearly identical
+ * moment vectors can warm-start Newton's method.
+ *
+ * Safe to share across threads and across queries.
+ */
+public class SolverCache<S> {
+    // resolution of the chebyshev moments used for warm start lookups
+    public static final double WARM_START_RESOLUTION = 1e-3;
+
+    private int maxSize;
+    private LinkedHashMap<Key, S> solvers;
+    private LinkedHashMap<Key, double[]> warmStarts;
+
+    private long numHits;
+    private long numMisses;
+    private long numWarmStarts;
+
+    public SolverCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.solvers = new LinkedHashMap<Key, S>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, S> eldest) {
+                return size() > SolverCache.this.maxSize;
+            }
+        };
+        this.warmStarts = new LinkedHashMap<Key, double[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+                return size() > SolverCache.this.maxSize;
+            }
+        };
+    }
+
+    public synchronized S get(double[] aggregates) {
+        S solver = solvers.get(new Key(aggregates));
+        if (solver == null) {
+            numMisses++;
+        } else {
+            numHits++;
+        }
+        return solver;
+    }
+
+    public synchronized void put(double[] aggregates, S solver) {
+        solvers.put(new Key(aggregates), solver);
+    }
+
+    /**
+     * @param shape values that have to match exactly, e.g. basis and orders
+     * @param moments normalized moments, rounded to WARM_START_RESOLUTION
+     * @return lambdas from a previous solve or null
+     */
+    public synchronized double[] getWarmStart(double[] shape, double[] moments) {
+        double[] lambdas = warmStarts.get(new Key(coarseKey(shape, moments)));
+        if (lambdas != null) {
+            numWarmStarts++;
+            return lambdas.clone();
+        }
+        return null;
+    }
+
+    public synchronized void putWarmStart(double[] shape, double[] moments, double[] lambdas) {
+        warmStarts.put(new Key(coarseKey(shape, moments)), lambdas.clone());
+    }
+
+    private static double[] coarseKey(double[] shape, double[] moments) {
+        double[] key = Arrays.copyOf(shape, shape.length + moments.length);
+        for (int i = 0; i < moments.length; i++) {
+            key[shape.length + i] = Math.rint(moments[i] / WARM_START_RESOLUTION);
+        }
+        return key;
+    }
+
+    public synchronized void clear() {
+        solvers.clear();
+        warmStarts.clear();
+    }
+
+    public synchronized int size() {
+        return solvers.size();
+    }
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evictEldest(solvers, maxSize);
+        evictEldest(warmStarts, maxSize);
+    }
+    private static void evictEldest(LinkedHashMap<Key, ?> map, int maxSize) {
+        Iterator<Key> it = map.keySet().iterator();
+        while (map.size() > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+    public int getMaxSize() {
+        return maxSize;
+    }
+    public synchronized long getNumHits() {
+        return numHits;
+    }
+    public synchronized long getNumMisses() {
+        return numMisses;
+    }
+    public synchronized long getNumWarmStarts() {
+        return numWarmStarts;
+    }
+
+    private static class Key {
+        private final double[] values;
+        private final int hash;
+
+        Key(double[] values) {
+            this.values = new double[values.length];
+            // canonicalize -0.0 so that it matches 0.0
+            for (int i = 0; i < values.length; i++) {
+                this.values[i] = values[i] + 0.0;
+            }
+            this.hash = Arrays.hashCode(this.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            return Arrays.equals(values, ((Key) o).values);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package msolver.chebyshev;
+
+import org.apache.commons.math3.util.FastMath;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of the Chebyshev extrema grids cos(pi * j / N), j = 0..N, used when
+ * fitting polynomials. The grids are shared between threads so callers must
+ * not modify the returned arrays.
+ */
+public class ChebyshevGrid {
+    private static final ConcurrentHashMap<Integer, double[]> grids = new ConcurrentHashMap<>();
+
+    public static double[] nodes(int N) {
+        return grids.computeIfAbsent(N, ChebyshevGrid::computeNodes);
+    }
+
+    private static double[] computeNodes(int N) {
+        double[] cosValues = new double[N+1];
+        for (int j = 0; j <= N; j++) {
+            cosValues[j] = FastMath.cos(j * Math.PI / N);
+        }
+        return cosValues;
+    }
+}
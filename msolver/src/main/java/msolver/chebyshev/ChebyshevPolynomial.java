@@ -1,9 +1,7 @@
 package msolver.chebyshev;
 
+import msolver.util.FastDCT;
 import org.apache.commons.math3.analysis.UnivariateFunction;
-import org.apache.commons.math3.transform.DctNormalization;
-import org.apache.commons.math3.transform.FastCosineTransformer;
-import org.apache.commons.math3.transform.TransformType;
 import org.apache.commons.math3.util.FastMath;
 
 import java.util.Arrays;
@@ -46,16 +44,13 @@ public class ChebyshevPolynomial implements UnivariateFunction {
         int nFuncs = fMulti.numFuncs();
         double[][] cs = new double[nFuncs][];
         double oldError = Double.MAX_VALUE;
-        FastCosineTransformer t = new FastCosineTransformer(
-                DctNormalization.STANDARD_DCT_I
-        );
         double error;
         while (true) {
             double[][] fVals = fMulti.calc(N);
+            cs = FastDCT.get(N+1).dct(fVals);
 
             error = 0.0;
             for (int i = 0; i < nFuncs; i++) {
-                cs[i] = t.transform(fVals[i], TransformType.FORWARD);
                 for (int j = 0; j <= N; j++) {
                     cs[i][j] *= 2.0/N;
                 }
@@ -94,15 +89,16 @@ public class ChebyshevPolynomial implements UnivariateFunction {
         double oldError = Double.MAX_VALUE;
         while(true) {
             double[] fvals = new double[N+1];
+            double[] nodes = ChebyshevGrid.nodes(N);
             if (oldFVals == null) {
                 for (int i = 0; i <= N; i++) {
-                    fvals[i] = f.value(FastMath.cos(Math.PI * i / N));
+                    fvals[i] = f.value(nodes[i]);
                 }
                 numEvals += (N+1);
             } else {
                 for (int i = 0; i <= N; i++) {
                     if (i % 2 == 1) {
-                        fvals[i] = f.value(FastMath.cos(Math.PI * i / N));
+                        fvals[i] = f.value(nodes[i]);
                     } else {
                         fvals[i] = oldFVals[i/2];
                     }
@@ -110,10 +106,7 @@ public class ChebyshevPolynomial implements UnivariateFunction {
                 numEvals += N/2;
             }
             oldFVals = fvals;
-            FastCosineTransformer t = new FastCosineTransformer(
-                    DctNormalization.STANDARD_DCT_I
-            );
-            cs = t.transform(fvals, TransformType.FORWARD);
+            cs = FastDCT.get(N+1).dct(fvals, new double[N+1]);
             for (int i = 0; i <= N; i++) {
                 cs[i] *= 2.0/N;
             }
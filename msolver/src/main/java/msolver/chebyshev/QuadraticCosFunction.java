@@ -1,7 +1,5 @@
 package msolver.chebyshev;
 
-import org.apache.commons.math3.util.FastMath;
-
 public class QuadraticCosFunction implements CosScaledFunction {
     private int k;
     public QuadraticCosFunction(int k) {
@@ -15,10 +13,7 @@ public class QuadraticCosFunction implements CosScaledFunction {
 
     @Override
     public double[][] calc(int N) {
-        double[] cosValues = new double[N+1];
-        for (int j = 0; j <= N; j++) {
-            cosValues[j] = FastMath.cos(j * Math.PI / N);
-        }
+        double[] cosValues = ChebyshevGrid.nodes(N);
 
         double[][] values = new double[k][N+1];
         for (int i = 0; i < k; i++) {
@@ -1,5 +1,6 @@
 package msolver.optimizer;
 
+import msolver.util.CholeskySolver;
 import org.apache.commons.math3.linear.*;
 
 /**
@@ -56,6 +57,9 @@ public class NewtonOptimizer {
         int k = P.dim();
 
         double[] x = start.clone();
+        double[] stepVector = new double[k];
+        double[] newX = new double[k];
+        CholeskySolver cholesky = new CholeskySolver(k);
 
         int step;
         double requiredPrecision = gradTol / 10;
@@ -76,33 +80,29 @@ public class NewtonOptimizer {
                 converged = true;
                 break;
             }
-            RealMatrix hhMat = new Array2DRowRealMatrix(hess, false);
-            RealVector stepVector;
-            try {
-                CholeskyDecomposition d = new CholeskyDecomposition(
-                        hhMat,
-                        0,
-                        0
-                );
-                stepVector = d.getSolver().solve(new ArrayRealVector(grad));
-            } catch (Exception e) {
+            if (cholesky.decompose(hess, 0, 0)) {
+                cholesky.solve(grad, stepVector);
+            } else {
                 // Cholesky is faster but fall back to SVD if it doesn't work
+                RealMatrix hhMat = new Array2DRowRealMatrix(hess, false);
                 SingularValueDecomposition d = new SingularValueDecomposition(hhMat);
-                stepVector = d.getSolver().solve(new ArrayRealVector(grad));
+                RealVector svdStep = d.getSolver().solve(new ArrayRealVector(grad, false));
+                for (int i = 0; i < k; i++) {
+                    stepVector[i] = svdStep.getEntry(i);
+                }
+            }
+            for (int i = 0; i < k; i++) {
+                stepVector[i] *= -1.0;
             }
-//            SingularValueDecomposition d = new SingularValueDecomposition(hhMat);
-//            System.out.println("cond: "+d.getConditionNumber());
-            stepVector.mapMultiplyToSelf(-1.0);
 
             double dfdx = 0.0;
             for (int i = 0; i < k; i++) {
-                dfdx += stepVector.getEntry(i) * grad[i];
+                dfdx += stepVector[i] * grad[i];
             }
 
             double stepScaleFactor = 1.0;
-            double[] newX = new double[k];
             for (int i = 0; i < k; i++) {
-                newX[i] = x[i] + stepScaleFactor * stepVector.getEntry(i);
+                newX[i] = x[i] + stepScaleFactor * stepVector[i];
             }
             // Warning: this overwrites grad and hess
             P.computeAll(newX, requiredPrecision);
@@ -118,7 +118,7 @@ public class NewtonOptimizer {
                         stepScaleFactor *= beta;
                     }
                     for (int i = 0; i < k; i++) {
-                        newX[i] = x[i] + stepScaleFactor * stepVector.getEntry(i);
+                        newX[i] = x[i] + stepScaleFactor * stepVector[i];
                     }
                     P.computeAll(newX, requiredPrecision);
                 }
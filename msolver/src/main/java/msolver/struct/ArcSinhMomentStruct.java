@@ -3,6 +3,8 @@ package msolver.struct;
 import msolver.util.MathUtil;
 import org.apache.commons.math3.util.FastMath;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 public class ArcSinhMomentStruct {
@@ -61,6 +63,106 @@ public class ArcSinhMomentStruct {
         updateScales();
     }
 
+    public int serializedSize() {
+        return MomentSketchFormat.HEADER_BYTES + 8 * (2 + powerSums.length);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(serializedSize());
+        writeTo(out);
+        return out.array();
+    }
+
+    /**
+     * Writes the sketch at the current position of out, see {@link MomentSketchFormat}.
+     */
+    public void writeTo(ByteBuffer out) {
+        ByteOrder order = out.order();
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        MomentSketchFormat.writeHeader(out, MomentSketchFormat.TYPE_ARCSINH, powerSums.length, 0);
+        out.putDouble(min);
+        out.putDouble(max);
+        for (double p : powerSums) {
+            out.putDouble(p);
+        }
+        out.order(order);
+    }
+
+    public static ArcSinhMomentStruct fromBytes(byte[] bytes) {
+        return fromBytes(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads one sketch at the current position of in and advances past it.
+     */
+    public static ArcSinhMomentStruct fromBytes(ByteBuffer in) {
+        ByteOrder order = in.order();
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            MomentSketchFormat.Header h = MomentSketchFormat.readHeader(in);
+            checkType(h);
+            double min = in.getDouble();
+            double max = in.getDouble();
+            double[] powerSums = new double[h.ka];
+            for (int i = 0; i < h.ka; i++) {
+                powerSums[i] = in.getDouble();
+            }
+            return new ArcSinhMomentStruct(min, max, powerSums);
+        } finally {
+            in.order(order);
+        }
+    }
+
+    /**
+     * Merges every sketch between the position and limit of in into this struct
+     * without materializing the individual sketches. The sketches are summed
+     * into temporaries, so if one of them can't be merged neither this struct
+     * nor the position of in change.
+     * @return number of sketches merged
+     */
+    public int mergeAll(ByteBuffer in) {
+        ByteOrder order = in.order();
+        int start = in.position();
+        boolean merged = false;
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            double newMin = min, newMax = max;
+            double[] newPowerSums = powerSums.clone();
+            int count = 0;
+            while (in.hasRemaining()) {
+                MomentSketchFormat.Header h = MomentSketchFormat.readHeader(in);
+                checkType(h);
+                if (h.ka != powerSums.length) {
+                    throw new IllegalArgumentException(
+                            "Cannot merge sketch with k=" + h.ka + " into k=" + powerSums.length);
+                }
+                newMin = Math.min(newMin, in.getDouble());
+                newMax = Math.max(newMax, in.getDouble());
+                for (int i = 0; i < newPowerSums.length; i++) {
+                    newPowerSums[i] += in.getDouble();
+                }
+                count++;
+            }
+            this.min = newMin;
+            this.max = newMax;
+            System.arraycopy(newPowerSums, 0, powerSums, 0, powerSums.length);
+            updateScales();
+            merged = true;
+            return count;
+        } finally {
+            if (!merged) {
+                in.position(start);
+            }
+            in.order(order);
+        }
+    }
+
+    private static void checkType(MomentSketchFormat.Header h) {
+        if (h.type != MomentSketchFormat.TYPE_ARCSINH) {
+            throw new IllegalArgumentException("Expected arcsinh moment sketch, got type " + h.type);
+        }
+    }
+
     public double convert(double x) {
         double xS = FastMath.asinh(x);
         return (xS - xc) / xr;
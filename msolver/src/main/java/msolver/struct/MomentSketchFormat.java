@@ -0,0 +1,80 @@
+package msolver.struct;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Versioned binary encoding shared by the moment structs so that sketches can be
+ * pre-aggregated at ingest and shipped between processes.
+ *
+ * Layout (little endian):
+ * magic (2 bytes) | version (1) | type (1) | ka (2) | kb (2) | payload
+ *
+ * MomentStruct payload: min, max, logMin, logMax, ka power sums, kb log sums
+ * ArcSinhMomentStruct payload: arcsinh min, arcsinh max, ka arcsinh power sums
+ * All payload values are 8 byte doubles.
+ */
+public class MomentSketchFormat {
+    public static final short MAGIC = 0x4D53;
+    public static final byte VERSION = 1;
+    public static final byte TYPE_MOMENT = 1;
+    public static final byte TYPE_ARCSINH = 2;
+    public static final int HEADER_BYTES = 8;
+
+    public static class Header {
+        public byte type;
+        public int ka;
+        public int kb;
+
+        public int payloadBytes() {
+            if (type == TYPE_MOMENT) {
+                return 8 * (4 + ka + kb);
+            } else {
+                return 8 * (2 + ka);
+            }
+        }
+    }
+
+    static void writeHeader(ByteBuffer out, byte type, int ka, int kb) {
+        out.putShort(MAGIC);
+        out.put(VERSION);
+        out.put(type);
+        out.putShort((short) ka);
+        out.putShort((short) kb);
+    }
+
+    /**
+     * Reads the header at the current position of a little endian buffer and
+     * advances past it.
+     */
+    static Header readHeader(ByteBuffer in) {
+        if (in.remaining() < HEADER_BYTES) {
+            throw new BufferUnderflowException();
+        }
+        short magic = in.getShort();
+        if (magic != MAGIC) {
+            throw new IllegalArgumentException("Not a moment sketch: bad magic " + magic);
+        }
+        byte version = in.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported moment sketch version " + version);
+        }
+        Header h = new Header();
+        h.type = in.get();
+        if (h.type != TYPE_MOMENT && h.type != TYPE_ARCSINH) {
+            throw new IllegalArgumentException("Unknown moment sketch type " + h.type);
+        }
+        h.ka = in.getShort();
+        h.kb = in.getShort();
+        return h;
+    }
+
+    /**
+     * Reads the header at the current position without moving it.
+     */
+    public static Header peekHeader(ByteBuffer in) {
+        ByteBuffer b = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        return readHeader(b);
+    }
+}
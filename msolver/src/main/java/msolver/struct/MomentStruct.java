@@ -1,5 +1,7 @@
 package msolver.struct;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 public class MomentStruct {
@@ -28,6 +30,148 @@ public class MomentStruct {
         this.logSums = logSums;
     }
 
+    public MomentStruct(int ka, int kb) {
+        this.min = Double.MAX_VALUE;
+        this.max = -Double.MAX_VALUE;
+        this.powerSums = new double[ka];
+        this.logMin = Double.MAX_VALUE;
+        this.logMax = -Double.MAX_VALUE;
+        this.logSums = new double[kb];
+    }
+
+    public void merge(MomentStruct ms2) {
+        this.min = Math.min(this.min, ms2.min);
+        this.max = Math.max(this.max, ms2.max);
+        this.logMin = Math.min(this.logMin, ms2.logMin);
+        this.logMax = Math.max(this.logMax, ms2.logMax);
+        for (int i = 0; i < powerSums.length; i++) {
+            powerSums[i] += ms2.powerSums[i];
+        }
+        for (int i = 0; i < logSums.length; i++) {
+            logSums[i] += ms2.logSums[i];
+        }
+    }
+
+    public int serializedSize() {
+        return MomentSketchFormat.HEADER_BYTES + 8 * (4 + powerSums.length + logSums.length);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer out = ByteBuffer.allocate(serializedSize());
+        writeTo(out);
+        return out.array();
+    }
+
+    /**
+     * Writes the sketch at the current position of out, see {@link MomentSketchFormat}.
+     */
+    public void writeTo(ByteBuffer out) {
+        ByteOrder order = out.order();
+        out.order(ByteOrder.LITTLE_ENDIAN);
+        MomentSketchFormat.writeHeader(
+                out, MomentSketchFormat.TYPE_MOMENT, powerSums.length, logSums.length);
+        out.putDouble(min);
+        out.putDouble(max);
+        out.putDouble(logMin);
+        out.putDouble(logMax);
+        for (double p : powerSums) {
+            out.putDouble(p);
+        }
+        for (double p : logSums) {
+            out.putDouble(p);
+        }
+        out.order(order);
+    }
+
+    public static MomentStruct fromBytes(byte[] bytes) {
+        return fromBytes(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Reads one sketch at the current position of in and advances past it.
+     */
+    public static MomentStruct fromBytes(ByteBuffer in) {
+        ByteOrder order = in.order();
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            MomentSketchFormat.Header h = MomentSketchFormat.readHeader(in);
+            checkType(h);
+            MomentStruct ms = new MomentStruct(h.ka, h.kb);
+            ms.min = in.getDouble();
+            ms.max = in.getDouble();
+            ms.logMin = in.getDouble();
+            ms.logMax = in.getDouble();
+            for (int i = 0; i < h.ka; i++) {
+                ms.powerSums[i] = in.getDouble();
+            }
+            for (int i = 0; i < h.kb; i++) {
+                ms.logSums[i] = in.getDouble();
+            }
+            return ms;
+        } finally {
+            in.order(order);
+        }
+    }
+
+    /**
+     * Merges every sketch between the position and limit of in into this struct
+     * without materializing the individual sketches. The sketches are summed
+     * into temporaries, so if one of them can't be merged neither this struct
+     * nor the position of in change.
+     * @return number of sketches merged
+     */
+    public int mergeAll(ByteBuffer in) {
+        ByteOrder order = in.order();
+        int start = in.position();
+        boolean merged = false;
+        in.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            double newMin = min, newMax = max, newLogMin = logMin, newLogMax = logMax;
+            double[] newPowerSums = powerSums.clone();
+            double[] newLogSums = logSums.clone();
+            int count = 0;
+            while (in.hasRemaining()) {
+                MomentSketchFormat.Header h = MomentSketchFormat.readHeader(in);
+                checkType(h);
+                if (h.ka != powerSums.length || h.kb != logSums.length) {
+                    throw new IllegalArgumentException(String.format(
+                            "Cannot merge sketch with ka=%d, kb=%d into ka=%d, kb=%d",
+                            h.ka, h.kb, powerSums.length, logSums.length));
+                }
+                newMin = Math.min(newMin, in.getDouble());
+                newMax = Math.max(newMax, in.getDouble());
+                newLogMin = Math.min(newLogMin, in.getDouble());
+                newLogMax = Math.max(newLogMax, in.getDouble());
+                for (int i = 0; i < newPowerSums.length; i++) {
+                    newPowerSums[i] += in.getDouble();
+                }
+                for (int i = 0; i < newLogSums.length; i++) {
+                    newLogSums[i] += in.getDouble();
+                }
+                count++;
+            }
+            this.min = newMin;
+            this.max = newMax;
+            this.logMin = newLogMin;
+            this.logMax = newLogMax;
+            System.arraycopy(newPowerSums, 0, powerSums, 0, powerSums.length);
+            System.arraycopy(newLogSums, 0, logSums, 0, logSums.length);
+            merged = true;
+            return count;
+        } finally {
+            if (!merged) {
+                in.position(start);
+            }
+            in.order(order);
+        }
+    }
+
+    private static void checkType(MomentSketchFormat.Header h) {
+        if (h.type != MomentSketchFormat.TYPE_MOMENT) {
+            throw new IllegalArgumentException("Expected moment sketch, got type " + h.type);
+        }
+    }
+
     @Override
     public String toString() {
         return String.format(
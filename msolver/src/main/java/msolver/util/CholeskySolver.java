@@ -0,0 +1,117 @@
+package msolver.util;
+
+/**
+ * In-place Cholesky solver for the small dense symmetric positive definite
+ * systems that show up in the moment solvers. All buffers are allocated once
+ * so repeated factorizations of the same dimension do not allocate.
+ */
+public class CholeskySolver {
+    // commons-math CholeskyDecomposition defaults
+    public static final double DEFAULT_RELATIVE_SYMMETRY_THRESHOLD = 1.0e-15;
+    public static final double DEFAULT_ABSOLUTE_POSITIVITY_THRESHOLD = 1.0e-10;
+
+    private int n;
+    // lower triangular factor in row-major order
+    private double[] l;
+    private double[] y;
+
+    public CholeskySolver(int n) {
+        this.n = n;
+        this.l = new double[n*n];
+        this.y = new double[n];
+    }
+
+    public int dim() {
+        return n;
+    }
+
+    public boolean decompose(double[][] A) {
+        return decompose(
+                A,
+                DEFAULT_RELATIVE_SYMMETRY_THRESHOLD,
+                DEFAULT_ABSOLUTE_POSITIVITY_THRESHOLD
+        );
+    }
+
+    /**
+     * Factors A = L L^T, reading only the first n rows and columns of A.
+     * @return false if A is not symmetric or not positive definite within
+     * the given thresholds, in which case the factor is unusable.
+     */
+    public boolean decompose(
+            double[][] A,
+            double relativeSymmetryThreshold,
+            double absolutePositivityThreshold
+    ) {
+        for (int i = 0; i < n; i++) {
+            for (int j = i+1; j < n; j++) {
+                double aij = A[i][j];
+                double aji = A[j][i];
+                double maxDelta = relativeSymmetryThreshold * Math.max(Math.abs(aij), Math.abs(aji));
+                if (Math.abs(aij - aji) > maxDelta) {
+                    return false;
+                }
+            }
+        }
+
+        for (int j = 0; j < n; j++) {
+            int jRow = j*n;
+            double diag = A[j][j];
+            for (int k = 0; k < j; k++) {
+                diag -= l[jRow+k]*l[jRow+k];
+            }
+            if (diag <= absolutePositivityThreshold) {
+                return false;
+            }
+            double ljj = Math.sqrt(diag);
+            l[jRow+j] = ljj;
+            for (int i = j+1; i < n; i++) {
+                int iRow = i*n;
+                double sum = A[i][j];
+                for (int k = 0; k < j; k++) {
+                    sum -= l[iRow+k]*l[jRow+k];
+                }
+                l[iRow+j] = sum / ljj;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves A x = b using the last successful factorization.
+     * x and b may be the same array.
+     */
+    public void solve(double[] b, double[] x) {
+        forwardSubstitute(b);
+        for (int i = n-1; i >= 0; i--) {
+            double sum = y[i];
+            for (int k = i+1; k < n; k++) {
+                sum -= l[k*n+i]*x[k];
+            }
+            x[i] = sum / l[i*n+i];
+        }
+    }
+
+    /**
+     * @return b^T A^{-1} b using the last successful factorization
+     */
+    public double quadraticForm(double[] b) {
+        forwardSubstitute(b);
+        double sum = 0.0;
+        for (int i = 0; i < n; i++) {
+            sum += y[i]*y[i];
+        }
+        return sum;
+    }
+
+    private void forwardSubstitute(double[] b) {
+        for (int i = 0; i < n; i++) {
+            int iRow = i*n;
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= l[iRow+k]*y[k];
+            }
+            y[i] = sum / l[iRow+i];
+        }
+    }
+}
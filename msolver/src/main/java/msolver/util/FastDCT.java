@@ -2,27 +2,72 @@ package msolver.util;
 
 import org.jtransforms.fft.DoubleFFT_1D;
 
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Type-I DCT (same scaling as commons-math STANDARD_DCT_I) computed with a
+ * real FFT over the even extension of the input. The FFT plan and scratch
+ * buffers are built once per size, so instances are not thread safe: use
+ * {@link #get(int)} for a per-thread instance that is reused across solves.
+ */
 public class FastDCT {
+    private static final ThreadLocal<Map<Integer, FastDCT>> threadCache =
+            ThreadLocal.withInitial(HashMap::new);
+
     private int n;
+    private DoubleFFT_1D fft;
     private double[] y;
     private double[] out;
     public FastDCT(int n) {
         this.n = n;
         y = new double[2*n-2];
         out = new double[n];
+        fft = new DoubleFFT_1D(y.length);
+    }
+
+    /**
+     * @param n number of points, should be one more than a power of two
+     * @return cached transform for the calling thread
+     */
+    public static FastDCT get(int n) {
+        return threadCache.get().computeIfAbsent(n, FastDCT::new);
+    }
+
+    public int size() {
+        return n;
     }
+
+    /**
+     * @return transformed values, the returned array is overwritten on the next call
+     */
     public double[] dct(double[] x) {
+        return dct(x, out);
+    }
+
+    public double[] dct(double[] x, double[] result) {
         System.arraycopy(x, 0, y, 0, n);
         for (int i = n; i < y.length; i++) {
             y[i] = x[2*n-2-i];
         }
-        DoubleFFT_1D fft = new DoubleFFT_1D(y.length);
         fft.realForward(y);
 
         for (int i = 0; i < n-1; i++) {
-            out[i] = y[2*i]/2;
+            result[i] = y[2*i]/2;
+        }
+        result[n-1] = y[1]/2;
+        return result;
+    }
+
+    /**
+     * Transforms many functions sampled on the same grid in one pass.
+     * @return newly allocated coefficients, one row per input row
+     */
+    public double[][] dct(double[][] xs) {
+        double[][] results = new double[xs.length][n];
+        for (int i = 0; i < xs.length; i++) {
+            dct(xs[i], results[i]);
         }
-        out[n-1] = y[1];
-        return out;
+        return results;
     }
 }
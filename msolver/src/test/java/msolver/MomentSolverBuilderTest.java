@@ -28,8 +28,48 @@ public class MomentSolverBuilderTest {
         flag = builder.checkThreshold(4, .01);
         assertTrue(flag);
 
+        // solving directly, without the bound cascade, gives the same answer
+        MomentSolverBuilder solveOnly = new MomentSolverBuilder(m);
+        assertTrue(solveOnly.checkThresholdSolve(1, .3));
+        assertEquals(2, solveOnly.getCallType());
+        assertFalse(solveOnly.checkThresholdSolve(1, .4));
+
         double[] ps = {0.1, 0.5, 0.9};
         double[] qs = builder.getQuantiles(ps);
         assertEquals(0.693, qs[1], 0.001);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCache() {
+        MomentData data = new ExponentialData();
+        MomentStruct m = new MomentStruct();
+        m.min = data.getMin();
+        m.max = data.getMax();
+        m.powerSums = data.getPowerSums(10);
+        double[] ps = {0.1, 0.5, 0.9};
+
+        SolverCache<ChebyshevMomentSolver2> cache = new SolverCache<>(10);
+        MomentSolverBuilder builder = new MomentSolverBuilder(m);
+        builder.setCache(cache);
+        double[] qs = builder.getQuantiles(ps);
+        assertEquals(0, cache.getNumHits());
+        assertEquals(1, cache.size());
+
+        MomentSolverBuilder builder2 = new MomentSolverBuilder(m);
+        builder2.setCache(cache);
+        assertArrayEquals(qs, builder2.getQuantiles(ps), 0);
+        assertEquals(1, cache.getNumHits());
+
+        // a nearly identical sketch can start from the cached solution
+        MomentStruct m2 = new MomentStruct();
+        m2.min = m.min;
+        m2.max = m.max;
+        m2.powerSums = m.powerSums.clone();
+        m2.powerSums[2] *= 1.0 + 1e-7;
+        MomentSolverBuilder builder3 = new MomentSolverBuilder(m2);
+        builder3.setCache(cache);
+        assertArrayEquals(qs, builder3.getQuantiles(ps), 1e-3);
+        assertEquals(1, cache.getNumWarmStarts());
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,33 @@
+package msolver;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SolverCacheTest {
+    @Test
+    public void testSetMaxSizeEvicts() {
+        SolverCache<String> cache = new SolverCache<>(10);
+        double[] shape = {1, 2};
+        for (int i = 0; i < 5; i++) {
+            cache.put(new double[]{i}, "s" + i);
+            cache.putWarmStart(shape, new double[]{i}, new double[]{i});
+        }
+        // touch the oldest entries so they become the most recently used
+        assertEquals("s0", cache.get(new double[]{0}));
+        assertNotNull(cache.getWarmStart(shape, new double[]{0}));
+
+        cache.setMaxSize(2);
+        assertEquals(2, cache.size());
+        assertEquals("s0", cache.get(new double[]{0}));
+        assertEquals("s4", cache.get(new double[]{4}));
+        assertNull(cache.get(new double[]{1}));
+        assertNotNull(cache.getWarmStart(shape, new double[]{0}));
+        assertNotNull(cache.getWarmStart(shape, new double[]{4}));
+        assertNull(cache.getWarmStart(shape, new double[]{3}));
+
+        cache.setMaxSize(0);
+        assertEquals(0, cache.size());
+        assertNull(cache.getWarmStart(shape, new double[]{0}));
+    }
+}
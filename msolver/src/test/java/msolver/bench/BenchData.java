@@ -0,0 +1,60 @@
+package msolver.bench;
+
+import msolver.data.*;
+import msolver.struct.ArcSinhMomentStruct;
+import msolver.struct.MomentStruct;
+
+import java.util.Arrays;
+
+/**
+ * Moment sketches for the benchmark datasets in msolver.data, keyed by the
+ * names used in the benchmarks' dataset parameter.
+ */
+class BenchData {
+    static MomentData get(String name) {
+        switch (name) {
+            case "milan": return new MilanData();
+            case "hep": return new HepData();
+            case "retail": return new RetailQuantityData();
+            case "occupancy": return new OccupancyData();
+            case "exponential": return new ExponentialData();
+            case "gaussian": return new GaussianData();
+            default: throw new IllegalArgumentException("Unknown dataset: " + name);
+        }
+    }
+
+    /**
+     * Datasets without log moments (negative values) only carry the count in
+     * their log sums, so those are never padded out to k.
+     */
+    static MomentStruct getMomentStruct(String name, int k) {
+        MomentData data = get(name);
+        checkOrder(name, data, k);
+        double[] logSums = data.getLogSums();
+        return new MomentStruct(
+                data.getMin(), data.getMax(), data.getPowerSums(k),
+                data.getLogMin(), data.getLogMax(),
+                Arrays.copyOf(logSums, Math.min(k, logSums.length))
+        );
+    }
+
+    /**
+     * The datasets only record raw and log power sums, so the raw sums stand in
+     * for arcsinh sums. The solvers only ever see the moments rescaled to
+     * [-1, 1], so the work done per solve is representative.
+     */
+    static ArcSinhMomentStruct getArcSinhMomentStruct(String name, int k) {
+        MomentData data = get(name);
+        checkOrder(name, data, k);
+        return new ArcSinhMomentStruct(
+                data.getMin(), data.getMax(), data.getPowerSums(k)
+        );
+    }
+
+    private static void checkOrder(String name, MomentData data, int k) {
+        if (k > data.getPowerSums().length) {
+            throw new IllegalArgumentException(
+                    name + " only has " + data.getPowerSums().length + " power sums");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package msolver.bench;
+
+import msolver.util.CholeskySolver;
+import org.apache.commons.math3.linear.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the in-place CholeskySolver against the commons-math path it
+ * replaced in NewtonOptimizer and SimpleBoundSolver.
+ *
+ * Run from the msolver directory with:
+ * ./runBench.sh CholeskyBench -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CholeskyBench {
+    @Param({"5", "10", "20"})
+    public int k;
+
+    private double[][] hess;
+    private double[] grad;
+    private double[] step;
+    private CholeskySolver solver;
+
+    @Setup
+    public void setUp() {
+        Random r = new Random(0);
+        double[][] b = new double[k][k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                b[i][j] = r.nextGaussian();
+            }
+        }
+        // B B^T + k I is symmetric positive definite
+        hess = new double[k][k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                double sum = 0.0;
+                for (int l = 0; l < k; l++) {
+                    sum += b[i][l]*b[j][l];
+                }
+                hess[i][j] = sum;
+            }
+            hess[i][i] += k;
+        }
+        grad = new double[k];
+        for (int i = 0; i < k; i++) {
+            grad[i] = r.nextGaussian();
+        }
+        step = new double[k];
+        solver = new CholeskySolver(k);
+    }
+
+    @Benchmark
+    public double[] commonsMath() {
+        RealMatrix hhMat = new Array2DRowRealMatrix(hess, false);
+        CholeskyDecomposition d = new CholeskyDecomposition(hhMat, 0, 0);
+        RealVector stepVector = d.getSolver().solve(new ArrayRealVector(grad));
+        return stepVector.toArray();
+    }
+
+    @Benchmark
+    public double[] inPlace() {
+        solver.decompose(hess, 0, 0);
+        solver.solve(grad, step);
+        return step;
+    }
+
+    @Benchmark
+    public double commonsMathQuadraticForm() {
+        RealMatrix m = new Array2DRowRealMatrix(hess, false);
+        CholeskyDecomposition d = new CholeskyDecomposition(m);
+        ArrayRealVector vec = new ArrayRealVector(grad, false);
+        return vec.dotProduct(d.getSolver().solve(vec));
+    }
+
+    @Benchmark
+    public double inPlaceQuadraticForm() {
+        solver.decompose(hess);
+        return solver.quadraticForm(grad);
+    }
+}
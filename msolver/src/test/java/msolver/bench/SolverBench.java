@@ -0,0 +1,80 @@
+package msolver.bench;
+
+import msolver.BCMomentSolver;
+import msolver.ChebyshevMomentSolver2;
+import msolver.MomentSolverBuilder;
+import msolver.PMomentSolverBuilder;
+import msolver.PointMassSolver;
+import msolver.struct.ArcSinhMomentStruct;
+import msolver.struct.MomentStruct;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end solve latency for each of the moment solvers on the datasets in
+ * msolver.data. Replaces the hand timed loops in the old BenchRunner.
+ *
+ * Run from the msolver directory with:
+ * ./runBench.sh SolverBench -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SolverBench {
+    @Param({"milan", "hep", "retail", "occupancy", "exponential", "gaussian"})
+    public String dataset;
+
+    @Param({"7", "11"})
+    public int k;
+
+    private MomentStruct ms;
+    private ArcSinhMomentStruct ams;
+    private double[] chebyMoments;
+    private double[] powerMoments;
+
+    @Setup
+    public void setUp() {
+        ms = BenchData.getMomentStruct(dataset, k);
+        ams = BenchData.getArcSinhMomentStruct(dataset, k);
+        chebyMoments = ams.getChebyMoments();
+        powerMoments = ams.getPowerMoments();
+    }
+
+    // BCMomentSolver keeps its multipliers between calls, so a new solver is
+    // built per invocation to measure cold solves.
+
+    @Benchmark
+    public BCMomentSolver bcSolve() {
+        BCMomentSolver bcSolver = new BCMomentSolver(64, k);
+        bcSolver.setMaxSteps(20);
+        bcSolver.setTolerance(1e-8);
+        bcSolver.solve(chebyMoments);
+        return bcSolver;
+    }
+
+    @Benchmark
+    public PointMassSolver pointMassSolve() {
+        PointMassSolver pointMassSolver = new PointMassSolver(k);
+        pointMassSolver.solve(powerMoments);
+        return pointMassSolver;
+    }
+
+    @Benchmark
+    public ChebyshevMomentSolver2 chebyshevSolve() {
+        MomentSolverBuilder builder = new MomentSolverBuilder(ms);
+        ChebyshevMomentSolver2 solver = builder.buildSolver();
+        solver.solve(1e-8);
+        return solver;
+    }
+
+    @Benchmark
+    public double pMomentQuantile() {
+        PMomentSolverBuilder builder = new PMomentSolverBuilder(ams);
+        builder.initialize();
+        return builder.getQuantile(.99);
+    }
+}
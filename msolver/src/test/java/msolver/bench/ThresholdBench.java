@@ -0,0 +1,74 @@
+package msolver.bench;
+
+import msolver.MomentSolverBuilder;
+import msolver.struct.MomentStruct;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of MomentSolverBuilder.checkThreshold split by how far the cascade
+ * gets before deciding: "range" is answered from min / max, "bound" by the
+ * Markov or RTT bounds, and "solve" needs the full maximum entropy solve.
+ *
+ * Run from the msolver directory with:
+ * ./runBench.sh ThresholdBench -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ThresholdBench {
+    private static final double PHI = .01;
+    private static final int NUM_CANDIDATES = 400;
+
+    @Param({"milan", "hep", "retail", "occupancy", "exponential", "gaussian"})
+    public String dataset;
+
+    @Param({"7", "11"})
+    public int k;
+
+    @Param({"range", "bound", "solve"})
+    public String outcome;
+
+    private MomentStruct ms;
+    private double x;
+
+    @Setup
+    public void setUp() {
+        ms = BenchData.getMomentStruct(dataset, k);
+        int callType = getCallType(outcome);
+        // scan the range from the top, where the bounds are most likely to
+        // prune, for a cutoff that ends the cascade at the requested stage
+        for (int i = 0; i <= NUM_CANDIDATES; i++) {
+            double candidate = ms.max - (ms.max - ms.min) * i / NUM_CANDIDATES;
+            MomentSolverBuilder builder = new MomentSolverBuilder(ms);
+            builder.initialize();
+            builder.checkThreshold(candidate, PHI);
+            if (builder.getCallType() == callType) {
+                x = candidate;
+                return;
+            }
+        }
+        throw new IllegalStateException(
+                "No cutoff on " + dataset + " with k=" + k + " ends in " + outcome);
+    }
+
+    private static int getCallType(String outcome) {
+        switch (outcome) {
+            case "range": return 0;
+            case "bound": return 1;
+            case "solve": return 2;
+            default: throw new IllegalArgumentException("Unknown outcome: " + outcome);
+        }
+    }
+
+    @Benchmark
+    public boolean checkThreshold() {
+        MomentSolverBuilder builder = new MomentSolverBuilder(ms);
+        builder.initialize();
+        return builder.checkThreshold(x, PHI);
+    }
+}
@@ -3,6 +3,9 @@ package msolver.struct;
 import msolver.PMomentSolverBuilder;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
 import static org.junit.Assert.*;
 
 public class ArcSinhMomentStructTest {
@@ -33,4 +36,52 @@ public class ArcSinhMomentStructTest {
         double q = msolver.getQuantile(.50);
         assertEquals(9.5, q, .5);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSerialization() {
+        ArcSinhMomentStruct ms1 = new ArcSinhMomentStruct(5);
+        ms1.add(new double[]{1, 2, 3});
+        ArcSinhMomentStruct ms2 = new ArcSinhMomentStruct(5);
+        ms2.add(new double[]{-4, 100});
+
+        ArcSinhMomentStruct copy = ArcSinhMomentStruct.fromBytes(ms1.toBytes());
+        assertEquals(ms1.toString(), copy.toString());
+
+        ByteBuffer buf = ByteBuffer.allocate(ms1.serializedSize() + ms2.serializedSize());
+        buf.put(ms1.toBytes());
+        buf.put(ms2.toBytes());
+        buf.flip();
+        ArcSinhMomentStruct merged = new ArcSinhMomentStruct(5);
+        assertEquals(2, merged.mergeAll(buf));
+
+        ArcSinhMomentStruct expected = new ArcSinhMomentStruct(5);
+        expected.merge(ms1);
+        expected.merge(ms2);
+        assertEquals(expected.toString(), merged.toString());
+        assertEquals(expected.convert(3.0), merged.convert(3.0), 0);
+    }
+
+    @Test
+    public void testMergeAllMismatch() {
+        ArcSinhMomentStruct ms1 = new ArcSinhMomentStruct(5);
+        ms1.add(new double[]{1, 2, 3});
+        ArcSinhMomentStruct ms2 = new ArcSinhMomentStruct(4);
+        ms2.add(new double[]{-4, 100});
+
+        ByteBuffer buf = ByteBuffer.allocate(ms1.serializedSize() + ms2.serializedSize());
+        buf.put(ms1.toBytes());
+        buf.put(ms2.toBytes());
+        buf.flip();
+        ArcSinhMomentStruct merged = new ArcSinhMomentStruct(5);
+        String before = merged.toString();
+        try {
+            merged.mergeAll(buf);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(before, merged.toString());
+        assertEquals(0, buf.position());
+        assertEquals(ByteOrder.BIG_ENDIAN, buf.order());
+    }
+}
@@ -0,0 +1,86 @@
+package msolver.struct;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class MomentStructTest {
+    @Test
+    public void testSerialization() {
+        MomentStruct ms = new MomentStruct(
+                1, 10, new double[]{3, 15, 93},
+                0, Math.log(10), new double[]{3, 3.1, 4.2, 5.3}
+        );
+        byte[] bytes = ms.toBytes();
+        assertEquals(ms.serializedSize(), bytes.length);
+
+        MomentStruct ms2 = MomentStruct.fromBytes(bytes);
+        assertEquals(ms.toString(), ms2.toString());
+    }
+
+    @Test
+    public void testMergeAll() {
+        MomentStruct ms1 = new MomentStruct(
+                1, 5, new double[]{2, 6, 26},
+                0, Math.log(5), new double[]{2, 1.6}
+        );
+        MomentStruct ms2 = new MomentStruct(
+                2, 8, new double[]{3, 15, 90},
+                Math.log(2), Math.log(8), new double[]{3, 4.0}
+        );
+        ByteBuffer buf = ByteBuffer.allocate(ms1.serializedSize() + ms2.serializedSize());
+        ms1.writeTo(buf);
+        ms2.writeTo(buf);
+        buf.flip();
+
+        MomentStruct merged = new MomentStruct(3, 2);
+        assertEquals(2, merged.mergeAll(buf));
+        assertFalse(buf.hasRemaining());
+
+        MomentStruct expected = new MomentStruct(3, 2);
+        expected.merge(ms1);
+        expected.merge(ms2);
+        assertEquals(expected.toString(), merged.toString());
+        assertEquals(1, merged.min, 0);
+        assertEquals(8, merged.max, 0);
+        assertArrayEquals(new double[]{5, 21, 116}, merged.powerSums, 0);
+    }
+
+    @Test
+    public void testMergeAllMismatch() {
+        MomentStruct ms1 = new MomentStruct(
+                1, 5, new double[]{2, 6, 26},
+                0, Math.log(5), new double[]{2, 1.6}
+        );
+        MomentStruct ms2 = new MomentStruct(
+                2, 8, new double[]{3, 15},
+                Math.log(2), Math.log(8), new double[]{3, 4.0}
+        );
+        ByteBuffer buf = ByteBuffer.allocate(ms1.serializedSize() + ms2.serializedSize());
+        ms1.writeTo(buf);
+        ms2.writeTo(buf);
+        buf.flip();
+        buf.order(ByteOrder.BIG_ENDIAN);
+
+        MomentStruct merged = new MomentStruct(3, 2);
+        String before = merged.toString();
+        try {
+            merged.mergeAll(buf);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(before, merged.toString());
+        assertEquals(0, buf.position());
+        assertEquals(ByteOrder.BIG_ENDIAN, buf.order());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongType() {
+        ArcSinhMomentStruct ms = new ArcSinhMomentStruct(0, 1, new double[]{1, 0.5});
+        MomentStruct.fromBytes(ms.toBytes());
+    }
+}
@@ -0,0 +1,52 @@
+package msolver.util;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.CholeskyDecomposition;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CholeskySolverTest {
+    @Test
+    public void testSolve() {
+        double[][] A = {
+                {4, 2, 0.4},
+                {2, 5, 1},
+                {0.4, 1, 3}
+        };
+        double[] b = {1, -2, 0.5};
+        CholeskySolver solver = new CholeskySolver(3);
+        assertTrue(solver.decompose(A));
+        double[] x = new double[3];
+        solver.solve(b, x);
+
+        double[] expected = new CholeskyDecomposition(new Array2DRowRealMatrix(A))
+                .getSolver().solve(new ArrayRealVector(b)).toArray();
+        assertArrayEquals(expected, x, 1e-12);
+
+        double[] Ax = new double[3];
+        MatrixUtil.matVec(A, x, Ax);
+        assertArrayEquals(b, Ax, 1e-12);
+
+        double dot = 0.0;
+        for (int i = 0; i < 3; i++) {
+            dot += b[i]*x[i];
+        }
+        assertEquals(dot, solver.quadraticForm(b), 1e-12);
+
+        // solving in place
+        solver.solve(b, b);
+        assertArrayEquals(x, b, 1e-12);
+    }
+
+    @Test
+    public void testRejects() {
+        CholeskySolver solver = new CholeskySolver(2);
+        double[][] indefinite = {{1, 2}, {2, 1}};
+        assertFalse(solver.decompose(indefinite));
+        double[][] asymmetric = {{2, 1}, {1.5, 2}};
+        assertFalse(solver.decompose(asymmetric, 0, 0));
+        assertTrue(solver.decompose(asymmetric, 0.5, 0));
+    }
+}
@@ -54,4 +54,23 @@ public class FastDCTTest {
 //        System.out.println(Arrays.toString(cs));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testMatchesCommons() {
+        int n = 33;
+        double[] x = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = Math.sin(i) + i;
+        }
+        FastCosineTransformer t = new FastCosineTransformer(
+                DctNormalization.STANDARD_DCT_I
+        );
+        double[] expected = t.transform(x, TransformType.FORWARD);
+        assertArrayEquals(expected, new FastDCT(n).dct(x), 1e-10);
+
+        FastDCT cached = FastDCT.get(n);
+        assertSame(cached, FastDCT.get(n));
+        double[][] batch = cached.dct(new double[][]{x, x});
+        assertArrayEquals(expected, batch[0], 1e-10);
+        assertArrayEquals(expected, batch[1], 1e-10);
+    }
+}
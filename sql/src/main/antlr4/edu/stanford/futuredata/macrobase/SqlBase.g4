@@ -32,6 +32,12 @@ statement
     : query                                                            #statementDefault
     | IMPORT FROM CSV FILE STRING INTO qualifiedName
         ('(' columnDefinition (',' columnDefinition)* ')')?            #importCsv
+    | IMPORT FROM BINARY FILE STRING INTO qualifiedName                #importBinary
+    | EXPORT query TO BINARY FILE STRING                               #exportBinary
+    | SET SESSION? identifier EQ expression                            #setSession
+    | CACHE TABLE qualifiedName AS query                               #cacheTable
+    | UNCACHE (TABLE qualifiedName | ALL)                              #uncacheTable
+    | EXPLAIN ANALYZE query                                            #explainAnalyze
     ;
 
 query
@@ -53,6 +59,8 @@ querySpecification
     : SELECT setQuantifier? selectItem (',' selectItem)*
       (FROM relation (',' relation)*)?
       (WHERE where=booleanExpression)?
+      (GROUP BY groupBy)?
+      (HAVING having=booleanExpression)?
       (ORDER BY sortItem (',' sortItem)*)?
       (LIMIT limit=(INTEGER_VALUE | ALL))?
       exportClause?
@@ -60,6 +68,8 @@ querySpecification
       exportClause?
       (FROM relation (',' relation)*)?
       (WHERE where=booleanExpression)?
+      (GROUP BY groupBy)?
+      (HAVING having=booleanExpression)?
       (ORDER BY sortItem (',' sortItem)*)?
       (LIMIT limit=(INTEGER_VALUE | ALL))?
     ;
@@ -108,8 +118,12 @@ diffQuerySpecification
     ;
 
 splitQuery
-    :  SPLIT relation WHERE where=booleanExpression
-    |  SPLIT queryTerm WHERE where=booleanExpression
+    :  SPLIT relation WHERE where+=booleanExpression (',' where+=booleanExpression)*
+    |  SPLIT queryTerm WHERE where+=booleanExpression (',' where+=booleanExpression)*
+    ;
+
+groupBy
+    : expression (',' expression)*
     ;
 
 columnDefinition
@@ -180,7 +194,12 @@ escapeClause
     ;
 
 relation
-    : aliasedRelation
+    : left=relation
+      ( CROSS JOIN right=aliasedRelation
+      | joinType JOIN rightRelation=relation joinCriteria
+      | NATURAL joinType JOIN right=aliasedRelation
+      )                                                     #joinRelation
+    | aliasedRelation                                       #relationDefault
     ;
 
 joinType
@@ -327,24 +346,24 @@ number
 nonReserved
     // IMPORTANT: this rule must only contain tokens. Nested rules are not supported. See SqlParser.exitNonReserved
     : ADD | ALL | ANALYZE | ANY | ARRAY | ASC | AT
-    | BERNOULLI
-    | CALL | CASCADE | CATALOGS | COALESCE | COLUMN | COLUMNS | COMMENT | COMMIT | COMMITTED | CURRENT
+    | BERNOULLI | BINARY
+    | CACHE | CALL | CASCADE | CATALOGS | COALESCE | COLUMN | COLUMNS | COMMENT | COMMIT | COMMITTED | COUNT | CURRENT
     | DATA | DATE | DAY | DESC | DISTRIBUTED
-    | EXCLUDING | EXPLAIN
+    | EXCLUDING | EXPLAIN | EXPORT
     | FILTER | FIRST | FOLLOWING | FORMAT | FUNCTIONS
     | GRANT | GRANTS | GRAPHVIZ
     | HOUR
     | IF | INCLUDING | INPUT | INTEGER | INTERVAL | ISOLATION
     | LAST | LATERAL | LEVEL | LIMIT | LOGICAL
-    | MAP | MINUTE | MONTH
+    | MAP | MAX | MIN | MINUTE | MONTH
     | NFC | NFD | NFKC | NFKD | NO | NULLIF | NULLS
     | ONLY | OPTION | ORDINALITY | OUTPUT | OVER
     | PARTITION | PARTITIONS | POSITION | PRECEDING | PRIVILEGES | PROPERTIES | PUBLIC
     | RANGE | READ | RENAME | REPEATABLE | REPLACE | RESET | RESTRICT | REVOKE | ROLLBACK | ROW | ROWS
     | SCHEMA | SCHEMAS | SECOND | SESSION | SET | SETS
-    | SHOW | SMALLINT | SOME | START | STATS | SUBSTRING | SYSTEM
+    | SHOW | SMALLINT | SOME | START | STATS | SUBSTRING | SUM | SYSTEM
     | TABLES | TABLESAMPLE | TEXT | TIME | TIMESTAMP | TINYINT | TO | TRY_CAST | TYPE
-    | UNBOUNDED | UNCOMMITTED | USE
+    | UNBOUNDED | UNCACHE | UNCOMMITTED | USE
     | VALIDATE | VERBOSE | VIEW
     | WORK | WRITE
     | YEAR
@@ -363,7 +382,9 @@ ASC: 'ASC';
 AT: 'AT';
 BERNOULLI: 'BERNOULLI';
 BETWEEN: 'BETWEEN';
+BINARY: 'BINARY';
 BY: 'BY';
+CACHE: 'CACHE';
 CALL: 'CALL';
 CASCADE: 'CASCADE';
 CASE: 'CASE';
@@ -405,6 +426,7 @@ EXCLUDING: 'EXCLUDING';
 EXECUTE: 'EXECUTE';
 EXISTS: 'EXISTS';
 EXPLAIN: 'EXPLAIN';
+EXPORT: 'EXPORT';
 EXTRACT: 'EXTRACT';
 FALSE: 'FALSE';
 FIELDS: 'FIELDS';
@@ -528,6 +550,7 @@ TRY_CAST: 'TRY_CAST';
 TYPE: 'TYPE';
 UESCAPE: 'UESCAPE';
 UNBOUNDED: 'UNBOUNDED';
+UNCACHE: 'UNCACHE';
 UNCOMMITTED: 'UNCOMMITTED';
 UNION: 'UNION';
 UNNEST: 'UNNEST';
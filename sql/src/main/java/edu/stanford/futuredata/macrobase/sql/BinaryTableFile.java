@@ -0,0 +1,509 @@
+package edu.stanford.futuredata.macrobase.sql;
+
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.MIN_ROWS_PER_THREAD;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.getRanges;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.parallelFor;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.runInParallel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.datamodel.Schema.ColType;
+import edu.stanford.futuredata.macrobase.sql.CompiledFilter.DictionaryLookup;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import edu.stanford.futuredata.macrobase.util.MacroBaseSQLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Columnar binary format for tables, written by EXPORT ... TO BINARY FILE and read by IMPORT FROM
+ * BINARY FILE, which is much faster to load than a CSV file. Double columns are stored as raw
+ * doubles, and String columns are dictionary encoded: each distinct value is stored once, followed
+ * by a fixed-width code for every row. Columns are memory-mapped and decoded in parallel, in
+ * ranges of rows; all the rows of a distinct value share a single String, and the dictionary is
+ * kept for WHERE clauses.
+ *
+ * Layout, in little-endian order:
+ * <pre>
+ * header         magic, version, number of rows, number of columns, then for each column its
+ *                type, the length and UTF-8 bytes of its name, and the offset and length of its
+ *                data
+ * double column  the value of each row
+ * String column  number of distinct values, width of the codes (1, 2 or 4 bytes), length of the
+ *                distinct values in bytes, the length and UTF-8 bytes of each distinct value, and
+ *                then, from the next multiple of 8 bytes, the code of each row plus one, with 0
+ *                for null
+ * </pre>
+ * The data of each column starts at a multiple of 8 bytes.
+ */
+class BinaryTableFile {
+
+    // "MBBT" when read as bytes
+    private static final int MAGIC = 0x5442424d;
+    private static final int VERSION = 1;
+    private static final byte DOUBLE_TYPE = 0;
+    private static final byte STRING_TYPE = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int STRING_HEADER_BYTES = 16;
+    // a single mapping can't exceed 2GB; ranges of rows are split to stay well below that
+    private static final long MAX_MAPPED_BYTES = 1 << 28;
+    private static final int IO_BUFFER_BYTES = 1 << 16;
+
+    private BinaryTableFile() {
+    }
+
+    /**
+     * Work on the rows [from, to) of a column
+     */
+    private interface RangeTask {
+
+        void run(int from, int to) throws IOException;
+    }
+
+    /**
+     * Write a table to a new file. The String columns are encoded with their existing dictionary
+     * if they have one.
+     *
+     * @return the size of the file in bytes
+     * @throws MacroBaseSQLException if the file already exists or can't be written
+     */
+    static long write(final DataFrame df, final String filename, final ExecutorService pool,
+        final int numThreads, final DictionaryLookup dictionaries) throws MacroBaseException {
+        final Schema schema = df.getSchema();
+        final int numColumns = schema.getNumColumns();
+        final int numRows = df.getNumRows();
+        final byte[][] names = new byte[numColumns][];
+        long headerBytes = HEADER_BYTES;
+        for (int c = 0; c < numColumns; ++c) {
+            names[c] = schema.getColumnName(c).getBytes(UTF_8);
+            headerBytes += 1 + 4 + names[c].length + 8 + 8;
+        }
+
+        final StringDictionary[] columnDictionaries = new StringDictionary[numColumns];
+        final byte[][][] values = new byte[numColumns][][];
+        final long[] offsets = new long[numColumns];
+        final long[] lengths = new long[numColumns];
+        long offset = align(headerBytes);
+        for (int c = 0; c < numColumns; ++c) {
+            offsets[c] = offset;
+            if (schema.getColumnType(c) == ColType.DOUBLE) {
+                lengths[c] = 8L * numRows;
+            } else {
+                final String[] column = df.getStringColumn(c);
+                StringDictionary dictionary = dictionaries.getDictionary(column);
+                if (dictionary == null) {
+                    dictionary = StringDictionary.encode(column, pool, numThreads);
+                }
+                columnDictionaries[c] = dictionary;
+                values[c] = encodeValues(dictionary, pool, numThreads);
+                lengths[c] = getCodesOffset(values[c])
+                    + (long) getCodeWidth(dictionary.size()) * numRows;
+            }
+            offset = align(offset + lengths[c]);
+        }
+
+        try (FileChannel channel = FileChannel
+            .open(Paths.get(filename), CREATE_NEW, READ, WRITE)) {
+            final ChannelWriter header = new ChannelWriter(channel, 0);
+            header.putInt(MAGIC).putInt(VERSION).putInt(numRows).putInt(numColumns);
+            for (int c = 0; c < numColumns; ++c) {
+                header.put(schema.getColumnType(c) == ColType.DOUBLE ? DOUBLE_TYPE : STRING_TYPE)
+                    .putInt(names[c].length)
+                    .put(names[c])
+                    .putLong(offsets[c])
+                    .putLong(lengths[c]);
+            }
+            header.flush();
+
+            final List<Callable<Void>> tasks = new ArrayList<>();
+            for (int c = 0; c < numColumns; ++c) {
+                if (schema.getColumnType(c) == ColType.DOUBLE) {
+                    final double[] column = df.getDoubleColumn(c);
+                    final long start = offsets[c];
+                    addRangeTasks(tasks, numThreads, numRows, 8, (from, to) ->
+                        map(channel, MapMode.READ_WRITE, start + 8L * from, 8L * (to - from))
+                            .asDoubleBuffer().put(column, from, to - from));
+                } else {
+                    final ChannelWriter writer = new ChannelWriter(channel, offsets[c]);
+                    final int numValues = values[c].length;
+                    writer.putInt(numValues)
+                        .putInt(getCodeWidth(numValues))
+                        .putLong(getValuesBytes(values[c]));
+                    for (byte[] value : values[c]) {
+                        writer.putInt(value.length).put(value);
+                    }
+                    writer.flush();
+                    final int[] codes = columnDictionaries[c].getCodes();
+                    final int width = getCodeWidth(numValues);
+                    final long start = offsets[c] + getCodesOffset(values[c]);
+                    addRangeTasks(tasks, numThreads, numRows, width, (from, to) ->
+                        putCodes(map(channel, MapMode.READ_WRITE, start + (long) width * from,
+                            (long) width * (to - from)), width, codes, from, to));
+                }
+            }
+            runInParallel(pool, numThreads, tasks);
+            return channel.size();
+        } catch (FileAlreadyExistsException e) {
+            throw new MacroBaseSQLException("File " + filename + " already exists");
+        } catch (IOException e) {
+            throw new MacroBaseSQLException(e);
+        }
+    }
+
+    /**
+     * Read a table written by {@link #write}
+     *
+     * @param dictionaries the dictionaries of the String columns are added to it, keyed by column
+     * @return the table
+     * @throws MacroBaseSQLException if the file doesn't exist, or isn't a valid binary table
+     */
+    static DataFrame read(final String filename, final ExecutorService pool, final int numThreads,
+        final Map<String[], StringDictionary> dictionaries) throws MacroBaseException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), READ)) {
+            final long fileBytes = channel.size();
+            final ChannelReader header = new ChannelReader(channel, 0);
+            if (fileBytes < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new MacroBaseSQLException(filename + " is not a MacroBase binary table");
+            }
+            final int version = header.getInt();
+            if (version != VERSION) {
+                throw new MacroBaseSQLException(
+                    filename + " has unsupported binary table version " + version);
+            }
+            final int numRows = header.getInt();
+            final int numColumns = header.getInt();
+            if (numRows < 0 || numColumns < 0) {
+                throw new MacroBaseSQLException(filename + " is corrupt");
+            }
+            final byte[] types = new byte[numColumns];
+            final String[] names = new String[numColumns];
+            final long[] offsets = new long[numColumns];
+            for (int c = 0; c < numColumns; ++c) {
+                types[c] = header.get();
+                final int nameBytes = header.getInt();
+                if (nameBytes < 0 || nameBytes > fileBytes) {
+                    throw new MacroBaseSQLException(filename + " is corrupt");
+                }
+                names[c] = new String(header.getBytes(nameBytes), UTF_8);
+                offsets[c] = header.getLong();
+                final long length = header.getLong();
+                if (offsets[c] < 0 || length < 0 || offsets[c] + length > fileBytes) {
+                    throw new MacroBaseSQLException(filename + " is truncated");
+                }
+            }
+
+            final List<Callable<Void>> tasks = new ArrayList<>();
+            final Object[] columns = new Object[numColumns];
+            final int[][] columnCodes = new int[numColumns][];
+            final String[][] columnValues = new String[numColumns][];
+            for (int c = 0; c < numColumns; ++c) {
+                if (types[c] == DOUBLE_TYPE) {
+                    final double[] column = new double[numRows];
+                    final long start = offsets[c];
+                    addRangeTasks(tasks, numThreads, numRows, 8, (from, to) ->
+                        map(channel, MapMode.READ_ONLY, start + 8L * from, 8L * (to - from))
+                            .asDoubleBuffer().get(column, from, to - from));
+                    columns[c] = column;
+                } else if (types[c] == STRING_TYPE) {
+                    final ChannelReader reader = new ChannelReader(channel, offsets[c]);
+                    final int numValues = reader.getInt();
+                    final int width = reader.getInt();
+                    final long valuesBytes = reader.getLong();
+                    if (numValues < 0 || width != getCodeWidth(numValues)
+                        || valuesBytes < 4L * numValues || valuesBytes > fileBytes) {
+                        throw new MacroBaseSQLException(filename + " is corrupt");
+                    }
+                    final byte[][] valueBytes = new byte[numValues][];
+                    for (int v = 0; v < numValues; ++v) {
+                        final int length = reader.getInt();
+                        if (length < 0 || length > valuesBytes) {
+                            throw new MacroBaseSQLException(filename + " is corrupt");
+                        }
+                        valueBytes[v] = reader.getBytes(length);
+                    }
+                    final String[] values = new String[numValues];
+                    parallelFor(pool, numThreads, numValues, MIN_ROWS_PER_THREAD,
+                        (v) -> values[v] = new String(valueBytes[v], UTF_8));
+
+                    final String[] column = new String[numRows];
+                    final int[] codes = new int[numRows];
+                    final long start = offsets[c] + align(STRING_HEADER_BYTES + valuesBytes);
+                    addRangeTasks(tasks, numThreads, numRows, width, (from, to) ->
+                        getCodes(map(channel, MapMode.READ_ONLY, start + (long) width * from,
+                            (long) width * (to - from)), width, codes, values, column, from, to));
+                    columns[c] = column;
+                    columnCodes[c] = codes;
+                    columnValues[c] = values;
+                } else {
+                    throw new MacroBaseSQLException(
+                        filename + " has column " + names[c] + " of unknown type " + types[c]);
+                }
+            }
+            runInParallel(pool, numThreads, tasks);
+
+            final DataFrame df = new DataFrame();
+            for (int c = 0; c < numColumns; ++c) {
+                if (types[c] == DOUBLE_TYPE) {
+                    df.addColumn(names[c], (double[]) columns[c]);
+                } else {
+                    final String[] column = (String[]) columns[c];
+                    df.addColumn(names[c], column);
+                    dictionaries.put(column, StringDictionary
+                        .fromCodes(columnCodes[c], Arrays.asList(columnValues[c]), pool,
+                            numThreads));
+                }
+            }
+            return df;
+        } catch (NoSuchFileException e) {
+            throw new MacroBaseSQLException("File " + filename + " does not exist");
+        } catch (EOFException e) {
+            throw new MacroBaseSQLException(filename + " is truncated");
+        } catch (IndexOutOfBoundsException e) {
+            throw new MacroBaseSQLException(filename + " is corrupt");
+        } catch (IOException e) {
+            throw new MacroBaseSQLException(e);
+        }
+    }
+
+    /**
+     * Split the rows into the ranges that each thread works on, and split those further so that
+     * no range has more than MAX_MAPPED_BYTES of data
+     */
+    private static void addRangeTasks(final List<Callable<Void>> tasks, final int numThreads,
+        final int numRows, final int bytesPerRow, final RangeTask task) {
+        final int maxRows = (int) (MAX_MAPPED_BYTES / bytesPerRow);
+        final int[] bounds = getRanges(numThreads, numRows, MIN_ROWS_PER_THREAD);
+        for (int r = 0; r + 1 < bounds.length; ++r) {
+            for (int from = bounds[r]; from < bounds[r + 1]; from += maxRows) {
+                final int rangeFrom = from;
+                final int rangeTo = Math.min(bounds[r + 1], from + maxRows);
+                tasks.add(() -> {
+                    task.run(rangeFrom, rangeTo);
+                    return null;
+                });
+            }
+        }
+    }
+
+    private static ByteBuffer map(final FileChannel channel, final MapMode mode,
+        final long position, final long size) throws IOException {
+        return channel.map(mode, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void putCodes(final ByteBuffer buffer, final int width, final int[] codes,
+        final int from, final int to) {
+        if (width == 1) {
+            for (int i = from; i < to; ++i) {
+                buffer.put((byte) (codes[i] + 1));
+            }
+        } else if (width == 2) {
+            for (int i = from; i < to; ++i) {
+                buffer.putShort((short) (codes[i] + 1));
+            }
+        } else {
+            for (int i = from; i < to; ++i) {
+                buffer.putInt(codes[i] + 1);
+            }
+        }
+    }
+
+    private static void getCodes(final ByteBuffer buffer, final int width, final int[] codes,
+        final String[] values, final String[] column, final int from, final int to) {
+        for (int i = from; i < to; ++i) {
+            final int code;
+            if (width == 1) {
+                code = (buffer.get() & 0xff) - 1;
+            } else if (width == 2) {
+                code = (buffer.getShort() & 0xffff) - 1;
+            } else {
+                code = buffer.getInt() - 1;
+            }
+            codes[i] = code;
+            column[i] = code == StringDictionary.NULL_CODE ? null : values[code];
+        }
+    }
+
+    /**
+     * @return the UTF-8 bytes of each distinct value of a dictionary, in order of their codes
+     */
+    private static byte[][] encodeValues(final StringDictionary dictionary,
+        final ExecutorService pool, final int numThreads) throws MacroBaseException {
+        final byte[][] values = new byte[dictionary.size()][];
+        parallelFor(pool, numThreads, values.length, MIN_ROWS_PER_THREAD,
+            (v) -> values[v] = dictionary.getValue(v).getBytes(UTF_8));
+        return values;
+    }
+
+    private static long getValuesBytes(final byte[][] values) {
+        long numBytes = 0;
+        for (byte[] value : values) {
+            numBytes += 4 + value.length;
+        }
+        return numBytes;
+    }
+
+    /**
+     * @return the offset of the codes of a String column from the start of its data
+     */
+    private static long getCodesOffset(final byte[][] values) {
+        return align(STRING_HEADER_BYTES + getValuesBytes(values));
+    }
+
+    /**
+     * @return the number of bytes needed for the codes of numValues values, plus the null code
+     */
+    private static int getCodeWidth(final int numValues) {
+        if (numValues < 1 << 8) {
+            return 1;
+        } else if (numValues < 1 << 16) {
+            return 2;
+        }
+        return 4;
+    }
+
+    private static long align(final long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Buffered sequential writes to a channel, starting at a given position
+     */
+    private static class ChannelWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        ChannelWriter(final FileChannel channel, final long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        ChannelWriter put(final byte value) throws IOException {
+            reserve(1);
+            buffer.put(value);
+            return this;
+        }
+
+        ChannelWriter putInt(final int value) throws IOException {
+            reserve(4);
+            buffer.putInt(value);
+            return this;
+        }
+
+        ChannelWriter putLong(final long value) throws IOException {
+            reserve(8);
+            buffer.putLong(value);
+            return this;
+        }
+
+        ChannelWriter put(final byte[] bytes) throws IOException {
+            if (bytes.length > buffer.capacity()) {
+                flush();
+                write(ByteBuffer.wrap(bytes));
+            } else {
+                reserve(bytes.length);
+                buffer.put(bytes);
+            }
+            return this;
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            write(buffer);
+            buffer.clear();
+        }
+
+        private void reserve(final int numBytes) throws IOException {
+            if (buffer.remaining() < numBytes) {
+                flush();
+            }
+        }
+
+        private void write(final ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                position += channel.write(src, position);
+            }
+        }
+    }
+
+    /**
+     * Buffered sequential reads from a channel, starting at a given position
+     */
+    private static class ChannelReader {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_BYTES)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        // position of the next byte to read from the channel into the buffer
+        private long position;
+
+        ChannelReader(final FileChannel channel, final long position) {
+            this.channel = channel;
+            this.position = position;
+            buffer.limit(0);
+        }
+
+        byte get() throws IOException {
+            require(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            require(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException {
+            require(8);
+            return buffer.getLong();
+        }
+
+        byte[] getBytes(final int numBytes) throws IOException {
+            final byte[] bytes = new byte[numBytes];
+            final int buffered = Math.min(numBytes, buffer.remaining());
+            buffer.get(bytes, 0, buffered);
+            final ByteBuffer dst = ByteBuffer.wrap(bytes, buffered, numBytes - buffered);
+            while (dst.hasRemaining()) {
+                position += read(dst);
+            }
+            return bytes;
+        }
+
+        private void require(final int numBytes) throws IOException {
+            if (buffer.remaining() >= numBytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < numBytes) {
+                position += read(buffer);
+            }
+            buffer.flip();
+        }
+
+        private int read(final ByteBuffer dst) throws IOException {
+            final int numRead = channel.read(dst, position);
+            if (numRead < 0) {
+                throw new EOFException("unexpected end of binary table");
+            }
+            return numRead;
+        }
+    }
+}
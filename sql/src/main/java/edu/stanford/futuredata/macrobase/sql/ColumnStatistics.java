@@ -0,0 +1,307 @@
+package edu.stanford.futuredata.macrobase.sql;
+
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.MIN_ROWS_PER_THREAD;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.getRanges;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.runInParallel;
+
+import edu.stanford.futuredata.macrobase.datamodel.Schema.ColType;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Statistics of a single column: null count, approximate number of distinct values (NDV), min
+ * and max, and, for String columns, heavy hitters. Collected in one parallel pass over the
+ * column: each thread summarizes a contiguous range of rows, and the summaries are merged.
+ *
+ * Heavy hitters are found with the Misra-Gries algorithm with NUM_COUNTERS counters, whose
+ * summaries can be merged (Agarwal et al., 2012). Every value that appears in more than
+ * 1 / (NUM_COUNTERS + 1) of the rows is reported, with a count that's at most that many rows too
+ * low.
+ */
+class ColumnStatistics {
+
+    static final int NUM_COUNTERS = 64;
+
+    private final String name;
+    private final ColType type;
+    // the column the statistics describe, so that they can be found from the column
+    private final Object column;
+    private final int numRows;
+    private final int nullCount;
+    private final long distinctCount;
+    private final double min;
+    private final double max;
+    private final String minString;
+    private final String maxString;
+    private final Map<String, Integer> heavyHitters;
+
+    private ColumnStatistics(final String name, final ColType type, final Object column,
+        final int numRows, final Summary summary) {
+        this.name = name;
+        this.type = type;
+        this.column = column;
+        this.numRows = numRows;
+        this.nullCount = summary.nullCount;
+        this.distinctCount = summary.distinct.estimate();
+        this.min = summary.nullCount == numRows ? Double.NaN : summary.min;
+        this.max = summary.nullCount == numRows ? Double.NaN : summary.max;
+        this.minString = summary.minString;
+        this.maxString = summary.maxString;
+        this.heavyHitters = new LinkedHashMap<>();
+        summary.counters.entrySet().stream()
+            .sorted((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]))
+            .forEach((e) -> heavyHitters.put(e.getKey(), e.getValue()[0]));
+    }
+
+    static ColumnStatistics collect(final String name, final double[] column,
+        final ExecutorService pool, final int numThreads) throws MacroBaseException {
+        final List<Summary> summaries = summarizeRanges(column.length, pool, numThreads,
+            (from, to) -> {
+                final Summary summary = new Summary();
+                for (int i = from; i < to; ++i) {
+                    summary.add(column[i]);
+                }
+                return summary;
+            });
+        return new ColumnStatistics(name, ColType.DOUBLE, column, column.length,
+            merge(summaries));
+    }
+
+    static ColumnStatistics collect(final String name, final String[] column,
+        final ExecutorService pool, final int numThreads) throws MacroBaseException {
+        final List<Summary> summaries = summarizeRanges(column.length, pool, numThreads,
+            (from, to) -> {
+                final Summary summary = new Summary();
+                for (int i = from; i < to; ++i) {
+                    summary.add(column[i]);
+                }
+                return summary;
+            });
+        return new ColumnStatistics(name, ColType.STRING, column, column.length,
+            merge(summaries));
+    }
+
+    private interface RangeSummarizer {
+
+        Summary summarize(int from, int to);
+    }
+
+    private static List<Summary> summarizeRanges(final int numRows, final ExecutorService pool,
+        final int numThreads, final RangeSummarizer summarizer) throws MacroBaseException {
+        final int[] bounds = getRanges(numThreads, numRows, MIN_ROWS_PER_THREAD);
+        final List<Callable<Summary>> tasks = new ArrayList<>();
+        for (int r = 0; r + 1 < bounds.length; ++r) {
+            final int from = bounds[r];
+            final int to = bounds[r + 1];
+            tasks.add(() -> summarizer.summarize(from, to));
+        }
+        return runInParallel(pool, numThreads, tasks);
+    }
+
+    private static Summary merge(final List<Summary> summaries) {
+        final Summary merged = summaries.get(0);
+        for (int i = 1; i < summaries.size(); ++i) {
+            merged.merge(summaries.get(i));
+        }
+        return merged;
+    }
+
+    /**
+     * Mergeable summary of a range of rows
+     */
+    private static class Summary {
+
+        final HyperLogLog distinct = new HyperLogLog();
+        int nullCount = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        String minString = null;
+        String maxString = null;
+        // Misra-Gries counters; int[1] so that counts are updated in place
+        final Map<String, int[]> counters = new HashMap<>();
+
+        void add(final double value) {
+            if (Double.isNaN(value)) {
+                nullCount++;
+                return;
+            }
+            distinct.add(value);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        void add(final String value) {
+            if (value == null) {
+                nullCount++;
+                return;
+            }
+            distinct.add(value);
+            if (minString == null || value.compareTo(minString) < 0) {
+                minString = value;
+            }
+            if (maxString == null || value.compareTo(maxString) > 0) {
+                maxString = value;
+            }
+
+            final int[] counter = counters.get(value);
+            if (counter != null) {
+                counter[0]++;
+            } else if (counters.size() < NUM_COUNTERS) {
+                counters.put(value, new int[]{1});
+            } else {
+                // no free counter: decrement every counter, dropping those that reach 0
+                final Iterator<int[]> it = counters.values().iterator();
+                while (it.hasNext()) {
+                    if (--it.next()[0] == 0) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+
+        void merge(final Summary other) {
+            distinct.merge(other.distinct);
+            nullCount += other.nullCount;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            if (other.minString != null
+                && (minString == null || other.minString.compareTo(minString) < 0)) {
+                minString = other.minString;
+            }
+            if (other.maxString != null
+                && (maxString == null || other.maxString.compareTo(maxString) > 0)) {
+                maxString = other.maxString;
+            }
+
+            for (Entry<String, int[]> e : other.counters.entrySet()) {
+                final int[] counter = counters.get(e.getKey());
+                if (counter != null) {
+                    counter[0] += e.getValue()[0];
+                } else {
+                    counters.put(e.getKey(), new int[]{e.getValue()[0]});
+                }
+            }
+            if (counters.size() > NUM_COUNTERS) {
+                // subtract the (NUM_COUNTERS + 1)-th largest count, leaving at most NUM_COUNTERS
+                final int[] counts = counters.values().stream().mapToInt((c) -> -c[0]).sorted()
+                    .toArray();
+                final int cutoff = -counts[NUM_COUNTERS];
+                final Iterator<int[]> it = counters.values().iterator();
+                while (it.hasNext()) {
+                    final int[] counter = it.next();
+                    counter[0] -= cutoff;
+                    if (counter[0] <= 0) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ColType getType() {
+        return type;
+    }
+
+    Object getColumn() {
+        return column;
+    }
+
+    int getNumRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the number of NaN or null values
+     */
+    int getNullCount() {
+        return nullCount;
+    }
+
+    /**
+     * @return the estimated number of distinct non-null values
+     */
+    long getDistinctCount() {
+        return distinctCount;
+    }
+
+    /**
+     * Estimate the number of distinct values, null included, that a sample of sampleSize rows
+     * drawn at random with replacement would contain, or that the column contains if it has no
+     * more than sampleSize rows. A value that makes up a fraction p of the rows is in the sample
+     * with probability 1 - (1 - p)^sampleSize. The heavy hitters and nulls have known counts; the
+     * remaining rows are assumed to be spread evenly over the remaining distinct values.
+     */
+    double getSampleDistinctCount(final int sampleSize) {
+        final int numNullValues = nullCount > 0 ? 1 : 0;
+        if (numRows <= sampleSize) {
+            return distinctCount + numNullValues;
+        }
+        double sampleDistinct = probabilityInSample(nullCount, sampleSize);
+        long remainingRows = numRows - nullCount;
+        for (int count : heavyHitters.values()) {
+            sampleDistinct += probabilityInSample(count, sampleSize);
+            remainingRows -= count;
+        }
+        final long remainingDistinct = distinctCount - heavyHitters.size();
+        if (remainingDistinct > 0 && remainingRows > 0) {
+            sampleDistinct += remainingDistinct
+                * probabilityInSample((double) remainingRows / remainingDistinct, sampleSize);
+        }
+        return sampleDistinct;
+    }
+
+    /**
+     * @return the probability that a value with the given number of rows is in a sample
+     */
+    private double probabilityInSample(final double count, final int sampleSize) {
+        return 1.0 - Math.pow(1.0 - count / numRows, sampleSize);
+    }
+
+    /**
+     * @return the smallest non-NaN value of a double column, NaN if there's none
+     */
+    double getMin() {
+        return min;
+    }
+
+    /**
+     * @return the largest non-NaN value of a double column, NaN if there's none
+     */
+    double getMax() {
+        return max;
+    }
+
+    /**
+     * @return the smallest non-null value of a String column, null if there's none
+     */
+    String getMinString() {
+        return minString;
+    }
+
+    /**
+     * @return the largest non-null value of a String column, null if there's none
+     */
+    String getMaxString() {
+        return maxString;
+    }
+
+    /**
+     * @return the most frequent values of a String column, most frequent first, with lower bounds
+     * on their counts
+     */
+    Map<String, Integer> getHeavyHitters() {
+        return heavyHitters;
+    }
+}
@@ -0,0 +1,614 @@
+package edu.stanford.futuredata.macrobase.sql;
+
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.MIN_ROWS_PER_THREAD;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.parallelFor;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.runInParallel;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.datamodel.Schema.ColType;
+import edu.stanford.futuredata.macrobase.sql.tree.ComparisonExpression;
+import edu.stanford.futuredata.macrobase.sql.tree.ComparisonExpressionType;
+import edu.stanford.futuredata.macrobase.sql.tree.DoubleLiteral;
+import edu.stanford.futuredata.macrobase.sql.tree.Expression;
+import edu.stanford.futuredata.macrobase.sql.tree.FunctionCall;
+import edu.stanford.futuredata.macrobase.sql.tree.Identifier;
+import edu.stanford.futuredata.macrobase.sql.tree.IntLiteral;
+import edu.stanford.futuredata.macrobase.sql.tree.Literal;
+import edu.stanford.futuredata.macrobase.sql.tree.LogicalBinaryExpression;
+import edu.stanford.futuredata.macrobase.sql.tree.NotExpression;
+import edu.stanford.futuredata.macrobase.sql.tree.NullLiteral;
+import edu.stanford.futuredata.macrobase.sql.tree.StringLiteral;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import edu.stanford.futuredata.macrobase.util.MacroBaseSQLException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A WHERE clause compiled against a DataFrame. The expression tree is turned once into a tree of
+ * type-specialized filters, each of which computes the result for 64 rows at a time as a long
+ * word: comparisons on double columns are tight loops over the primitive array, comparisons on
+ * String columns compare dictionary codes when the column has a {@link StringDictionary}, and AND,
+ * OR and NOT combine whole words.
+ *
+ * Children of AND and OR are reordered by their estimated selectivity, so that AND evaluates the
+ * most selective child first, and a child is only evaluated for the words in which the result can
+ * still change: words with no matching row for AND, and words with every row matching for OR, are
+ * skipped.
+ */
+class CompiledFilter {
+
+    /**
+     * Evaluates function calls, such as UDFs, into double columns
+     */
+    interface FunctionEvaluator {
+
+        double[] evaluate(FunctionCall func) throws MacroBaseException;
+    }
+
+    /**
+     * Looks up the dictionary of a String column
+     */
+    interface DictionaryLookup {
+
+        /**
+         * @return the dictionary of column, or null if it doesn't have one
+         */
+        StringDictionary getDictionary(String[] column) throws MacroBaseException;
+    }
+
+    private final DataFrame df;
+    private final Filter root;
+    private final int numThreads;
+    private final ExecutorService pool;
+
+    private CompiledFilter(final DataFrame df, final Filter root, final ExecutorService pool,
+        final int numThreads) {
+        this.df = df;
+        this.root = root;
+        this.numThreads = numThreads;
+        this.pool = pool;
+    }
+
+    /**
+     * @throws MacroBaseSQLException Only comparison expressions (e.g., WHERE x = 42) and logical
+     * AND/OR/NOT combinations of such expressions are supported; exception is thrown otherwise.
+     */
+    static CompiledFilter compile(final DataFrame df, final Expression whereClause,
+        final FunctionEvaluator functions, final DictionaryLookup dictionaries,
+        final ExecutorService pool, final int numThreads) throws MacroBaseException {
+        final Compiler compiler = new Compiler(df, functions, dictionaries);
+        return new CompiledFilter(df, compiler.compile(whereClause), pool, numThreads);
+    }
+
+    /**
+     * @return the rows of the DataFrame for which the clause is true
+     */
+    BitSet getMask() throws MacroBaseException {
+        return BitSet.valueOf(evaluate());
+    }
+
+    /**
+     * @return A new DataFrame that contains the rows for which the clause is true
+     */
+    DataFrame filter() throws MacroBaseException {
+        final long[] words = evaluate();
+        int numSelected = 0;
+        for (long word : words) {
+            numSelected += Long.bitCount(word);
+        }
+        if (numSelected == df.getNumRows()) {
+            return df.copy();
+        }
+
+        final int[] rows = new int[numSelected];
+        int i = 0;
+        for (int w = 0; w < words.length; ++w) {
+            for (long word = words[w]; word != 0; word &= word - 1) {
+                rows[i++] = (w << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+
+        final Schema schema = df.getSchema();
+        final List<Callable<Object>> columns = new ArrayList<>();
+        for (int c = 0; c < schema.getNumColumns(); ++c) {
+            if (schema.getColumnType(c) == ColType.DOUBLE) {
+                final double[] col = df.getDoubleColumn(c);
+                columns.add(() -> {
+                    final double[] values = new double[rows.length];
+                    for (int j = 0; j < rows.length; ++j) {
+                        values[j] = col[rows[j]];
+                    }
+                    return values;
+                });
+            } else {
+                final String[] col = df.getStringColumn(c);
+                columns.add(() -> {
+                    final String[] values = new String[rows.length];
+                    for (int j = 0; j < rows.length; ++j) {
+                        values[j] = col[rows[j]];
+                    }
+                    return values;
+                });
+            }
+        }
+        final List<Object> selected = runInParallel(pool, numThreads, columns);
+        final DataFrame result = new DataFrame();
+        for (int c = 0; c < schema.getNumColumns(); ++c) {
+            if (selected.get(c) instanceof double[]) {
+                result.addColumn(schema.getColumnName(c), (double[]) selected.get(c));
+            } else {
+                result.addColumn(schema.getColumnName(c), (String[]) selected.get(c));
+            }
+        }
+        return result;
+    }
+
+    private long[] evaluate() throws MacroBaseException {
+        final long[] words = new long[(df.getNumRows() + 63) >>> 6];
+        parallelFor(pool, numThreads, words.length, MIN_ROWS_PER_THREAD >>> 6,
+            (w) -> words[w] = root.evaluateWord(w));
+        return words;
+    }
+
+    // ********************* Compilation **********************
+
+    private static class Compiler {
+
+        private final DataFrame df;
+        private final int numRows;
+        private final FunctionEvaluator functions;
+        private final DictionaryLookup dictionaries;
+
+        Compiler(final DataFrame df, final FunctionEvaluator functions,
+            final DictionaryLookup dictionaries) {
+            this.df = df;
+            this.numRows = df.getNumRows();
+            this.functions = functions;
+            this.dictionaries = dictionaries;
+        }
+
+        Filter compile(final Expression expression) throws MacroBaseException {
+            if (expression instanceof NotExpression) {
+                return new Not(compile(((NotExpression) expression).getValue()), numRows);
+
+            } else if (expression instanceof LogicalBinaryExpression) {
+                final LogicalBinaryExpression.Type type =
+                    ((LogicalBinaryExpression) expression).getType();
+                // flatten chains of the same operator, e.g. a AND (b AND c)
+                final List<Filter> children = new ArrayList<>();
+                collectOperands(expression, type, children);
+                if (type == LogicalBinaryExpression.Type.AND) {
+                    children.sort(Comparator.comparingDouble(Filter::getSelectivity));
+                    return new And(children.toArray(new Filter[0]));
+                } else {
+                    children.sort(Comparator.comparingDouble(Filter::getSelectivity).reversed());
+                    return new Or(children.toArray(new Filter[0]));
+                }
+
+            } else if (expression instanceof ComparisonExpression) {
+                final ComparisonExpression compareExpr = (ComparisonExpression) expression;
+                final Expression left = compareExpr.getLeft();
+                final Expression right = compareExpr.getRight();
+                final ComparisonExpressionType type = compareExpr.getType();
+
+                if (left instanceof Literal && right instanceof Literal) {
+                    return new Constant(left.equals(right), numRows);
+                } else if (left instanceof Literal && right instanceof Identifier) {
+                    return compileComparison((Identifier) right, flip(type), (Literal) left);
+                } else if (right instanceof Literal && left instanceof Identifier) {
+                    return compileComparison((Identifier) left, type, (Literal) right);
+                } else if (left instanceof FunctionCall && right instanceof Literal) {
+                    return new DoubleComparison(functions.evaluate((FunctionCall) left), type,
+                        getDoubleValue((Literal) right));
+                } else if (right instanceof FunctionCall && left instanceof Literal) {
+                    return new DoubleComparison(functions.evaluate((FunctionCall) right),
+                        flip(type), getDoubleValue((Literal) left));
+                }
+            }
+            throw new MacroBaseSQLException("Boolean expression not supported");
+        }
+
+        private void collectOperands(final Expression expression,
+            final LogicalBinaryExpression.Type type, final List<Filter> operands)
+            throws MacroBaseException {
+            if (expression instanceof LogicalBinaryExpression
+                && ((LogicalBinaryExpression) expression).getType() == type) {
+                collectOperands(((LogicalBinaryExpression) expression).getLeft(), type, operands);
+                collectOperands(((LogicalBinaryExpression) expression).getRight(), type, operands);
+            } else {
+                operands.add(compile(expression));
+            }
+        }
+
+        /**
+         * @param type the comparison, with the column on the left side
+         * @throws MacroBaseSQLException if the literal's type doesn't match the type of the
+         * column, or the comparison isn't supported for the column's type
+         */
+        private Filter compileComparison(final Identifier identifier,
+            final ComparisonExpressionType type, final Literal literal)
+            throws MacroBaseException {
+            final String colName = identifier.getValue();
+            final int colIndex;
+            try {
+                colIndex = df.getSchema().getColumnIndex(colName);
+            } catch (UnsupportedOperationException e) {
+                throw new MacroBaseSQLException(e.getMessage());
+            }
+            final ColType colType = df.getSchema().getColumnType(colIndex);
+
+            if (colType == ColType.DOUBLE) {
+                if (!(literal instanceof DoubleLiteral) && !(literal instanceof IntLiteral)) {
+                    throw new MacroBaseSQLException(
+                        "Column " + colName + " has type " + colType + ", but " + literal
+                            + " is not a DoubleLiteral");
+                }
+                return new DoubleComparison(df.getDoubleColumn(colIndex), type,
+                    getDoubleValue(literal));
+            }
+
+            // colType == ColType.STRING
+            final String value;
+            if (literal instanceof StringLiteral) {
+                value = ((StringLiteral) literal).getValue();
+            } else if (literal instanceof NullLiteral) {
+                value = null;
+            } else {
+                throw new MacroBaseSQLException(
+                    "Column " + colName + " has type " + colType + ", but " + literal
+                        + " is not StringLiteral");
+            }
+            final boolean equal;
+            switch (type) {
+                case EQUAL:
+                    equal = true;
+                    break;
+                case NOT_EQUAL:
+                case IS_DISTINCT_FROM:
+                    // IS DISTINCT FROM is true when x and y have different values or
+                    // if one of them is NULL and the other isn't
+                    equal = false;
+                    break;
+                default:
+                    throw new MacroBaseSQLException(type + " is not supported");
+            }
+
+            final String[] col = df.getStringColumn(colIndex);
+            final StringDictionary dictionary = dictionaries.getDictionary(col);
+            if (dictionary != null) {
+                return new CodeComparison(dictionary, value, equal);
+            }
+            return new StringComparison(col, value, equal);
+        }
+
+        /**
+         * @return the comparison with its sides swapped, e.g. > for <, so that 5 < x becomes x > 5
+         */
+        private static ComparisonExpressionType flip(final ComparisonExpressionType type) {
+            switch (type) {
+                case LESS_THAN:
+                    return ComparisonExpressionType.GREATER_THAN;
+                case LESS_THAN_OR_EQUAL:
+                    return ComparisonExpressionType.GREATER_THAN_OR_EQUAL;
+                case GREATER_THAN:
+                    return ComparisonExpressionType.LESS_THAN;
+                case GREATER_THAN_OR_EQUAL:
+                    return ComparisonExpressionType.LESS_THAN_OR_EQUAL;
+                default:
+                    return type;
+            }
+        }
+
+        private static double getDoubleValue(final Literal literal)
+            throws MacroBaseSQLException {
+            if (literal instanceof DoubleLiteral) {
+                return ((DoubleLiteral) literal).getValue();
+            } else if (literal instanceof IntLiteral) {
+                return ((IntLiteral) literal).getValue();
+            }
+            throw new MacroBaseSQLException(literal + " is not a numeric literal");
+        }
+    }
+
+    // ********************* Filters **********************
+
+    /**
+     * @return a word with the bits of the rows of word w that exist set, i.e. all ones except for
+     * the last word
+     */
+    private static long validBits(final int w, final int numRows) {
+        final int n = numRows - (w << 6);
+        return n >= 64 ? -1L : (1L << n) - 1;
+    }
+
+    private abstract static class Filter {
+
+        /**
+         * @return the result for rows [64 * w, 64 * w + 64), with bit i for row 64 * w + i. Bits
+         * past the last row are 0.
+         */
+        abstract long evaluateWord(int w);
+
+        /**
+         * @return the estimated fraction of rows for which the filter is true
+         */
+        abstract double getSelectivity();
+    }
+
+    private static class And extends Filter {
+
+        private final Filter[] children;
+
+        And(final Filter[] children) {
+            this.children = children;
+        }
+
+        @Override
+        long evaluateWord(final int w) {
+            long bits = children[0].evaluateWord(w);
+            for (int i = 1; i < children.length && bits != 0; ++i) {
+                bits &= children[i].evaluateWord(w);
+            }
+            return bits;
+        }
+
+        @Override
+        double getSelectivity() {
+            double selectivity = 1.0;
+            for (Filter child : children) {
+                selectivity *= child.getSelectivity();
+            }
+            return selectivity;
+        }
+    }
+
+    private static class Or extends Filter {
+
+        private final Filter[] children;
+
+        Or(final Filter[] children) {
+            this.children = children;
+        }
+
+        @Override
+        long evaluateWord(final int w) {
+            long bits = children[0].evaluateWord(w);
+            for (int i = 1; i < children.length && bits != -1L; ++i) {
+                bits |= children[i].evaluateWord(w);
+            }
+            return bits;
+        }
+
+        @Override
+        double getSelectivity() {
+            double none = 1.0;
+            for (Filter child : children) {
+                none *= 1.0 - child.getSelectivity();
+            }
+            return 1.0 - none;
+        }
+    }
+
+    private static class Not extends Filter {
+
+        private final Filter child;
+        private final int numRows;
+
+        Not(final Filter child, final int numRows) {
+            this.child = child;
+            this.numRows = numRows;
+        }
+
+        @Override
+        long evaluateWord(final int w) {
+            return ~child.evaluateWord(w) & validBits(w, numRows);
+        }
+
+        @Override
+        double getSelectivity() {
+            return 1.0 - child.getSelectivity();
+        }
+    }
+
+    private static class Constant extends Filter {
+
+        private final boolean value;
+        private final int numRows;
+
+        Constant(final boolean value, final int numRows) {
+            this.value = value;
+            this.numRows = numRows;
+        }
+
+        @Override
+        long evaluateWord(final int w) {
+            return value ? validBits(w, numRows) : 0L;
+        }
+
+        @Override
+        double getSelectivity() {
+            return value ? 1.0 : 0.0;
+        }
+    }
+
+    /**
+     * Comparison of a double column with a constant. There's one loop per comparison type, so
+     * that each loop is a branch-free scan of the column.
+     */
+    private static class DoubleComparison extends Filter {
+
+        private final double[] col;
+        private final ComparisonExpressionType type;
+        private final double y;
+
+        /**
+         * @throws MacroBaseSQLException If a comparsion type is passed in that is not supported,
+         * an exception is thrown
+         */
+        DoubleComparison(final double[] col, final ComparisonExpressionType type,
+            final double y) throws MacroBaseSQLException {
+            switch (type) {
+                case EQUAL:
+                case NOT_EQUAL:
+                case IS_DISTINCT_FROM:
+                case LESS_THAN:
+                case LESS_THAN_OR_EQUAL:
+                case GREATER_THAN:
+                case GREATER_THAN_OR_EQUAL:
+                    break;
+                default:
+                    throw new MacroBaseSQLException(type + " is not supported");
+            }
+            this.col = col;
+            this.type = type;
+            this.y = y;
+        }
+
+        @Override
+        long evaluateWord(final int w) {
+            final int start = w << 6;
+            final int end = Math.min(start + 64, col.length);
+            long bits = 0L;
+            // shifts only use the low 6 bits of i, i.e. its position in the word
+            switch (type) {
+                case EQUAL:
+                    for (int i = start; i < end; ++i) {
+                        bits |= (col[i] == y ? 1L : 0L) << i;
+                    }
+                    break;
+                case NOT_EQUAL:
+                case IS_DISTINCT_FROM:
+                    // x and y can never be NULL here, so IS DISTINCT FROM is the same as
+                    // NOT_EQUAL
+                    for (int i = start; i < end; ++i) {
+                        bits |= (col[i] != y ? 1L : 0L) << i;
+                    }
+                    break;
+                case LESS_THAN:
+                    for (int i = start; i < end; ++i) {
+                        bits |= (col[i] < y ? 1L : 0L) << i;
+                    }
+                    break;
+                case LESS_THAN_OR_EQUAL:
+                    for (int i = start; i < end; ++i) {
+                        bits |= (col[i] <= y ? 1L : 0L) << i;
+                    }
+                    break;
+                case GREATER_THAN:
+                    for (int i = start; i < end; ++i) {
+                        bits |= (col[i] > y ? 1L : 0L) << i;
+                    }
+                    break;
+                default:
+                    // GREATER_THAN_OR_EQUAL
+                    for (int i = start; i < end; ++i) {
+                        bits |= (col[i] >= y ? 1L : 0L) << i;
+                    }
+                    break;
+            }
+            return bits;
+        }
+
+        @Override
+        double getSelectivity() {
+            // the usual guesses without column statistics: equality is selective, ranges keep
+            // about a third of the rows
+            switch (type) {
+                case EQUAL:
+                    return 0.1;
+                case NOT_EQUAL:
+                case IS_DISTINCT_FROM:
+                    return 0.9;
+                default:
+                    return 1.0 / 3;
+            }
+        }
+    }
+
+    /**
+     * (In)equality of a dictionary-encoded String column with a constant
+     */
+    private static class CodeComparison extends Filter {
+
+        private final int[] codes;
+        private final int code;
+        private final boolean equal;
+        private final double selectivity;
+
+        CodeComparison(final StringDictionary dictionary, final String value,
+            final boolean equal) {
+            this.codes = dictionary.getCodes();
+            this.code = dictionary.getCode(value);
+            this.equal = equal;
+            final double matching = codes.length == 0 ? 0.0
+                : (double) dictionary.getCount(code) / codes.length;
+            this.selectivity = equal ? matching : 1.0 - matching;
+        }
+
+        @Override
+        long evaluateWord(final int w) {
+            final int start = w << 6;
+            final int end = Math.min(start + 64, codes.length);
+            long bits = 0L;
+            if (equal) {
+                for (int i = start; i < end; ++i) {
+                    bits |= (codes[i] == code ? 1L : 0L) << i;
+                }
+            } else {
+                for (int i = start; i < end; ++i) {
+                    bits |= (codes[i] != code ? 1L : 0L) << i;
+                }
+            }
+            return bits;
+        }
+
+        @Override
+        double getSelectivity() {
+            return selectivity;
+        }
+    }
+
+    /**
+     * (In)equality of a String column without a dictionary with a constant. Hash codes are
+     * compared first, since Strings cache them.
+     */
+    private static class StringComparison extends Filter {
+
+        private final String[] col;
+        private final String y;
+        private final int hash;
+        private final boolean equal;
+
+        StringComparison(final String[] col, final String y, final boolean equal) {
+            this.col = col;
+            this.y = y;
+            this.hash = Objects.hashCode(y);
+            this.equal = equal;
+        }
+
+        @Override
+        long evaluateWord(final int w) {
+            final int start = w << 6;
+            final int end = Math.min(start + 64, col.length);
+            long bits = 0L;
+            for (int i = start; i < end; ++i) {
+                final String x = col[i];
+                final boolean matches = x == y
+                    || (x != null && y != null && x.hashCode() == hash && x.equals(y));
+                bits |= (matches == equal ? 1L : 0L) << i;
+            }
+            return bits;
+        }
+
+        @Override
+        double getSelectivity() {
+            return equal ? 0.1 : 0.9;
+        }
+    }
+}
@@ -64,16 +64,31 @@ public final class ExpressionFormatter {
 
     public static String formatExpression(Expression expression,
         Optional<List<Expression>> parameters) {
-        return new Formatter(parameters).process(expression, null);
+        return formatExpression(expression, parameters, false);
+    }
+
+    /**
+     * @param quoteStringLiterals if true, every string literal is quoted and escaped, so that the
+     * result can't be mistaken for a different expression, e.g. an identifier
+     */
+    static String formatExpression(Expression expression, Optional<List<Expression>> parameters,
+        boolean quoteStringLiterals) {
+        return new Formatter(parameters, quoteStringLiterals).process(expression, null);
     }
 
     public static class Formatter
         extends AstVisitor<String, Void> {
 
         private final Optional<List<Expression>> parameters;
+        private final boolean quoteStringLiterals;
 
         public Formatter(Optional<List<Expression>> parameters) {
+            this(parameters, false);
+        }
+
+        Formatter(Optional<List<Expression>> parameters, boolean quoteStringLiterals) {
             this.parameters = parameters;
+            this.quoteStringLiterals = quoteStringLiterals;
         }
 
         @Override
@@ -95,12 +110,12 @@ public final class ExpressionFormatter {
 
         @Override
         protected String visitStringLiteral(StringLiteral node, Void context) {
-            return formatStringLiteral(node.getValue());
+            return formatString(node.getValue());
         }
 
         @Override
         protected String visitCharLiteral(CharLiteral node, Void context) {
-            return "CHAR " + formatStringLiteral(node.getValue());
+            return "CHAR " + formatString(node.getValue());
         }
 
         @Override
@@ -125,7 +140,7 @@ public final class ExpressionFormatter {
 
         @Override
         protected String visitGenericLiteral(GenericLiteral node, Void context) {
-            return node.getType() + " " + formatStringLiteral(node.getValue());
+            return node.getType() + " " + formatString(node.getValue());
         }
 
         @Override
@@ -135,12 +150,13 @@ public final class ExpressionFormatter {
 
         @Override
         protected String visitSubqueryExpression(SubqueryExpression node, Void context) {
-            return "(" + formatSql(node.getQuery(), parameters) + ")";
+            return "(" + formatSql(node.getQuery(), parameters, quoteStringLiterals) + ")";
         }
 
         @Override
         protected String visitExists(ExistsPredicate node, Void context) {
-            return "(EXISTS " + formatSql(node.getSubquery(), parameters) + ")";
+            return "(EXISTS " + formatSql(node.getSubquery(), parameters, quoteStringLiterals)
+                + ")";
         }
 
         @Override
@@ -311,6 +327,13 @@ public final class ExpressionFormatter {
                 .join(expressions.stream().map((e) -> process(e, null)).iterator());
         }
 
+        private String formatString(String s) {
+            if (quoteStringLiterals) {
+                return '\'' + s.replace("'", "''") + '\'';
+            }
+            return formatStringLiteral(s);
+        }
+
         private static String formatIdentifier(String s) {
             // TODO: handle escaping properly
             return '"' + s + '"';
@@ -347,14 +370,16 @@ public final class ExpressionFormatter {
         return builder.toString();
     }
 
-    static String formatOrderBy(OrderBy orderBy, Optional<List<Expression>> parameters) {
-        return "ORDER BY " + formatSortItems(orderBy.getSortItems(), parameters);
+    static String formatOrderBy(OrderBy orderBy, Optional<List<Expression>> parameters,
+        boolean quoteStringLiterals) {
+        return "ORDER BY " + formatSortItems(orderBy.getSortItems(), parameters,
+            quoteStringLiterals);
     }
 
     private static String formatSortItems(List<SortItem> sortItems,
-        Optional<List<Expression>> parameters) {
+        Optional<List<Expression>> parameters, boolean quoteStringLiterals) {
         return Joiner.on(", ").join((Iterable<?>) sortItems.stream()
-            .map(sortItemFormatterFunction(parameters))
+            .map(sortItemFormatterFunction(parameters, quoteStringLiterals))
             .iterator());
     }
 
@@ -372,11 +397,11 @@ public final class ExpressionFormatter {
     }
 
     private static Function<SortItem, String> sortItemFormatterFunction(
-        Optional<List<Expression>> parameters) {
+        Optional<List<Expression>> parameters, boolean quoteStringLiterals) {
         return input -> {
             StringBuilder builder = new StringBuilder();
 
-            builder.append(formatExpression(input.getSortKey(), parameters));
+            builder.append(formatExpression(input.getSortKey(), parameters, quoteStringLiterals));
 
             switch (input.getOrdering()) {
                 case ASCENDING:
@@ -0,0 +1,493 @@
+package edu.stanford.futuredata.macrobase.sql;
+
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.MIN_ROWS_PER_THREAD;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.getRanges;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.runInParallel;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.datamodel.Schema.ColType;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import edu.stanford.futuredata.macrobase.util.MacroBaseSQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Hash-based GROUP BY with COUNT, SUM, AVG, MIN, MAX and STDDEV aggregates.
+ *
+ * Rows are split into contiguous partitions that are aggregated in parallel into partial groups,
+ * which are then merged into the final groups. Within a partition, the key columns are hashed one
+ * column at a time, and rows are assigned group ids by an open-addressing table of ints. A group is
+ * identified by the first row that has its key, so keys are compared against the input columns and
+ * are never copied or boxed. Accumulators are primitive arrays indexed by group id and are updated
+ * one aggregate at a time.
+ *
+ * As in SQL, NaN (NULL) values are ignored by every aggregate except COUNT(*), and an aggregate
+ * over no values is NaN, except COUNT, which is 0. Groups are returned in order of first
+ * appearance.
+ */
+class HashAggregation {
+
+    enum Function {
+        COUNT, SUM, AVG, MIN, MAX, STDDEV;
+
+        static Optional<Function> fromName(final String name) {
+            try {
+                return Optional.of(valueOf(name.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    static class Aggregate {
+
+        final Function function;
+        final String column;
+        final String outputName;
+
+        /**
+         * @param column input column, or null for COUNT(*)
+         * @param outputName name of the column with the result
+         */
+        Aggregate(final Function function, final String column, final String outputName) {
+            this.function = function;
+            this.column = column;
+            this.outputName = outputName;
+        }
+    }
+
+    private final List<String> keyColumns;
+    private final List<Aggregate> aggregates;
+    private final int numThreads;
+    private final ExecutorService pool;
+
+    // resolved against the input DataFrame by evaluate()
+    private boolean[] keyIsDouble;
+    private double[][] doubleKeys;
+    private String[][] stringKeys;
+    private double[][] doubleInputs;
+    private String[][] stringInputs;
+
+    HashAggregation(final List<String> keyColumns, final List<Aggregate> aggregates,
+        final ExecutorService pool, final int numThreads) {
+        this.keyColumns = keyColumns;
+        this.aggregates = aggregates;
+        this.numThreads = numThreads;
+        this.pool = pool;
+    }
+
+    /**
+     * @return A DataFrame with one row per group: the key columns, followed by one column per
+     * aggregate. Without key columns, there's a single group, even if df is empty.
+     * @throws MacroBaseSQLException if a column doesn't exist, or a non-COUNT aggregate is applied
+     * to a string column
+     */
+    DataFrame evaluate(final DataFrame df) throws MacroBaseException {
+        resolveColumns(df);
+
+        final int[] bounds = getRanges(numThreads, df.getNumRows(), MIN_ROWS_PER_THREAD);
+        final List<Callable<GroupTable>> partitions = new ArrayList<>();
+        for (int i = 0; i + 1 < bounds.length; ++i) {
+            final int from = bounds[i];
+            final int to = bounds[i + 1];
+            partitions.add(() -> aggregatePartition(from, to));
+        }
+        final List<GroupTable> partials = runInParallel(pool, numThreads, partitions);
+
+        final GroupTable groups;
+        if (partials.size() == 1) {
+            groups = partials.get(0);
+        } else {
+            groups = new GroupTable(16);
+            for (GroupTable partial : partials) {
+                groups.mergeFrom(partial);
+            }
+        }
+        if (keyColumns.isEmpty() && groups.numGroups == 0) {
+            // global aggregate over no rows still returns a single row
+            groups.findOrInsert(-1, 0);
+        }
+        return groups.toDataFrame();
+    }
+
+    private void resolveColumns(final DataFrame df) throws MacroBaseSQLException {
+        final Schema schema = df.getSchema();
+        final List<double[]> doubles = new ArrayList<>();
+        final List<String[]> strings = new ArrayList<>();
+        keyIsDouble = new boolean[keyColumns.size()];
+        for (int k = 0; k < keyColumns.size(); ++k) {
+            final int idx = getColumnIndex(schema, keyColumns.get(k));
+            keyIsDouble[k] = schema.getColumnType(idx) == ColType.DOUBLE;
+            if (keyIsDouble[k]) {
+                doubles.add(df.getDoubleColumn(idx));
+            } else {
+                strings.add(df.getStringColumn(idx));
+            }
+        }
+        doubleKeys = doubles.toArray(new double[0][]);
+        stringKeys = strings.toArray(new String[0][]);
+
+        doubleInputs = new double[aggregates.size()][];
+        stringInputs = new String[aggregates.size()][];
+        for (int a = 0; a < aggregates.size(); ++a) {
+            final Aggregate agg = aggregates.get(a);
+            if (agg.column == null) {
+                if (agg.function != Function.COUNT) {
+                    throw new MacroBaseSQLException(agg.function + "(*) is not supported");
+                }
+                continue;
+            }
+            final int idx = getColumnIndex(schema, agg.column);
+            if (schema.getColumnType(idx) == ColType.DOUBLE) {
+                doubleInputs[a] = df.getDoubleColumn(idx);
+            } else if (agg.function == Function.COUNT) {
+                stringInputs[a] = df.getStringColumn(idx);
+            } else {
+                throw new MacroBaseSQLException(
+                    agg.function + " is not supported on column " + agg.column
+                        + " of type " + ColType.STRING);
+            }
+        }
+    }
+
+    private static int getColumnIndex(final Schema schema, final String colName)
+        throws MacroBaseSQLException {
+        try {
+            return schema.getColumnIndex(colName);
+        } catch (UnsupportedOperationException e) {
+            throw new MacroBaseSQLException(e.getMessage());
+        }
+    }
+
+    /**
+     * Phase 1: group and aggregate rows [from, to)
+     */
+    private GroupTable aggregatePartition(final int from, final int to) {
+        final int n = to - from;
+        final int[] hashes = new int[n];
+        for (double[] col : doubleKeys) {
+            for (int i = 0; i < n; ++i) {
+                hashes[i] = 31 * hashes[i] + Double.hashCode(col[from + i]);
+            }
+        }
+        for (String[] col : stringKeys) {
+            for (int i = 0; i < n; ++i) {
+                hashes[i] = 31 * hashes[i] + Objects.hashCode(col[from + i]);
+            }
+        }
+
+        final GroupTable groups = new GroupTable(16);
+        final int[] groupIds = new int[n];
+        for (int i = 0; i < n; ++i) {
+            groupIds[i] = groups.findOrInsert(from + i, mix(hashes[i]));
+        }
+        for (int a = 0; a < aggregates.size(); ++a) {
+            groups.accumulators[a].accumulate(groupIds, from, doubleInputs[a], stringInputs[a]);
+        }
+        return groups;
+    }
+
+    /**
+     * Finalizer from MurmurHash3, so that the low bits used for the slot depend on every bit of
+     * the hash
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private boolean keysEqual(final int rowA, final int rowB) {
+        for (double[] col : doubleKeys) {
+            if (Double.doubleToLongBits(col[rowA]) != Double.doubleToLongBits(col[rowB])) {
+                return false;
+            }
+        }
+        for (String[] col : stringKeys) {
+            if (!Objects.equals(col[rowA], col[rowB])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private class GroupTable {
+
+        int numGroups;
+        int[] groupRows;
+        int[] groupHashes;
+        // group id + 1 for each slot, 0 if the slot is empty
+        int[] slots;
+        final Accumulator[] accumulators;
+
+        GroupTable(final int capacity) {
+            groupRows = new int[capacity];
+            groupHashes = new int[capacity];
+            slots = new int[capacity * 2];
+            accumulators = new Accumulator[aggregates.size()];
+            for (int a = 0; a < accumulators.length; ++a) {
+                accumulators[a] = new Accumulator(aggregates.get(a).function, capacity);
+            }
+        }
+
+        int findOrInsert(final int row, final int hash) {
+            final int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (true) {
+                final int group = slots[slot] - 1;
+                if (group < 0) {
+                    break;
+                }
+                if (groupHashes[group] == hash && keysEqual(groupRows[group], row)) {
+                    return group;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            final int group = numGroups++;
+            if (group == groupRows.length) {
+                final int capacity = groupRows.length * 2;
+                groupRows = Arrays.copyOf(groupRows, capacity);
+                groupHashes = Arrays.copyOf(groupHashes, capacity);
+                for (Accumulator acc : accumulators) {
+                    acc.grow(capacity);
+                }
+            }
+            groupRows[group] = row;
+            groupHashes[group] = hash;
+            slots[slot] = group + 1;
+            // keep the load factor at or below 1/2
+            if (numGroups * 2 > slots.length) {
+                rehash();
+            }
+            return group;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            final int mask = slots.length - 1;
+            for (int group = 0; group < numGroups; ++group) {
+                int slot = groupHashes[group] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = group + 1;
+            }
+        }
+
+        /**
+         * Phase 2: merge the groups of a partition into this table
+         */
+        void mergeFrom(final GroupTable partial) {
+            for (int g = 0; g < partial.numGroups; ++g) {
+                final int group = findOrInsert(partial.groupRows[g], partial.groupHashes[g]);
+                for (int a = 0; a < accumulators.length; ++a) {
+                    accumulators[a].merge(group, partial.accumulators[a], g);
+                }
+            }
+        }
+
+        DataFrame toDataFrame() {
+            final DataFrame result = new DataFrame();
+            int d = 0;
+            int s = 0;
+            for (int k = 0; k < keyColumns.size(); ++k) {
+                if (keyIsDouble[k]) {
+                    final double[] col = doubleKeys[d++];
+                    final double[] values = new double[numGroups];
+                    for (int g = 0; g < numGroups; ++g) {
+                        values[g] = col[groupRows[g]];
+                    }
+                    result.addColumn(keyColumns.get(k), values);
+                } else {
+                    final String[] col = stringKeys[s++];
+                    final String[] values = new String[numGroups];
+                    for (int g = 0; g < numGroups; ++g) {
+                        values[g] = col[groupRows[g]];
+                    }
+                    result.addColumn(keyColumns.get(k), values);
+                }
+            }
+            for (int a = 0; a < accumulators.length; ++a) {
+                result.addColumn(aggregates.get(a).outputName, accumulators[a].result(numGroups));
+            }
+            return result;
+        }
+    }
+
+    private static class Accumulator {
+
+        final Function function;
+        // number of non-NaN values in each group
+        long[] counts;
+        // sum for SUM and AVG, the extreme value for MIN and MAX, the mean for STDDEV
+        double[] values;
+        // sum of squared differences from the mean, only for STDDEV
+        double[] m2;
+
+        Accumulator(final Function function, final int capacity) {
+            this.function = function;
+            counts = new long[capacity];
+            if (function != Function.COUNT) {
+                values = new double[capacity];
+            }
+            if (function == Function.STDDEV) {
+                m2 = new double[capacity];
+            }
+        }
+
+        void grow(final int capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+            if (values != null) {
+                values = Arrays.copyOf(values, capacity);
+            }
+            if (m2 != null) {
+                m2 = Arrays.copyOf(m2, capacity);
+            }
+        }
+
+        /**
+         * Add rows [from, from + groupIds.length) to their groups.
+         *
+         * @param doubles the input column if it has type double, else null
+         * @param strings the input column if it has type string (COUNT only), else null
+         */
+        void accumulate(final int[] groupIds, final int from, final double[] doubles,
+            final String[] strings) {
+            final int n = groupIds.length;
+            switch (function) {
+                case COUNT:
+                    if (doubles != null) {
+                        for (int i = 0; i < n; ++i) {
+                            if (!Double.isNaN(doubles[from + i])) {
+                                counts[groupIds[i]]++;
+                            }
+                        }
+                    } else if (strings != null) {
+                        for (int i = 0; i < n; ++i) {
+                            if (strings[from + i] != null) {
+                                counts[groupIds[i]]++;
+                            }
+                        }
+                    } else {
+                        for (int i = 0; i < n; ++i) {
+                            counts[groupIds[i]]++;
+                        }
+                    }
+                    break;
+                case SUM:
+                case AVG:
+                    for (int i = 0; i < n; ++i) {
+                        final double v = doubles[from + i];
+                        if (!Double.isNaN(v)) {
+                            counts[groupIds[i]]++;
+                            values[groupIds[i]] += v;
+                        }
+                    }
+                    break;
+                case MIN:
+                    for (int i = 0; i < n; ++i) {
+                        final double v = doubles[from + i];
+                        final int g = groupIds[i];
+                        if (!Double.isNaN(v) && (counts[g]++ == 0 || v < values[g])) {
+                            values[g] = v;
+                        }
+                    }
+                    break;
+                case MAX:
+                    for (int i = 0; i < n; ++i) {
+                        final double v = doubles[from + i];
+                        final int g = groupIds[i];
+                        if (!Double.isNaN(v) && (counts[g]++ == 0 || v > values[g])) {
+                            values[g] = v;
+                        }
+                    }
+                    break;
+                case STDDEV:
+                    // Welford's algorithm
+                    for (int i = 0; i < n; ++i) {
+                        final double v = doubles[from + i];
+                        if (!Double.isNaN(v)) {
+                            final int g = groupIds[i];
+                            final long count = ++counts[g];
+                            final double delta = v - values[g];
+                            values[g] += delta / count;
+                            m2[g] += delta * (v - values[g]);
+                        }
+                    }
+                    break;
+            }
+        }
+
+        /**
+         * Merge group g of other into group group of this accumulator
+         */
+        void merge(final int group, final Accumulator other, final int g) {
+            final long countA = counts[group];
+            final long countB = other.counts[g];
+            if (countB == 0) {
+                return;
+            }
+            counts[group] = countA + countB;
+            switch (function) {
+                case COUNT:
+                    break;
+                case SUM:
+                case AVG:
+                    values[group] += other.values[g];
+                    break;
+                case MIN:
+                    if (countA == 0 || other.values[g] < values[group]) {
+                        values[group] = other.values[g];
+                    }
+                    break;
+                case MAX:
+                    if (countA == 0 || other.values[g] > values[group]) {
+                        values[group] = other.values[g];
+                    }
+                    break;
+                case STDDEV:
+                    // Chan et al.'s parallel update of mean and m2
+                    final double delta = other.values[g] - values[group];
+                    final double count = countA + countB;
+                    values[group] += delta * countB / count;
+                    m2[group] += other.m2[g] + delta * delta * countA * countB / count;
+                    break;
+            }
+        }
+
+        double[] result(final int numGroups) {
+            final double[] result = new double[numGroups];
+            for (int g = 0; g < numGroups; ++g) {
+                final long count = counts[g];
+                switch (function) {
+                    case COUNT:
+                        result[g] = count;
+                        break;
+                    case SUM:
+                    case MIN:
+                    case MAX:
+                        result[g] = count == 0 ? Double.NaN : values[g];
+                        break;
+                    case AVG:
+                        result[g] = count == 0 ? Double.NaN : values[g] / count;
+                        break;
+                    case STDDEV:
+                        // sample standard deviation, same as STDDEV_SAMP
+                        result[g] = count < 2 ? Double.NaN : Math.sqrt(m2[g] / (count - 1));
+                        break;
+                }
+            }
+            return result;
+        }
+    }
+}
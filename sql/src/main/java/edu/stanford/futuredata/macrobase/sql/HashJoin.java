@@ -0,0 +1,527 @@
+package edu.stanford.futuredata.macrobase.sql;
+
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.MIN_ROWS_PER_THREAD;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.parallelFor;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.runInParallel;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.datamodel.Schema.ColType;
+import edu.stanford.futuredata.macrobase.sql.tree.Join;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import edu.stanford.futuredata.macrobase.util.MacroBaseSQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Equi-join of two DataFrames. Supports INNER, LEFT, RIGHT and FULL joins on one or more key
+ * columns, as well as CROSS joins.
+ *
+ * The hash table is built on the smaller input. Key columns are first encoded as longs: doubles by
+ * their bits and strings by their code in a dictionary of the build side's values, so the table
+ * only compares primitives. Build rows are grouped by key in a single array, ordered by row. The
+ * other input is then probed in parallel morsels, each of which emits pairs of matching row
+ * indices; columns are only gathered once all pairs are known.
+ *
+ * As in SQL, NULL keys (NaN or null) never match.
+ */
+class HashJoin {
+
+    // number of probe rows handled by each task
+    private static final int MORSEL_SIZE = 1 << 14;
+
+    private final Join.Type type;
+    private final List<String> leftKeys;
+    private final List<String> rightKeys;
+    private final boolean mergeKeys;
+    private final StatisticsCatalog catalog;
+    private final int numThreads;
+    private final ExecutorService pool;
+
+    /**
+     * @param leftKeys key columns of the left input, empty for CROSS joins
+     * @param rightKeys key columns of the right input, matched to leftKeys by position
+     * @param mergeKeys if true, as in JOIN ... USING, each pair of key columns appears once in
+     * the output, with the value from whichever side has the row
+     * @param catalog statistics used to size the hash table, when the build side's key columns
+     * are columns of an imported table
+     */
+    HashJoin(final Join.Type type, final List<String> leftKeys, final List<String> rightKeys,
+        final boolean mergeKeys, final StatisticsCatalog catalog, final ExecutorService pool,
+        final int numThreads) {
+        this.type = type;
+        this.leftKeys = leftKeys;
+        this.rightKeys = rightKeys;
+        this.mergeKeys = mergeKeys;
+        this.catalog = catalog;
+        this.numThreads = numThreads;
+        this.pool = pool;
+    }
+
+    /**
+     * @return A DataFrame with the columns of left, followed by the columns of right (without the
+     * right key columns, if mergeKeys is set). Rows with no match on the other side have NaN or
+     * null values in that side's columns.
+     * @throws MacroBaseSQLException if a key column doesn't exist, the types of two key columns
+     * differ, or both inputs have a column with the same name
+     */
+    DataFrame evaluate(final DataFrame left, final DataFrame right) throws MacroBaseException {
+        final int[][] pairs;
+        if (leftKeys.isEmpty()) {
+            pairs = crossProduct(left.getNumRows(), right.getNumRows());
+        } else {
+            // build on the smaller side
+            final boolean buildLeft = left.getNumRows() < right.getNumRows();
+            final DataFrame build = buildLeft ? left : right;
+            final DataFrame probe = buildLeft ? right : left;
+            final List<String> buildKeys = buildLeft ? leftKeys : rightKeys;
+            final List<String> probeKeys = buildLeft ? rightKeys : leftKeys;
+            final boolean buildOuter = buildLeft ? isLeftOuter() : isRightOuter();
+            final boolean probeOuter = buildLeft ? isRightOuter() : isLeftOuter();
+
+            final int[][] buildProbePairs = join(build, buildKeys, probe, probeKeys, buildOuter,
+                probeOuter);
+            pairs = buildLeft ? buildProbePairs
+                : new int[][]{buildProbePairs[1], buildProbePairs[0]};
+        }
+        return gather(left, right, pairs[0], pairs[1]);
+    }
+
+    private boolean isLeftOuter() {
+        return type == Join.Type.LEFT || type == Join.Type.FULL;
+    }
+
+    private boolean isRightOuter() {
+        return type == Join.Type.RIGHT || type == Join.Type.FULL;
+    }
+
+    private static int[][] crossProduct(final int numLeft, final int numRight)
+        throws MacroBaseSQLException {
+        final long n = (long) numLeft * numRight;
+        if (n > Integer.MAX_VALUE - 8) {
+            throw new MacroBaseSQLException("CROSS JOIN would produce " + n + " rows");
+        }
+        final int[] leftRows = new int[(int) n];
+        final int[] rightRows = new int[(int) n];
+        int i = 0;
+        for (int l = 0; l < numLeft; ++l) {
+            for (int r = 0; r < numRight; ++r) {
+                leftRows[i] = l;
+                rightRows[i++] = r;
+            }
+        }
+        return new int[][]{leftRows, rightRows};
+    }
+
+    /**
+     * Join key columns of a DataFrame, encoded as longs
+     */
+    private static class EncodedKeys {
+
+        final long[][] codes;
+        // rows that can't match any row on the other side
+        final boolean[] isNull;
+
+        EncodedKeys(final int numKeys, final int numRows) {
+            codes = new long[numKeys][numRows];
+            isNull = new boolean[numRows];
+        }
+
+        int hash(final int row) {
+            long h = 0;
+            for (long[] col : codes) {
+                h = 31 * h + col[row];
+            }
+            // Stafford's mix13 finalizer, so that the low bits depend on every bit of the key
+            h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+            h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+            return (int) (h ^ (h >>> 31));
+        }
+
+        boolean equals(final int row, final EncodedKeys other, final int otherRow) {
+            for (int k = 0; k < codes.length; ++k) {
+                if (codes[k][row] != other.codes[k][otherRow]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return pairs of matching build and probe rows, -1 for the missing side of outer rows
+     */
+    private int[][] join(final DataFrame build, final List<String> buildKeys,
+        final DataFrame probe, final List<String> probeKeys, final boolean buildOuter,
+        final boolean probeOuter) throws MacroBaseException {
+        final int numBuild = build.getNumRows();
+        final int numProbe = probe.getNumRows();
+        final EncodedKeys buildCodes = new EncodedKeys(buildKeys.size(), numBuild);
+        final EncodedKeys probeCodes = new EncodedKeys(buildKeys.size(), numProbe);
+        for (int k = 0; k < buildKeys.size(); ++k) {
+            encodeKey(build, buildKeys.get(k), probe, probeKeys.get(k), k, buildCodes,
+                probeCodes);
+        }
+
+        // assign an id to each distinct build key, then list the build rows of each key in order
+        final KeyTable table = new KeyTable(buildCodes, getExpectedKeys(build, buildKeys));
+        final int[] keyIds = new int[numBuild];
+        for (int row = 0; row < numBuild; ++row) {
+            keyIds[row] = buildCodes.isNull[row] ? -1 : table.findOrInsert(row);
+        }
+        final int[] keyStarts = new int[table.numKeys + 1];
+        for (int keyId : keyIds) {
+            if (keyId >= 0) {
+                keyStarts[keyId + 1]++;
+            }
+        }
+        for (int i = 0; i < table.numKeys; ++i) {
+            keyStarts[i + 1] += keyStarts[i];
+        }
+        final int[] rowsByKey = new int[keyStarts[table.numKeys]];
+        final int[] next = Arrays.copyOf(keyStarts, table.numKeys);
+        for (int row = 0; row < numBuild; ++row) {
+            if (keyIds[row] >= 0) {
+                rowsByKey[next[keyIds[row]]++] = row;
+            }
+        }
+
+        // probe in morsels, each producing its own list of pairs
+        final List<Callable<Morsel>> morsels = new ArrayList<>();
+        for (int start = 0; start < numProbe; start += MORSEL_SIZE) {
+            final int from = start;
+            final int to = Math.min(numProbe, start + MORSEL_SIZE);
+            morsels.add(() -> {
+                final Morsel morsel = new Morsel(to - from);
+                for (int row = from; row < to; ++row) {
+                    final int keyId = probeCodes.isNull[row] ? -1 : table.find(probeCodes, row);
+                    if (keyId < 0) {
+                        if (probeOuter) {
+                            morsel.add(-1, row);
+                        }
+                        continue;
+                    }
+                    for (int i = keyStarts[keyId]; i < keyStarts[keyId + 1]; ++i) {
+                        morsel.add(rowsByKey[i], row);
+                        if (buildOuter) {
+                            morsel.matchedBuildRows.set(rowsByKey[i]);
+                        }
+                    }
+                }
+                return morsel;
+            });
+        }
+        final List<Morsel> results = runInParallel(pool, numThreads, morsels);
+
+        int numPairs = 0;
+        final BitSet matched = new BitSet(numBuild);
+        for (Morsel morsel : results) {
+            numPairs += morsel.size;
+            if (buildOuter) {
+                matched.or(morsel.matchedBuildRows);
+            }
+        }
+        final int numUnmatched = buildOuter ? numBuild - matched.cardinality() : 0;
+        final int[] buildRows = new int[numPairs + numUnmatched];
+        final int[] probeRows = new int[numPairs + numUnmatched];
+        int offset = 0;
+        for (Morsel morsel : results) {
+            System.arraycopy(morsel.buildRows, 0, buildRows, offset, morsel.size);
+            System.arraycopy(morsel.probeRows, 0, probeRows, offset, morsel.size);
+            offset += morsel.size;
+        }
+        if (buildOuter) {
+            for (int row = matched.nextClearBit(0); row < numBuild;
+                row = matched.nextClearBit(row + 1)) {
+                buildRows[offset] = row;
+                probeRows[offset++] = -1;
+            }
+        }
+        return new int[][]{buildRows, probeRows};
+    }
+
+    /**
+     * Encode key column k of both inputs. Strings are replaced by their code in a dictionary of
+     * the build side's values; probe values missing from the dictionary can't match.
+     */
+    private void encodeKey(final DataFrame build, final String buildKey, final DataFrame probe,
+        final String probeKey, final int k, final EncodedKeys buildCodes,
+        final EncodedKeys probeCodes) throws MacroBaseException {
+        final ColType buildType = getColumnType(build.getSchema(), buildKey);
+        final ColType probeType = getColumnType(probe.getSchema(), probeKey);
+        if (buildType != probeType) {
+            throw new MacroBaseSQLException("Cannot join " + buildKey + " of type " + buildType
+                + " with " + probeKey + " of type " + probeType);
+        }
+
+        if (buildType == ColType.DOUBLE) {
+            encodeDoubles(build.getDoubleColumnByName(buildKey), k, buildCodes);
+            encodeDoubles(probe.getDoubleColumnByName(probeKey), k, probeCodes);
+        } else {
+            final String[] buildCol = build.getStringColumnByName(buildKey);
+            final Map<String, Integer> dictionary = new HashMap<>(
+                catalog.getColumnStatistics(buildCol)
+                    .map((stats) -> (int) Math.min(stats.getDistinctCount() * 4 / 3 + 1,
+                        buildCol.length + 1))
+                    .orElse(16));
+            for (int row = 0; row < buildCol.length; ++row) {
+                if (buildCol[row] == null) {
+                    buildCodes.isNull[row] = true;
+                } else {
+                    buildCodes.codes[k][row] = dictionary
+                        .computeIfAbsent(buildCol[row], (s) -> dictionary.size());
+                }
+            }
+            final String[] probeCol = probe.getStringColumnByName(probeKey);
+            parallelFor(pool, numThreads, probeCol.length, MIN_ROWS_PER_THREAD, (row) -> {
+                final Integer code = probeCol[row] == null ? null : dictionary.get(probeCol[row]);
+                if (code == null) {
+                    probeCodes.isNull[row] = true;
+                } else {
+                    probeCodes.codes[k][row] = code;
+                }
+            });
+        }
+    }
+
+    private void encodeDoubles(final double[] col, final int k, final EncodedKeys keys)
+        throws MacroBaseException {
+        final long[] codes = keys.codes[k];
+        parallelFor(pool, numThreads, col.length, MIN_ROWS_PER_THREAD, (row) -> {
+            if (Double.isNaN(col[row])) {
+                keys.isNull[row] = true;
+            } else {
+                // adding 0.0 turns -0.0 into 0.0, so that they match
+                codes[row] = Double.doubleToLongBits(col[row] + 0.0);
+            }
+        });
+    }
+
+    /**
+     * @return the number of distinct keys of the build side, estimated from the catalog, or 0 if
+     * a key column isn't a column of an imported table
+     */
+    private int getExpectedKeys(final DataFrame build, final List<String> buildKeys) {
+        long expected = 1;
+        for (String key : buildKeys) {
+            final Object column = build.getSchema().getColumnTypeByName(key) == ColType.DOUBLE
+                ? build.getDoubleColumnByName(key) : build.getStringColumnByName(key);
+            final Optional<ColumnStatistics> stats = catalog.getColumnStatistics(column);
+            if (!stats.isPresent()) {
+                return 0;
+            }
+            expected = Math.min(expected * stats.get().getDistinctCount(), build.getNumRows());
+        }
+        return (int) expected;
+    }
+
+    private static ColType getColumnType(final Schema schema, final String colName)
+        throws MacroBaseSQLException {
+        if (!schema.hasColumn(colName)) {
+            throw new MacroBaseSQLException("Join column " + colName + " does not exist");
+        }
+        return schema.getColumnTypeByName(colName);
+    }
+
+    /**
+     * Open-addressing table from build key to key id, each key represented by its first row
+     */
+    private static class KeyTable {
+
+        final EncodedKeys keys;
+        int numKeys;
+        int[] keyRows;
+        int[] keyHashes;
+        // key id + 1 for each slot, 0 if the slot is empty
+        int[] slots;
+
+        /**
+         * @param expectedKeys the table is sized for this many keys, and grows past them
+         */
+        KeyTable(final EncodedKeys keys, final int expectedKeys) {
+            this.keys = keys;
+            final int capacity = Math.max(16, expectedKeys);
+            keyRows = new int[capacity];
+            keyHashes = new int[capacity];
+            int numSlots = 32;
+            while (numSlots < 2 * capacity && numSlots < (1 << 30)) {
+                numSlots <<= 1;
+            }
+            slots = new int[numSlots];
+        }
+
+        int findOrInsert(final int row) {
+            final int hash = keys.hash(row);
+            final int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                final int keyId = slots[slot] - 1;
+                if (keyHashes[keyId] == hash && keys.equals(keyRows[keyId], keys, row)) {
+                    return keyId;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            final int keyId = numKeys++;
+            if (keyId == keyRows.length) {
+                keyRows = Arrays.copyOf(keyRows, keyId * 2);
+                keyHashes = Arrays.copyOf(keyHashes, keyId * 2);
+            }
+            keyRows[keyId] = row;
+            keyHashes[keyId] = hash;
+            slots[slot] = keyId + 1;
+            if (numKeys * 2 > slots.length) {
+                rehash();
+            }
+            return keyId;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            final int mask = slots.length - 1;
+            for (int keyId = 0; keyId < numKeys; ++keyId) {
+                int slot = keyHashes[keyId] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = keyId + 1;
+            }
+        }
+
+        /**
+         * @return the id of the key of row in probeKeys, or -1 if there's no such build key
+         */
+        int find(final EncodedKeys probeKeys, final int row) {
+            final int hash = probeKeys.hash(row);
+            final int mask = slots.length - 1;
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                final int keyId = slots[slot] - 1;
+                if (keyHashes[keyId] == hash && keys.equals(keyRows[keyId], probeKeys, row)) {
+                    return keyId;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    private static class Morsel {
+
+        int size;
+        int[] buildRows;
+        int[] probeRows;
+        // only used for outer joins on the build side
+        final BitSet matchedBuildRows = new BitSet();
+
+        Morsel(final int capacity) {
+            buildRows = new int[Math.max(16, capacity)];
+            probeRows = new int[buildRows.length];
+        }
+
+        void add(final int buildRow, final int probeRow) {
+            if (size == buildRows.length) {
+                buildRows = Arrays.copyOf(buildRows, size * 2);
+                probeRows = Arrays.copyOf(probeRows, size * 2);
+            }
+            buildRows[size] = buildRow;
+            probeRows[size++] = probeRow;
+        }
+    }
+
+    /**
+     * Materialize the output columns from the pairs of row indices, one column per task.
+     */
+    private DataFrame gather(final DataFrame left, final DataFrame right, final int[] leftRows,
+        final int[] rightRows) throws MacroBaseException {
+        final Schema leftSchema = left.getSchema();
+        final Schema rightSchema = right.getSchema();
+        final Set<String> droppedRightCols = mergeKeys ? new HashSet<>(rightKeys)
+            : new HashSet<>();
+
+        final List<String> names = new ArrayList<>();
+        final List<Callable<Object>> columns = new ArrayList<>();
+        for (int c = 0; c < leftSchema.getNumColumns(); ++c) {
+            final String name = leftSchema.getColumnName(c);
+            final int keyIdx = mergeKeys ? leftKeys.indexOf(name) : -1;
+            // a merged key column takes the right value when there's no left row
+            final String fallback = keyIdx >= 0 ? rightKeys.get(keyIdx) : null;
+            names.add(name);
+            if (leftSchema.getColumnType(c) == ColType.DOUBLE) {
+                final double[] col = left.getDoubleColumn(c);
+                final double[] other = fallback == null ? null
+                    : right.getDoubleColumnByName(fallback);
+                columns.add(() -> gatherDoubles(col, leftRows, other, rightRows));
+            } else {
+                final String[] col = left.getStringColumn(c);
+                final String[] other = fallback == null ? null
+                    : right.getStringColumnByName(fallback);
+                columns.add(() -> gatherStrings(col, leftRows, other, rightRows));
+            }
+        }
+        for (int c = 0; c < rightSchema.getNumColumns(); ++c) {
+            final String name = rightSchema.getColumnName(c);
+            if (droppedRightCols.contains(name)) {
+                continue;
+            }
+            if (leftSchema.hasColumn(name)) {
+                throw new MacroBaseSQLException("Column " + name
+                    + " is in both sides of the join; join on it with USING, or rename it");
+            }
+            names.add(name);
+            if (rightSchema.getColumnType(c) == ColType.DOUBLE) {
+                final double[] col = right.getDoubleColumn(c);
+                columns.add(() -> gatherDoubles(col, rightRows, null, null));
+            } else {
+                final String[] col = right.getStringColumn(c);
+                columns.add(() -> gatherStrings(col, rightRows, null, null));
+            }
+        }
+
+        final List<Object> gathered = runInParallel(pool, numThreads, columns);
+        final DataFrame result = new DataFrame();
+        for (int c = 0; c < names.size(); ++c) {
+            if (gathered.get(c) instanceof double[]) {
+                result.addColumn(names.get(c), (double[]) gathered.get(c));
+            } else {
+                result.addColumn(names.get(c), (String[]) gathered.get(c));
+            }
+        }
+        return result;
+    }
+
+    private static double[] gatherDoubles(final double[] col, final int[] rows,
+        final double[] fallback, final int[] fallbackRows) {
+        final double[] values = new double[rows.length];
+        for (int i = 0; i < rows.length; ++i) {
+            if (rows[i] >= 0) {
+                values[i] = col[rows[i]];
+            } else {
+                values[i] = fallback == null ? Double.NaN : fallback[fallbackRows[i]];
+            }
+        }
+        return values;
+    }
+
+    private static String[] gatherStrings(final String[] col, final int[] rows,
+        final String[] fallback, final int[] fallbackRows) {
+        final String[] values = new String[rows.length];
+        for (int i = 0; i < rows.length; ++i) {
+            if (rows[i] >= 0) {
+                values[i] = col[rows[i]];
+            } else if (fallback != null) {
+                values[i] = fallback[fallbackRows[i]];
+            }
+        }
+        return values;
+    }
+}
@@ -10,10 +10,16 @@ import edu.stanford.futuredata.macrobase.ingest.CSVDataFrameWriter;
 import edu.stanford.futuredata.macrobase.sql.parser.ParsingException;
 import edu.stanford.futuredata.macrobase.sql.parser.SqlParser;
 import edu.stanford.futuredata.macrobase.sql.parser.StatementSplitter;
+import edu.stanford.futuredata.macrobase.sql.tree.CacheTable;
+import edu.stanford.futuredata.macrobase.sql.tree.ExplainAnalyze;
+import edu.stanford.futuredata.macrobase.sql.tree.ExportBinary;
+import edu.stanford.futuredata.macrobase.sql.tree.ImportBinary;
 import edu.stanford.futuredata.macrobase.sql.tree.ImportCsv;
 import edu.stanford.futuredata.macrobase.sql.tree.Query;
 import edu.stanford.futuredata.macrobase.sql.tree.QueryBody;
+import edu.stanford.futuredata.macrobase.sql.tree.SetSession;
 import edu.stanford.futuredata.macrobase.sql.tree.Statement;
+import edu.stanford.futuredata.macrobase.sql.tree.UncacheTable;
 import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -47,9 +53,11 @@ public class MacroBaseSQLRepl {
      * Main entry point to the SQL CLI interface in MacroBase
      *
      * @param userWantsPaging try to enable paging of results in SQL shell
+     * @param numThreads number of threads used to execute queries
      * @throws IOException if unable to instantiate ConsoleReader
      */
-    private MacroBaseSQLRepl(final boolean userWantsPaging) throws IOException {
+    private MacroBaseSQLRepl(final boolean userWantsPaging, final int numThreads)
+        throws IOException {
         // First try to turn paging on
         this.paging = enablePaging(userWantsPaging);
         // Initialize console reader and writer
@@ -60,7 +68,7 @@ public class MacroBaseSQLRepl {
         reader.addCompleter(new FileNameCompleter());
 
         parser = new SqlParser();
-        queryEngine = new QueryEngine();
+        queryEngine = new QueryEngine(numThreads);
     }
 
     /**
@@ -110,6 +118,18 @@ public class MacroBaseSQLRepl {
                 if (stmt instanceof ImportCsv) {
                     final ImportCsv importStatement = (ImportCsv) stmt;
                     result = queryEngine.importTableFromCsv(importStatement);
+                } else if (stmt instanceof ImportBinary) {
+                    result = queryEngine.importTableFromBinary((ImportBinary) stmt);
+                } else if (stmt instanceof ExportBinary) {
+                    result = queryEngine.exportToBinary((ExportBinary) stmt);
+                } else if (stmt instanceof SetSession) {
+                    result = queryEngine.setSessionProperty((SetSession) stmt);
+                } else if (stmt instanceof CacheTable) {
+                    result = queryEngine.cacheTable((CacheTable) stmt);
+                } else if (stmt instanceof UncacheTable) {
+                    result = queryEngine.uncacheTable((UncacheTable) stmt);
+                } else if (stmt instanceof ExplainAnalyze) {
+                    result = queryEngine.explainAnalyze((ExplainAnalyze) stmt);
                 } else {
                     final QueryBody q = ((Query) stmt).getQueryBody();
                     result = queryEngine.executeQuery(q);
@@ -215,9 +235,12 @@ public class MacroBaseSQLRepl {
         parser.addArgument("-f", "--file").help("Load file with SQL queries to execute");
         parser.addArgument("-p", "--paging").type(Arguments.booleanType()).setDefault(false)
             .help("Turn on paging of results for SQL queries");
+        parser.addArgument("-t", "--threads").type(Integer.class).setDefault(1)
+            .help("Number of threads used to execute queries; change it with SET threads = n");
         final Namespace parsedArgs = parser.parseArgsOrFail(args);
 
-        final MacroBaseSQLRepl repl = new MacroBaseSQLRepl(parsedArgs.get("paging"));
+        final MacroBaseSQLRepl repl = new MacroBaseSQLRepl(parsedArgs.get("paging"),
+            parsedArgs.getInt("threads"));
         final String asciiArt = Resources
             .toString(Resources.getResource(ASCII_ART_FILE), Charsets.UTF_8);
 
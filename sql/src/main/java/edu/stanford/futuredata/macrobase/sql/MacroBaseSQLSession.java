@@ -2,10 +2,16 @@ package edu.stanford.futuredata.macrobase.sql;
 
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
 import edu.stanford.futuredata.macrobase.sql.parser.SqlParser;
+import edu.stanford.futuredata.macrobase.sql.tree.CacheTable;
+import edu.stanford.futuredata.macrobase.sql.tree.ExplainAnalyze;
+import edu.stanford.futuredata.macrobase.sql.tree.ExportBinary;
+import edu.stanford.futuredata.macrobase.sql.tree.ImportBinary;
 import edu.stanford.futuredata.macrobase.sql.tree.ImportCsv;
 import edu.stanford.futuredata.macrobase.sql.tree.Query;
 import edu.stanford.futuredata.macrobase.sql.tree.QueryBody;
+import edu.stanford.futuredata.macrobase.sql.tree.SetSession;
 import edu.stanford.futuredata.macrobase.sql.tree.Statement;
+import edu.stanford.futuredata.macrobase.sql.tree.UncacheTable;
 import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,8 +23,20 @@ public class MacroBaseSQLSession {
     private final QueryEngine queryEngine;
 
     public MacroBaseSQLSession() {
+        this(1);
+    }
+
+    /**
+     * @param numThreads number of threads used to execute queries; can be changed later in the
+     * session with "SET threads = n"
+     */
+    public MacroBaseSQLSession(final int numThreads) {
         parser = new SqlParser();
-        queryEngine = new QueryEngine();
+        queryEngine = new QueryEngine(numThreads);
+    }
+
+    public int getNumThreads() {
+        return queryEngine.getNumThreads();
     }
 
     public DataFrame executeQuery(final String queryStr) throws MacroBaseException {
@@ -27,6 +45,18 @@ public class MacroBaseSQLSession {
         if (stmt instanceof ImportCsv) {
             final ImportCsv importStatement = (ImportCsv) stmt;
             return queryEngine.importTableFromCsv(importStatement);
+        } else if (stmt instanceof ImportBinary) {
+            return queryEngine.importTableFromBinary((ImportBinary) stmt);
+        } else if (stmt instanceof ExportBinary) {
+            return queryEngine.exportToBinary((ExportBinary) stmt);
+        } else if (stmt instanceof SetSession) {
+            return queryEngine.setSessionProperty((SetSession) stmt);
+        } else if (stmt instanceof CacheTable) {
+            return queryEngine.cacheTable((CacheTable) stmt);
+        } else if (stmt instanceof UncacheTable) {
+            return queryEngine.uncacheTable((UncacheTable) stmt);
+        } else if (stmt instanceof ExplainAnalyze) {
+            return queryEngine.explainAnalyze((ExplainAnalyze) stmt);
         } else {
             final QueryBody q = ((Query) stmt).getQueryBody();
             return queryEngine.executeQuery(q);
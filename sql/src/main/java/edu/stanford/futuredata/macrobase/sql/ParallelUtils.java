@@ -0,0 +1,169 @@
+package edu.stanford.futuredata.macrobase.sql;
+
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import edu.stanford.futuredata.macrobase.util.MacroBaseSQLException;
+import edu.stanford.futuredata.macrobase.util.OperatorProfile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Helpers for splitting the work of a query operator across threads.
+ */
+class ParallelUtils {
+
+    // below this many rows per thread, splitting a scan across threads costs more than it saves
+    static final int MIN_ROWS_PER_THREAD = 1 << 16;
+    // idle workers of a session pool exit after this long
+    private static final long POOL_KEEP_ALIVE_SECONDS = 60;
+
+    private ParallelUtils() {
+    }
+
+    /**
+     * Create the thread pool shared by the operators of a session. Its threads are daemons and
+     * exit when idle, so a session that is never closed doesn't keep the JVM alive.
+     */
+    static ThreadPoolExecutor newPool(final int numThreads) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        final int poolSize = getPoolSize(numThreads);
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(poolSize, poolSize,
+            POOL_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), (runnable) -> {
+            final Thread thread = new Thread(runnable,
+                "macrobase-sql-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Resize a pool created by {@link #newPool(int)}, e.g. after "SET threads = n"
+     */
+    static void resizePool(final ThreadPoolExecutor pool, final int numThreads) {
+        final int poolSize = getPoolSize(numThreads);
+        // the core size can never exceed the maximum size, so the order matters
+        if (poolSize > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(poolSize);
+            pool.setCorePoolSize(poolSize);
+        } else {
+            pool.setCorePoolSize(poolSize);
+            pool.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    // the calling thread runs tasks too, so it needs one worker less
+    private static int getPoolSize(final int numThreads) {
+        return Math.max(1, numThreads - 1);
+    }
+
+    /**
+     * Run tasks on up to numThreads threads of the pool and wait for all of them. With a single
+     * thread, or a single task, the tasks run on the calling thread. Otherwise the calling thread
+     * also runs every task that no worker has started yet, so tasks that are themselves run in
+     * parallel on the same pool can't deadlock waiting for tasks queued behind them. The bytes
+     * allocated by the tasks are counted as allocated by the calling thread, for EXPLAIN ANALYZE.
+     *
+     * @return the results of the tasks, in the same order
+     * @throws MacroBaseException the first exception thrown by a task, unwrapped
+     */
+    static <T> List<T> runInParallel(final ExecutorService pool, final int numThreads,
+        final List<? extends Callable<T>> tasks) throws MacroBaseException {
+        final List<T> results = new ArrayList<>(tasks.size());
+        if (numThreads <= 1 || tasks.size() <= 1) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (MacroBaseException | RuntimeException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new MacroBaseSQLException(e);
+                }
+            }
+            return results;
+        }
+
+        final Thread caller = Thread.currentThread();
+        final List<FutureTask<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            final Callable<T> counted = OperatorProfile.countAllocations(task);
+            futures.add(new FutureTask<>(
+                () -> Thread.currentThread() == caller ? task.call() : counted.call()));
+        }
+        try {
+            // the calling thread starts with the first task, then runs what no worker has taken
+            for (int i = 1; i < futures.size(); ++i) {
+                pool.execute(futures.get(i));
+            }
+            for (FutureTask<T> future : futures) {
+                // no-op if a worker already started it
+                future.run();
+            }
+            for (FutureTask<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof MacroBaseException) {
+                throw (MacroBaseException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new MacroBaseSQLException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MacroBaseSQLException(e);
+        } finally {
+            // stop the tasks that are still running if one of them failed
+            for (FutureTask<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Split [0, n) into at most numThreads contiguous ranges of at least minPerThread elements
+     * (or a single range when n is smaller).
+     *
+     * @return the start of each range, followed by n
+     */
+    static int[] getRanges(final int numThreads, final int n, final int minPerThread) {
+        final int numRanges = Math.max(1, Math.min(numThreads, n / minPerThread));
+        final int[] bounds = new int[numRanges + 1];
+        for (int i = 0; i <= numRanges; ++i) {
+            bounds[i] = (int) ((long) n * i / numRanges);
+        }
+        return bounds;
+    }
+
+    /**
+     * Call body for every i in [0, n), splitting the range into contiguous chunks of at least
+     * minPerThread elements that run on separate threads.
+     */
+    static void parallelFor(final ExecutorService pool, final int numThreads, final int n,
+        final int minPerThread, final IntConsumer body) throws MacroBaseException {
+        final int[] bounds = getRanges(numThreads, n, minPerThread);
+        final List<Callable<Void>> chunks = new ArrayList<>(bounds.length - 1);
+        for (int r = 0; r + 1 < bounds.length; ++r) {
+            final int from = bounds[r];
+            final int to = bounds[r + 1];
+            chunks.add(() -> {
+                for (int i = from; i < to; ++i) {
+                    body.accept(i);
+                }
+                return null;
+            });
+        }
+        runInParallel(pool, numThreads, chunks);
+    }
+}
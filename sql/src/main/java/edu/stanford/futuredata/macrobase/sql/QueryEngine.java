@@ -1,59 +1,72 @@
 package edu.stanford.futuredata.macrobase.sql;
 
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static edu.stanford.futuredata.macrobase.sql.ExpressionFormatter.formatExpression;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.MIN_ROWS_PER_THREAD;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.getRanges;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.parallelFor;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.runInParallel;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
-import com.google.common.collect.Lists;
 import edu.stanford.futuredata.macrobase.analysis.MBFunction;
+import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.APLExplanation;
 import edu.stanford.futuredata.macrobase.analysis.summary.aplinear.APLOutlierSummarizer;
 import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
 import edu.stanford.futuredata.macrobase.datamodel.Schema.ColType;
 import edu.stanford.futuredata.macrobase.ingest.CSVDataFrameParser;
+import edu.stanford.futuredata.macrobase.sql.tree.AliasedRelation;
 import edu.stanford.futuredata.macrobase.sql.tree.AllColumns;
+import edu.stanford.futuredata.macrobase.sql.tree.CacheTable;
 import edu.stanford.futuredata.macrobase.sql.tree.ComparisonExpression;
 import edu.stanford.futuredata.macrobase.sql.tree.ComparisonExpressionType;
 import edu.stanford.futuredata.macrobase.sql.tree.DiffQuerySpecification;
-import edu.stanford.futuredata.macrobase.sql.tree.DoubleLiteral;
+import edu.stanford.futuredata.macrobase.sql.tree.ExplainAnalyze;
+import edu.stanford.futuredata.macrobase.sql.tree.ExportBinary;
 import edu.stanford.futuredata.macrobase.sql.tree.Expression;
 import edu.stanford.futuredata.macrobase.sql.tree.FunctionCall;
 import edu.stanford.futuredata.macrobase.sql.tree.Identifier;
+import edu.stanford.futuredata.macrobase.sql.tree.ImportBinary;
 import edu.stanford.futuredata.macrobase.sql.tree.ImportCsv;
-import edu.stanford.futuredata.macrobase.sql.tree.Literal;
+import edu.stanford.futuredata.macrobase.sql.tree.IntLiteral;
+import edu.stanford.futuredata.macrobase.sql.tree.Join;
+import edu.stanford.futuredata.macrobase.sql.tree.JoinCriteria;
+import edu.stanford.futuredata.macrobase.sql.tree.JoinOn;
+import edu.stanford.futuredata.macrobase.sql.tree.JoinUsing;
 import edu.stanford.futuredata.macrobase.sql.tree.LogicalBinaryExpression;
 import edu.stanford.futuredata.macrobase.sql.tree.LogicalBinaryExpression.Type;
-import edu.stanford.futuredata.macrobase.sql.tree.NotExpression;
-import edu.stanford.futuredata.macrobase.sql.tree.NullLiteral;
+import edu.stanford.futuredata.macrobase.sql.tree.NaturalJoin;
+import edu.stanford.futuredata.macrobase.sql.tree.Node;
 import edu.stanford.futuredata.macrobase.sql.tree.OrderBy;
 import edu.stanford.futuredata.macrobase.sql.tree.QueryBody;
 import edu.stanford.futuredata.macrobase.sql.tree.QuerySpecification;
 import edu.stanford.futuredata.macrobase.sql.tree.Relation;
 import edu.stanford.futuredata.macrobase.sql.tree.Select;
 import edu.stanford.futuredata.macrobase.sql.tree.SelectItem;
+import edu.stanford.futuredata.macrobase.sql.tree.SetSession;
 import edu.stanford.futuredata.macrobase.sql.tree.SingleColumn;
 import edu.stanford.futuredata.macrobase.sql.tree.SortItem;
 import edu.stanford.futuredata.macrobase.sql.tree.SortItem.Ordering;
 import edu.stanford.futuredata.macrobase.sql.tree.SplitQuery;
-import edu.stanford.futuredata.macrobase.sql.tree.StringLiteral;
 import edu.stanford.futuredata.macrobase.sql.tree.Table;
 import edu.stanford.futuredata.macrobase.sql.tree.TableSubquery;
+import edu.stanford.futuredata.macrobase.sql.tree.UncacheTable;
 import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 import edu.stanford.futuredata.macrobase.util.MacroBaseSQLException;
+import edu.stanford.futuredata.macrobase.util.OperatorProfile;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.Random;
 import java.util.Set;
-import java.util.function.DoublePredicate;
-import java.util.function.Predicate;
-import java.util.stream.DoubleStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,11 +75,96 @@ class QueryEngine {
     private static final Logger log = LoggerFactory.getLogger(QueryEngine.class.getSimpleName());
 
     private final Map<String, DataFrame> tablesInMemory;
-    private final int numThreads;
+    // dictionaries of String columns of tables in memory, keyed by the column array; built by
+    // the first WHERE clause that compares the column
+    private final Map<String[], StringDictionary> dictionaries = new IdentityHashMap<>();
+    private final StatisticsCatalog catalog = new StatisticsCatalog();
+    private final ResultCache resultCache = new ResultCache();
+    // set while EXPLAIN ANALYZE executes a query, to record its operators
+    private volatile OperatorProfile profile = null;
+    private int numThreads;
+    // shared by the operators of every query of the session, resized by "SET threads = n"
+    private final ThreadPoolExecutor pool;
 
     QueryEngine() {
+        this(1);
+    }
+
+    /**
+     * @param numThreads number of threads used by DIFF queries, SPLIT and WHERE evaluation, and for
+     * running independent subqueries concurrently; can be changed with "SET threads = n"
+     */
+    QueryEngine(final int numThreads) {
         tablesInMemory = new HashMap<>();
-        numThreads = 1; // TODO: add configuration parameter for numThreads
+        pool = ParallelUtils.newPool(numThreads);
+        setNumThreads(numThreads);
+    }
+
+    int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * @return the thread pool shared by the operators of the session
+     */
+    ThreadPoolExecutor getPool() {
+        return pool;
+    }
+
+    /**
+     * @return the statistics of the tables in memory, collected when they were imported
+     */
+    StatisticsCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * @return the cache of subquery and DIFF results, and of tables cached with CACHE TABLE
+     */
+    ResultCache getResultCache() {
+        return resultCache;
+    }
+
+    void setNumThreads(final int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be at least 1, got " + numThreads);
+        }
+        this.numThreads = numThreads;
+        ParallelUtils.resizePool(pool, numThreads);
+    }
+
+    /**
+     * Top-level method for changing a session property: "SET threads = n" for the number of
+     * threads, or "SET cache_mb = n" for the memory bound of the result cache, where 0 disables
+     * caching of subquery and DIFF results.
+     *
+     * @return A DataFrame with a single row containing the property and its new value
+     * @throws MacroBaseSQLException if the property doesn't exist or the value is invalid
+     */
+    DataFrame setSessionProperty(final SetSession setStatement) throws MacroBaseSQLException {
+        final String name = setStatement.getName().getValue().toLowerCase();
+        final Expression value = setStatement.getValue();
+        final String newValue;
+        if (name.equals("threads")) {
+            if (!(value instanceof IntLiteral) || ((IntLiteral) value).getValue() < 1) {
+                throw new MacroBaseSQLException(
+                    "threads must be a positive integer, but got " + value);
+            }
+            setNumThreads(((IntLiteral) value).getValue());
+            newValue = String.valueOf(numThreads);
+        } else if (name.equals("cache_mb")) {
+            if (!(value instanceof IntLiteral) || ((IntLiteral) value).getValue() < 0) {
+                throw new MacroBaseSQLException(
+                    "cache_mb must be a non-negative integer, but got " + value);
+            }
+            resultCache.setMaxBytes(((IntLiteral) value).getValue() * 1024L * 1024L);
+            newValue = String.valueOf(resultCache.getMaxBytes() / (1024 * 1024));
+        } else {
+            throw new MacroBaseSQLException("Unknown session property " + name);
+        }
+        return new DataFrame()
+            .addColumn("property", new String[]{name})
+            .addColumn("value", new String[]{newValue});
     }
 
     /**
@@ -81,13 +179,70 @@ class QueryEngine {
         final Map<String, ColType> schema = importStatement.getSchema();
         try {
             DataFrame df = new CSVDataFrameParser(filename, schema).load();
-            tablesInMemory.put(tableName, df);
+            catalog.collect(tableName, df, pool, numThreads);
+            addTable(tableName, df);
             return df;
         } catch (Exception e) {
             throw new MacroBaseSQLException(e);
         }
     }
 
+    /**
+     * Top-level method for importing tables saved with EXPORT ... TO BINARY FILE. The dictionaries
+     * of the String columns are loaded along with them, so WHERE clauses don't rebuild them.
+     *
+     * @return A DataFrame that contains the data loaded from the file
+     * @throws MacroBaseException if the file doesn't exist or isn't a binary table
+     */
+    DataFrame importTableFromBinary(final ImportBinary importStatement)
+        throws MacroBaseException {
+        final String tableName = importStatement.getTableName().toString();
+        final Map<String[], StringDictionary> columnDictionaries = new IdentityHashMap<>();
+        final DataFrame df = BinaryTableFile
+            .read(importStatement.getFilename(), pool, numThreads, columnDictionaries);
+        catalog.collect(tableName, df, pool, numThreads);
+        addTable(tableName, df);
+        synchronized (dictionaries) {
+            dictionaries.putAll(columnDictionaries);
+        }
+        return df;
+    }
+
+    /**
+     * Add an imported table, replacing any table with the same name, and drop everything that was
+     * computed from the replaced table
+     */
+    private void addTable(final String tableName, final DataFrame df) {
+        final DataFrame replaced = tablesInMemory.put(tableName, df);
+        if (replaced != null) {
+            synchronized (dictionaries) {
+                replaced.getStringCols().forEach(dictionaries::remove);
+            }
+        }
+        // the imported table hides any cached table with the same name
+        resultCache.uncacheTable(tableName);
+        resultCache.invalidate(tableName);
+    }
+
+    /**
+     * Top-level method for EXPORT ... TO BINARY FILE: execute a query, e.g. TABLE t or a DIFF, and
+     * save its result in a file that IMPORT FROM BINARY FILE loads much faster than a CSV file
+     *
+     * @return A DataFrame with a single row containing the file, its number of rows and its size
+     * in bytes
+     * @throws MacroBaseException if the file already exists or the query fails
+     */
+    DataFrame exportToBinary(final ExportBinary exportStatement) throws MacroBaseException {
+        final String filename = exportStatement.getFilename();
+        final DataFrame result = executeQuery(exportStatement.getQuery().getQueryBody());
+        final long numBytes = BinaryTableFile
+            .write(result, filename, pool, numThreads, this::getDictionary);
+        return new DataFrame()
+            .addColumn("file", new String[]{filename})
+            .addColumn("rows", new double[]{result.getNumRows()})
+            .addColumn("bytes", new double[]{numBytes});
+    }
+
     /**
      * Top-level method for executing a SQL query in MacroBase SQL
      *
@@ -105,14 +260,160 @@ class QueryEngine {
             DiffQuerySpecification diffQuery = (DiffQuerySpecification) query;
             log.debug(diffQuery.toString());
             return executeDiffQuerySpec(diffQuery);
+
+        } else if (query instanceof Table) {
+            return evaluateRelation((Table) query);
         }
         throw new MacroBaseSQLException(
             "query of type " + query.getClass().getSimpleName() + " not yet supported");
     }
 
+    /**
+     * Top-level method for EXPLAIN ANALYZE: execute a query and report, for each operator, its
+     * wall time, rows in and out, bytes allocated and number of threads. Operators are listed in
+     * the order they finish, followed by the whole query. The result cache is bypassed, so that
+     * every operator runs.
+     *
+     * @return A DataFrame with one row per operator
+     * @throws MacroBaseException if the query fails
+     */
+    DataFrame explainAnalyze(final ExplainAnalyze explainStatement) throws MacroBaseException {
+        final OperatorProfile queryProfile = new OperatorProfile();
+        final OperatorProfile.Timer queryTimer = queryProfile.start("query");
+        final DataFrame result;
+        profile = queryProfile;
+        try {
+            result = executeQuery(explainStatement.getQuery().getQueryBody());
+        } finally {
+            profile = null;
+        }
+        long rowsScanned = 0;
+        for (OperatorProfile.Operator operator : queryProfile.getOperators()) {
+            if (operator.getName().startsWith("scan ")) {
+                rowsScanned += operator.getRowsOut();
+            }
+        }
+        queryTimer.stop(rowsScanned, result.getNumRows(), numThreads);
+
+        final List<OperatorProfile.Operator> operators = queryProfile.getOperators();
+        final int numOperators = operators.size();
+        final String[] names = new String[numOperators];
+        final double[] times = new double[numOperators];
+        final double[] rowsIn = new double[numOperators];
+        final double[] rowsOut = new double[numOperators];
+        final double[] bytes = new double[numOperators];
+        final double[] threads = new double[numOperators];
+        for (int i = 0; i < numOperators; ++i) {
+            final OperatorProfile.Operator operator = operators.get(i);
+            names[i] = operator.getName();
+            times[i] = operator.getWallNanos() / 1e6;
+            rowsIn[i] = operator.getRowsIn();
+            rowsOut[i] = operator.getRowsOut();
+            bytes[i] = operator.getBytesAllocated();
+            threads[i] = operator.getNumThreads();
+        }
+        return new DataFrame()
+            .addColumn("operator", names)
+            .addColumn("time_ms", times)
+            .addColumn("rows_in", rowsIn)
+            .addColumn("rows_out", rowsOut)
+            .addColumn("bytes_allocated", bytes)
+            .addColumn("threads", threads);
+    }
+
+    /**
+     * @return a timer for an operator if EXPLAIN ANALYZE is running, or else null
+     */
+    private OperatorProfile.Timer startOperator(final String name) {
+        final OperatorProfile curProfile = profile;
+        return curProfile == null ? null : curProfile.start(name);
+    }
+
+    private void stopOperator(final OperatorProfile.Timer timer, final long rowsIn,
+        final long rowsOut, final int threads) {
+        if (timer != null) {
+            timer.stop(rowsIn, rowsOut, threads);
+        }
+    }
+
+    /**
+     * @return the number of threads that a scan of numRows rows is split across
+     */
+    private int getNumThreadsUsed(final int numRows) {
+        return getRanges(numThreads, numRows, MIN_ROWS_PER_THREAD).length - 1;
+    }
+
+    /**
+     * Top-level method for CACHE TABLE: execute a query and keep its result as a table, which is
+     * recomputed on its next use if one of the tables it was computed from is re-imported
+     *
+     * @return A DataFrame containing the results of the query
+     * @throws MacroBaseException if an imported table has the same name, the query reads the
+     * cached table itself, or the query fails
+     */
+    DataFrame cacheTable(final CacheTable cacheStatement) throws MacroBaseException {
+        final String name = cacheStatement.getName().toString();
+        if (tablesInMemory.containsKey(name)) {
+            throw new MacroBaseSQLException("Table " + name + " already exists");
+        }
+        final Set<String> tables = getTableNames(cacheStatement.getQuery());
+        if (tables.contains(name)) {
+            throw new MacroBaseSQLException("Cached table " + name + " cannot read itself");
+        }
+        final DataFrame result = executeQuery(cacheStatement.getQuery().getQueryBody());
+        resultCache.uncacheTable(name);
+        resultCache.invalidate(name);
+        resultCache.cacheTable(name, cacheStatement.getQuery(), tables, result);
+        return result.copy();
+    }
+
+    /**
+     * Top-level method for UNCACHE TABLE and UNCACHE ALL
+     *
+     * @return A DataFrame with the names of the tables that were uncached
+     * @throws MacroBaseSQLException if there's no cached table with the name
+     */
+    DataFrame uncacheTable(final UncacheTable uncacheStatement) throws MacroBaseSQLException {
+        final List<String> uncached = new ArrayList<>();
+        if (uncacheStatement.getName().isPresent()) {
+            final String name = uncacheStatement.getName().get().toString();
+            if (!resultCache.uncacheTable(name)) {
+                throw new MacroBaseSQLException("Table " + name + " is not cached");
+            }
+            resultCache.invalidate(name);
+            uncached.add(name);
+        } else {
+            uncached.addAll(resultCache.clear());
+        }
+        return new DataFrame().addColumn("uncached", uncached.toArray(new String[0]));
+    }
+
+    /**
+     * @return the names of the tables that a query reads, including the imported tables that the
+     * cached tables it reads were computed from
+     */
+    private Set<String> getTableNames(final Node node) {
+        final Set<String> names = new HashSet<>();
+        addTableNames(node, names);
+        return names;
+    }
+
+    private void addTableNames(final Node node, final Set<String> names) {
+        if (node instanceof Table) {
+            final String name = ((Table) node).getName().toString();
+            names.add(name);
+            resultCache.getCachedTable(name).ifPresent((t) -> names.addAll(t.getTables()));
+        }
+        for (Node child : node.getChildren()) {
+            addTableNames(child, names);
+        }
+    }
+
     /**
      * Execute a DIFF query, a query that's specific to MacroBase SQL (i.e., a query that may
-     * contain DIFF and SPLIT operators).
+     * contain DIFF and SPLIT operators). The explanation is cached, keyed by the DIFF's inputs and
+     * parameters, so that re-running the query with different clauses (e.g., ORDER BY or LIMIT)
+     * only re-evaluates the clauses.
      *
      * @return A DataFrame containing the results of the query
      * @throws MacroBaseException If there's an error -- syntactic or logical -- processing the
@@ -120,46 +421,101 @@ class QueryEngine {
      */
     private DataFrame executeDiffQuerySpec(final DiffQuerySpecification diffQuery)
         throws MacroBaseException {
+        final DiffQuerySpecification explanationQuery = new DiffQuerySpecification(
+            new Select(false, ImmutableList.of(new AllColumns())),
+            diffQuery.getFirst(),
+            diffQuery.getSecond(),
+            diffQuery.getSplitQuery(),
+            diffQuery.getAttributeCols(),
+            Optional.of(diffQuery.getMinRatioExpression()),
+            Optional.of(diffQuery.getMinSupportExpression()),
+            Optional.of(diffQuery.getRatioMetricExpr()),
+            Optional.of(diffQuery.getMaxCombo()),
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty(),
+            Optional.empty());
+        if (profile != null) {
+            return evaluateSQLClauses(diffQuery, explain(diffQuery));
+        }
+        // literals are quoted, so that e.g. location = 'AUS' and location = AUS get different keys
+        final String key = SqlFormatter.formatSql(explanationQuery, Optional.empty(), true);
+        final Optional<DataFrame> cached = resultCache.get(key);
+        final DataFrame resultDf;
+        // the clauses may return their input unchanged, and callers may modify the result, so
+        // neither gets the cached DataFrame itself
+        if (cached.isPresent()) {
+            resultDf = cached.get().copy();
+        } else {
+            resultDf = explain(diffQuery);
+            resultCache.put(key, resultDf.copy(), getTableNames(diffQuery));
+        }
+        return evaluateSQLClauses(diffQuery, resultDf);
+    }
+
+    /**
+     * Compute the explanation of a DIFF query, before its SQL clauses are applied
+     */
+    private DataFrame explain(final DiffQuerySpecification diffQuery) throws MacroBaseException {
         final String outlierColName = "outlier_col";
         DataFrame dfToExplain;
+        // one outlier column per class of a multi-class SPLIT
+        List<String> outlierColNames = ImmutableList.of(outlierColName);
+        List<Expression> classes = ImmutableList.of();
 
         if (diffQuery.hasTwoArgs()) {
             // case 1: two separate subqueries
             final TableSubquery first = diffQuery.getFirst().get();
             final TableSubquery second = diffQuery.getSecond().get();
 
-            // execute subqueries
-            final DataFrame outliersDf = executeQuery(first.getQuery().getQueryBody());
-            final DataFrame inliersDf = executeQuery(second.getQuery().getQueryBody());
+            // execute subqueries; they're independent, so run them concurrently
+            final List<DataFrame> subqueryResults = runInParallel(pool, numThreads,
+                ImmutableList.of(
+                    () -> executeSubquery(first),
+                    () -> executeSubquery(second)));
 
-            dfToExplain = concatOutliersAndInliers(outlierColName, outliersDf, inliersDf);
+            final OperatorProfile.Timer timer = startOperator("DIFF union");
+            dfToExplain = concatOutliersAndInliers(outlierColName, subqueryResults.get(0),
+                subqueryResults.get(1));
+            stopOperator(timer, dfToExplain.getNumRows(), dfToExplain.getNumRows(),
+                Math.min(numThreads, dfToExplain.getSchema().getNumColumns()));
         } else {
             // case 2: single SPLIT (...) WHERE ... query
             final SplitQuery splitQuery = diffQuery.getSplitQuery().get();
             final Relation inputRelation = splitQuery.getInputRelation();
 
-            if (inputRelation instanceof TableSubquery) {
-                final QueryBody subquery = ((TableSubquery) inputRelation).getQuery()
-                    .getQueryBody();
-                dfToExplain = executeQuery(subquery);
-            } else {
-                // instance of Table
-                dfToExplain = getTable(((Table) inputRelation).getName().toString());
-            }
+            dfToExplain = evaluateRelation(inputRelation);
 
-            // add outlier (binary) column by evaluating the WHERE clause
-            final BitSet mask = getMask(dfToExplain, splitQuery.getWhereClause());
-            final double[] outlierVals = new double[dfToExplain.getNumRows()];
-            mask.stream().forEach((i) -> outlierVals[i] = 1.0);
-            dfToExplain.addColumn(outlierColName, outlierVals);
+            // add outlier (binary) columns by evaluating the WHERE clauses, one per class
+            classes = splitQuery.getWhereClauses();
+            if (classes.size() > 1) {
+                final Builder<String> names = ImmutableList.builder();
+                for (int k = 1; k <= classes.size(); ++k) {
+                    names.add(outlierColName + "_" + k);
+                }
+                outlierColNames = names.build();
+            }
+            final OperatorProfile.Timer timer = startOperator("SPLIT mask");
+            long numOutliers = 0;
+            for (int k = 0; k < classes.size(); ++k) {
+                final BitSet mask = getMask(dfToExplain, classes.get(k));
+                final double[] outlierVals = new double[dfToExplain.getNumRows()];
+                parallelFor(pool, numThreads, outlierVals.length, MIN_ROWS_PER_THREAD,
+                    (i) -> outlierVals[i] = mask.get(i) ? 1.0 : 0.0);
+                dfToExplain.addColumn(outlierColNames.get(k), outlierVals);
+                numOutliers += mask.cardinality();
+            }
+            stopOperator(timer, dfToExplain.getNumRows(), numOutliers,
+                getNumThreadsUsed(dfToExplain.getNumRows()));
         }
 
         List<String> explainCols = diffQuery.getAttributeCols().stream()
             .map(Identifier::getValue)
             .collect(toImmutableList());
+        final Map<String, ColumnStatistics> explainColStats = new HashMap<>();
         if ((explainCols.size() == 1) && explainCols.get(0).equals("*")) {
             // ON *, explore columns in DataFrame
-            explainCols = findExplanationColumns(dfToExplain);
+            explainCols = findExplanationColumns(dfToExplain, explainColStats);
             log.info("Using " + Joiner.on(", ").join(explainCols)
                 + " as candidate attributes for explanation");
         }
@@ -185,6 +541,12 @@ class QueryEngine {
             .setOutlierColumn(outlierColName)
             .setAttributes(explainCols)
             .setNumThreads(numThreads);
+        if (classes.size() > 1) {
+            summarizer.setOutlierColumns(outlierColNames);
+        }
+        summarizer.setProfile(profile);
+        summarizer.setCardinalityHint(getCardinalityHint(dfToExplain, explainCols,
+            explainColStats));
 
         try {
             summarizer.process(dfToExplain);
@@ -192,43 +554,85 @@ class QueryEngine {
             // TODO: get rid of this Exception
             e.printStackTrace();
         }
-        final DataFrame resultDf = summarizer.getResults().toDataFrame(explainCols);
+        if (classes.size() <= 1) {
+            final DataFrame resultDf = summarizer.getResults().toDataFrame(explainCols);
+            resultDf.renameColumn("outliers", "outlier_count");
+            resultDf.renameColumn("count", "total_count");
+            return resultDf;
+        }
+
+        // multi-class SPLIT: the explanations of all classes, each row labeled with its class
+        final List<APLExplanation> classResults = summarizer.getClassResults();
+        final List<DataFrame> classDfs = new ArrayList<>(classResults.size());
+        for (int k = 0; k < classResults.size(); ++k) {
+            final DataFrame explanationDf = classResults.get(k).toDataFrame(explainCols);
+            final String[] classVals = new String[explanationDf.getNumRows()];
+            Arrays.fill(classVals, formatExpression(classes.get(k), Optional.empty()));
+            final DataFrame classDf = new DataFrame().addColumn("class", classVals);
+            for (String colName : explanationDf.getSchema().getColumnNames()) {
+                if (explanationDf.getSchema().getColumnTypeByName(colName) == ColType.STRING) {
+                    classDf.addColumn(colName, explanationDf.getStringColumnByName(colName));
+                } else {
+                    classDf.addColumn(colName, explanationDf.getDoubleColumnByName(colName));
+                }
+            }
+            classDfs.add(classDf);
+        }
+        final DataFrame resultDf = DataFrame.unionAll(classDfs);
         resultDf.renameColumn("outliers", "outlier_count");
         resultDf.renameColumn("count", "total_count");
-
-        return evaluateSQLClauses(diffQuery, resultDf);
+        return resultDf;
     }
 
     /**
-     * Find columns that should be included in the "ON col1, col2, ..., coln" clause
+     * Find columns that should be included in the "ON col1, col2, ..., coln" clause: String
+     * columns with few distinct values, i.e. fewer than a quarter of the rows, or, for larger
+     * tables, fewer than 250 in a random sample of 1000 rows. Rather than drawing the sample, its
+     * number of distinct values is estimated from the statistics of the column, which for
+     * imported tables come from the catalog; others are collected here.
      *
+     * @param stats the statistics of every String column are added to this map
      * @return List of columns (as Strings)
      */
-    private List<String> findExplanationColumns(DataFrame df) {
+    private List<String> findExplanationColumns(final DataFrame df,
+        final Map<String, ColumnStatistics> stats) throws MacroBaseException {
         Builder<String> builder = ImmutableList.builder();
-        final boolean sample = df.getNumRows() > 1000;
-        final int numRowsToSample = sample ? 1000 : df.getNumRows();
+        final int sampleSize = 1000;
+        final int maxDistinctCount = Math.min(df.getNumRows(), sampleSize) / 4;
         final List<String> stringCols = df.getSchema().getColumnNamesByType(ColType.STRING);
         for (String colName : stringCols) {
             final String[] colValues = df.getStringColumnByName(colName);
-            final Set<String> set = new HashSet<>();
-            if (sample) {
-                final Random random = new Random();
-                for (int i = 0; i < 1000; ++i) {
-                    set.add(colValues[random.nextInt(colValues.length)]);
-                }
-            } else {
-                set.addAll(Arrays.asList(colValues));
-            }
-            if (set.size() < numRowsToSample / 4) {
-                // if number of distinct elements is less than 1/4 the number of sampled rows,
-                // include it
+            final Optional<ColumnStatistics> catalogStats = catalog.getColumnStatistics(colValues);
+            final ColumnStatistics colStats = catalogStats.isPresent() ? catalogStats.get()
+                : ColumnStatistics.collect(colName, colValues, pool, numThreads);
+            stats.put(colName, colStats);
+            if (colStats.getSampleDistinctCount(sampleSize) < maxDistinctCount) {
                 builder.add(colName);
             }
         }
         return builder.build();
     }
 
+    /**
+     * @return the estimated number of distinct values of the explanation columns, or 0 if the
+     * statistics of a column aren't known
+     */
+    private int getCardinalityHint(final DataFrame df, final List<String> explainCols,
+        final Map<String, ColumnStatistics> knownStats) {
+        long hint = 0;
+        for (String col : explainCols) {
+            Optional<ColumnStatistics> stats = Optional.ofNullable(knownStats.get(col));
+            if (!stats.isPresent() && df.getSchema().getColumnTypeByName(col) == ColType.STRING) {
+                stats = catalog.getColumnStatistics(df.getStringColumnByName(col));
+            }
+            if (!stats.isPresent()) {
+                return 0;
+            }
+            hint += stats.get().getDistinctCount();
+        }
+        return (int) Math.min(hint, Integer.MAX_VALUE);
+    }
+
     /**
      * Returns all values in the SELECT clause of a given query that are {@link FunctionCall}
      * objects, which are UDFs (e.g., "percentile(column_name)").
@@ -242,7 +646,8 @@ class QueryEngine {
         for (SelectItem item : select.getSelectItems()) {
             if (item instanceof SingleColumn) {
                 final SingleColumn col = (SingleColumn) item;
-                if (col.getExpression() instanceof FunctionCall) {
+                if (col.getExpression() instanceof FunctionCall && !isAggregateCall(
+                    (FunctionCall) col.getExpression())) {
                     udfs.add(col);
                 }
             }
@@ -253,7 +658,7 @@ class QueryEngine {
     /**
      * Concatenate two DataFrames -- outlier and inlier -- into a single DataFrame, with a new
      * column that stores 1 if the row is originally from the outlier DF and 0 if it's from the
-     * inlier DF
+     * inlier DF. Columns are copied in parallel.
      *
      * @param outlierColName The name of the binary column that denotes outlier/inlier
      * @param outliersDf outlier DataFrame
@@ -262,19 +667,52 @@ class QueryEngine {
      * column
      */
     private DataFrame concatOutliersAndInliers(final String outlierColName,
-        final DataFrame outliersDf, final DataFrame inliersDf) {
+        final DataFrame outliersDf, final DataFrame inliersDf) throws MacroBaseException {
+        final int numOutliers = outliersDf.getNumRows();
+        final int numRows = numOutliers + inliersDf.getNumRows();
+        final List<String> colNames = outliersDf.getSchema().getColumnNames();
+
+        final List<Callable<Object>> copies = new ArrayList<>();
+        for (int i = 0; i < colNames.size(); ++i) {
+            final int colIdx = i;
+            if (outliersDf.getSchema().getColumnType(colIdx) == ColType.STRING) {
+                copies.add(() -> {
+                    final String[] col = Arrays.copyOf(outliersDf.getStringColumn(colIdx), numRows);
+                    final String[] inliers = inliersDf.getStringColumn(colIdx);
+                    System.arraycopy(inliers, 0, col, numOutliers, inliers.length);
+                    return col;
+                });
+            } else {
+                copies.add(() -> {
+                    final double[] col = Arrays.copyOf(outliersDf.getDoubleColumn(colIdx), numRows);
+                    final double[] inliers = inliersDf.getDoubleColumn(colIdx);
+                    System.arraycopy(inliers, 0, col, numOutliers, inliers.length);
+                    return col;
+                });
+            }
+        }
+        // "outlier_col" is all 1.0 for outliers and all 0.0 for inliers
+        copies.add(() -> {
+            final double[] col = new double[numRows];
+            Arrays.fill(col, 0, numOutliers, 1.0);
+            return col;
+        });
+        final List<Object> cols = runInParallel(pool, numThreads, copies);
 
-        // Add column "outlier_col" to both outliers (all 1.0) and inliers (all 0.0)
-        outliersDf.addColumn(outlierColName,
-            DoubleStream.generate(() -> 1.0).limit(outliersDf.getNumRows()).toArray());
-        inliersDf.addColumn(outlierColName,
-            DoubleStream.generate(() -> 0.0).limit(inliersDf.getNumRows()).toArray());
-        return DataFrame.unionAll(Lists.newArrayList(outliersDf, inliersDf));
+        final DataFrame combined = new DataFrame();
+        for (int i = 0; i < colNames.size(); ++i) {
+            if (cols.get(i) instanceof String[]) {
+                combined.addColumn(colNames.get(i), (String[]) cols.get(i));
+            } else {
+                combined.addColumn(colNames.get(i), (double[]) cols.get(i));
+            }
+        }
+        combined.addColumn(outlierColName, (double[]) cols.get(colNames.size()));
+        return combined;
     }
 
     /**
-     * Evaluate standard SQL clauses: SELECT, WHERE, ORDER BY, and LIMIT. TODO: support GROUP BY and
-     * HAVING clauses
+     * Evaluate standard SQL clauses: SELECT, WHERE, GROUP BY, HAVING, ORDER BY, and LIMIT.
      *
      * @param query the query that contains the clauses
      * @param df the DataFrame to apply these clauses to
@@ -282,52 +720,369 @@ class QueryEngine {
      */
     private DataFrame evaluateSQLClauses(final QueryBody query, final DataFrame df)
         throws MacroBaseException {
-        DataFrame resultDf = evaluateUDFs(df, getUDFsInSelect(query.getSelect()));
+        final List<SingleColumn> udfs = getUDFsInSelect(query.getSelect());
+        OperatorProfile.Timer timer = udfs.isEmpty() ? null : startOperator("UDF");
+        DataFrame resultDf = evaluateUDFs(df, udfs);
+        stopOperator(timer, df.getNumRows(), resultDf.getNumRows(), 1);
+
+        timer = query.getWhere().isPresent() ? startOperator("WHERE") : null;
+        final int numRowsBeforeWhere = resultDf.getNumRows();
         resultDf = evaluateWhereClause(resultDf, query.getWhere());
+        stopOperator(timer, numRowsBeforeWhere, resultDf.getNumRows(),
+            getNumThreadsUsed(numRowsBeforeWhere));
+
+        if (query instanceof QuerySpecification && isAggregation((QuerySpecification) query)) {
+            final QuerySpecification querySpec = (QuerySpecification) query;
+            timer = startOperator("GROUP BY");
+            final int numRowsBeforeGroupBy = resultDf.getNumRows();
+            resultDf = evaluateGroupByClause(resultDf, querySpec);
+            stopOperator(timer, numRowsBeforeGroupBy, resultDf.getNumRows(),
+                getNumThreadsUsed(numRowsBeforeGroupBy));
+
+            timer = querySpec.getHaving().isPresent() ? startOperator("HAVING") : null;
+            final int numGroups = resultDf.getNumRows();
+            resultDf = evaluateWhereClause(resultDf, querySpec.getHaving());
+            stopOperator(timer, numGroups, resultDf.getNumRows(), getNumThreadsUsed(numGroups));
+        }
         resultDf = evaluateSelectClause(resultDf, query.getSelect());
+
         // TODO: what if you order by something that's not in the SELECT clause?
-        resultDf = evaluateOrderByClause(resultDf, query.getOrderBy());
-        return evaluateLimitClause(resultDf, query.getLimit());
+        timer = query.getOrderBy().isPresent() ? startOperator("ORDER BY") : null;
+        final int numRowsBeforeOrderBy = resultDf.getNumRows();
+        resultDf = evaluateOrderByClause(resultDf, query.getOrderBy(), query.getLimit());
+        stopOperator(timer, numRowsBeforeOrderBy, resultDf.getNumRows(), 1);
+
+        timer = query.getLimit().isPresent() ? startOperator("LIMIT") : null;
+        final int numRowsBeforeLimit = resultDf.getNumRows();
+        resultDf = evaluateLimitClause(resultDf, query.getLimit());
+        stopOperator(timer, numRowsBeforeLimit, resultDf.getNumRows(), 1);
+        return resultDf;
     }
 
     /**
-     * Evaluate ORDER BY clause. For now, we only support sorting by a single column.
+     * @return true if the query has a GROUP BY or HAVING clause, or aggregates in its SELECT clause
      */
-    private DataFrame evaluateOrderByClause(DataFrame df, Optional<OrderBy> orderByOpt) {
+    private boolean isAggregation(final QuerySpecification query) {
+        if (query.getGroupBy().isPresent() || query.getHaving().isPresent()) {
+            return true;
+        }
+        for (SelectItem item : query.getSelect().getSelectItems()) {
+            if (item instanceof SingleColumn) {
+                final Expression expr = ((SingleColumn) item).getExpression();
+                if (expr instanceof FunctionCall && isAggregateCall((FunctionCall) expr)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isAggregateCall(final FunctionCall func) {
+        return HashAggregation.Function.fromName(func.getName().getSuffix()).isPresent();
+    }
+
+    /**
+     * Evaluate GROUP BY clause, along with the aggregates in the SELECT and HAVING clauses. Each
+     * aggregate in the SELECT clause becomes a column named after the select item; aggregates that
+     * only appear in HAVING become columns named after the function call (e.g., "count(*)"), so
+     * that {@link #getMask(DataFrame, Expression)} can find them. For now, only columns can be
+     * grouped by, and aggregates take a single column (or * for COUNT).
+     *
+     * @return A new DataFrame with one row per group
+     * @throws MacroBaseSQLException if the SELECT clause has columns that are neither grouped by
+     * nor aggregated, or an aggregate isn't supported
+     */
+    private DataFrame evaluateGroupByClause(final DataFrame df, final QuerySpecification query)
+        throws MacroBaseException {
+        final List<String> keys = new ArrayList<>();
+        if (query.getGroupBy().isPresent()) {
+            for (Expression key : query.getGroupBy().get().getGroupingKeys()) {
+                if (!(key instanceof Identifier)) {
+                    throw new MacroBaseSQLException(
+                        "GROUP BY only supports columns, but got " + key);
+                }
+                keys.add(((Identifier) key).getValue());
+            }
+        }
+
+        final List<HashAggregation.Aggregate> aggregates = new ArrayList<>();
+        final Set<String> outputNames = new HashSet<>();
+        for (SelectItem item : query.getSelect().getSelectItems()) {
+            if (item instanceof AllColumns) {
+                throw new MacroBaseSQLException(
+                    "SELECT * is not supported with GROUP BY or aggregates");
+            }
+            final SingleColumn col = (SingleColumn) item;
+            final Expression expr = col.getExpression();
+            if (expr instanceof FunctionCall && isAggregateCall((FunctionCall) expr)) {
+                aggregates.add(toAggregate((FunctionCall) expr, col.toString()));
+                outputNames.add(col.toString());
+            } else if (!keys.contains(col.toString())) {
+                throw new MacroBaseSQLException(col
+                    + " must appear in the GROUP BY clause or be used in an aggregate function");
+            }
+        }
+        if (query.getHaving().isPresent()) {
+            final List<FunctionCall> havingAggregates = new ArrayList<>();
+            collectAggregateCalls(query.getHaving().get(), havingAggregates);
+            for (FunctionCall func : havingAggregates) {
+                final String colName = getColumnName(func);
+                if (outputNames.add(colName)) {
+                    aggregates.add(toAggregate(func, colName));
+                }
+            }
+        }
+        return new HashAggregation(keys, aggregates, pool, numThreads).evaluate(df);
+    }
+
+    private HashAggregation.Aggregate toAggregate(final FunctionCall func,
+        final String outputName) throws MacroBaseSQLException {
+        final HashAggregation.Function function = HashAggregation.Function
+            .fromName(func.getName().getSuffix()).get();
+        if (func.isDistinct()) {
+            throw new MacroBaseSQLException(function + "(DISTINCT ...) is not supported");
+        }
+        final List<Expression> args = func.getArguments();
+        if (args.isEmpty()) {
+            // COUNT(*)
+            return new HashAggregation.Aggregate(function, null, outputName);
+        } else if (args.size() == 1 && args.get(0) instanceof Identifier) {
+            return new HashAggregation.Aggregate(function,
+                ((Identifier) args.get(0)).getValue(), outputName);
+        }
+        throw new MacroBaseSQLException(
+            "Aggregates only support a single column as argument, but got " + func);
+    }
+
+    private void collectAggregateCalls(final Node node, final List<FunctionCall> calls) {
+        if (node instanceof FunctionCall && isAggregateCall((FunctionCall) node)) {
+            calls.add((FunctionCall) node);
+            return;
+        }
+        for (Node child : node.getChildren()) {
+            collectAggregateCalls(child, calls);
+        }
+    }
+
+    /**
+     * @return the name of the column for a function call, the same as {@link SingleColumn} uses
+     * when there's no alias
+     */
+    private String getColumnName(final FunctionCall func) {
+        return func.toString().replaceAll("\"", "");
+    }
+
+    /**
+     * Evaluate ORDER BY clause, on one or more columns or aggregates. If there's also a LIMIT
+     * clause, only the rows that are kept are sorted.
+     *
+     * @throws MacroBaseSQLException if a sort key is neither a column nor a function call
+     */
+    private DataFrame evaluateOrderByClause(final DataFrame df,
+        final Optional<OrderBy> orderByOpt, final Optional<String> limitStr)
+        throws MacroBaseSQLException {
         if (!orderByOpt.isPresent()) {
             return df;
         }
-        final OrderBy orderBy = orderByOpt.get();
-        // For now, we only support sorting by a single column
-        // TODO: support multi-column sort
-        final SortItem sortItem = orderBy.getSortItems().get(0);
-        final String sortCol = ((Identifier) sortItem.getSortKey()).getValue();
-        return df.orderBy(sortCol, sortItem.getOrdering() == Ordering.ASCENDING);
+        final List<String> sortCols = new ArrayList<>();
+        final List<Boolean> sortAsc = new ArrayList<>();
+        for (SortItem sortItem : orderByOpt.get().getSortItems()) {
+            final Expression sortKey = sortItem.getSortKey();
+            final String sortCol;
+            if (sortKey instanceof Identifier) {
+                sortCol = ((Identifier) sortKey).getValue();
+            } else if (sortKey instanceof FunctionCall) {
+                sortCol = getColumnName((FunctionCall) sortKey);
+            } else {
+                throw new MacroBaseSQLException("ORDER BY " + sortKey + " not yet supported");
+            }
+            // as before, columns that aren't in the DataFrame are ignored
+            if (df.getSchema().hasColumn(sortCol)) {
+                sortCols.add(sortCol);
+                sortAsc.add(sortItem.getOrdering() == Ordering.ASCENDING);
+            }
+        }
+        if (sortCols.isEmpty()) {
+            return df;
+        }
+        return df.orderBy(sortCols, sortAsc, getLimit(limitStr));
     }
 
     /**
      * Execute a standard SQL query (i.e., a query that only contains ANSI SQL terms, and does not
-     * contain any DIFF or SPLIT operators). For now, we ignore GROUP BY, HAVING, and JOIN clauses
+     * contain any DIFF or SPLIT operators).
      *
      * @return A DataFrame containing the results of the SQL query
      */
     private DataFrame executeQuerySpec(final QuerySpecification query)
         throws MacroBaseException {
-        final Table table = (Table) query.getFrom().get();
-        final DataFrame df = getTable(table.getName().toString());
+        final DataFrame df = evaluateRelation(query.getFrom().get());
         return evaluateSQLClauses(query, df);
     }
 
     /**
-     * Get table as DataFrame that has previously been loaded into memory
+     * Evaluate a relation in a FROM or SPLIT clause: a table, a subquery, or a join of relations.
+     * Aliases are ignored, since columns can only be referred to by their unqualified names.
+     *
+     * @return A DataFrame containing the rows of the relation
+     */
+    private DataFrame evaluateRelation(final Relation relation) throws MacroBaseException {
+        if (relation instanceof Table) {
+            final String name = ((Table) relation).getName().toString();
+            final OperatorProfile.Timer timer = startOperator("scan " + name);
+            final DataFrame table = getTable(name);
+            stopOperator(timer, table.getNumRows(), table.getNumRows(), 1);
+            return table;
+        } else if (relation instanceof TableSubquery) {
+            return executeSubquery((TableSubquery) relation);
+        } else if (relation instanceof AliasedRelation) {
+            return evaluateRelation(((AliasedRelation) relation).getRelation());
+        } else if (relation instanceof Join) {
+            return evaluateJoin((Join) relation);
+        }
+        throw new MacroBaseSQLException(
+            "relation of type " + relation.getClass().getSimpleName() + " not yet supported");
+    }
+
+    /**
+     * Execute a subquery, or return its cached result if the same subquery has already been
+     * executed since the tables it reads were imported
+     *
+     * @return A DataFrame containing the results of the subquery
+     */
+    private DataFrame executeSubquery(final TableSubquery subquery) throws MacroBaseException {
+        if (profile != null) {
+            return executeQuery(subquery.getQuery().getQueryBody());
+        }
+        final String key = SqlFormatter.formatSql(subquery.getQuery(), Optional.empty(), true);
+        final Optional<DataFrame> cached = resultCache.get(key);
+        if (cached.isPresent()) {
+            return cached.get().copy();
+        }
+        final DataFrame result = executeQuery(subquery.getQuery().getQueryBody());
+        // cache a copy, since the caller may add columns to the result
+        resultCache.put(key, result.copy(), getTableNames(subquery));
+        return result;
+    }
+
+    /**
+     * Evaluate a JOIN using a hash join. Both sides are evaluated concurrently. For JOIN ... USING
+     * and NATURAL JOIN, each key column appears once in the result; for JOIN ... ON, the ON clause
+     * must be a conjunction of equalities between a column of each side, and the columns of the
+     * two sides must have distinct names.
+     *
+     * @return A DataFrame containing the joined rows
+     * @throws MacroBaseException if the join criteria aren't supported
+     */
+    private DataFrame evaluateJoin(final Join join) throws MacroBaseException {
+        final List<DataFrame> inputs = runInParallel(pool, numThreads, ImmutableList.of(
+            () -> evaluateRelation(join.getLeft()),
+            () -> evaluateRelation(join.getRight())));
+        final DataFrame left = inputs.get(0);
+        final DataFrame right = inputs.get(1);
+
+        final List<String> leftKeys = new ArrayList<>();
+        final List<String> rightKeys = new ArrayList<>();
+        boolean mergeKeys = true;
+        final JoinCriteria criteria = join.getCriteria().orElse(null);
+        if (criteria instanceof JoinUsing) {
+            for (Identifier col : ((JoinUsing) criteria).getColumns()) {
+                leftKeys.add(col.getValue());
+                rightKeys.add(col.getValue());
+            }
+        } else if (criteria instanceof NaturalJoin) {
+            for (String col : left.getSchema().getColumnNames()) {
+                if (right.getSchema().hasColumn(col)) {
+                    leftKeys.add(col);
+                    rightKeys.add(col);
+                }
+            }
+        } else if (criteria instanceof JoinOn) {
+            mergeKeys = addJoinKeys(((JoinOn) criteria).getExpression(), left, right, leftKeys,
+                rightKeys);
+        }
+        // no criteria: CROSS JOIN, or an implicit join (FROM a, b) with no keys
+
+        final OperatorProfile.Timer timer = startOperator("JOIN");
+        final DataFrame joined = new HashJoin(join.getType(), leftKeys, rightKeys, mergeKeys,
+            catalog, pool, numThreads).evaluate(left, right);
+        stopOperator(timer, left.getNumRows() + right.getNumRows(), joined.getNumRows(),
+            getNumThreadsUsed(Math.max(left.getNumRows(), right.getNumRows())));
+        return joined;
+    }
+
+    /**
+     * Add the key columns of a JOIN ... ON clause to leftKeys and rightKeys
+     *
+     * @return true if every key has the same name on both sides, e.g. ON a = a, in which case the
+     * keys are merged as for JOIN ... USING
+     * @throws MacroBaseSQLException if the clause isn't a conjunction of equalities between a
+     * column of each side
+     */
+    private boolean addJoinKeys(final Expression expression, final DataFrame left,
+        final DataFrame right, final List<String> leftKeys, final List<String> rightKeys)
+        throws MacroBaseSQLException {
+        if (expression instanceof LogicalBinaryExpression
+            && ((LogicalBinaryExpression) expression).getType() == Type.AND) {
+            final LogicalBinaryExpression and = (LogicalBinaryExpression) expression;
+            final boolean first = addJoinKeys(and.getLeft(), left, right, leftKeys, rightKeys);
+            final boolean second = addJoinKeys(and.getRight(), left, right, leftKeys, rightKeys);
+            return first && second;
+        }
+        if (!(expression instanceof ComparisonExpression)
+            || ((ComparisonExpression) expression).getType() != ComparisonExpressionType.EQUAL) {
+            throw new MacroBaseSQLException(
+                "JOIN ... ON only supports equalities combined with AND: " + expression);
+        }
+        final ComparisonExpression equality = (ComparisonExpression) expression;
+        if (!(equality.getLeft() instanceof Identifier)
+            || !(equality.getRight() instanceof Identifier)) {
+            throw new MacroBaseSQLException(
+                "JOIN ... ON only supports equalities between columns: " + expression);
+        }
+        String first = ((Identifier) equality.getLeft()).getValue();
+        String second = ((Identifier) equality.getRight()).getValue();
+        if (!left.getSchema().hasColumn(first) || !right.getSchema().hasColumn(second)) {
+            // the columns may be written in either order
+            final String tmp = first;
+            first = second;
+            second = tmp;
+        }
+        if (!left.getSchema().hasColumn(first)) {
+            throw new MacroBaseSQLException("Column " + first + " not found in left side of JOIN");
+        }
+        if (!right.getSchema().hasColumn(second)) {
+            throw new MacroBaseSQLException(
+                "Column " + second + " not found in right side of JOIN");
+        }
+        leftKeys.add(first);
+        rightKeys.add(second);
+        return first.equals(second);
+    }
+
+    /**
+     * Get table as DataFrame that has previously been loaded into memory, or cached with CACHE
+     * TABLE
      *
      * @param tableName String that uniquely identifies table
      * @return a shallow copy of the DataFrame for table; the original DataFrame is never returned,
      * so that we keep it immutable
-     * @throws MacroBaseSQLException if the table has not been loaded into memory and does not
-     * exist
+     * @throws MacroBaseException if the table has not been loaded into memory and does not
+     * exist, or it's a cached table that can't be recomputed
      */
-    private DataFrame getTable(String tableName) throws MacroBaseSQLException {
+    private DataFrame getTable(String tableName) throws MacroBaseException {
+        final Optional<ResultCache.CachedTable> cachedTable = resultCache
+            .getCachedTable(tableName);
+        if (cachedTable.isPresent()) {
+            final Optional<DataFrame> result = resultCache.getResult(cachedTable.get());
+            if (result.isPresent()) {
+                return result.get().copy();
+            }
+            // one of its tables has been re-imported since it was cached
+            final DataFrame recomputed = executeQuery(cachedTable.get().getQuery().getQueryBody());
+            resultCache.setResult(cachedTable.get(), recomputed);
+            return recomputed.copy();
+        }
         if (!tablesInMemory.containsKey(tableName)) {
             throw new MacroBaseSQLException("Table " + tableName + " does not exist");
         }
@@ -394,15 +1149,22 @@ class QueryEngine {
      */
 
     private DataFrame evaluateLimitClause(final DataFrame df, final Optional<String> limitStr) {
+        return df.limit(getLimit(limitStr));
+    }
+
+    /**
+     * @return the number of rows in a LIMIT clause, or -1 if there's no LIMIT or it's LIMIT ALL
+     */
+    private int getLimit(final Optional<String> limitStr) {
         if (limitStr.isPresent()) {
             try {
-                return df.limit(Integer.parseInt(limitStr.get()));
+                return Integer.parseInt(limitStr.get());
             } catch (NumberFormatException e) {
                 // LIMIT ALL, catch NumberFormatException and do nothing
-                return df;
+                return -1;
             }
         }
-        return df;
+        return -1;
     }
 
     /**
@@ -419,192 +1181,84 @@ class QueryEngine {
         if (!whereClauseOpt.isPresent()) {
             return df;
         }
-        final Expression whereClause = whereClauseOpt.get();
-        final BitSet mask = getMask(df, whereClause);
-        return df.filter(mask);
+        return compileFilter(df, whereClauseOpt.get()).filter();
     }
 
     // ********************* Helper methods for evaluating Where clauses **********************
 
     /**
-     * Recursive method that, given a Where clause, generates a boolean mask (a BitSet) applying the
-     * clause to a DataFrame
+     * Compile a Where clause for a DataFrame
      *
      * @throws MacroBaseSQLException Only comparison expressions (e.g., WHERE x = 42) and logical
      * AND/OR/NOT combinations of such expressions are supported; exception is thrown otherwise.
      */
-    private BitSet getMask(DataFrame df, Expression whereClause) throws MacroBaseException {
-        if (whereClause instanceof NotExpression) {
-            final NotExpression notExpr = (NotExpression) whereClause;
-            final BitSet mask = getMask(df, notExpr.getValue());
-            mask.flip(0, df.getNumRows());
-            return mask;
-
-        } else if (whereClause instanceof LogicalBinaryExpression) {
-            final LogicalBinaryExpression binaryExpr = (LogicalBinaryExpression) whereClause;
-            final BitSet leftMask = getMask(df, binaryExpr.getLeft());
-            final BitSet rightMask = getMask(df, binaryExpr.getRight());
-            if (binaryExpr.getType() == Type.AND) {
-                leftMask.and(rightMask);
-                return leftMask;
-            } else {
-                // Type.OR
-                leftMask.or(rightMask);
-                return leftMask;
-            }
+    private CompiledFilter compileFilter(final DataFrame df, final Expression whereClause)
+        throws MacroBaseException {
+        return CompiledFilter.compile(df, whereClause, (func) -> evaluateFunctionColumn(df, func),
+            this::getDictionary, pool, numThreads);
+    }
 
-        } else if (whereClause instanceof ComparisonExpression) {
-            // base case
-            final ComparisonExpression compareExpr = (ComparisonExpression) whereClause;
-            final Expression left = compareExpr.getLeft();
-            final Expression right = compareExpr.getRight();
-            final ComparisonExpressionType type = compareExpr.getType();
-
-            if (left instanceof Literal && right instanceof Literal) {
-                final boolean val = left.equals(right);
-                final BitSet mask = new BitSet(df.getNumRows());
-                mask.set(0, df.getNumRows(), val);
-                return mask;
-            } else if (left instanceof Literal && right instanceof Identifier) {
-                return maskForPredicate(df, (Literal) left, (Identifier) right, type);
-            } else if (right instanceof Literal && left instanceof Identifier) {
-                return maskForPredicate(df, (Literal) right, (Identifier) left, type);
-            } else if (left instanceof FunctionCall && right instanceof Literal) {
-                return maskForPredicate(df, (FunctionCall) left, (Literal) right, type);
-            } else if (right instanceof FunctionCall && left instanceof Literal) {
-                return maskForPredicate(df, (FunctionCall) right, (Literal) left, type);
-            }
-        }
-        throw new MacroBaseSQLException("Boolean expression not supported");
+    /**
+     * Generate a boolean mask (a BitSet) applying a Where clause to a DataFrame
+     */
+    private BitSet getMask(final DataFrame df, final Expression whereClause)
+        throws MacroBaseException {
+        return compileFilter(df, whereClause).getMask();
     }
 
-    private BitSet maskForPredicate(DataFrame df, FunctionCall func, Literal val,
-        final ComparisonExpressionType type)
+    /**
+     * @return the values of a function call in a comparison: the column with the same name, if
+     * the function has already been evaluated (e.g., an aggregate computed by GROUP BY, or a UDF
+     * evaluated for the SELECT clause), or else the result of evaluating it as an MBFunction
+     */
+    private double[] evaluateFunctionColumn(final DataFrame df, final FunctionCall func)
         throws MacroBaseException {
+        if (df.hasColumn(getColumnName(func))) {
+            return df.getDoubleColumnByName(getColumnName(func));
+        }
         final String funcName = func.getName().getSuffix();
         final MBFunction mbFunction = MBFunction.getFunction(funcName,
             func.getArguments().stream().map(Expression::toString).findFirst().get());
-        final double[] col = mbFunction.apply(df);
-        final DoublePredicate predicate = generateLambdaForPredicate(
-            ((DoubleLiteral) val).getValue(), type);
-        final BitSet mask = new BitSet(col.length);
-        for (int i = 0; i < col.length; ++i) {
-            if (predicate.test(col[i])) {
-                mask.set(i);
-            }
-        }
-        return mask;
+        return mbFunction.apply(df);
     }
 
-
     /**
-     * The base case for {@link QueryEngine#getMask(DataFrame, Expression)}; returns a boolean mask
-     * (as a BitSet) for a single comparision expression (e.g., WHERE x = 42)
+     * Get the dictionary of a String column of a table in memory, encoding the column the first
+     * time it's compared. Columns of intermediate results, e.g. after a join, have no dictionary,
+     * since encoding them would cost more than the comparison saves.
      *
-     * @param df The DataFrame on which to evaluate the comparison expression
-     * @param literal The constant argument in the expression (e.g., 42)
-     * @param identifier The column variable argument in the expression (e.g., x)
-     * @param compExprType One of =, !=, >, >=, <, <=, or IS DISTINCT FROM
-     * @throws MacroBaseSQLException if the literal's type doesn't match the type of the column
-     * variable, an exception is thrown
-     */
-    private BitSet maskForPredicate(final DataFrame df, final Literal literal,
-        final Identifier identifier, final ComparisonExpressionType compExprType)
-        throws MacroBaseSQLException {
-        final String colName = identifier.getValue();
-        final int colIndex;
-        try {
-            colIndex = df.getSchema().getColumnIndex(colName);
-        } catch (UnsupportedOperationException e) {
-            throw new MacroBaseSQLException(e.getMessage());
-        }
-        final ColType colType = df.getSchema().getColumnType(colIndex);
-
-        if (colType == ColType.DOUBLE) {
-            if (!(literal instanceof DoubleLiteral)) {
-                throw new MacroBaseSQLException(
-                    "Column " + colName + " has type " + colType + ", but " + literal
-                        + " is not a DoubleLiteral");
+     * @return the dictionary, or null if the column isn't a column of a table in memory
+     */
+    private StringDictionary getDictionary(final String[] column) throws MacroBaseException {
+        synchronized (dictionaries) {
+            final StringDictionary dictionary = dictionaries.get(column);
+            if (dictionary != null) {
+                return dictionary;
             }
-
-            return df.getMaskForFilter(colIndex,
-                generateLambdaForPredicate(((DoubleLiteral) literal).getValue(), compExprType));
-        } else {
-            // colType == ColType.STRING
-            if (literal instanceof StringLiteral) {
-                return df.getMaskForFilter(colIndex,
-                    generateLambdaForPredicate(((StringLiteral) literal).getValue(), compExprType));
-            } else if (literal instanceof NullLiteral) {
-                return df.getMaskForFilter(colIndex,
-                    generateLambdaForPredicate(null, compExprType));
-            } else {
-                throw new MacroBaseSQLException(
-                    "Column " + colName + " has type " + colType + ", but " + literal
-                        + " is not StringLiteral");
+            if (!isTableColumn(column)) {
+                return null;
             }
         }
+        // encode outside the lock, so that concurrent subqueries aren't blocked; at worst a
+        // column is encoded twice
+        final StringDictionary dictionary = StringDictionary.encode(column, pool, numThreads);
+        synchronized (dictionaries) {
+            dictionaries.put(column, dictionary);
+        }
+        return dictionary;
     }
 
     /**
-     * Return a Java Predicate expression for a given comparison type and constant value of type
-     * double. (See {@link QueryEngine#generateLambdaForPredicate(String, ComparisonExpressionType)}
-     * for handling a String argument.)
-     *
-     * @param y The constant value
-     * @param compareExprType One of =, !=, >, >=, <, <=, or IS DISTINCT FROM
-     * @return A {@link DoublePredicate}, that wraps the constant y in a closure
-     * @throws MacroBaseSQLException If a comparsion type is passed in that is not supported, an
-     * exception is thrown
-     */
-    private DoublePredicate generateLambdaForPredicate(double y,
-        ComparisonExpressionType compareExprType) throws MacroBaseSQLException {
-        switch (compareExprType) {
-            case EQUAL:
-                return (x) -> x == y;
-            case NOT_EQUAL:
-            case IS_DISTINCT_FROM:
-                // IS DISTINCT FROM is true when x and y have different values or
-                // if one of them is NULL and the other isn't.
-                // x and y can never be NULL here, so it's the same as NOT_EQUAL
-                return (x) -> x != y;
-            case LESS_THAN:
-                return (x) -> x < y;
-            case LESS_THAN_OR_EQUAL:
-                return (x) -> x <= y;
-            case GREATER_THAN:
-                return (x) -> x > y;
-            case GREATER_THAN_OR_EQUAL:
-                return (x) -> x >= y;
-            default:
-                throw new MacroBaseSQLException(compareExprType + " is not supported");
-        }
-    }
-
-    /**
-     * Return a Java Predicate expression for a given comparison type and constant value of type
-     * String. (See {@link QueryEngine#generateLambdaForPredicate(double, ComparisonExpressionType)}
-     * for handling a double argument.)
-     *
-     * @param y The constant value
-     * @param compareExprType One of =, !=, >, >=, <, <=, or IS DISTINCT FROM
-     * @return A {@link Predicate<Object>}, that wraps the constant y in a closure. A
-     * Predicate<String> is not returned for compatibility with {@link DataFrame#filter(int,
-     * Predicate)}.
-     * @throws MacroBaseSQLException If a comparsion type is passed in that is not supported, an
-     * exception is thrown
-     */
-    private Predicate<Object> generateLambdaForPredicate(final String y,
-        final ComparisonExpressionType compareExprType) throws MacroBaseSQLException {
-        switch (compareExprType) {
-            case EQUAL:
-                return (x) -> Objects.equals(x, y);
-            case NOT_EQUAL:
-            case IS_DISTINCT_FROM:
-                // IS DISTINCT FROM is true when x and y have different values or
-                // if one of them is NULL and the other isn't
-                return (x) -> !Objects.equals(x, y);
-            default:
-                throw new MacroBaseSQLException(compareExprType + " is not supported");
+     * @return true if column is a String column of a table in memory
+     */
+    private boolean isTableColumn(final String[] column) {
+        for (DataFrame table : tablesInMemory.values()) {
+            for (String[] tableColumn : table.getStringCols()) {
+                if (tableColumn == column) {
+                    return true;
+                }
+            }
         }
+        return false;
     }
 }
@@ -0,0 +1,242 @@
+package edu.stanford.futuredata.macrobase.sql;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.sql.tree.Query;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Session-level cache of query results, so that re-running a subquery or a DIFF, e.g. with a
+ * different ORDER BY or LIMIT, doesn't recompute it. Results are keyed by their canonical SQL, as
+ * formatted by {@link SqlFormatter}, and record the tables they were computed from, so that
+ * re-importing a table invalidates them.
+ *
+ * Results are evicted in least-recently-used order once their estimated size exceeds the memory
+ * bound. Tables cached with CACHE TABLE are never evicted: they're kept, along with their query,
+ * until UNCACHE, and recomputed on their next use if one of their tables is re-imported.
+ */
+class ResultCache {
+
+    private static final long DEFAULT_MAX_BYTES = Runtime.getRuntime().maxMemory() / 10;
+    // rough size of a DataFrame and of its column arrays, besides their elements
+    private static final long BYTES_PER_DATAFRAME = 256;
+    private static final long BYTES_PER_COLUMN = 64;
+
+    private static class Entry {
+
+        final DataFrame result;
+        final Set<String> tables;
+        final long numBytes;
+
+        Entry(final DataFrame result, final Set<String> tables) {
+            this.result = result;
+            this.tables = tables;
+            this.numBytes = estimateBytes(result);
+        }
+    }
+
+    /**
+     * A table cached with CACHE TABLE
+     */
+    static class CachedTable {
+
+        private final Query query;
+        private final Set<String> tables;
+        // null once one of the tables it depends on has been re-imported
+        private DataFrame result;
+
+        private CachedTable(final Query query, final Set<String> tables,
+            final DataFrame result) {
+            this.query = query;
+            this.tables = tables;
+            this.result = result;
+        }
+
+        Query getQuery() {
+            return query;
+        }
+
+        /**
+         * @return the imported tables that the cached table was computed from
+         */
+        Set<String> getTables() {
+            return tables;
+        }
+    }
+
+    // iterates from least to most recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CachedTable> cachedTables = new HashMap<>();
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    private long numBytes = 0;
+    private long numHits = 0;
+    private long numMisses = 0;
+
+    /**
+     * @return 8 bytes per value, which is exact for double columns and counts only the references
+     * of String columns, since their values are mostly shared with the tables they came from
+     */
+    static long estimateBytes(final DataFrame df) {
+        final long numColumns = df.getSchema().getNumColumns();
+        return BYTES_PER_DATAFRAME + numColumns * (BYTES_PER_COLUMN + 8L * df.getNumRows());
+    }
+
+    /**
+     * @return a shallow copy of the cached result, or empty if there's none
+     */
+    synchronized Optional<DataFrame> get(final String key) {
+        final Entry entry = entries.get(key);
+        if (entry == null) {
+            numMisses++;
+            return Optional.empty();
+        }
+        numHits++;
+        return Optional.of(entry.result.copy());
+    }
+
+    /**
+     * Cache a result, evicting the least recently used results to make room for it. Results larger
+     * than the memory bound aren't cached. The result must not be modified afterwards; it's only
+     * ever returned as a shallow copy.
+     *
+     * @param tables the imported tables that the result was computed from
+     */
+    synchronized void put(final String key, final DataFrame result, final Set<String> tables) {
+        final Entry entry = new Entry(result, tables);
+        if (entry.numBytes > maxBytes) {
+            return;
+        }
+        remove(key);
+        entries.put(key, entry);
+        numBytes += entry.numBytes;
+        evict();
+    }
+
+    private void remove(final String key) {
+        final Entry removed = entries.remove(key);
+        if (removed != null) {
+            numBytes -= removed.numBytes;
+        }
+    }
+
+    private void evict() {
+        final Iterator<Entry> it = entries.values().iterator();
+        while (numBytes > maxBytes && it.hasNext()) {
+            numBytes -= it.next().numBytes;
+            it.remove();
+        }
+    }
+
+    /**
+     * Drop every result computed from a table, e.g. because it's been re-imported. Cached tables
+     * computed from it are kept, but recomputed on their next use.
+     */
+    synchronized void invalidate(final String table) {
+        final Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            final Entry entry = it.next();
+            if (entry.tables.contains(table)) {
+                numBytes -= entry.numBytes;
+                it.remove();
+            }
+        }
+        for (CachedTable cachedTable : cachedTables.values()) {
+            if (cachedTable.tables.contains(table)) {
+                cachedTable.result = null;
+            }
+        }
+    }
+
+    /**
+     * Cache the result of a query as a table, replacing any previous table with the same name
+     *
+     * @param tables the imported tables that the result was computed from
+     */
+    synchronized void cacheTable(final String name, final Query query, final Set<String> tables,
+        final DataFrame result) {
+        cachedTables.put(name, new CachedTable(query, tables, result));
+    }
+
+    synchronized Optional<CachedTable> getCachedTable(final String name) {
+        return Optional.ofNullable(cachedTables.get(name));
+    }
+
+    /**
+     * @return a shallow copy of the result of a cached table, or empty if it's been invalidated
+     */
+    synchronized Optional<DataFrame> getResult(final CachedTable cachedTable) {
+        return Optional.ofNullable(cachedTable.result).map(DataFrame::copy);
+    }
+
+    /**
+     * Set the result of a cached table after it's been recomputed
+     */
+    synchronized void setResult(final CachedTable cachedTable, final DataFrame result) {
+        cachedTable.result = result;
+    }
+
+    /**
+     * @return true if there was a cached table with this name
+     */
+    synchronized boolean uncacheTable(final String name) {
+        return cachedTables.remove(name) != null;
+    }
+
+    /**
+     * Drop every cached table and result
+     *
+     * @return the names of the cached tables that were dropped
+     */
+    synchronized List<String> clear() {
+        final List<String> names = new ArrayList<>(cachedTables.keySet());
+        Collections.sort(names);
+        cachedTables.clear();
+        entries.clear();
+        numBytes = 0;
+        return names;
+    }
+
+    synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Change the memory bound, evicting results until they fit; 0 disables caching of results
+     */
+    synchronized void setMaxBytes(final long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must be non-negative, got " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * @return the number of cached results, not counting cached tables
+     */
+    synchronized int getNumEntries() {
+        return entries.size();
+    }
+
+    /**
+     * @return the estimated size of the cached results
+     */
+    synchronized long getNumBytes() {
+        return numBytes;
+    }
+
+    synchronized long getNumHits() {
+        return numHits;
+    }
+
+    synchronized long getNumMisses() {
+        return numMisses;
+    }
+}
@@ -24,6 +24,7 @@ import com.google.common.base.Strings;
 import edu.stanford.futuredata.macrobase.sql.tree.AliasedRelation;
 import edu.stanford.futuredata.macrobase.sql.tree.AllColumns;
 import edu.stanford.futuredata.macrobase.sql.tree.AstVisitor;
+import edu.stanford.futuredata.macrobase.sql.tree.DiffQuerySpecification;
 import edu.stanford.futuredata.macrobase.sql.tree.Expression;
 import edu.stanford.futuredata.macrobase.sql.tree.Identifier;
 import edu.stanford.futuredata.macrobase.sql.tree.Join;
@@ -40,6 +41,7 @@ import edu.stanford.futuredata.macrobase.sql.tree.Relation;
 import edu.stanford.futuredata.macrobase.sql.tree.Select;
 import edu.stanford.futuredata.macrobase.sql.tree.SelectItem;
 import edu.stanford.futuredata.macrobase.sql.tree.SingleColumn;
+import edu.stanford.futuredata.macrobase.sql.tree.SplitQuery;
 import edu.stanford.futuredata.macrobase.sql.tree.Table;
 import edu.stanford.futuredata.macrobase.sql.tree.TableSubquery;
 import java.util.List;
@@ -56,8 +58,17 @@ final class SqlFormatter {
     }
 
     static String formatSql(Node root, Optional<List<Expression>> parameters) {
+        return formatSql(root, parameters, false);
+    }
+
+    /**
+     * @param quoteStringLiterals if true, every string literal is quoted and escaped, so that two
+     * different statements are never formatted the same, e.g. for cache keys
+     */
+    static String formatSql(Node root, Optional<List<Expression>> parameters,
+        boolean quoteStringLiterals) {
         StringBuilder builder = new StringBuilder();
-        new Formatter(builder, parameters).process(root, 0);
+        new Formatter(builder, parameters, quoteStringLiterals).process(root, 0);
         return builder.toString();
     }
 
@@ -66,10 +77,18 @@ final class SqlFormatter {
 
         private final StringBuilder builder;
         private final Optional<List<Expression>> parameters;
+        private final boolean quoteStringLiterals;
 
-        Formatter(StringBuilder builder, Optional<List<Expression>> parameters) {
+        Formatter(StringBuilder builder, Optional<List<Expression>> parameters,
+            boolean quoteStringLiterals) {
             this.builder = builder;
             this.parameters = parameters;
+            this.quoteStringLiterals = quoteStringLiterals;
+        }
+
+        private String formatExpression(Expression expression) {
+            return ExpressionFormatter.formatExpression(expression, parameters,
+                quoteStringLiterals);
         }
 
         @Override
@@ -80,7 +99,7 @@ final class SqlFormatter {
         @Override
         protected Void visitExpression(Expression node, Integer indent) {
             checkArgument(indent == 0, "visitExpression should only be called at root");
-            builder.append(formatExpression(node, parameters));
+            builder.append(formatExpression(node));
             return null;
         }
 
@@ -105,7 +124,19 @@ final class SqlFormatter {
             builder.append('\n');
 
             if (node.getWhere().isPresent()) {
-                append(indent, "WHERE " + formatExpression(node.getWhere().get(), parameters))
+                append(indent, "WHERE " + formatExpression(node.getWhere().get()))
+                    .append('\n');
+            }
+
+            if (node.getGroupBy().isPresent()) {
+                append(indent, "GROUP BY " + node.getGroupBy().get().getGroupingKeys().stream()
+                    .map(key -> formatExpression(key))
+                    .collect(joining(", ")))
+                    .append('\n');
+            }
+
+            if (node.getHaving().isPresent()) {
+                append(indent, "HAVING " + formatExpression(node.getHaving().get()))
                     .append('\n');
             }
 
@@ -122,7 +153,7 @@ final class SqlFormatter {
 
         @Override
         protected Void visitOrderBy(OrderBy node, Integer indent) {
-            append(indent, formatOrderBy(node, parameters))
+            append(indent, formatOrderBy(node, parameters, quoteStringLiterals))
                 .append('\n');
             return null;
         }
@@ -156,10 +187,10 @@ final class SqlFormatter {
 
         @Override
         protected Void visitSingleColumn(SingleColumn node, Integer indent) {
-            builder.append(formatExpression(node.getExpression(), parameters));
+            builder.append(formatExpression(node.getExpression()));
             if (node.getAlias().isPresent()) {
                 builder.append(' ')
-                    .append(formatExpression(node.getAlias().get(), parameters));
+                    .append(formatExpression(node.getAlias().get()));
             }
 
             return null;
@@ -210,7 +241,7 @@ final class SqlFormatter {
                 } else if (criteria instanceof JoinOn) {
                     JoinOn on = (JoinOn) criteria;
                     builder.append(" ON ")
-                        .append(formatExpression(on.getExpression(), parameters));
+                        .append(formatExpression(on.getExpression()));
                 } else if (!(criteria instanceof NaturalJoin)) {
                     throw new UnsupportedOperationException("unknown join criteria: " + criteria);
                 }
@@ -228,12 +259,68 @@ final class SqlFormatter {
             process(node.getRelation(), indent);
 
             builder.append(' ')
-                .append(formatExpression(node.getAlias(), parameters));
+                .append(formatExpression(node.getAlias()));
             appendAliasColumns(builder, node.getColumnNames());
 
             return null;
         }
 
+        @Override
+        public Void visitDiffQuerySpecification(DiffQuerySpecification node, Integer indent) {
+            process(node.getSelect(), indent);
+
+            append(indent, "FROM DIFF ");
+            if (node.hasTwoArgs()) {
+                process(node.getFirst().get(), indent);
+                builder.append(", ");
+                process(node.getSecond().get(), indent);
+            } else {
+                builder.append('(');
+                process(node.getSplitQuery().get(), indent);
+                builder.append(')');
+            }
+            builder.append('\n');
+
+            append(indent, "ON " + node.getAttributeCols().stream()
+                .map(col -> col.getValue().equals("*") ? "*" : formatExpression(col))
+                .collect(joining(", ")))
+                .append('\n');
+            append(indent, "WITH MIN RATIO " + node.getMinRatioExpression().getMinRatio()
+                + " MIN SUPPORT " + node.getMinSupportExpression().getMinSupport())
+                .append('\n');
+            append(indent, "COMPARE BY " + formatExpression(node.getRatioMetricExpr()))
+                .append('\n');
+            append(indent, "MAX COMBO " + node.getMaxCombo().getValue())
+                .append('\n');
+
+            if (node.getWhere().isPresent()) {
+                append(indent, "WHERE " + formatExpression(node.getWhere().get()))
+                    .append('\n');
+            }
+
+            if (node.getOrderBy().isPresent()) {
+                process(node.getOrderBy().get(), indent);
+            }
+
+            if (node.getLimit().isPresent()) {
+                append(indent, "LIMIT " + node.getLimit().get())
+                    .append('\n');
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitSplitQuery(SplitQuery node, Integer indent) {
+            builder.append("SPLIT ");
+            process(node.getInputRelation(), indent);
+            builder.append(" WHERE ")
+                .append(node.getWhereClauses().stream()
+                    .map(expression -> formatExpression(expression))
+                    .collect(joining(", ")));
+
+            return null;
+        }
+
         @Override
         protected Void visitTableSubquery(TableSubquery node, Integer indent) {
             builder.append('(')
@@ -0,0 +1,76 @@
+package edu.stanford.futuredata.macrobase.sql;
+
+import edu.stanford.futuredata.macrobase.datamodel.DataFrame;
+import edu.stanford.futuredata.macrobase.datamodel.Schema;
+import edu.stanford.futuredata.macrobase.datamodel.Schema.ColType;
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Statistics of the tables in a session, collected when a table is imported, so that query
+ * evaluation can consult them without touching the data again.
+ *
+ * Since DataFrames of a table share its column arrays, statistics can also be looked up by
+ * column, e.g. for the columns of a table after a SPLIT, but not after a WHERE clause or a join.
+ */
+class StatisticsCatalog {
+
+    private final Map<String, Map<String, ColumnStatistics>> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Collect the statistics of every column of a table, replacing those of any previous table
+     * with the same name
+     */
+    void collect(final String tableName, final DataFrame table, final ExecutorService pool,
+        final int numThreads) throws MacroBaseException {
+        tables.put(tableName, collect(table, pool, numThreads));
+    }
+
+    /**
+     * @return the statistics of every column of df, by column name
+     */
+    static Map<String, ColumnStatistics> collect(final DataFrame df, final ExecutorService pool,
+        final int numThreads) throws MacroBaseException {
+        final Schema schema = df.getSchema();
+        final Map<String, ColumnStatistics> columns = new LinkedHashMap<>();
+        for (int c = 0; c < schema.getNumColumns(); ++c) {
+            final String name = schema.getColumnName(c);
+            if (schema.getColumnType(c) == ColType.DOUBLE) {
+                columns.put(name,
+                    ColumnStatistics.collect(name, df.getDoubleColumn(c), pool, numThreads));
+            } else {
+                columns.put(name,
+                    ColumnStatistics.collect(name, df.getStringColumn(c), pool, numThreads));
+            }
+        }
+        return Collections.unmodifiableMap(columns);
+    }
+
+    /**
+     * @return the statistics of every column of the table, by column name, or empty if the
+     * table hasn't been imported
+     */
+    Optional<Map<String, ColumnStatistics>> getTableStatistics(final String tableName) {
+        return Optional.ofNullable(tables.get(tableName));
+    }
+
+    /**
+     * @param column a double[] or String[] column
+     * @return the statistics of the column, or empty if it isn't a column of an imported table
+     */
+    Optional<ColumnStatistics> getColumnStatistics(final Object column) {
+        for (Map<String, ColumnStatistics> table : tables.values()) {
+            for (ColumnStatistics stats : table.values()) {
+                if (stats.getColumn() == column) {
+                    return Optional.of(stats);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,214 @@
+package edu.stanford.futuredata.macrobase.sql;
+
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.MIN_ROWS_PER_THREAD;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.getRanges;
+import static edu.stanford.futuredata.macrobase.sql.ParallelUtils.runInParallel;
+
+import edu.stanford.futuredata.macrobase.util.MacroBaseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Dictionary encoding of a String column: each distinct value gets an int code, in order of first
+ * appearance, and each row is replaced by the code of its value. Comparing codes is much cheaper
+ * than comparing Strings, which are scattered across the heap.
+ */
+class StringDictionary {
+
+    // code of null rows
+    static final int NULL_CODE = -1;
+    // code of values that aren't in the dictionary; no row has it
+    static final int MISSING_CODE = -2;
+
+    private final int[] codes;
+    private final List<String> values;
+    private final Map<String, Integer> valueCodes;
+    private final int[] counts;
+    private final int nullCount;
+
+    private StringDictionary(final int[] codes, final List<String> values,
+        final Map<String, Integer> valueCodes, final int[] counts, final int nullCount) {
+        this.codes = codes;
+        this.values = values;
+        this.valueCodes = valueCodes;
+        this.counts = counts;
+        this.nullCount = nullCount;
+    }
+
+    /**
+     * Encode a column. Contiguous ranges of rows are first encoded in parallel with local
+     * dictionaries, which are then merged; the codes of each range are finally rewritten to the
+     * merged codes, again in parallel.
+     */
+    static StringDictionary encode(final String[] column, final ExecutorService pool,
+        final int numThreads) throws MacroBaseException {
+        final int[] codes = new int[column.length];
+        final int[] bounds = getRanges(numThreads, column.length, MIN_ROWS_PER_THREAD);
+        final List<Callable<LocalDictionary>> tasks = new ArrayList<>();
+        for (int r = 0; r + 1 < bounds.length; ++r) {
+            final int from = bounds[r];
+            final int to = bounds[r + 1];
+            tasks.add(() -> new LocalDictionary(column, codes, from, to));
+        }
+        final List<LocalDictionary> locals = runInParallel(pool, numThreads, tasks);
+
+        final List<String> values = new ArrayList<>();
+        final Map<String, Integer> valueCodes = new HashMap<>();
+        final List<int[]> remaps = new ArrayList<>(locals.size());
+        int nullCount = 0;
+        for (LocalDictionary local : locals) {
+            final int[] remap = new int[local.values.size()];
+            for (int c = 0; c < remap.length; ++c) {
+                final String value = local.values.get(c);
+                Integer code = valueCodes.get(value);
+                if (code == null) {
+                    code = values.size();
+                    valueCodes.put(value, code);
+                    values.add(value);
+                }
+                remap[c] = code;
+            }
+            remaps.add(remap);
+            nullCount += local.nullCount;
+        }
+
+        final int[] counts = new int[values.size()];
+        final List<Callable<Void>> rewrites = new ArrayList<>();
+        for (int r = 0; r < locals.size(); ++r) {
+            final LocalDictionary local = locals.get(r);
+            final int[] remap = remaps.get(r);
+            for (int c = 0; c < remap.length; ++c) {
+                counts[remap[c]] += local.counts[c];
+            }
+            if (r == 0) {
+                // the first range's codes are already the merged codes
+                continue;
+            }
+            final int from = bounds[r];
+            final int to = bounds[r + 1];
+            rewrites.add(() -> {
+                for (int i = from; i < to; ++i) {
+                    if (codes[i] != NULL_CODE) {
+                        codes[i] = remap[codes[i]];
+                    }
+                }
+                return null;
+            });
+        }
+        runInParallel(pool, numThreads, rewrites);
+        return new StringDictionary(codes, values, valueCodes, counts, nullCount);
+    }
+
+    /**
+     * Rebuild the dictionary of a column from codes and distinct values produced by {@link
+     * #encode(String[], ExecutorService, int)}, e.g. after reading them from a file. The rows of
+     * each code are counted in parallel.
+     */
+    static StringDictionary fromCodes(final int[] codes, final List<String> values,
+        final ExecutorService pool, final int numThreads) throws MacroBaseException {
+        final Map<String, Integer> valueCodes = new HashMap<>(
+            (int) Math.min(Integer.MAX_VALUE, values.size() * 4L / 3 + 1));
+        for (int c = 0; c < values.size(); ++c) {
+            valueCodes.put(values.get(c), c);
+        }
+        final int[] bounds = getRanges(numThreads, codes.length, MIN_ROWS_PER_THREAD);
+        final List<Callable<int[]>> tasks = new ArrayList<>();
+        for (int r = 0; r + 1 < bounds.length; ++r) {
+            final int from = bounds[r];
+            final int to = bounds[r + 1];
+            // the last count is the number of nulls
+            tasks.add(() -> {
+                final int[] counts = new int[values.size() + 1];
+                for (int i = from; i < to; ++i) {
+                    counts[codes[i] == NULL_CODE ? values.size() : codes[i]]++;
+                }
+                return counts;
+            });
+        }
+        final int[] counts = new int[values.size() + 1];
+        for (int[] rangeCounts : runInParallel(pool, numThreads, tasks)) {
+            for (int c = 0; c < counts.length; ++c) {
+                counts[c] += rangeCounts[c];
+            }
+        }
+        return new StringDictionary(codes, values, valueCodes,
+            Arrays.copyOf(counts, values.size()), counts[values.size()]);
+    }
+
+    /**
+     * Dictionary of a range of rows, which writes its local codes into the shared codes array
+     */
+    private static class LocalDictionary {
+
+        final List<String> values = new ArrayList<>();
+        int[] counts = new int[16];
+        int nullCount = 0;
+
+        LocalDictionary(final String[] column, final int[] codes, final int from, final int to) {
+            final Map<String, Integer> valueCodes = new HashMap<>();
+            for (int i = from; i < to; ++i) {
+                final String value = column[i];
+                if (value == null) {
+                    codes[i] = NULL_CODE;
+                    nullCount++;
+                    continue;
+                }
+                Integer code = valueCodes.get(value);
+                if (code == null) {
+                    code = values.size();
+                    valueCodes.put(value, code);
+                    values.add(value);
+                    if (code == counts.length) {
+                        counts = Arrays.copyOf(counts, 2 * code);
+                    }
+                }
+                codes[i] = code;
+                counts[code]++;
+            }
+        }
+    }
+
+    /**
+     * @return the code of every row
+     */
+    int[] getCodes() {
+        return codes;
+    }
+
+    /**
+     * @return the number of distinct non-null values
+     */
+    int size() {
+        return values.size();
+    }
+
+    String getValue(final int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    /**
+     * @return the code of value, NULL_CODE if it's null, or MISSING_CODE if no row has it
+     */
+    int getCode(final String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        final Integer code = valueCodes.get(value);
+        return code == null ? MISSING_CODE : code;
+    }
+
+    /**
+     * @return the number of rows with the given code
+     */
+    int getCount(final int code) {
+        if (code == NULL_CODE) {
+            return nullCount;
+        }
+        return code >= 0 ? counts[code] : 0;
+    }
+}
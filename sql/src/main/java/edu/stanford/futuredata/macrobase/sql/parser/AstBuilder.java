@@ -30,6 +30,7 @@ import edu.stanford.futuredata.macrobase.sql.tree.ArithmeticBinaryExpression;
 import edu.stanford.futuredata.macrobase.sql.tree.ArithmeticUnaryExpression;
 import edu.stanford.futuredata.macrobase.sql.tree.BinaryLiteral;
 import edu.stanford.futuredata.macrobase.sql.tree.BooleanLiteral;
+import edu.stanford.futuredata.macrobase.sql.tree.CacheTable;
 import edu.stanford.futuredata.macrobase.sql.tree.CharLiteral;
 import edu.stanford.futuredata.macrobase.sql.tree.ColumnDefinition;
 import edu.stanford.futuredata.macrobase.sql.tree.ComparisonExpression;
@@ -40,19 +41,27 @@ import edu.stanford.futuredata.macrobase.sql.tree.DiffQuerySpecification;
 import edu.stanford.futuredata.macrobase.sql.tree.DoubleLiteral;
 import edu.stanford.futuredata.macrobase.sql.tree.ExistsPredicate;
 import edu.stanford.futuredata.macrobase.sql.tree.ExportClause;
+import edu.stanford.futuredata.macrobase.sql.tree.ExplainAnalyze;
+import edu.stanford.futuredata.macrobase.sql.tree.ExportBinary;
 import edu.stanford.futuredata.macrobase.sql.tree.Expression;
 import edu.stanford.futuredata.macrobase.sql.tree.FunctionCall;
+import edu.stanford.futuredata.macrobase.sql.tree.GroupBy;
 import edu.stanford.futuredata.macrobase.sql.tree.GenericLiteral;
 import edu.stanford.futuredata.macrobase.sql.tree.Identifier;
+import edu.stanford.futuredata.macrobase.sql.tree.ImportBinary;
 import edu.stanford.futuredata.macrobase.sql.tree.ImportCsv;
 import edu.stanford.futuredata.macrobase.sql.tree.IntLiteral;
 import edu.stanford.futuredata.macrobase.sql.tree.IsNotNullPredicate;
 import edu.stanford.futuredata.macrobase.sql.tree.IsNullPredicate;
 import edu.stanford.futuredata.macrobase.sql.tree.Join;
+import edu.stanford.futuredata.macrobase.sql.tree.JoinCriteria;
+import edu.stanford.futuredata.macrobase.sql.tree.JoinOn;
+import edu.stanford.futuredata.macrobase.sql.tree.JoinUsing;
 import edu.stanford.futuredata.macrobase.sql.tree.LikePredicate;
 import edu.stanford.futuredata.macrobase.sql.tree.LogicalBinaryExpression;
 import edu.stanford.futuredata.macrobase.sql.tree.MinRatioExpression;
 import edu.stanford.futuredata.macrobase.sql.tree.MinSupportExpression;
+import edu.stanford.futuredata.macrobase.sql.tree.NaturalJoin;
 import edu.stanford.futuredata.macrobase.sql.tree.Node;
 import edu.stanford.futuredata.macrobase.sql.tree.NodeLocation;
 import edu.stanford.futuredata.macrobase.sql.tree.NotExpression;
@@ -67,6 +76,7 @@ import edu.stanford.futuredata.macrobase.sql.tree.RatioMetricExpression;
 import edu.stanford.futuredata.macrobase.sql.tree.Relation;
 import edu.stanford.futuredata.macrobase.sql.tree.Select;
 import edu.stanford.futuredata.macrobase.sql.tree.SelectItem;
+import edu.stanford.futuredata.macrobase.sql.tree.SetSession;
 import edu.stanford.futuredata.macrobase.sql.tree.SingleColumn;
 import edu.stanford.futuredata.macrobase.sql.tree.SortItem;
 import edu.stanford.futuredata.macrobase.sql.tree.SplitQuery;
@@ -74,6 +84,7 @@ import edu.stanford.futuredata.macrobase.sql.tree.StringLiteral;
 import edu.stanford.futuredata.macrobase.sql.tree.SubqueryExpression;
 import edu.stanford.futuredata.macrobase.sql.tree.Table;
 import edu.stanford.futuredata.macrobase.sql.tree.TableSubquery;
+import edu.stanford.futuredata.macrobase.sql.tree.UncacheTable;
 import edu.stanford.futuredata.macrobase.sql.tree.WhenClause;
 import java.util.Iterator;
 import java.util.List;
@@ -130,6 +141,8 @@ class AstBuilder extends SqlBaseBaseVisitor<Node> {
                     query.getSelect(),
                     query.getFrom(),
                     query.getWhere(),
+                    query.getGroupBy(),
+                    query.getHaving(),
                     query.getOrderBy(),
                     query.getLimit(),
                     query.getExportExpr()));
@@ -177,6 +190,64 @@ class AstBuilder extends SqlBaseBaseVisitor<Node> {
         );
     }
 
+    // New
+    // Binary tables, e.g. IMPORT FROM BINARY FILE 'f' INTO t and EXPORT TABLE t TO BINARY FILE 'f'
+    @Override
+    public Node visitImportBinary(SqlBaseParser.ImportBinaryContext context) {
+        return new ImportBinary(
+            getLocation(context),
+            unquote(context.STRING().getText()),
+            getQualifiedName(context.qualifiedName())
+        );
+    }
+
+    // New
+    @Override
+    public Node visitExportBinary(SqlBaseParser.ExportBinaryContext context) {
+        return new ExportBinary(
+            getLocation(context),
+            (Query) visit(context.query()),
+            unquote(context.STRING().getText())
+        );
+    }
+
+    // New
+    // Session settings, e.g. SET threads = 8
+    @Override
+    public Node visitSetSession(SqlBaseParser.SetSessionContext context) {
+        return new SetSession(
+            getLocation(context),
+            (Identifier) visit(context.identifier()),
+            (Expression) visit(context.expression())
+        );
+    }
+
+    // New
+    // Caching query results, e.g. CACHE TABLE t AS SELECT ...
+    @Override
+    public Node visitCacheTable(SqlBaseParser.CacheTableContext context) {
+        return new CacheTable(
+            getLocation(context),
+            getQualifiedName(context.qualifiedName()),
+            (Query) visit(context.query())
+        );
+    }
+
+    // New
+    @Override
+    public Node visitUncacheTable(SqlBaseParser.UncacheTableContext context) {
+        return new UncacheTable(
+            getLocation(context),
+            Optional.ofNullable(context.qualifiedName()).map(this::getQualifiedName)
+        );
+    }
+
+    // New
+    @Override
+    public Node visitExplainAnalyze(SqlBaseParser.ExplainAnalyzeContext context) {
+        return new ExplainAnalyze(getLocation(context), (Query) visit(context.query()));
+    }
+
     // New
     // Exporting queries to CSVs
     @Override
@@ -233,13 +304,13 @@ class AstBuilder extends SqlBaseBaseVisitor<Node> {
     // New
     @Override
     public Node visitSplitQuery(SqlBaseParser.SplitQueryContext context) {
-        final Expression expression = (Expression) visit(context.where);
+        final List<Expression> expressions = visit(context.where, Expression.class);
         final Optional<Relation> relation = visitIfPresent(context.relation(), Relation.class);
         final Optional<TableSubquery> subquery = visitIfPresent(context.queryTerm(),
             TableSubquery.class);
         check(relation.isPresent() || subquery.isPresent(),
             "Either a relation or a subquery must be present in a SplitQuery", context);
-        return new SplitQuery(expression, relation, subquery);
+        return new SplitQuery(expressions, relation, subquery);
     }
 
     // New
@@ -347,10 +418,17 @@ class AstBuilder extends SqlBaseBaseVisitor<Node> {
 
         return new QuerySpecification(getLocation(context),
             new Select(getLocation(context.SELECT()), isDistinct(context.setQuantifier()),
-                selectItems), from, visitIfPresent(context.where, Expression.class), orderBy,
+                selectItems), from, visitIfPresent(context.where, Expression.class),
+            visitIfPresent(context.groupBy(), GroupBy.class),
+            visitIfPresent(context.having, Expression.class), orderBy,
             getTextIfPresent(context.limit), exportExpr);
     }
 
+    @Override
+    public Node visitGroupBy(SqlBaseParser.GroupByContext context) {
+        return new GroupBy(getLocation(context), visit(context.expression(), Expression.class));
+    }
+
     @Override
     public Node visitSelectAll(SqlBaseParser.SelectAllContext context) {
         if (context.qualifiedName() != null) {
@@ -397,6 +475,45 @@ class AstBuilder extends SqlBaseBaseVisitor<Node> {
 
     // *************** from clause *****************
 
+    @Override
+    public Node visitJoinRelation(SqlBaseParser.JoinRelationContext context) {
+        Relation left = (Relation) visit(context.left);
+        Relation right;
+
+        if (context.CROSS() != null) {
+            right = (Relation) visit(context.right);
+            return new Join(getLocation(context), Join.Type.CROSS, left, right, Optional.empty());
+        }
+
+        JoinCriteria criteria;
+        if (context.NATURAL() != null) {
+            right = (Relation) visit(context.right);
+            criteria = new NaturalJoin();
+        } else {
+            right = (Relation) visit(context.rightRelation);
+            if (context.joinCriteria().ON() != null) {
+                criteria = new JoinOn((Expression) visit(context.joinCriteria().booleanExpression()));
+            } else if (context.joinCriteria().USING() != null) {
+                criteria = new JoinUsing(visit(context.joinCriteria().identifier(), Identifier.class));
+            } else {
+                throw new IllegalArgumentException("Unsupported join criteria");
+            }
+        }
+
+        Join.Type joinType;
+        if (context.joinType().LEFT() != null) {
+            joinType = Join.Type.LEFT;
+        } else if (context.joinType().RIGHT() != null) {
+            joinType = Join.Type.RIGHT;
+        } else if (context.joinType().FULL() != null) {
+            joinType = Join.Type.FULL;
+        } else {
+            joinType = Join.Type.INNER;
+        }
+
+        return new Join(getLocation(context), joinType, left, right, Optional.of(criteria));
+    }
+
     @Override
     public Node visitAliasedRelation(SqlBaseParser.AliasedRelationContext context) {
         Relation child = (Relation) visit(context.relationPrimary());
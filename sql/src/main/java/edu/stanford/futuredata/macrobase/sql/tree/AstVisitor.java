@@ -90,6 +90,10 @@ public abstract class AstVisitor<R, C> {
         return visitNode(node, context);
     }
 
+    protected R visitGroupBy(GroupBy node, C context) {
+        return visitNode(node, context);
+    }
+
     protected R visitQuerySpecification(QuerySpecification node, C context) {
         return visitQueryBody(node, context);
     }
@@ -98,6 +102,10 @@ public abstract class AstVisitor<R, C> {
         return visitQueryBody(node, context);
     }
 
+    public R visitSplitQuery(SplitQuery node, C context) {
+        return visitNode(node, context);
+    }
+
     protected R visitWhenClause(WhenClause node, C context) {
         return visitExpression(node, context);
     }
@@ -222,4 +230,28 @@ public abstract class AstVisitor<R, C> {
     public R visitImportCsv(ImportCsv node, C context) {
         return visitStatement(node, context);
     }
+
+    public R visitImportBinary(ImportBinary node, C context) {
+        return visitStatement(node, context);
+    }
+
+    public R visitExportBinary(ExportBinary node, C context) {
+        return visitStatement(node, context);
+    }
+
+    public R visitSetSession(SetSession node, C context) {
+        return visitStatement(node, context);
+    }
+
+    public R visitCacheTable(CacheTable node, C context) {
+        return visitStatement(node, context);
+    }
+
+    public R visitUncacheTable(UncacheTable node, C context) {
+        return visitStatement(node, context);
+    }
+
+    public R visitExplainAnalyze(ExplainAnalyze node, C context) {
+        return visitStatement(node, context);
+    }
 }
@@ -0,0 +1,77 @@
+package edu.stanford.futuredata.macrobase.sql.tree;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * CACHE TABLE name AS query: materialize the result of a query, which can then be used as a
+ * table in FROM and SPLIT clauses until it's uncached
+ */
+public class CacheTable extends Statement {
+
+    private final QualifiedName name;
+    private final Query query;
+
+    public CacheTable(QualifiedName name, Query query) {
+        this(Optional.empty(), name, query);
+    }
+
+    public CacheTable(NodeLocation location, QualifiedName name, Query query) {
+        this(Optional.of(location), name, query);
+    }
+
+    private CacheTable(Optional<NodeLocation> location, QualifiedName name, Query query) {
+        super(location);
+        this.name = requireNonNull(name, "name is null");
+        this.query = requireNonNull(query, "query is null");
+    }
+
+    public QualifiedName getName() {
+        return name;
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitCacheTable(this, context);
+    }
+
+    @Override
+    public List<Node> getChildren() {
+        return ImmutableList.of(query);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, query);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        CacheTable o = (CacheTable) obj;
+        return Objects.equals(name, o.name) &&
+            Objects.equals(query, o.query);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("name", name)
+            .add("query", query)
+            .toString();
+    }
+}
@@ -186,6 +186,7 @@ public class DiffQuerySpecification extends QueryBody {
         nodes.add(select);
         first.ifPresent(nodes::add);
         second.ifPresent(nodes::add);
+        splitQuery.ifPresent(nodes::add);
         nodes.addAll(attributeCols);
         nodes.add(minRatioExpr);
         nodes.add(minSupportExpr);
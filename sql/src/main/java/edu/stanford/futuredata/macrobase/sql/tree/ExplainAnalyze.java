@@ -0,0 +1,68 @@
+package edu.stanford.futuredata.macrobase.sql.tree;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * EXPLAIN ANALYZE query: execute a query and report the statistics of each of its operators
+ */
+public class ExplainAnalyze extends Statement {
+
+    private final Query query;
+
+    public ExplainAnalyze(Query query) {
+        this(Optional.empty(), query);
+    }
+
+    public ExplainAnalyze(NodeLocation location, Query query) {
+        this(Optional.of(location), query);
+    }
+
+    private ExplainAnalyze(Optional<NodeLocation> location, Query query) {
+        super(location);
+        this.query = requireNonNull(query, "query is null");
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitExplainAnalyze(this, context);
+    }
+
+    @Override
+    public List<Node> getChildren() {
+        return ImmutableList.of(query);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(query);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        ExplainAnalyze o = (ExplainAnalyze) obj;
+        return Objects.equals(query, o.query);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("query", query)
+            .toString();
+    }
+}
@@ -0,0 +1,77 @@
+package edu.stanford.futuredata.macrobase.sql.tree;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * EXPORT query TO BINARY FILE 'filename': save the result of a query, e.g. a table or a DIFF, in
+ * a columnar binary file that can be loaded back with IMPORT FROM BINARY FILE
+ */
+public class ExportBinary extends Statement {
+
+    private final Query query;
+    private final String filename;
+
+    public ExportBinary(Query query, String filename) {
+        this(Optional.empty(), query, filename);
+    }
+
+    public ExportBinary(NodeLocation location, Query query, String filename) {
+        this(Optional.of(location), query, filename);
+    }
+
+    private ExportBinary(Optional<NodeLocation> location, Query query, String filename) {
+        super(location);
+        this.query = requireNonNull(query, "query is null");
+        this.filename = requireNonNull(filename, "filename is null");
+    }
+
+    public Query getQuery() {
+        return query;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitExportBinary(this, context);
+    }
+
+    @Override
+    public List<Node> getChildren() {
+        return ImmutableList.of(query);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(query, filename);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        ExportBinary o = (ExportBinary) obj;
+        return Objects.equals(query, o.query) &&
+            Objects.equals(filename, o.filename);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("query", query)
+            .add("filename", filename)
+            .toString();
+    }
+}
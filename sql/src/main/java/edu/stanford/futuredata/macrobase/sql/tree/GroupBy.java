@@ -0,0 +1,68 @@
+package edu.stanford.futuredata.macrobase.sql.tree;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+public class GroupBy extends Node {
+
+    private final List<Expression> groupingKeys;
+
+    public GroupBy(List<Expression> groupingKeys) {
+        this(Optional.empty(), groupingKeys);
+    }
+
+    public GroupBy(NodeLocation location, List<Expression> groupingKeys) {
+        this(Optional.of(location), groupingKeys);
+    }
+
+    private GroupBy(Optional<NodeLocation> location, List<Expression> groupingKeys) {
+        super(location);
+        requireNonNull(groupingKeys, "groupingKeys is null");
+        checkArgument(!groupingKeys.isEmpty(), "groupingKeys should not be empty");
+        this.groupingKeys = ImmutableList.copyOf(groupingKeys);
+    }
+
+    public List<Expression> getGroupingKeys() {
+        return groupingKeys;
+    }
+
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitGroupBy(this, context);
+    }
+
+    @Override
+    public List<? extends Node> getChildren() {
+        return groupingKeys;
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("groupingKeys", groupingKeys)
+            .toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        GroupBy o = (GroupBy) obj;
+        return Objects.equals(groupingKeys, o.groupingKeys);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(groupingKeys);
+    }
+}
@@ -0,0 +1,77 @@
+package edu.stanford.futuredata.macrobase.sql.tree;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * IMPORT FROM BINARY FILE 'filename' INTO name: load a table saved with EXPORT ... TO BINARY FILE
+ */
+public class ImportBinary extends Statement {
+
+    private final String filename;
+    private final QualifiedName tableName;
+
+    public ImportBinary(String filename, QualifiedName tableName) {
+        this(Optional.empty(), filename, tableName);
+    }
+
+    public ImportBinary(NodeLocation location, String filename, QualifiedName tableName) {
+        this(Optional.of(location), filename, tableName);
+    }
+
+    private ImportBinary(Optional<NodeLocation> location, String filename,
+        QualifiedName tableName) {
+        super(location);
+        this.filename = requireNonNull(filename, "filename is null");
+        this.tableName = requireNonNull(tableName, "tableName is null");
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public QualifiedName getTableName() {
+        return tableName;
+    }
+
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitImportBinary(this, context);
+    }
+
+    @Override
+    public List<Node> getChildren() {
+        return ImmutableList.of();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filename, tableName);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        ImportBinary o = (ImportBinary) obj;
+        return Objects.equals(filename, o.filename) &&
+            Objects.equals(tableName, o.tableName);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("filename", filename)
+            .add("tableName", tableName)
+            .toString();
+    }
+}
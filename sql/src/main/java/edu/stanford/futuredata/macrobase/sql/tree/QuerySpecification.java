@@ -26,6 +26,8 @@ public class QuerySpecification extends QueryBody {
     private final Select select;
     private final Optional<Relation> from;
     private final Optional<Expression> where;
+    private final Optional<GroupBy> groupBy;
+    private final Optional<Expression> having;
     private final Optional<OrderBy> orderBy;
     private final Optional<String> limit;
     private final Optional<ExportClause> exportExpr;
@@ -34,10 +36,12 @@ public class QuerySpecification extends QueryBody {
         Select select,
         Optional<Relation> from,
         Optional<Expression> where,
+        Optional<GroupBy> groupBy,
+        Optional<Expression> having,
         Optional<OrderBy> orderBy,
         Optional<String> limit,
         Optional<ExportClause> exportExpr) {
-        this(Optional.empty(), select, from, where, orderBy, limit, exportExpr);
+        this(Optional.empty(), select, from, where, groupBy, having, orderBy, limit, exportExpr);
     }
 
     public QuerySpecification(
@@ -45,10 +49,12 @@ public class QuerySpecification extends QueryBody {
         Select select,
         Optional<Relation> from,
         Optional<Expression> where,
+        Optional<GroupBy> groupBy,
+        Optional<Expression> having,
         Optional<OrderBy> orderBy,
         Optional<String> limit,
         Optional<ExportClause> exportExpr) {
-        this(Optional.of(location), select, from, where, orderBy, limit,
+        this(Optional.of(location), select, from, where, groupBy, having, orderBy, limit,
             exportExpr);
     }
 
@@ -57,6 +63,8 @@ public class QuerySpecification extends QueryBody {
         Select select,
         Optional<Relation> from,
         Optional<Expression> where,
+        Optional<GroupBy> groupBy,
+        Optional<Expression> having,
         Optional<OrderBy> orderBy,
         Optional<String> limit,
         Optional<ExportClause> exportExpr) {
@@ -64,6 +72,8 @@ public class QuerySpecification extends QueryBody {
         requireNonNull(select, "select is null");
         requireNonNull(from, "from is null");
         requireNonNull(where, "where is null");
+        requireNonNull(groupBy, "groupBy is null");
+        requireNonNull(having, "having is null");
         requireNonNull(orderBy, "orderBy is null");
         requireNonNull(limit, "limit is null");
         requireNonNull(exportExpr, "exportExpr is null");
@@ -71,6 +81,8 @@ public class QuerySpecification extends QueryBody {
         this.select = select;
         this.from = from;
         this.where = where;
+        this.groupBy = groupBy;
+        this.having = having;
         this.orderBy = orderBy;
         this.limit = limit;
         this.exportExpr = exportExpr;
@@ -88,6 +100,14 @@ public class QuerySpecification extends QueryBody {
         return where;
     }
 
+    public Optional<GroupBy> getGroupBy() {
+        return groupBy;
+    }
+
+    public Optional<Expression> getHaving() {
+        return having;
+    }
+
     public Optional<OrderBy> getOrderBy() {
         return orderBy;
     }
@@ -111,6 +131,8 @@ public class QuerySpecification extends QueryBody {
         nodes.add(select);
         from.ifPresent(nodes::add);
         where.ifPresent(nodes::add);
+        groupBy.ifPresent(nodes::add);
+        having.ifPresent(nodes::add);
         orderBy.ifPresent(nodes::add);
         exportExpr.ifPresent(nodes::add);
         return nodes.build();
@@ -122,6 +144,8 @@ public class QuerySpecification extends QueryBody {
             .add("select", select)
             .add("from", from)
             .add("where", where.orElse(null))
+            .add("groupBy", groupBy.orElse(null))
+            .add("having", having.orElse(null))
             .add("orderBy", orderBy)
             .add("limit", limit.orElse(null))
             .add("exportExpr", exportExpr.orElse(null))
@@ -140,6 +164,8 @@ public class QuerySpecification extends QueryBody {
         return Objects.equals(select, o.select) &&
             Objects.equals(from, o.from) &&
             Objects.equals(where, o.where) &&
+            Objects.equals(groupBy, o.groupBy) &&
+            Objects.equals(having, o.having) &&
             Objects.equals(orderBy, o.orderBy) &&
             Objects.equals(limit, o.limit) &&
             Objects.equals(exportExpr, o.exportExpr);
@@ -147,6 +173,6 @@ public class QuerySpecification extends QueryBody {
 
     @Override
     public int hashCode() {
-        return Objects.hash(select, from, where, orderBy, limit, exportExpr);
+        return Objects.hash(select, from, where, groupBy, having, orderBy, limit, exportExpr);
     }
 }
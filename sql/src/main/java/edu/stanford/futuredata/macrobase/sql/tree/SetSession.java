@@ -0,0 +1,73 @@
+package edu.stanford.futuredata.macrobase.sql.tree;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+public class SetSession extends Statement {
+
+    private final Identifier name;
+    private final Expression value;
+
+    public SetSession(Identifier name, Expression value) {
+        this(Optional.empty(), name, value);
+    }
+
+    public SetSession(NodeLocation location, Identifier name, Expression value) {
+        this(Optional.of(location), name, value);
+    }
+
+    private SetSession(Optional<NodeLocation> location, Identifier name, Expression value) {
+        super(location);
+        this.name = requireNonNull(name, "name is null");
+        this.value = requireNonNull(value, "value is null");
+    }
+
+    public Identifier getName() {
+        return name;
+    }
+
+    public Expression getValue() {
+        return value;
+    }
+
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitSetSession(this, context);
+    }
+
+    @Override
+    public List<Node> getChildren() {
+        return ImmutableList.of(value);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        SetSession o = (SetSession) obj;
+        return Objects.equals(name, o.name) &&
+            Objects.equals(value, o.value);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("name", name)
+            .add("value", value)
+            .toString();
+    }
+}
@@ -1,6 +1,7 @@
 package edu.stanford.futuredata.macrobase.sql.tree;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 import com.google.common.collect.ImmutableList;
@@ -10,46 +11,56 @@ import java.util.Optional;
 
 public class SplitQuery extends Node {
 
-    private final Expression whereClause;
+    private final List<Expression> whereClauses;
     private final Optional<Relation> relation;
     private final Optional<TableSubquery> subquery;
 
-    public SplitQuery(Expression whereClause,
+    public SplitQuery(List<Expression> whereClauses,
         Optional<Relation> relation, Optional<TableSubquery> subquery) {
-        this(Optional.empty(), whereClause, relation, subquery);
+        this(Optional.empty(), whereClauses, relation, subquery);
     }
 
-    public SplitQuery(NodeLocation location, Expression whereClause,
+    public SplitQuery(NodeLocation location, List<Expression> whereClauses,
         Optional<Relation> relation,
         Optional<TableSubquery> subquery) {
-        this(Optional.of(location), whereClause, relation, subquery);
+        this(Optional.of(location), whereClauses, relation, subquery);
     }
 
-    private SplitQuery(Optional<NodeLocation> location, Expression whereClause,
+    private SplitQuery(Optional<NodeLocation> location, List<Expression> whereClauses,
         Optional<Relation> relation,
         Optional<TableSubquery> subquery) {
         super(location);
-        requireNonNull(whereClause, "whereClause is null");
+        requireNonNull(whereClauses, "whereClauses is null");
+        checkArgument(!whereClauses.isEmpty(), "whereClauses is empty");
         requireNonNull(relation, "relation is null");
         requireNonNull(subquery, "subquery is null");
 
-        this.whereClause = whereClause;
+        this.whereClauses = ImmutableList.copyOf(whereClauses);
         this.relation = relation;
         this.subquery = subquery;
     }
 
-    public Expression getWhereClause() {
-        return whereClause;
+    /**
+     * @return the WHERE clause of each class of outliers; there's more than one for a multi-class
+     * SPLIT, e.g. SPLIT t WHERE c1, c2, c3
+     */
+    public List<Expression> getWhereClauses() {
+        return whereClauses;
     }
 
     public Relation getInputRelation() {
         return relation.orElseGet(subquery::get);
     }
 
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitSplitQuery(this, context);
+    }
+
     @Override
     public List<Node> getChildren() {
         ImmutableList.Builder<Node> nodes = ImmutableList.builder();
-        nodes.add(whereClause);
+        nodes.addAll(whereClauses);
         relation.ifPresent(nodes::add);
         subquery.ifPresent(nodes::add);
         return nodes.build();
@@ -64,7 +75,7 @@ public class SplitQuery extends Node {
             return false;
         }
         SplitQuery o = (SplitQuery) obj;
-        return Objects.equals(whereClause, o.whereClause) &&
+        return Objects.equals(whereClauses, o.whereClauses) &&
             Objects.equals(relation, o.relation) &&
             Objects.equals(subquery, o.subquery);
     }
@@ -72,7 +83,7 @@ public class SplitQuery extends Node {
     @Override
     public String toString() {
         return toStringHelper(this)
-            .add("whereClause", whereClause)
+            .add("whereClauses", whereClauses)
             .add("relation", relation)
             .add("subquery", subquery)
             .omitNullValues()
@@ -82,6 +93,6 @@ public class SplitQuery extends Node {
     @Override
     public int hashCode() {
         return Objects
-            .hash(whereClause, relation, subquery);
+            .hash(whereClauses, relation, subquery);
     }
 }
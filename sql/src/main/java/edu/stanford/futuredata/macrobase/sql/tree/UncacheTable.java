@@ -0,0 +1,71 @@
+package edu.stanford.futuredata.macrobase.sql.tree;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * UNCACHE TABLE name, or UNCACHE ALL, which also drops every cached query result
+ */
+public class UncacheTable extends Statement {
+
+    private final Optional<QualifiedName> name;
+
+    public UncacheTable(Optional<QualifiedName> name) {
+        this(Optional.empty(), name);
+    }
+
+    public UncacheTable(NodeLocation location, Optional<QualifiedName> name) {
+        this(Optional.of(location), name);
+    }
+
+    private UncacheTable(Optional<NodeLocation> location, Optional<QualifiedName> name) {
+        super(location);
+        this.name = requireNonNull(name, "name is null");
+    }
+
+    /**
+     * @return the name of the table to uncache, or empty for UNCACHE ALL
+     */
+    public Optional<QualifiedName> getName() {
+        return name;
+    }
+
+    @Override
+    public <R, C> R accept(AstVisitor<R, C> visitor, C context) {
+        return visitor.visitUncacheTable(this, context);
+    }
+
+    @Override
+    public List<Node> getChildren() {
+        return ImmutableList.of();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if ((obj == null) || (getClass() != obj.getClass())) {
+            return false;
+        }
+        UncacheTable o = (UncacheTable) obj;
+        return Objects.equals(name, o.name);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(this)
+            .add("name", name)
+            .toString();
+    }
+}
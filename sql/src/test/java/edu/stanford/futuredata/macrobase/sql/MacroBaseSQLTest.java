@@ -1,6 +1,8 @@
 package edu.stanford.futuredata.macrobase.sql;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
@@ -10,20 +12,40 @@ import edu.stanford.futuredata.macrobase.datamodel.Schema.ColType;
 import edu.stanford.futuredata.macrobase.ingest.CSVDataFrameParser;
 import edu.stanford.futuredata.macrobase.sql.parser.ParsingException;
 import edu.stanford.futuredata.macrobase.sql.parser.SqlParser;
+import edu.stanford.futuredata.macrobase.sql.tree.CacheTable;
+import edu.stanford.futuredata.macrobase.sql.tree.ExplainAnalyze;
+import edu.stanford.futuredata.macrobase.sql.tree.ExportBinary;
+import edu.stanford.futuredata.macrobase.sql.tree.ImportBinary;
 import edu.stanford.futuredata.macrobase.sql.tree.ImportCsv;
 import edu.stanford.futuredata.macrobase.sql.tree.Query;
 import edu.stanford.futuredata.macrobase.sql.tree.QueryBody;
+import edu.stanford.futuredata.macrobase.sql.tree.SetSession;
 import edu.stanford.futuredata.macrobase.sql.tree.Statement;
+import edu.stanford.futuredata.macrobase.sql.tree.UncacheTable;
 import edu.stanford.futuredata.macrobase.util.MacroBaseException;
 import edu.stanford.futuredata.macrobase.util.MacroBaseSQLException;
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class MacroBaseSQLTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private SqlParser parser;
     private QueryEngine queryEngine;
     private DataFrame input;
@@ -188,6 +210,43 @@ public class MacroBaseSQLTest {
             loadDataFrameFromCSV("20.csv", ImmutableMap.of("usage", ColType.DOUBLE)));
     }
 
+    @Test
+    public void query21() throws Exception {
+        runQueryFromFile("21.sql", loadDataFrameFromCSV("21.csv",
+            ImmutableMap.<String, ColType>builder()
+                .put("location", ColType.STRING)
+                .put("cnt", ColType.DOUBLE)
+                .put("total_usage", ColType.DOUBLE)
+                .put("avg_latency", ColType.DOUBLE)
+                .put("min(usage)", ColType.DOUBLE)
+                .put("max(usage)", ColType.DOUBLE)
+                .build()));
+    }
+
+    @Test
+    public void query22() throws Exception {
+        runQueryFromFile("22.sql", loadDataFrameFromCSV("22.csv", ImmutableMap
+            .of("version", ColType.STRING, "location", ColType.STRING, "sd", ColType.DOUBLE)));
+    }
+
+    @Test
+    public void query23() throws Exception {
+        runQueryFromFile("23.sql", loadDataFrameFromCSV("23.csv",
+            ImmutableMap.of("cnt", ColType.DOUBLE, "avg_usage", ColType.DOUBLE)));
+    }
+
+    @Test
+    public void query24() throws Exception {
+        runQueryFromFile("24.sql", loadDataFrameFromCSV("24.csv", ImmutableMap
+            .of("location", ColType.STRING, "version", ColType.STRING, "cnt", ColType.DOUBLE)));
+    }
+
+    @Test
+    public void query25() throws Exception {
+        runQueryFromFile("25.sql", loadDataFrameFromCSV("25.csv", ImmutableMap
+            .of("location", ColType.STRING, "version", ColType.STRING, "cnt", ColType.DOUBLE)));
+    }
+
     @Test
     public void testAllQueries() throws Exception {
         query1();
@@ -210,6 +269,530 @@ public class MacroBaseSQLTest {
         query18();
         query19();
         query20();
+        query21();
+        query22();
+        query23();
+        query24();
+        query25();
+    }
+
+    @Test
+    public void testSetThreads() throws Exception {
+        final Statement stmt = parser.createStatement("SET threads = 4");
+        assertTrue(stmt instanceof SetSession);
+        final DataFrame result = queryEngine.setSessionProperty((SetSession) stmt);
+        assertEquals(4, queryEngine.getNumThreads());
+        assertEquals("4", result.getStringColumnByName("value")[0]);
+        // the calling thread is the fourth
+        assertEquals(3, queryEngine.getPool().getMaximumPoolSize());
+        // DIFF and SPLIT results don't depend on the number of threads
+        testAllQueries();
+
+        for (String invalid : Arrays.asList("SET threads = 0", "SET threads = 'four'",
+            "SET cores = 4")) {
+            try {
+                queryEngine.setSessionProperty((SetSession) parser.createStatement(invalid));
+                fail(invalid + " should throw an exception");
+            } catch (MacroBaseSQLException e) {
+                assertEquals(4, queryEngine.getNumThreads());
+            }
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testNestedParallelism() throws Exception {
+        // one worker, which the outer tasks keep busy while they wait for their inner tasks
+        final ExecutorService pool = ParallelUtils.newPool(2);
+        try {
+            final List<Callable<Integer>> outer = new ArrayList<>();
+            for (int i = 0; i < 4; ++i) {
+                final int base = i * 10;
+                final List<Callable<Integer>> inner = Arrays.asList(
+                    () -> base, () -> base + 1, () -> base + 2);
+                outer.add(() -> {
+                    int sum = 0;
+                    for (int value : ParallelUtils.runInParallel(pool, 2, inner)) {
+                        sum += value;
+                    }
+                    return sum;
+                });
+            }
+            assertEquals(Arrays.asList(3, 33, 63, 93), ParallelUtils.runInParallel(pool, 2, outer));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testParallelWhere() throws Exception {
+        final int numRows = 200000;
+        final MacroBaseSQLSession session = createLargeSession(numRows, 4);
+
+        final DataFrame filtered = session
+            .executeQuery("SELECT * FROM large WHERE metric >= 990.0 AND device != 'bad'");
+        int expected = 0;
+        for (int i = 0; i < numRows; ++i) {
+            if (i % 1000 >= 990 && i % 7 != 0) {
+                expected++;
+            }
+        }
+        assertEquals(expected, filtered.getNumRows());
+
+        final DataFrame diff = session.executeQuery(
+            "SELECT * FROM DIFF (SPLIT large WHERE device = 'bad') ON device");
+        assertEquals(1, diff.getNumRows());
+        assertEquals("bad", diff.getStringColumnByName("device")[0]);
+        assertEquals(numRows / 7 + 1, diff.getDoubleColumnByName("outlier_count")[0], 0.0);
+    }
+
+    @Test
+    public void testParallelGroupBy() throws Exception {
+        final String query = "SELECT device, count(*) AS cnt, avg(metric) AS mean, "
+            + "stddev(metric) AS sd, max(metric) FROM large GROUP BY device";
+        final DataFrame parallel = createLargeSession(200000, 4).executeQuery(query);
+        final DataFrame serial = createLargeSession(200000, 1).executeQuery(query);
+
+        assertEquals(6, parallel.getNumRows());
+        assertEquals(serial.getStringColumnByName("device")[0], "bad");
+        for (String col : Arrays.asList("cnt", "mean", "sd", "max(metric)")) {
+            final double[] expected = serial.getDoubleColumnByName(col);
+            final double[] actual = parallel.getDoubleColumnByName(col);
+            for (int i = 0; i < expected.length; ++i) {
+                assertEquals(col, expected[i], actual[i], 1e-9 * Math.abs(expected[i]));
+            }
+        }
+        assertEquals(200000 / 7 + 1, parallel.getDoubleColumnByName("cnt")[0], 0.0);
+
+        try {
+            createLargeSession(10, 1)
+                .executeQuery("SELECT device, metric FROM large GROUP BY device");
+            fail("metric is neither grouped by nor aggregated");
+        } catch (MacroBaseSQLException e) {
+            assertTrue(e.getMessage().contains("GROUP BY"));
+        }
+    }
+
+    @Test
+    public void testCompiledWhere() throws Exception {
+        final int numRows = 200000;
+        final MacroBaseSQLSession session = createLargeSession(numRows, 4);
+        int expected = 0;
+        int expectedFlipped = 0;
+        for (int i = 0; i < numRows; ++i) {
+            final int metric = i % 1000;
+            final String device = i % 7 == 0 ? "bad" : "d" + (i % 5);
+            if (!(metric < 500 || device.equals("d1")) && (device.equals("bad")
+                || device.equals("d2") || metric == 999)) {
+                expected++;
+            }
+            if (metric < 10 && !device.equals("d3")) {
+                expectedFlipped++;
+            }
+        }
+
+        final String query = "SELECT * FROM %s WHERE NOT (metric < 500.0 OR device = 'd1') "
+            + "AND (device = 'bad' OR device = 'd2' OR metric = 999)";
+        // comparisons on a table's dictionary-encoded column, and on a subquery's String column
+        assertEquals(expected, session.executeQuery(String.format(query, "large")).getNumRows());
+        assertEquals(expected, session.executeQuery(
+            String.format(query, "(SELECT * FROM large WHERE metric >= 0.0)")).getNumRows());
+        assertEquals(expectedFlipped, session
+            .executeQuery("SELECT * FROM large WHERE 10 > metric AND 'd3' != device")
+            .getNumRows());
+        assertEquals(0, session
+            .executeQuery("SELECT * FROM large WHERE device = 'missing' AND metric < 1.0")
+            .getNumRows());
+
+        // re-importing a table replaces its dictionaries
+        final File csv = folder.newFile();
+        try (PrintWriter out = new PrintWriter(csv)) {
+            out.println("metric,device");
+            out.println("1,missing");
+            out.println("2,bad");
+        }
+        session.executeQuery("IMPORT FROM CSV FILE '" + csv.getAbsolutePath()
+            + "' INTO large(metric double, device string)");
+        assertEquals(1, session.executeQuery("SELECT * FROM large WHERE device = 'missing'")
+            .getNumRows());
+    }
+
+    @Test
+    public void testTableStatistics() throws Exception {
+        final Map<String, ColumnStatistics> stats = queryEngine.getCatalog()
+            .getTableStatistics("sample").get();
+        assertEquals(Arrays.asList("usage", "latency", "location", "version"),
+            new ArrayList<>(stats.keySet()));
+        final ColumnStatistics location = stats.get("location");
+        assertEquals(5, location.getDistinctCount());
+        assertEquals(0, location.getNullCount());
+        assertEquals("AUS", location.getMinString());
+        assertEquals("USA", location.getMaxString());
+        // fewer than NUM_COUNTERS distinct values, so the counts are exact
+        assertEquals(ImmutableMap.of("CAN", 257, "USA", 200, "RUS", 200, "AUS", 200, "UK", 200),
+            location.getHeavyHitters());
+        assertEquals(-0.335, stats.get("usage").getMin(), 0.0);
+        assertEquals(input.getDoubleColumnByName("usage").length, stats.get("usage").getNumRows());
+
+        final int numRows = 200000;
+        final String[] strings = new String[numRows];
+        final double[] doubles = new double[numRows];
+        for (int i = 0; i < numRows; ++i) {
+            strings[i] = i % 10 < 3 ? "hot" : i % 10 == 3 ? null : "v" + i;
+            doubles[i] = i % 10 == 3 ? Double.NaN : i % 50000 - 25000;
+        }
+        final ColumnStatistics stringStats = ColumnStatistics
+            .collect("s", strings, queryEngine.getPool(), 4);
+        assertEquals(numRows / 10, stringStats.getNullCount());
+        assertEquals(numRows * 6 / 10 + 1, stringStats.getDistinctCount(), numRows * 0.05);
+        assertEquals("hot", stringStats.getHeavyHitters().keySet().iterator().next());
+        assertEquals(numRows * 3 / 10, stringStats.getHeavyHitters().get("hot"),
+            numRows / (ColumnStatistics.NUM_COUNTERS + 1));
+        final ColumnStatistics doubleStats = ColumnStatistics
+            .collect("d", doubles, queryEngine.getPool(), 4);
+        assertEquals(-25000.0, doubleStats.getMin(), 0.0);
+        assertEquals(24999.0, doubleStats.getMax(), 0.0);
+        assertEquals(45000, doubleStats.getDistinctCount(), 45000 * 0.05);
+    }
+
+    @Test
+    public void testJoin() throws Exception {
+        final int numRows = 200000;
+        int numMatched = 0;
+        double weightSum = 0.0;
+        for (int i = 0; i < numRows; ++i) {
+            if (i % 7 != 0 && i % 5 < 4) {
+                numMatched++;
+                weightSum += i % 5 + 1;
+            }
+        }
+
+        for (int numThreads : Arrays.asList(1, 4)) {
+            final MacroBaseSQLSession session = createLargeSession(numRows, numThreads);
+            final File csv = folder.newFile();
+            try (PrintWriter out = new PrintWriter(csv)) {
+                out.println("name,weight");
+                for (int i = 0; i < 4; ++i) {
+                    out.println("d" + i + "," + (i + 1));
+                }
+                out.println("unused,9");
+            }
+            session.executeQuery("IMPORT FROM CSV FILE '" + csv.getAbsolutePath()
+                + "' INTO devices(name string, weight double)");
+
+            DataFrame result = session.executeQuery(
+                "SELECT * FROM large JOIN devices ON device = name");
+            assertEquals(Arrays.asList("metric", "device", "name", "weight"),
+                result.getSchema().getColumnNames());
+            assertEquals(numMatched, result.getNumRows());
+            final String[] devices = result.getStringColumnByName("device");
+            final String[] names = result.getStringColumnByName("name");
+            for (int i = 0; i < result.getNumRows(); ++i) {
+                assertEquals(devices[i], names[i]);
+            }
+
+            result = session.executeQuery("SELECT count(*) AS cnt, sum(weight) AS total "
+                + "FROM devices RIGHT JOIN large ON name = device");
+            assertEquals(numRows, result.getDoubleColumnByName("cnt")[0], 0.0);
+            assertEquals(weightSum, result.getDoubleColumnByName("total")[0], 0.0);
+
+            result = session.executeQuery(
+                "SELECT * FROM large FULL OUTER JOIN devices ON device = name");
+            assertEquals(numRows + 1, result.getNumRows());
+            // unmatched build rows come last
+            assertEquals("unused", result.getStringColumnByName("name")[numRows]);
+            assertEquals(null, result.getStringColumnByName("device")[numRows]);
+
+            // USING merges the key columns
+            result = session.executeQuery("SELECT * FROM large JOIN "
+                + "(SELECT * FROM large WHERE metric = 0.0) USING (metric, device)");
+            assertEquals(Arrays.asList("metric", "device"), result.getSchema().getColumnNames());
+            // metric is 0 in 29 "bad" rows and 171 "d0" rows
+            assertEquals(29 * 29 + 171 * 171, result.getNumRows());
+        }
+
+        try {
+            createLargeSession(10, 1).executeQuery(
+                "SELECT * FROM large JOIN large ON metric = metric AND device < device");
+            fail("only equi-joins are supported");
+        } catch (MacroBaseSQLException e) {
+            assertTrue(e.getMessage().contains("equalities"));
+        }
+    }
+
+    @Test
+    public void testMultiClassSplit() throws Exception {
+        final DataFrame multi = execute("SELECT * FROM DIFF (SPLIT sample WHERE usage > 1000.0, "
+            + "latency > 900.0 AND location = 'RUS') ON location, version "
+            + "COMPARE BY risk_ratio(COUNT(*))");
+        assertEquals("class", multi.getSchema().getColumnName(0));
+
+        // each class has the rows of a DIFF of the class on its own
+        final Map<String, String> classes = ImmutableMap.of(
+            "usage > 1000.0", "(usage > 1000.0)",
+            "latency > 900.0 AND location = 'RUS'", "((latency > 900.0) AND (location = RUS))");
+        for (Map.Entry<String, String> cls : classes.entrySet()) {
+            final DataFrame single = execute("SELECT * FROM DIFF (SPLIT sample WHERE "
+                + cls.getKey() + ") ON location, version COMPARE BY risk_ratio(COUNT(*))");
+            assertTrue(single.getNumRows() > 0);
+            final DataFrame classRows = multi
+                .filter("class", (Object val) -> val.equals(cls.getValue()))
+                .project(single.getSchema().getColumnNames());
+            assertEquals(new HashSet<>(single.getRows()), new HashSet<>(classRows.getRows()));
+        }
+    }
+
+    @Test
+    public void testExplanationColumnsOfLargeTable() throws Exception {
+        // 400 values, but 90% of the rows have the same one, so a sample of 1000 rows has fewer
+        // than 250 of them; a sample of a column with 400 evenly spread values doesn't
+        final int numRows = 100000;
+        final File csv = folder.newFile();
+        try (PrintWriter out = new PrintWriter(csv)) {
+            out.println("metric,skewed,uniform,id");
+            for (int i = 0; i < numRows; ++i) {
+                out.println((i % 100) + "," + (i % 10 == 0 ? "s" + (i / 10 % 399) : "common")
+                    + ",u" + (i % 400) + ",id" + i);
+            }
+        }
+        final MacroBaseSQLSession session = new MacroBaseSQLSession(4);
+        session.executeQuery("IMPORT FROM CSV FILE '" + csv.getAbsolutePath()
+            + "' INTO large(metric double, skewed string, uniform string, id string)");
+        final DataFrame result = session.executeQuery(
+            "SELECT * FROM DIFF (SPLIT large WHERE metric > 90.0) ON *");
+        assertTrue(result.getSchema().hasColumn("skewed"));
+        assertTrue(!result.getSchema().hasColumn("uniform"));
+        assertTrue(!result.getSchema().hasColumn("id"));
+    }
+
+    @Test
+    public void testResultCacheKeys() throws Exception {
+        final ResultCache cache = queryEngine.getResultCache();
+        final DataFrame quoted = execute(
+            "SELECT * FROM (SELECT * FROM sample WHERE location = 'AUS') s");
+        assertTrue(quoted.getNumRows() > 0);
+        final long numHits = cache.getNumHits();
+        try {
+            execute("SELECT * FROM (SELECT * FROM sample WHERE location = AUS) s");
+            fail("AUS is a column, not a literal");
+        } catch (MacroBaseException e) {
+            assertEquals(numHits, cache.getNumHits());
+        }
+
+        // one class whose literal looks like two classes
+        final String single = "SELECT * FROM DIFF (SPLIT sample WHERE location = 'AUS), "
+            + "(version = v3') ON location, version";
+        final String multi = "SELECT * FROM DIFF (SPLIT sample WHERE location = 'AUS', "
+            + "version = 'v3') ON location, version";
+        final String[][] differentQueries = {
+            {"SELECT * FROM sample WHERE location = 'AUS'",
+                "SELECT * FROM sample WHERE location = AUS"},
+            {"SELECT * FROM sample WHERE location = 'version'",
+                "SELECT * FROM sample WHERE location = version"},
+            {single, multi},
+        };
+        for (String[] queries : differentQueries) {
+            assertTrue(!SqlFormatter.formatSql(parser.createStatement(queries[0]), Optional.empty(),
+                true).equals(SqlFormatter.formatSql(parser.createStatement(queries[1]),
+                Optional.empty(), true)));
+        }
+        final DataFrame multiResult = execute(multi);
+        final long numMultiHits = cache.getNumHits();
+        final DataFrame singleResult = execute(single);
+        assertEquals(numMultiHits, cache.getNumHits());
+        assertTrue(multiResult.getSchema().hasColumn("class"));
+        assertTrue(!singleResult.getSchema().hasColumn("class"));
+    }
+
+    @Test
+    public void testResultCache() throws Exception {
+        final ResultCache cache = queryEngine.getResultCache();
+        final String diffQuery = "SELECT * FROM DIFF (SPLIT sample WHERE usage > 1000.0) "
+            + "ON location, version COMPARE BY risk_ratio(COUNT(*))";
+        final DataFrame explanation = execute(diffQuery);
+        assertEquals(0, cache.getNumHits());
+
+        // only ORDER BY and LIMIT change, so the explanation is reused
+        final DataFrame top = execute(diffQuery + " ORDER BY support LIMIT 1");
+        assertEquals(1, cache.getNumHits());
+        assertTrue(loadDataFrameFromCSV("12.csv", RISK_RATIO_SCHEMA).equals(top));
+
+        // modifying a result, on a miss or a hit, doesn't modify the cached explanation
+        final DataFrame expected = explanation.copy();
+        explanation.addColumn("extra", new double[explanation.getNumRows()]);
+        explanation.renameColumn("support", "renamed");
+        final DataFrame hit = execute(diffQuery);
+        assertEquals(2, cache.getNumHits());
+        assertTrue(expected.equals(hit));
+        hit.renameColumn("support", "renamed");
+        assertTrue(expected.equals(execute(diffQuery)));
+
+        // subqueries are reused by a DIFF with other parameters
+        final String subqueries = "SELECT * FROM DIFF "
+            + "(SELECT * FROM sample WHERE usage > 1000.0) outliers, "
+            + "(SELECT * FROM sample WHERE usage < 1000.0) inliers ON location";
+        execute(subqueries);
+        final long numHits = cache.getNumHits();
+        execute(subqueries + ", version");
+        assertEquals(numHits + 2, cache.getNumHits());
+
+        // re-importing the table invalidates every result computed from it
+        final int numEntries = cache.getNumEntries();
+        assertTrue(numEntries > 0);
+        execute(Resources.toString(Resources.getResource("import.sql"), Charsets.UTF_8)
+            .replace(";", ""));
+        assertEquals(0, cache.getNumEntries());
+        assertTrue(expected.equals(execute(diffQuery)));
+
+        final DataFrame outliers = execute("CACHE TABLE outliers AS "
+            + "SELECT * FROM sample WHERE usage > 1000.0");
+        assertEquals(38, outliers.getNumRows());
+        assertTrue(outliers.equals(execute("SELECT * FROM outliers")));
+        execute("SELECT * FROM outliers").renameColumn("usage", "renamed");
+        assertTrue(outliers.equals(execute("SELECT * FROM outliers")));
+        // recomputed after the table it was computed from is re-imported
+        execute(Resources.toString(Resources.getResource("import.sql"), Charsets.UTF_8)
+            .replace(";", ""));
+        assertTrue(outliers.equals(execute("SELECT * FROM outliers")));
+
+        final DataFrame uncached = execute("UNCACHE TABLE outliers");
+        assertEquals("outliers", uncached.getStringColumnByName("uncached")[0]);
+        try {
+            execute("SELECT * FROM outliers");
+            fail("outliers is no longer cached");
+        } catch (MacroBaseSQLException e) {
+            assertTrue(e.getMessage().contains("does not exist"));
+        }
+
+        // with no memory, results aren't cached
+        execute("SET cache_mb = 0");
+        execute(diffQuery);
+        execute(diffQuery);
+        assertEquals(0, cache.getNumEntries());
+    }
+
+    @Test
+    public void testExplainAnalyze() throws Exception {
+        final DataFrame profile = execute("EXPLAIN ANALYZE SELECT * FROM DIFF "
+            + "(SPLIT sample WHERE usage > 1000.0) ON location, version ORDER BY support LIMIT 1");
+        assertEquals(Arrays.asList("scan sample", "SPLIT mask", "DIFF encode", "DIFF prepare",
+            "DIFF order 1 counting", "DIFF order 1 prune", "DIFF order 2 counting",
+            "DIFF order 2 prune", "DIFF order 3 counting", "DIFF order 3 prune", "ORDER BY",
+            "LIMIT", "query"), Arrays.asList(profile.getStringColumnByName("operator")));
+
+        final int numRows = input.getNumRows();
+        final double[] rowsIn = profile.getDoubleColumnByName("rows_in");
+        final double[] rowsOut = profile.getDoubleColumnByName("rows_out");
+        assertEquals(numRows, rowsOut[0], 0.0);
+        // the outliers
+        assertEquals(numRows, rowsIn[1], 0.0);
+        assertEquals(38, rowsOut[1], 0.0);
+        assertEquals(1, rowsOut[11], 0.0);
+        assertEquals(numRows, rowsIn[12], 0.0);
+        assertEquals(1, rowsOut[12], 0.0);
+        final double[] times = profile.getDoubleColumnByName("time_ms");
+        for (int i = 0; i < times.length - 1; ++i) {
+            assertTrue(times[i] <= times[times.length - 1]);
+        }
+        assertTrue(profile.getDoubleColumnByName("bytes_allocated")[12] > 0);
+        // the query is executed, not read from the result cache
+        assertEquals(0, queryEngine.getResultCache().getNumEntries());
+    }
+
+    @Test
+    public void testBinaryTable() throws Exception {
+        final String sampleFile = new File(folder.getRoot(), "sample.mbt").getAbsolutePath();
+        final DataFrame exported = execute("EXPORT TABLE sample TO BINARY FILE '" + sampleFile
+            + "'");
+        assertEquals(input.getNumRows(), exported.getDoubleColumnByName("rows")[0], 0.0);
+        assertTrue(input.equals(execute("IMPORT FROM BINARY FILE '" + sampleFile
+            + "' INTO sample_copy")));
+        assertTrue(execute("SELECT * FROM sample WHERE location = 'AUS' AND usage > 10.0")
+            .equals(execute("SELECT * FROM sample_copy WHERE location = 'AUS' AND usage > 10.0")));
+
+        // results of DIFF queries can be saved too
+        final String diffFile = new File(folder.getRoot(), "diff.mbt").getAbsolutePath();
+        final String diffQuery = "SELECT * FROM DIFF (SPLIT sample WHERE usage > 1000.0) "
+            + "ON location, version COMPARE BY risk_ratio(COUNT(*))";
+        execute("EXPORT " + diffQuery + " TO BINARY FILE '" + diffFile + "'");
+        assertTrue(execute(diffQuery).equals(execute("IMPORT FROM BINARY FILE '" + diffFile
+            + "' INTO explanation")));
+
+        try {
+            execute("EXPORT TABLE sample TO BINARY FILE '" + sampleFile + "'");
+            fail("the file already exists");
+        } catch (MacroBaseSQLException e) {
+            assertTrue(e.getMessage().contains("already exists"));
+        }
+        try {
+            execute("IMPORT FROM BINARY FILE '" + folder.newFile().getAbsolutePath()
+                + "' INTO empty");
+            fail("the file is empty");
+        } catch (MacroBaseSQLException e) {
+            assertTrue(e.getMessage().contains("not a MacroBase binary table"));
+        }
+
+        // enough rows to be split across threads, with nulls and two-byte codes
+        final int numRows = 200000;
+        final double[] metric = new double[numRows];
+        final String[] device = new String[numRows];
+        for (int i = 0; i < numRows; ++i) {
+            metric[i] = i * 0.5;
+            device[i] = i % 13 == 0 ? null : "d" + (i % 70000);
+        }
+        final DataFrame large = new DataFrame()
+            .addColumn("metric", metric)
+            .addColumn("device", device);
+        final String largeFile = new File(folder.getRoot(), "large.mbt").getAbsolutePath();
+        BinaryTableFile.write(large, largeFile, queryEngine.getPool(), 4, (column) -> null);
+        final Map<String[], StringDictionary> dictionaries = new IdentityHashMap<>();
+        final DataFrame read = BinaryTableFile.read(largeFile, queryEngine.getPool(), 4,
+            dictionaries);
+        assertTrue(large.equals(read));
+        final StringDictionary dictionary = dictionaries.get(read.getStringColumnByName("device"));
+        assertEquals(70000, dictionary.size());
+        assertEquals(numRows / 13 + 1, dictionary.getCount(StringDictionary.NULL_CODE));
+    }
+
+    /**
+     * @return a session with table "large", which has enough rows for scans to be split across
+     * threads
+     */
+    private MacroBaseSQLSession createLargeSession(final int numRows, final int numThreads)
+        throws Exception {
+        final File csv = folder.newFile();
+        try (PrintWriter out = new PrintWriter(csv)) {
+            out.println("metric,device");
+            for (int i = 0; i < numRows; ++i) {
+                out.println((i % 1000) + "," + (i % 7 == 0 ? "bad" : "d" + (i % 5)));
+            }
+        }
+        final MacroBaseSQLSession session = new MacroBaseSQLSession(numThreads);
+        session.executeQuery("IMPORT FROM CSV FILE '" + csv.getAbsolutePath()
+            + "' INTO large(metric double, device string)");
+        return session;
+    }
+
+    /**
+     * Parse and execute a statement, as {@link MacroBaseSQLSession} does
+     */
+    private DataFrame execute(final String statement) throws Exception {
+        final Statement stmt = parser.createStatement(statement);
+        if (stmt instanceof ImportCsv) {
+            return queryEngine.importTableFromCsv((ImportCsv) stmt);
+        } else if (stmt instanceof ImportBinary) {
+            return queryEngine.importTableFromBinary((ImportBinary) stmt);
+        } else if (stmt instanceof ExportBinary) {
+            return queryEngine.exportToBinary((ExportBinary) stmt);
+        } else if (stmt instanceof SetSession) {
+            return queryEngine.setSessionProperty((SetSession) stmt);
+        } else if (stmt instanceof CacheTable) {
+            return queryEngine.cacheTable((CacheTable) stmt);
+        } else if (stmt instanceof UncacheTable) {
+            return queryEngine.uncacheTable((UncacheTable) stmt);
+        } else if (stmt instanceof ExplainAnalyze) {
+            return queryEngine.explainAnalyze((ExplainAnalyze) stmt);
+        }
+        return queryEngine.executeQuery(((Query) stmt).getQueryBody());
     }
 
     private DataFrame loadDataFrameFromCSV(final String csvFilename,
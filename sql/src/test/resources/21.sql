@@ -0,0 +1,5 @@
+SELECT location, count(*) AS cnt, sum(usage) AS total_usage, avg(latency) AS avg_latency,
+  min(usage), max(usage)
+FROM sample
+GROUP BY location
+ORDER BY location INTO OUTFILE '21.csv';
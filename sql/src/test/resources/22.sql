@@ -0,0 +1,5 @@
+SELECT version, location, stddev(usage) AS sd FROM sample
+WHERE latency > 500.0
+GROUP BY version, location
+HAVING count(*) >= 40
+ORDER BY sd INTO OUTFILE '22.csv';
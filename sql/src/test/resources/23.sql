@@ -0,0 +1,2 @@
+SELECT count(*) AS cnt, avg(usage) AS avg_usage FROM sample WHERE usage > 1000.0
+INTO OUTFILE '23.csv';
@@ -0,0 +1,2 @@
+SELECT location, version, count(*) AS cnt FROM sample GROUP BY location, version
+ORDER BY cnt DESC, location DESC, version LIMIT 5 INTO OUTFILE '25.csv';